@@ -0,0 +1,162 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.Container;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.hadoop.yarn.util.BuilderUtils;
+import org.apache.hadoop.yarn.util.Records;
+import org.springframework.yarn.examples.grid.yarn.DefaultYarnContainerNode;
+import org.springframework.yarn.examples.grid.yarn.GenericContainerGroupResolver;
+import org.springframework.yarn.examples.grid.yarn.YarnContainerNode;
+import org.springframework.yarn.examples.grid.yarn.YarnManagedContainerGroups;
+
+/**
+ * Utility methods for building benchmark fixtures.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public abstract class BenchmarkUtils {
+
+	/** Hosts used for generated containers */
+	public final static int HOSTS = 100;
+
+	private final static ApplicationAttemptId ATTEMPT_ID;
+
+	static {
+		ApplicationId applicationId = BuilderUtils.newApplicationId(1375001068632l, 1);
+		ATTEMPT_ID = BuilderUtils.newApplicationAttemptId(applicationId, 1);
+	}
+
+	/**
+	 * Gets a group name for an index.
+	 *
+	 * @param index the group index
+	 * @return the group name
+	 */
+	public static String groupName(int index) {
+		return "group" + index;
+	}
+
+	/**
+	 * Gets a host name for an index.
+	 *
+	 * @param index the host index
+	 * @return the host name
+	 */
+	public static String hostName(int index) {
+		return "host" + (index % HOSTS);
+	}
+
+	/**
+	 * Mocks a Yarn container.
+	 *
+	 * @param index the container index
+	 * @return the mocked container
+	 */
+	public static Container mockContainer(int index) {
+		Container container = Records.newRecord(Container.class);
+		NodeId nodeId = Records.newRecord(NodeId.class);
+		nodeId.setHost(hostName(index));
+		container.setNodeId(nodeId);
+		ContainerId containerId = BuilderUtils.newContainerId(ATTEMPT_ID, index + 1);
+		container.setId(containerId);
+		return container;
+	}
+
+	/**
+	 * Mocks container nodes.
+	 *
+	 * @param count the node count
+	 * @return the container nodes
+	 */
+	public static List<YarnContainerNode> mockNodes(int count) {
+		List<YarnContainerNode> nodes = new ArrayList<YarnContainerNode>(count);
+		for (int i = 0; i < count; i++) {
+			nodes.add(new DefaultYarnContainerNode(mockContainer(i)));
+		}
+		return nodes;
+	}
+
+	/**
+	 * Builds a resolver where every group resolves from one host
+	 * and catch all group resolves from all hosts.
+	 *
+	 * @param groups the group count
+	 * @return the resolver
+	 */
+	public static GenericContainerGroupResolver buildResolver(int groups) {
+		GenericContainerGroupResolver resolver = new GenericContainerGroupResolver();
+		Map<String, List<String>> resolves = new Hashtable<String, List<String>>();
+		for (int i = 0; i < groups; i++) {
+			resolves.put(groupName(i), Arrays.asList(new String[] { hostName(i) }));
+		}
+		resolves.put(YarnManagedContainerGroups.DEFAULT_GROUP, Arrays.asList(new String[] { "*" }));
+		resolver.setResolves(resolves);
+		return resolver;
+	}
+
+	/**
+	 * Builds managed groups having all nodes added evenly
+	 * to given count of groups and a first rebalance done.
+	 *
+	 * @param groups the group count
+	 * @param nodes the nodes to add
+	 * @return the managed groups
+	 */
+	public static YarnManagedContainerGroups buildManagedGroups(int groups, List<YarnContainerNode> nodes) {
+		return buildManagedGroups(groups, nodes, true);
+	}
+
+	/**
+	 * Builds managed groups having all nodes added evenly
+	 * to given count of groups.
+	 *
+	 * @param groups the group count
+	 * @param nodes the nodes to add
+	 * @param rebalanced if a first rebalance is done
+	 * @return the managed groups
+	 */
+	public static YarnManagedContainerGroups buildManagedGroups(int groups, List<YarnContainerNode> nodes,
+			boolean rebalanced) {
+		YarnManagedContainerGroups managedGroups = new YarnManagedContainerGroups(true);
+		managedGroups.setResolver(buildResolver(groups));
+		Map<String, Integer> groupSizes = new Hashtable<String, Integer>();
+		for (int i = 0; i < groups; i++) {
+			groupSizes.put(groupName(i), nodes.size() / groups + 1);
+		}
+		groupSizes.put(YarnManagedContainerGroups.DEFAULT_GROUP, nodes.size());
+		managedGroups.setGroupSizes(groupSizes);
+		for (YarnContainerNode node : nodes) {
+			managedGroups.addContainerNode(node);
+		}
+		if (rebalanced) {
+			managedGroups.getGroupsRebalanceData();
+		}
+		return managedGroups;
+	}
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.benchmark;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.yarn.examples.grid.CompositeContainerGridListener;
+import org.springframework.yarn.examples.grid.ContainerGridBatchListener;
+import org.springframework.yarn.examples.grid.ContainerGridListener;
+import org.springframework.yarn.examples.grid.yarn.YarnContainerNode;
+
+/**
+ * Benchmarks for listener dispatch in {@link CompositeContainerGridListener}
+ * with varying count of listeners and batch sizes.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CompositeContainerGridListenerBenchmark {
+
+	@Param({ "1", "10", "100" })
+	public int listeners;
+
+	@Param({ "10", "1000", "10000" })
+	public int members;
+
+	private CompositeContainerGridListener<YarnContainerNode> composite;
+
+	private CompositeContainerGridListener<YarnContainerNode> batchComposite;
+
+	private List<YarnContainerNode> nodes;
+
+	private Collection<YarnContainerNode> empty;
+
+	@Setup
+	public void setup(Blackhole blackhole) {
+		nodes = BenchmarkUtils.mockNodes(members);
+		empty = Collections.emptyList();
+		composite = new CompositeContainerGridListener<YarnContainerNode>();
+		batchComposite = new CompositeContainerGridListener<YarnContainerNode>();
+		for (int i = 0; i < listeners; i++) {
+			composite.register(new ConsumingListener(blackhole));
+			batchComposite.register(new ConsumingBatchListener(blackhole));
+		}
+	}
+
+	@Benchmark
+	public void dispatchSingle() {
+		for (YarnContainerNode node : nodes) {
+			composite.containerNodeAdded(node);
+		}
+	}
+
+	@Benchmark
+	public void dispatchBatchToSingleListeners() {
+		composite.containerNodesChanged(nodes, empty);
+	}
+
+	@Benchmark
+	public void dispatchBatchToBatchListeners() {
+		batchComposite.containerNodesChanged(nodes, empty);
+	}
+
+	/**
+	 * Listener consuming nodes one by one.
+	 */
+	private static class ConsumingListener implements ContainerGridListener<YarnContainerNode> {
+		final Blackhole blackhole;
+		ConsumingListener(Blackhole blackhole) {
+			this.blackhole = blackhole;
+		}
+		@Override
+		public void containerNodeAdded(YarnContainerNode node) {
+			blackhole.consume(node);
+		}
+		@Override
+		public void containerNodeRemoved(YarnContainerNode node) {
+			blackhole.consume(node);
+		}
+	}
+
+	/**
+	 * Listener consuming batches.
+	 */
+	private static class ConsumingBatchListener extends ConsumingListener
+			implements ContainerGridBatchListener<YarnContainerNode> {
+		ConsumingBatchListener(Blackhole blackhole) {
+			super(blackhole);
+		}
+		@Override
+		public void containerNodesChanged(Collection<YarnContainerNode> added, Collection<YarnContainerNode> removed) {
+			blackhole.consume(added);
+			blackhole.consume(removed);
+		}
+	}
+
+}
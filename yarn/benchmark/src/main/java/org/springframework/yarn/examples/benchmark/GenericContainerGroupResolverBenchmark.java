@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.yarn.api.records.Container;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.yarn.examples.grid.yarn.GenericContainerGroupResolver;
+
+/**
+ * Benchmarks for {@link GenericContainerGroupResolver#resolveGroupNames(Container)}
+ * with varying count of resolve rules.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GenericContainerGroupResolverBenchmark {
+
+	@Param({ "10", "100", "1000", "10000" })
+	public int rules;
+
+	private GenericContainerGroupResolver resolver;
+
+	private Container[] containers;
+
+	private int index;
+
+	@Setup
+	public void setup() {
+		resolver = BenchmarkUtils.buildResolver(rules);
+		containers = new Container[BenchmarkUtils.HOSTS];
+		for (int i = 0; i < containers.length; i++) {
+			containers[i] = BenchmarkUtils.mockContainer(i);
+		}
+	}
+
+	@Benchmark
+	public List<String> resolveGroupNames() {
+		if (++index >= containers.length) {
+			index = 0;
+		}
+		return resolver.resolveGroupNames(containers[index]);
+	}
+
+}
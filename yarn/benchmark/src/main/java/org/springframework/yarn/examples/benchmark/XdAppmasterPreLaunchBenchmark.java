@@ -0,0 +1,94 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.benchmark;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.yarn.api.records.ContainerLaunchContext;
+import org.apache.hadoop.yarn.util.Records;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.yarn.am.AppmasterService;
+import org.springframework.yarn.examples.XdAppmaster;
+import org.springframework.yarn.examples.grid.yarn.YarnContainerNode;
+
+/**
+ * Benchmarks for {@link XdAppmaster#preLaunch(ContainerLaunchContext)} building
+ * a launch context with varying count of groups and members.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class XdAppmasterPreLaunchBenchmark {
+
+	@Param({ "10", "100", "1000", "10000" })
+	public int groups;
+
+	@Param({ "100", "1000", "10000" })
+	public int members;
+
+	private XdAppmaster appmaster;
+
+	private List<YarnContainerNode> nodes;
+
+	private int index;
+
+	@Setup
+	public void setup() throws Exception {
+		nodes = BenchmarkUtils.mockNodes(members);
+		appmaster = new XdAppmaster();
+		appmaster.setManagedGroups(BenchmarkUtils.buildManagedGroups(groups, nodes));
+		appmaster.setAppmasterService(new AppmasterService() {
+			@Override
+			public int getPort() {
+				return 8080;
+			}
+			@Override
+			public String getHost() {
+				return "localhost";
+			}
+			@Override
+			public boolean hasPort() {
+				return true;
+			}
+		});
+		// session id is normally created during init
+		appmaster.setSessionId("benchmark-session");
+	}
+
+	@Benchmark
+	public ContainerLaunchContext preLaunch() {
+		if (++index >= nodes.size()) {
+			index = 0;
+		}
+		ContainerLaunchContext context = Records.newRecord(ContainerLaunchContext.class);
+		context.setContainerId(nodes.get(index).getContainer().getId());
+		context.setEnvironment(new HashMap<String, String>());
+		return appmaster.preLaunch(context);
+	}
+
+}
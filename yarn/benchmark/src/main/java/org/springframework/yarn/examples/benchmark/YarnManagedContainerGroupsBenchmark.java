@@ -0,0 +1,116 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.yarn.examples.grid.yarn.DefaultYarnContainerNode;
+import org.springframework.yarn.examples.grid.yarn.YarnContainerGroup;
+import org.springframework.yarn.examples.grid.yarn.YarnContainerNode;
+import org.springframework.yarn.examples.grid.yarn.YarnGroupsRebalanceData;
+import org.springframework.yarn.examples.grid.yarn.YarnManagedContainerGroups;
+
+/**
+ * Benchmarks for {@link YarnManagedContainerGroups} operations
+ * with varying count of groups and members.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class YarnManagedContainerGroupsBenchmark {
+
+	@Param({ "10", "100", "1000", "10000" })
+	public int groups;
+
+	@Param({ "100", "1000", "10000" })
+	public int members;
+
+	private YarnManagedContainerGroups managedGroups;
+
+	private List<YarnContainerNode> nodes;
+
+	private YarnContainerNode extraNode;
+
+	private int index;
+
+	@Setup
+	public void setup() {
+		nodes = BenchmarkUtils.mockNodes(members);
+		managedGroups = BenchmarkUtils.buildManagedGroups(groups, nodes);
+		extraNode = new DefaultYarnContainerNode(BenchmarkUtils.mockContainer(members));
+	}
+
+	@Benchmark
+	public YarnContainerNode addRemove() {
+		managedGroups.addContainerNode(extraNode);
+		managedGroups.removeContainerNode(extraNode.getId());
+		return extraNode;
+	}
+
+	@Benchmark
+	public YarnContainerGroup getGroupByMember() {
+		return managedGroups.getGroupByMember(nextNode().getId());
+	}
+
+	@Benchmark
+	public YarnContainerNode getContainerNode() {
+		return managedGroups.getContainerNode(nextNode().getId());
+	}
+
+	@Benchmark
+	public YarnGroupsRebalanceData rebalance(RebalanceState state) {
+		return state.managedGroups.getGroupsRebalanceData();
+	}
+
+	/**
+	 * Fresh groups for every rebalance as a rebalance changes
+	 * pending asks and members, thus every call measures the
+	 * same work.
+	 */
+	@State(Scope.Thread)
+	public static class RebalanceState {
+
+		YarnManagedContainerGroups managedGroups;
+
+		@Setup(Level.Invocation)
+		public void setup(YarnManagedContainerGroupsBenchmark benchmark) {
+			managedGroups = BenchmarkUtils.buildManagedGroups(benchmark.groups, benchmark.nodes, false);
+			managedGroups.getGroup(BenchmarkUtils.groupName(0)).setDirty(true);
+		}
+
+	}
+
+	private YarnContainerNode nextNode() {
+		if (++index >= nodes.size()) {
+			index = 0;
+		}
+		return nodes.get(index);
+	}
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.simulator;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.yarn.am.monitor.DefaultContainerMonitor;
+import org.springframework.yarn.examples.grid.yarn.GenericContainerGroupResolver;
+import org.springframework.yarn.examples.grid.yarn.YarnContainerGroup;
+import org.springframework.yarn.examples.grid.yarn.YarnContainerNode;
+import org.springframework.yarn.examples.grid.yarn.YarnManagedContainerGroups;
+
+/**
+ * Offline load simulator for the appmaster control plane. Drives
+ * {@link SimulatedXdAppmaster} and {@link YarnManagedContainerGroups}
+ * with {@link SimulatedResourceManager} and {@link SimulatedContainerLauncher}
+ * without any Hadoop services.
+ * <p>
+ * Simulation scales groups up, runs a churn phase killing running
+ * containers and waits for groups to recover. Reported figures are
+ * scale-up and recovery times, appmaster cpu time and allocated bytes
+ * per handled event.
+ * <p>
+ * Settings are read from system properties:
+ * <ul>
+ * <li>sim.containers, total container count, default 5000</li>
+ * <li>sim.groups, count of groups, default 10</li>
+ * <li>sim.hosts, count of hosts, default 500</li>
+ * <li>sim.allocationLatency, sim.allocationJitter, millis, default 100/100</li>
+ * <li>sim.stragglerProbability, sim.stragglerLatency, default 0/10000</li>
+ * <li>sim.dropProbability, asks never granted, default 0</li>
+ * <li>sim.askTimeout, millis until dropped asks are withdrawn and asked again, default 60000</li>
+ * <li>sim.outage, millis no asks are granted at the start of churn, default 0</li>
+ * <li>sim.launchLatency, millis, default 50</li>
+ * <li>sim.bootLatency, millis from launch to first heartbeat, default 200</li>
+ * <li>sim.failureProbability, sim.failureDelay, default 0/5000</li>
+ * <li>sim.deadProbability, failures reported as dead heartbeat, default 0.5</li>
+ * <li>sim.churnRate, containers killed per second, default 10</li>
+ * <li>sim.churnDuration, seconds, default 10</li>
+ * <li>sim.speculativeExtra, default 0</li>
+ * <li>sim.timeout, seconds to wait convergence, default 300</li>
+ * <li>sim.seed, default 1</li>
+ * </ul>
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class AppmasterSimulator {
+
+	private final int containers = Integer.getInteger("sim.containers", 5000);
+	private final int groups = Integer.getInteger("sim.groups", 10);
+	private final int churnRate = Integer.getInteger("sim.churnRate", 10);
+	private final int churnDuration = Integer.getInteger("sim.churnDuration", 10);
+	private final long timeout = Long.getLong("sim.timeout", 300);
+	private final long outage = Long.getLong("sim.outage", 0);
+
+	private final SimulationStats stats = new SimulationStats();
+	private SimulatedResourceManager resourceManager;
+	private SimulatedContainerLauncher launcher;
+	private YarnManagedContainerGroups managedGroups;
+	private SimulatedXdAppmaster appmaster;
+	private ThreadPoolTaskScheduler taskScheduler;
+	private AnnotationConfigApplicationContext context;
+
+	/**
+	 * Runs the simulation.
+	 *
+	 * @throws Exception if simulation failed
+	 */
+	public void run() throws Exception {
+		setup();
+		try {
+			long start = System.nanoTime();
+			for (int i = 0; i < groups; i++) {
+				int size = containers / groups + (i < containers % groups ? 1 : 0);
+				appmaster.setRunningXdContainerCount(size, groupName(i));
+			}
+			appmaster.simulateRebalance();
+			boolean scaledUp = awaitConverged(start);
+			long scaleUp = System.nanoTime() - start;
+			report("Scale-up", scaledUp, scaleUp);
+
+			int killed = 0;
+			long churnStart = System.nanoTime();
+			if (outage > 0) {
+				resourceManager.outage(outage);
+			}
+			for (int i = 0; i < churnDuration * 10; i++) {
+				killed += resourceManager.churn((churnRate * (i + 1)) / 10 - (churnRate * i) / 10);
+				TimeUnit.MILLISECONDS.sleep(100);
+			}
+			long recoveryStart = System.nanoTime();
+			boolean recovered = awaitConverged(recoveryStart);
+			long recovery = System.nanoTime() - recoveryStart;
+			System.out.println("Churn: killed=" + killed + " in " + toMillis(recoveryStart - churnStart) + "ms");
+			report("Recovery", recovered, recovery);
+			System.out.println("Speculative: " + managedGroups.getSpeculativeMetrics());
+			System.out.print("Lifecycle latencies:\n" + appmaster.getLifecycleTracker().getSummary());
+		} finally {
+			shutdown();
+		}
+	}
+
+	private void setup() throws Exception {
+		long seed = Long.getLong("sim.seed", 1);
+		resourceManager = new SimulatedResourceManager(stats, seed);
+		resourceManager.setHosts(Integer.getInteger("sim.hosts", 500));
+		resourceManager.setAllocationLatency(Long.getLong("sim.allocationLatency", 100));
+		resourceManager.setAllocationJitter(Long.getLong("sim.allocationJitter", 100));
+		resourceManager.setStragglerProbability(Double.parseDouble(System.getProperty("sim.stragglerProbability", "0")));
+		resourceManager.setStragglerLatency(Long.getLong("sim.stragglerLatency", 10000));
+		resourceManager.setFailureProbability(Double.parseDouble(System.getProperty("sim.failureProbability", "0")));
+		resourceManager.setFailureDelay(Long.getLong("sim.failureDelay", 5000));
+		resourceManager.setDeadProbability(Double.parseDouble(System.getProperty("sim.deadProbability", "0.5")));
+		resourceManager.setDropProbability(Double.parseDouble(System.getProperty("sim.dropProbability", "0")));
+
+		launcher = new SimulatedContainerLauncher(resourceManager);
+		launcher.setLaunchLatency(Long.getLong("sim.launchLatency", 50));
+		launcher.setBootLatency(Long.getLong("sim.bootLatency", 200));
+
+		GenericContainerGroupResolver resolver = new GenericContainerGroupResolver();
+		Map<String, List<String>> resolves = new Hashtable<String, List<String>>();
+		Map<String, Integer> groupSizes = new Hashtable<String, Integer>();
+		for (int i = 0; i < groups; i++) {
+			List<String> hosts = new ArrayList<String>();
+			hosts.add("*");
+			resolves.put(groupName(i), hosts);
+			groupSizes.put(groupName(i), 0);
+		}
+		resolver.setResolves(resolves);
+		managedGroups = new YarnManagedContainerGroups(false);
+		managedGroups.setResolver(resolver);
+		managedGroups.setGroupSizes(groupSizes);
+		managedGroups.setSpeculativeExtra(Integer.getInteger("sim.speculativeExtra", 0));
+		managedGroups.setCompactNodes(Boolean.getBoolean("sim.compactNodes"));
+		managedGroups.getRequestLedger().setAskTimeout(Long.getLong("sim.askTimeout", 60000));
+
+		taskScheduler = new ThreadPoolTaskScheduler();
+		taskScheduler.setThreadNamePrefix("simulator-am-");
+		taskScheduler.setPoolSize(2);
+		taskScheduler.afterPropertiesSet();
+
+		// simulator context provides what appmaster context would autowire
+		context = new AnnotationConfigApplicationContext();
+		context.getBeanFactory().registerSingleton("managedGroups", managedGroups);
+		context.getBeanFactory().registerSingleton("heartbeatAppmasterService", new SimulatedHeartbeatService());
+		context.refresh();
+
+		appmaster = new SimulatedXdAppmaster(stats);
+		context.getAutowireCapableBeanFactory().autowireBean(appmaster);
+		appmaster.setAllocator(resourceManager);
+		appmaster.setLauncher(launcher);
+		appmaster.setMonitor(new DefaultContainerMonitor());
+		appmaster.setTaskScheduler(taskScheduler);
+		resourceManager.setAppmaster(appmaster);
+		launcher.setAppmaster(appmaster);
+		appmaster.afterPropertiesSet();
+		appmaster.start();
+	}
+
+	private void shutdown() {
+		appmaster.stop();
+		resourceManager.shutdown();
+		launcher.shutdown();
+		taskScheduler.shutdown();
+		context.close();
+	}
+
+	private boolean awaitConverged(long start) throws InterruptedException {
+		long deadline = start + TimeUnit.SECONDS.toNanos(timeout);
+		while (System.nanoTime() < deadline) {
+			if (isConverged()) {
+				return true;
+			}
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		return false;
+	}
+
+	private boolean isConverged() {
+		for (YarnContainerGroup group : new ArrayList<YarnContainerGroup>(managedGroups.getGroups())) {
+			if (!group.isFull()) {
+				return false;
+			}
+			for (YarnContainerNode node : new ArrayList<YarnContainerNode>(group.getMembers())) {
+				if (!resourceManager.isRunning(node.getContainer().getId())) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private void report(String phase, boolean converged, long nanos) {
+		long amCpu = stats.getCpuNanos() + SimulationStats.threadsCpuTime("simulator-am-");
+		long events = Math.max(1, stats.getEvents());
+		System.out.println(phase + ": " + (converged ? "converged" : "timed out") + " in " + toMillis(nanos) + "ms"
+				+ " containers=" + containers + " groups=" + groups + " running=" + resourceManager.getRunningCount());
+		System.out.println("  events=" + stats.getEvents() + " requested=" + stats.getRequested() + " allocated="
+				+ stats.getAllocated() + " launched=" + stats.getLaunched() + " completed=" + stats.getCompleted()
+				+ " failed=" + stats.getFailed() + " dead=" + stats.getDead() + " released=" + stats.getReleased()
+				+ " dropped=" + stats.getDropped());
+		System.out.println("  amCpu=" + toMillis(amCpu) + "ms cpuPerEvent=" + (stats.getCpuNanos() / events / 1000)
+				+ "us bytesPerEvent=" + (stats.getAllocatedBytes() / events));
+	}
+
+	private static String groupName(int index) {
+		return "group" + index;
+	}
+
+	private static long toMillis(long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	/**
+	 * Main method running a simulation.
+	 *
+	 * @param args the arguments, not used
+	 * @throws Exception if simulation failed
+	 */
+	public static void main(String[] args) throws Exception {
+		new AppmasterSimulator().run();
+		System.exit(0);
+	}
+
+}
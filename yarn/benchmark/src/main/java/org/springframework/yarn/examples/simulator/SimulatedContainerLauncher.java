@@ -0,0 +1,125 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.simulator;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.yarn.api.records.Container;
+import org.apache.hadoop.yarn.api.records.ContainerLaunchContext;
+import org.apache.hadoop.yarn.util.Records;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.yarn.am.container.ContainerLauncher;
+
+/**
+ * {@link ContainerLauncher} simulating node manager container starts.
+ * Launch context is built and passed through appmaster's
+ * launcher interceptor same way than a real launcher does.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class SimulatedContainerLauncher implements ContainerLauncher {
+
+	private final static Log log = LogFactory.getLog(SimulatedContainerLauncher.class);
+
+	private final SimulatedResourceManager resourceManager;
+
+	private final ExecutorService executor;
+
+	private SimulatedXdAppmaster appmaster;
+
+	private long launchLatency = 50;
+
+	private long bootLatency = 200;
+
+	/**
+	 * Instantiates a new simulated container launcher.
+	 *
+	 * @param resourceManager the simulated resource manager
+	 */
+	public SimulatedContainerLauncher(SimulatedResourceManager resourceManager) {
+		this.resourceManager = resourceManager;
+		this.executor = Executors.newCachedThreadPool(new CustomizableThreadFactory("simulator-nm-"));
+	}
+
+	@Override
+	public void launchContainer(final Container container, List<String> commands) {
+		ContainerLaunchContext context = Records.newRecord(ContainerLaunchContext.class);
+		context.setContainerId(container.getId());
+		context.setEnvironment(new HashMap<String, String>());
+		context.setCommands(commands);
+		appmaster.preLaunch(context);
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					TimeUnit.MILLISECONDS.sleep(launchLatency);
+					resourceManager.containerLaunched(container);
+					appmaster.simulateLaunched(container);
+					TimeUnit.MILLISECONDS.sleep(bootLatency);
+					if (resourceManager.isRunning(container.getId())) {
+						appmaster.simulateUp(container.getId());
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (Exception e) {
+					log.error("Error launching container", e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Shuts down the simulated launcher.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Sets the appmaster receiving events.
+	 *
+	 * @param appmaster the new appmaster
+	 */
+	public void setAppmaster(SimulatedXdAppmaster appmaster) {
+		this.appmaster = appmaster;
+	}
+
+	/**
+	 * Sets the launch latency.
+	 *
+	 * @param launchLatency the new launch latency in millis
+	 */
+	public void setLaunchLatency(long launchLatency) {
+		this.launchLatency = launchLatency;
+	}
+
+	/**
+	 * Sets the boot latency from launch until first heartbeat.
+	 *
+	 * @param bootLatency the new boot latency in millis
+	 */
+	public void setBootLatency(long bootLatency) {
+		this.bootLatency = bootLatency;
+	}
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.simulator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.yarn.thrift.hb.HeartbeatAppmasterService;
+import org.springframework.yarn.thrift.hb.gen.HeartbeatCommandMessage;
+
+/**
+ * {@link HeartbeatAppmasterService} for the simulator. Never started,
+ * heartbeats are simulated directly on {@link SimulatedXdAppmaster}
+ * and sent commands are only counted.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class SimulatedHeartbeatService extends HeartbeatAppmasterService {
+
+	private final AtomicLong commands = new AtomicLong();
+
+	@Override
+	public void sendCommand(HeartbeatCommandMessage message) {
+		commands.incrementAndGet();
+	}
+
+	/**
+	 * Gets the count of sent commands.
+	 *
+	 * @return the command count
+	 */
+	public long getCommandCount() {
+		return commands.get();
+	}
+
+}
@@ -0,0 +1,422 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.Container;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.ContainerState;
+import org.apache.hadoop.yarn.api.records.ContainerStatus;
+import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.hadoop.yarn.util.BuilderUtils;
+import org.apache.hadoop.yarn.util.Records;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.yarn.am.allocate.ContainerAllocateData;
+import org.springframework.yarn.am.allocate.ContainerAllocator;
+import org.springframework.yarn.am.allocate.ContainerAllocatorListener;
+import org.springframework.yarn.examples.WithdrawableContainerAllocator;
+
+/**
+ * In-process stand-in for a Yarn resource manager and its node managers.
+ * Implements {@link ContainerAllocator} granting requested containers
+ * after a configurable latency, optionally making some of the grants
+ * stragglers. Asks can also be dropped, meaning they are never granted,
+ * or held back during a simulated outage and granted only after it.
+ * Asks without a host which are not yet granted can be withdrawn. Running containers can be failed or killed by a churn
+ * which is either reported as a completed container or as a dead
+ * heartbeat.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class SimulatedResourceManager implements WithdrawableContainerAllocator {
+
+	private final static Log log = LogFactory.getLog(SimulatedResourceManager.class);
+
+	/** Exit status Yarn reports for released containers */
+	public final static int EXIT_RELEASED = -100;
+
+	private final SimulationStats stats;
+
+	private final Random random;
+
+	private final ApplicationAttemptId attemptId;
+
+	private final AtomicInteger containerSequence = new AtomicInteger();
+
+	/** Count of withdrawn asks not yet dropped */
+	private int withdrawn;
+
+	/** Count of asks without a host not yet granted */
+	private int pendingAny;
+
+	/** Running containers, id <-> container */
+	private final ConcurrentHashMap<ContainerId, Container> running = new ConcurrentHashMap<ContainerId, Container>();
+
+	private final ScheduledExecutorService executor;
+
+	private SimulatedXdAppmaster appmaster;
+
+	private int hosts = 100;
+
+	private long allocationLatency = 100;
+
+	private long allocationJitter = 100;
+
+	private double stragglerProbability = 0;
+
+	private long stragglerLatency = 10000;
+
+	private double failureProbability = 0;
+
+	private long failureDelay = 5000;
+
+	private double deadProbability = 0.5;
+
+	private double dropProbability = 0;
+
+	/** Time in millis until which grants are held back */
+	private volatile long outageEnd;
+
+	/**
+	 * Instantiates a new simulated resource manager.
+	 *
+	 * @param stats the simulation stats
+	 * @param seed the seed for random events
+	 */
+	public SimulatedResourceManager(SimulationStats stats, long seed) {
+		this.stats = stats;
+		this.random = new Random(seed);
+		ApplicationId applicationId = BuilderUtils.newApplicationId(System.currentTimeMillis(), 1);
+		this.attemptId = BuilderUtils.newApplicationAttemptId(applicationId, 1);
+		this.executor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("simulator-rm-"));
+	}
+
+	@Override
+	public void allocateContainers(int count) {
+		for (int i = 0; i < count; i++) {
+			grant(null);
+		}
+		stats.addRequested(count);
+	}
+
+	@Override
+	public void allocateContainers(ContainerAllocateData containerAllocateData) {
+		if (containerAllocateData == null) {
+			return;
+		}
+		allocateContainers(containerAllocateData.getAny());
+		if (containerAllocateData.getHosts() != null) {
+			for (Entry<String, Integer> entry : containerAllocateData.getHosts().entrySet()) {
+				for (int i = 0; i < entry.getValue(); i++) {
+					grant(entry.getKey());
+				}
+				stats.addRequested(entry.getValue());
+			}
+		}
+		if (containerAllocateData.getRacks() != null) {
+			for (Entry<String, Integer> entry : containerAllocateData.getRacks().entrySet()) {
+				allocateContainers(entry.getValue());
+			}
+		}
+	}
+
+	@Override
+	public void releaseContainers(List<Container> containers) {
+		for (Container container : containers) {
+			releaseContainer(container.getId());
+		}
+	}
+
+	@Override
+	public void releaseContainer(ContainerId containerId) {
+		if (running.remove(containerId) != null) {
+			stats.incReleased();
+			complete(containerId, EXIT_RELEASED, 0);
+		}
+	}
+
+	@Override
+	public synchronized void withdrawContainers(int count) {
+		// like with Yarn, only asks still held can be withdrawn
+		withdrawn = Math.min(withdrawn + count, pendingAny);
+	}
+
+	@Override
+	public void addListener(ContainerAllocatorListener listener) {
+		// events are delivered directly to simulated appmaster
+	}
+
+	/**
+	 * Notifies that a container was launched by a node manager.
+	 *
+	 * @param container the container
+	 */
+	public void containerLaunched(final Container container) {
+		running.put(container.getId(), container);
+		if (failureProbability > 0 && random.nextDouble() < failureProbability) {
+			fail(container.getId(), (long) (random.nextDouble() * failureDelay));
+		}
+	}
+
+	/**
+	 * Fails a number of random running containers.
+	 *
+	 * @param count the count of containers to fail
+	 * @return the count of failed containers
+	 */
+	public int churn(int count) {
+		List<ContainerId> ids = new ArrayList<ContainerId>(running.keySet());
+		int failed = 0;
+		while (failed < count && !ids.isEmpty()) {
+			fail(ids.remove(random.nextInt(ids.size())), 0);
+			failed++;
+		}
+		return failed;
+	}
+
+	/**
+	 * Starts an outage during which no asks are granted. Asks
+	 * due during an outage are granted when it ends.
+	 *
+	 * @param duration the outage duration in millis
+	 */
+	public void outage(long duration) {
+		outageEnd = System.currentTimeMillis() + duration;
+	}
+
+	/**
+	 * Checks if container is running.
+	 *
+	 * @param containerId the container id
+	 * @return true, if running
+	 */
+	public boolean isRunning(ContainerId containerId) {
+		return running.containsKey(containerId);
+	}
+
+	/**
+	 * Gets the running container count.
+	 *
+	 * @return the running count
+	 */
+	public int getRunningCount() {
+		return running.size();
+	}
+
+	/**
+	 * Shuts down the simulated resource manager.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Sets the appmaster receiving events.
+	 *
+	 * @param appmaster the new appmaster
+	 */
+	public void setAppmaster(SimulatedXdAppmaster appmaster) {
+		this.appmaster = appmaster;
+	}
+
+	/**
+	 * Sets the count of simulated hosts.
+	 *
+	 * @param hosts the new host count
+	 */
+	public void setHosts(int hosts) {
+		this.hosts = hosts;
+	}
+
+	/**
+	 * Sets the base allocation latency.
+	 *
+	 * @param allocationLatency the new allocation latency in millis
+	 */
+	public void setAllocationLatency(long allocationLatency) {
+		this.allocationLatency = allocationLatency;
+	}
+
+	/**
+	 * Sets the maximum random jitter added to allocation latency.
+	 *
+	 * @param allocationJitter the new allocation jitter in millis
+	 */
+	public void setAllocationJitter(long allocationJitter) {
+		this.allocationJitter = allocationJitter;
+	}
+
+	/**
+	 * Sets the probability of an allocation being a straggler.
+	 *
+	 * @param stragglerProbability the new straggler probability
+	 */
+	public void setStragglerProbability(double stragglerProbability) {
+		this.stragglerProbability = stragglerProbability;
+	}
+
+	/**
+	 * Sets the extra latency of a straggler allocation.
+	 *
+	 * @param stragglerLatency the new straggler latency in millis
+	 */
+	public void setStragglerLatency(long stragglerLatency) {
+		this.stragglerLatency = stragglerLatency;
+	}
+
+	/**
+	 * Sets the probability of a launched container to fail.
+	 *
+	 * @param failureProbability the new failure probability
+	 */
+	public void setFailureProbability(double failureProbability) {
+		this.failureProbability = failureProbability;
+	}
+
+	/**
+	 * Sets the maximum delay after launch for an injected failure.
+	 *
+	 * @param failureDelay the new failure delay in millis
+	 */
+	public void setFailureDelay(long failureDelay) {
+		this.failureDelay = failureDelay;
+	}
+
+	/**
+	 * Sets the probability of a failure being reported as a dead
+	 * heartbeat instead of a completed container.
+	 *
+	 * @param deadProbability the new dead probability
+	 */
+	public void setDeadProbability(double deadProbability) {
+		this.deadProbability = deadProbability;
+	}
+
+	/**
+	 * Sets the probability of an ask being dropped and never granted.
+	 *
+	 * @param dropProbability the new drop probability
+	 */
+	public void setDropProbability(double dropProbability) {
+		this.dropProbability = dropProbability;
+	}
+
+	private void grant(final String host) {
+		if (dropProbability > 0 && random.nextDouble() < dropProbability) {
+			stats.incDropped();
+			return;
+		}
+		long delay = allocationLatency + (allocationJitter > 0 ? (long) (random.nextDouble() * allocationJitter) : 0);
+		if (stragglerProbability > 0 && random.nextDouble() < stragglerProbability) {
+			delay += stragglerLatency;
+		}
+		delay = Math.max(delay, outageEnd - System.currentTimeMillis());
+		final Container container = newContainer(host != null ? host : "host" + random.nextInt(hosts));
+		if (host == null) {
+			synchronized (this) {
+				pendingAny++;
+			}
+		}
+		executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				if (host == null && consumeWithdrawn()) {
+					return;
+				}
+				try {
+					appmaster.simulateAllocated(container);
+				} catch (Exception e) {
+					log.error("Error handling allocated container", e);
+				}
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private synchronized boolean consumeWithdrawn() {
+		pendingAny--;
+		if (withdrawn > 0) {
+			withdrawn--;
+			return true;
+		}
+		return false;
+	}
+
+	private void fail(final ContainerId containerId, long delay) {
+		final boolean asDead = random.nextDouble() < deadProbability;
+		executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				if (running.remove(containerId) == null) {
+					return;
+				}
+				try {
+					if (asDead) {
+						appmaster.simulateDead(containerId);
+					} else {
+						appmaster.simulateCompleted(newStatus(containerId, 1));
+					}
+				} catch (Exception e) {
+					log.error("Error handling failed container", e);
+				}
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void complete(final ContainerId containerId, final int exitStatus, long delay) {
+		executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					appmaster.simulateCompleted(newStatus(containerId, exitStatus));
+				} catch (Exception e) {
+					log.error("Error handling completed container", e);
+				}
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private Container newContainer(String host) {
+		Container container = Records.newRecord(Container.class);
+		NodeId nodeId = Records.newRecord(NodeId.class);
+		nodeId.setHost(host);
+		container.setNodeId(nodeId);
+		container.setId(BuilderUtils.newContainerId(attemptId, containerSequence.incrementAndGet()));
+		return container;
+	}
+
+	private static ContainerStatus newStatus(ContainerId containerId, int exitStatus) {
+		ContainerStatus status = Records.newRecord(ContainerStatus.class);
+		status.setContainerId(containerId);
+		status.setState(ContainerState.COMPLETE);
+		status.setExitStatus(exitStatus);
+		return status;
+	}
+
+}
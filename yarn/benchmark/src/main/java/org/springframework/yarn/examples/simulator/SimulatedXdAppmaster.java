@@ -0,0 +1,116 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.simulator;
+
+import org.apache.hadoop.yarn.api.records.Container;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.ContainerStatus;
+import org.springframework.yarn.examples.XdAppmaster;
+
+/**
+ * {@link XdAppmaster} driven by a simulator instead of Yarn. Exposes
+ * appmaster event handling and measures its cost into
+ * {@link SimulationStats}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class SimulatedXdAppmaster extends XdAppmaster {
+
+	private final SimulationStats stats;
+
+	/**
+	 * Instantiates a new simulated xd appmaster.
+	 *
+	 * @param stats the simulation stats
+	 */
+	public SimulatedXdAppmaster(SimulationStats stats) {
+		this.stats = stats;
+	}
+
+	/**
+	 * Simulates a container allocated event.
+	 *
+	 * @param container the container
+	 */
+	public void simulateAllocated(Container container) {
+		long[] snapshot = stats.begin();
+		onContainerAllocated(container);
+		stats.end(snapshot);
+		stats.incAllocated();
+	}
+
+	/**
+	 * Simulates a container launched event.
+	 *
+	 * @param container the container
+	 */
+	public void simulateLaunched(Container container) {
+		long[] snapshot = stats.begin();
+		onContainerLaunched(container);
+		stats.end(snapshot);
+		stats.incLaunched();
+	}
+
+	/**
+	 * Simulates a first heartbeat of a container.
+	 *
+	 * @param containerId the container id
+	 */
+	public void simulateUp(ContainerId containerId) {
+		long[] snapshot = stats.begin();
+		onContainerUp(containerId);
+		stats.end(snapshot);
+	}
+
+	/**
+	 * Simulates a container completed event.
+	 *
+	 * @param status the container status
+	 */
+	public void simulateCompleted(ContainerStatus status) {
+		long[] snapshot = stats.begin();
+		onContainerCompleted(status);
+		stats.end(snapshot);
+		stats.incCompleted(status.getExitStatus() > 0);
+	}
+
+	/**
+	 * Simulates a dead heartbeat of a container.
+	 *
+	 * @param containerId the container id
+	 */
+	public void simulateDead(ContainerId containerId) {
+		long[] snapshot = stats.begin();
+		onContainerDead(containerId);
+		stats.end(snapshot);
+		stats.incDead();
+	}
+
+	/**
+	 * Simulates an immediate rebalance of managed groups.
+	 */
+	public void simulateRebalance() {
+		requestRebalance();
+	}
+
+	@Override
+	protected boolean isComplete() {
+		// simulated application never completes by itself
+		return false;
+	}
+
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.simulator;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics collected by {@link AppmasterSimulator}. Cpu time and
+ * allocated bytes are measured on the thread executing appmaster
+ * event handling and summed for all events.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class SimulationStats {
+
+	private final static ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+	private final AtomicLong allocated = new AtomicLong();
+	private final AtomicLong launched = new AtomicLong();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong dead = new AtomicLong();
+	private final AtomicLong released = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong requested = new AtomicLong();
+	private final AtomicLong events = new AtomicLong();
+	private final AtomicLong cpuNanos = new AtomicLong();
+	private final AtomicLong allocatedBytes = new AtomicLong();
+
+	/**
+	 * Takes a measurement snapshot of a current thread.
+	 *
+	 * @return the snapshot as cpu nanos and allocated bytes
+	 */
+	public long[] begin() {
+		return new long[] { currentThreadCpuTime(), currentThreadAllocatedBytes() };
+	}
+
+	/**
+	 * Records an event measured from a snapshot.
+	 *
+	 * @param snapshot the snapshot from {@link #begin()}
+	 */
+	public void end(long[] snapshot) {
+		events.incrementAndGet();
+		cpuNanos.addAndGet(currentThreadCpuTime() - snapshot[0]);
+		allocatedBytes.addAndGet(currentThreadAllocatedBytes() - snapshot[1]);
+	}
+
+	/**
+	 * Increments allocated container count.
+	 */
+	public void incAllocated() {
+		allocated.incrementAndGet();
+	}
+
+	/**
+	 * Increments launched container count.
+	 */
+	public void incLaunched() {
+		launched.incrementAndGet();
+	}
+
+	/**
+	 * Increments completed container count.
+	 *
+	 * @param failure true if container failed
+	 */
+	public void incCompleted(boolean failure) {
+		completed.incrementAndGet();
+		if (failure) {
+			failed.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Increments dead container count.
+	 */
+	public void incDead() {
+		dead.incrementAndGet();
+	}
+
+	/**
+	 * Increments released container count.
+	 */
+	public void incReleased() {
+		released.incrementAndGet();
+	}
+
+	/**
+	 * Increments dropped ask count.
+	 */
+	public void incDropped() {
+		dropped.incrementAndGet();
+	}
+
+	/**
+	 * Adds requested container count.
+	 *
+	 * @param count the count
+	 */
+	public void addRequested(int count) {
+		requested.addAndGet(count);
+	}
+
+	/**
+	 * Gets the allocated container count.
+	 *
+	 * @return the allocated count
+	 */
+	public long getAllocated() {
+		return allocated.get();
+	}
+
+	/**
+	 * Gets the launched container count.
+	 *
+	 * @return the launched count
+	 */
+	public long getLaunched() {
+		return launched.get();
+	}
+
+	/**
+	 * Gets the completed container count.
+	 *
+	 * @return the completed count
+	 */
+	public long getCompleted() {
+		return completed.get();
+	}
+
+	/**
+	 * Gets the failed container count.
+	 *
+	 * @return the failed count
+	 */
+	public long getFailed() {
+		return failed.get();
+	}
+
+	/**
+	 * Gets the dead container count.
+	 *
+	 * @return the dead count
+	 */
+	public long getDead() {
+		return dead.get();
+	}
+
+	/**
+	 * Gets the released container count.
+	 *
+	 * @return the released count
+	 */
+	public long getReleased() {
+		return released.get();
+	}
+
+	/**
+	 * Gets the dropped ask count.
+	 *
+	 * @return the dropped count
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Gets the requested container count.
+	 *
+	 * @return the requested count
+	 */
+	public long getRequested() {
+		return requested.get();
+	}
+
+	/**
+	 * Gets the count of measured events.
+	 *
+	 * @return the event count
+	 */
+	public long getEvents() {
+		return events.get();
+	}
+
+	/**
+	 * Gets the cpu time used handling events.
+	 *
+	 * @return the cpu time in nanos
+	 */
+	public long getCpuNanos() {
+		return cpuNanos.get();
+	}
+
+	/**
+	 * Gets the bytes allocated handling events.
+	 *
+	 * @return the allocated bytes
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes.get();
+	}
+
+	/**
+	 * Gets the total cpu time of live threads having a name prefix.
+	 *
+	 * @param prefix the thread name prefix
+	 * @return the cpu time in nanos
+	 */
+	public static long threadsCpuTime(String prefix) {
+		long total = 0;
+		for (ThreadInfo info : threadBean.getThreadInfo(threadBean.getAllThreadIds())) {
+			if (info != null && info.getThreadName().startsWith(prefix)) {
+				long time = threadBean.getThreadCpuTime(info.getThreadId());
+				total += time > 0 ? time : 0;
+			}
+		}
+		return total;
+	}
+
+	private static long currentThreadCpuTime() {
+		return threadBean.isCurrentThreadCpuTimeSupported() ? threadBean.getCurrentThreadCpuTime() : 0;
+	}
+
+	private static long currentThreadAllocatedBytes() {
+		if (threadBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+}
@@ -15,7 +15,19 @@
  */
 package org.springframework.yarn.examples;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -29,10 +41,19 @@ import org.springframework.yarn.am.AbstractEventingAppmaster;
 import org.springframework.yarn.am.YarnAppmaster;
 import org.springframework.yarn.am.allocate.AbstractAllocator;
 import org.springframework.yarn.am.allocate.ContainerAllocator;
+import org.springframework.yarn.examples.events.ControlEventRecorder;
+import org.springframework.yarn.examples.events.ControlEventType;
 import org.springframework.yarn.examples.grid.ManagedContainerGroups;
-import org.springframework.yarn.examples.grid.yarn.DefaultYarnContainerNode;
+import org.springframework.yarn.examples.grid.yarn.ContainerKeys;
+import org.springframework.yarn.examples.grid.yarn.NodeFailureTracker;
+import org.springframework.yarn.examples.grid.yarn.RequestLedger;
+import org.springframework.yarn.examples.grid.yarn.YarnContainerGroup;
+import org.springframework.yarn.examples.grid.yarn.YarnContainerNode;
 import org.springframework.yarn.examples.grid.yarn.YarnGroupsRebalanceData;
 import org.springframework.yarn.examples.grid.yarn.YarnManagedContainerGroups;
+import org.springframework.yarn.examples.metrics.AppmasterMetrics;
+import org.springframework.yarn.examples.metrics.ContainerLifecycleTracker;
+import org.springframework.yarn.examples.metrics.LifecycleStage;
 
 /**
  * Implementation of application master which is utilizing concept
@@ -53,6 +74,33 @@ public abstract class AbstractManagedContainerGroupsAppmaster extends AbstractEv
 	/** Current running task if any */
 	private volatile ScheduledFuture<?> runningTask;
 
+	/** Tracker for failures per host */
+	private NodeFailureTracker nodeFailureTracker = new NodeFailureTracker();
+
+	/** Tracker for container lifecycle latencies */
+	private ContainerLifecycleTracker lifecycleTracker = new ContainerLifecycleTracker();
+
+	/** Counters for control plane */
+	private AppmasterMetrics appmasterMetrics = new AppmasterMetrics();
+
+	/** Recorder for control plane events */
+	private ControlEventRecorder eventRecorder = new ControlEventRecorder();
+
+	/** Window in millis to collect allocated containers into a batch */
+	private long allocationBatchWindow = 50;
+
+	/** Allocated containers waiting for batch assignment */
+	private final Queue<Container> allocatedBatch = new ConcurrentLinkedQueue<Container>();
+
+	/** Flag telling if batch assignment is scheduled */
+	private final AtomicBoolean allocatedBatchScheduled = new AtomicBoolean();
+
+	/** Lock for rebalance runs */
+	private final Object rebalanceLock = new Object();
+
+	/** Keys of containers released by this appmaster and not yet completed */
+	private final Set<Long> releasedContainers = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
 	@Override
 	public void submitApplication() {
 		log.info("Submitting application");
@@ -65,30 +113,95 @@ public abstract class AbstractManagedContainerGroupsAppmaster extends AbstractEv
 
 	@Override
 	protected void onContainerAllocated(Container container) {
-		log.info("XXX onContainerAllocated: " + container.getId() + " host=" + container.getNodeId().getHost());
-		managedGroups.addContainerNode(new DefaultYarnContainerNode(container));
-		getMonitor().addContainer(container);
-		getLauncher().launchContainer(container, getCommands());
+		eventRecorder.record(ControlEventType.ALLOCATED, container.getId(), container.getNodeId());
+		if (!nodeFailureTracker.isAccepted(container.getNodeId().getHost())) {
+			// host in backoff or blacklisted, give it back and let a
+			// next rebalance tick ask again through the ledger
+			eventRecorder.record(ControlEventType.REJECTED, container.getId(), container.getNodeId());
+			releaseContainer(container.getId());
+			managedGroups.rejectContainer(ContainerKeys.toKey(container.getId()));
+			return;
+		}
+		if (allocationBatchWindow <= 0 || getTaskScheduler() == null) {
+			onContainersAllocated(Collections.singletonList(container));
+			return;
+		}
+		// containers from one allocate response arrive back to back,
+		// collect those and assign to groups as one batch
+		allocatedBatch.add(container);
+		if (allocatedBatchScheduled.compareAndSet(false, true)) {
+			getTaskScheduler().schedule(new AllocatedBatchRunnable(),
+					new Date(System.currentTimeMillis() + allocationBatchWindow));
+		}
+	}
+
+	/**
+	 * Called with a batch of accepted allocated containers. Containers
+	 * are assigned to groups together under the rebalance lock and then
+	 * either launched, kept in a warm pool or released as surplus.
+	 *
+	 * @param containers the allocated containers
+	 */
+	protected void onContainersAllocated(List<Container> containers) {
+		List<Container> launch = new ArrayList<Container>(containers.size());
+		// groups, ledger and warm pool are changed together with
+		// a rebalance run, launching happens outside of a lock
+		synchronized (rebalanceLock) {
+			List<YarnContainerNode> nodes = new ArrayList<YarnContainerNode>(containers.size());
+			for (Container container : containers) {
+				nodes.add(managedGroups.createNode(container));
+			}
+			managedGroups.addContainerNodes(nodes);
+			for (YarnContainerNode node : nodes) {
+				Container container = node.getContainer();
+				long key = node.getKey();
+				if (!managedGroups.isTracked(key)) {
+					// surplus from speculative allocation
+					eventRecorder.record(ControlEventType.SURPLUS, container.getId());
+					releaseContainer(container.getId());
+					continue;
+				} else if (managedGroups.getWarmPool().hasMember(key)) {
+					// kept allocated, launched when adopted to a group
+					continue;
+				}
+				YarnContainerGroup group = managedGroups.getGroupByMember(key);
+				if (group != null) {
+					lifecycleTracker.containerAllocated(node.getId(), group.getId());
+				}
+				getMonitor().addContainer(container);
+				launch.add(container);
+			}
+		}
+		for (Container container : launch) {
+			getLauncher().launchContainer(container, getCommands());
+		}
 	}
 
 	@Override
 	protected void onContainerLaunched(Container container) {
-		log.info("XXX onContainerLaunched: " + container.getId());
+		eventRecorder.record(ControlEventType.LAUNCHED, container.getId());
+		String id = ConverterUtils.toString(container.getId());
+		lifecycleTracker.stage(id, LifecycleStage.LAUNCHED);
+		managedGroups.containerLaunched(id);
 		getMonitor().reportContainer(container);
 	}
 
 	@Override
 	protected void onContainerCompleted(ContainerStatus status) {
-		log.info("XXX onContainerCompleted: " + status);
 		super.onContainerCompleted(status);
 
 		getMonitor().monitorContainer(status);
 
 		int exitStatus = status.getExitStatus();
 		ContainerId containerId = status.getContainerId();
+		eventRecorder.record(ControlEventType.COMPLETED, containerId, null, exitStatus);
+		lifecycleTracker.containerRemoved(ConverterUtils.toString(containerId));
 
+		// released containers complete as aborted, anything else
+		// not exiting cleanly, i.e. aborted on a lost node, has failed
+		boolean released = releasedContainers.remove(ContainerKeys.toKey(containerId));
 		boolean handled = false;
-		if (exitStatus > 0) {
+		if (exitStatus != 0 && !released) {
 			handled = onContainerFailed(containerId);
 			if (!handled) {
 				setFinalApplicationStatus(FinalApplicationStatus.FAILED);
@@ -110,6 +223,7 @@ public abstract class AbstractManagedContainerGroupsAppmaster extends AbstractEv
 	@Override
 	protected void doStart() {
 		super.doStart();
+		managedGroups.getRequestLedger().setWithdrawAsks(getAllocator() instanceof WithdrawableContainerAllocator);
 		this.runningTask = getTaskScheduler().scheduleAtFixedRate(new ManagedGroupRunnable(), 5000);
 	}
 
@@ -140,6 +254,93 @@ public abstract class AbstractManagedContainerGroupsAppmaster extends AbstractEv
 		return managedGroups;
 	}
 
+	/**
+	 * Sets the node failure tracker.
+	 *
+	 * @param nodeFailureTracker the new node failure tracker
+	 */
+	public void setNodeFailureTracker(NodeFailureTracker nodeFailureTracker) {
+		Assert.notNull(nodeFailureTracker, "nodeFailureTracker must not be null");
+		this.nodeFailureTracker = nodeFailureTracker;
+	}
+
+	/**
+	 * Gets the node failure tracker.
+	 *
+	 * @return the node failure tracker
+	 */
+	public NodeFailureTracker getNodeFailureTracker() {
+		return nodeFailureTracker;
+	}
+
+	/**
+	 * Sets the container lifecycle tracker.
+	 *
+	 * @param lifecycleTracker the new lifecycle tracker
+	 */
+	public void setLifecycleTracker(ContainerLifecycleTracker lifecycleTracker) {
+		Assert.notNull(lifecycleTracker, "lifecycleTracker must not be null");
+		this.lifecycleTracker = lifecycleTracker;
+	}
+
+	/**
+	 * Gets the container lifecycle tracker.
+	 *
+	 * @return the lifecycle tracker
+	 */
+	public ContainerLifecycleTracker getLifecycleTracker() {
+		return lifecycleTracker;
+	}
+
+	/**
+	 * Sets the appmaster metrics.
+	 *
+	 * @param appmasterMetrics the new appmaster metrics
+	 */
+	public void setAppmasterMetrics(AppmasterMetrics appmasterMetrics) {
+		Assert.notNull(appmasterMetrics, "appmasterMetrics must not be null");
+		this.appmasterMetrics = appmasterMetrics;
+	}
+
+	/**
+	 * Gets the appmaster metrics.
+	 *
+	 * @return the appmaster metrics
+	 */
+	public AppmasterMetrics getAppmasterMetrics() {
+		return appmasterMetrics;
+	}
+
+	/**
+	 * Sets the control event recorder.
+	 *
+	 * @param eventRecorder the new event recorder
+	 */
+	public void setEventRecorder(ControlEventRecorder eventRecorder) {
+		Assert.notNull(eventRecorder, "eventRecorder must not be null");
+		this.eventRecorder = eventRecorder;
+	}
+
+	/**
+	 * Sets the window allocated containers are collected before
+	 * those are assigned to groups as one batch. Zero or negative
+	 * assigns every container immediately when allocated.
+	 *
+	 * @param allocationBatchWindow the new allocation batch window in millis
+	 */
+	public void setAllocationBatchWindow(long allocationBatchWindow) {
+		this.allocationBatchWindow = allocationBatchWindow;
+	}
+
+	/**
+	 * Gets the control event recorder.
+	 *
+	 * @return the event recorder
+	 */
+	public ControlEventRecorder getEventRecorder() {
+		return eventRecorder;
+	}
+
 	/**
 	 * Called if completed container has failed. User
 	 * may override this method to process failed container,
@@ -153,9 +354,71 @@ public abstract class AbstractManagedContainerGroupsAppmaster extends AbstractEv
 		return false;
 	}
 
+	/**
+	 * Releases a container. Completion of a released container
+	 * is not considered as a failure.
+	 *
+	 * @param containerId the container id
+	 */
+	protected void releaseContainer(ContainerId containerId) {
+		releasedContainers.add(ContainerKeys.toKey(containerId));
+		getAllocator().releaseContainer(containerId);
+	}
+
+	/**
+	 * Called when a container has been released by a rebalance.
+	 * User may override this method to stop tracking the container.
+	 *
+	 * @param containerId the container id
+	 */
+	protected void onContainerReleased(ContainerId containerId) {
+	}
+
+	/**
+	 * Replaces a failed container. Failed member is removed from
+	 * its group, failure is recorded against the host and rebalance
+	 * is requested immediately which will ask a new container for
+	 * the group without any locality constraints.
+	 *
+	 * @param containerId the container id
+	 * @return true, if container was replaced or already handled
+	 */
+	protected boolean replaceFailedContainer(ContainerId containerId) {
+		String id = ConverterUtils.toString(containerId);
+		YarnContainerNode node = managedGroups.getContainerNode(id);
+		if (node == null) {
+			// not a member anymore, already handled
+			return true;
+		}
+		YarnContainerGroup group = managedGroups.getGroupByMember(id);
+		managedGroups.removeContainerNode(id);
+		if (node.getHost() != null) {
+			boolean blacklisted = nodeFailureTracker.recordFailure(node.getHost());
+			appmasterMetrics.recordHostFailure(blacklisted);
+		}
+		if (group != null) {
+			eventRecorder.record(ControlEventType.REPLACED, id, group.getId());
+			lifecycleTracker.containerRemoved(id);
+			lifecycleTracker.groupChanged(group.getId());
+			group.setDirty(true);
+			requestRebalance();
+		}
+		return true;
+	}
+
+	/**
+	 * Requests an immediate rebalance of managed groups
+	 * outside of the periodic schedule.
+	 */
+	protected void requestRebalance() {
+		if (runningTask != null) {
+			getTaskScheduler().schedule(new ManagedGroupRunnable(), new Date());
+		}
+	}
+
 	protected void handleContainerFailed(ContainerId containerId) {
 		if (!onContainerFailed(containerId)) {
-			log.info("XXX removing failed member " + ConverterUtils.toString(containerId));
+			eventRecorder.record(ControlEventType.FAILED, containerId);
 			managedGroups.removeContainerNode(ConverterUtils.toString(containerId));
 		}
 	}
@@ -172,6 +435,26 @@ public abstract class AbstractManagedContainerGroupsAppmaster extends AbstractEv
 		return getMonitor().hasRunning();
 	}
 
+	/**
+	 * Runnable assigning collected allocated containers as a batch.
+	 */
+	private class AllocatedBatchRunnable implements Runnable {
+
+		@Override
+		public void run() {
+			allocatedBatchScheduled.set(false);
+			List<Container> containers = new ArrayList<Container>();
+			Container container;
+			while ((container = allocatedBatch.poll()) != null) {
+				containers.add(container);
+			}
+			if (!containers.isEmpty()) {
+				onContainersAllocated(containers);
+			}
+		}
+
+	}
+
 	/**
 	 * Runnable which is periodically used to handle allocation
 	 * and release of containers based on state of managed groups.
@@ -180,13 +463,47 @@ public abstract class AbstractManagedContainerGroupsAppmaster extends AbstractEv
 
 		@Override
 		public void run() {
-			ContainerAllocator allocator = getAllocator();
-			YarnGroupsRebalanceData rebalanceData = managedGroups.getGroupsRebalanceData();
-			for (ContainerId cid : rebalanceData.getContainers()) {
-				log.info("XXX release cid=" + cid);
-				allocator.releaseContainer(cid);
+			synchronized (rebalanceLock) {
+				long start = System.nanoTime();
+				ContainerAllocator allocator = getAllocator();
+				YarnGroupsRebalanceData rebalanceData = managedGroups.getGroupsRebalanceData();
+				for (ContainerId cid : rebalanceData.getContainers()) {
+					eventRecorder.record(ControlEventType.RELEASED, cid);
+					releaseContainer(cid);
+					onContainerReleased(cid);
+				}
+				for (Container container : rebalanceData.getAdoptedContainers()) {
+					String id = ConverterUtils.toString(container.getId());
+					YarnContainerGroup group = managedGroups.getGroupByMember(ContainerKeys.toKey(container.getId()));
+					String groupId = group != null ? group.getId() : null;
+					eventRecorder.record(ControlEventType.ADOPTED, id, groupId);
+					lifecycleTracker.containerAdopted(id, groupId);
+					getMonitor().addContainer(container);
+					getLauncher().launchContainer(container, getCommands());
+				}
+				if (rebalanceData.getWithdrawCount() > 0 && allocator instanceof WithdrawableContainerAllocator) {
+					((WithdrawableContainerAllocator)allocator).withdrawContainers(rebalanceData.getWithdrawCount());
+				}
+				allocator.allocateContainers(rebalanceData.getAllocateData());
+				int allocations = 0;
+				for (Entry<String, Integer> entry : rebalanceData.getAllocateCounts().entrySet()) {
+					lifecycleTracker.requestsSent(entry.getKey(), entry.getValue());
+					allocations += entry.getValue();
+				}
+				// drop tracked requests of cancelled and expired asks
+				RequestLedger ledger = managedGroups.getRequestLedger();
+				Map<String, Integer> outstanding = new HashMap<String, Integer>();
+				for (YarnContainerGroup group : managedGroups.getGroups()) {
+					outstanding.put(group.getId(), ledger.getPending(group.getId()) + ledger.getSpeculative(group.getId()));
+				}
+				lifecycleTracker.retainRequests(outstanding);
+				eventRecorder.record(ControlEventType.REBALANCE, null, null, allocations);
+				appmasterMetrics.recordRebalance(System.nanoTime() - start, allocations,
+						rebalanceData.getContainers().size());
+				appmasterMetrics.recordState(managedGroups.getRequestLedger().getOutstanding(),
+						managedGroups.getFallbackGroup().getSize(), nodeFailureTracker.getSuspectCount(),
+						nodeFailureTracker.getBlacklistedHosts().size());
 			}
-			allocator.allocateContainers(rebalanceData.getAllocateData());
 		}
 
 	}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.xd.dirt.server.options.Transport;
+
+/**
+ * Per group XD transport settings. Appmaster passes the transport and
+ * its tuning properties of a container group into container environment
+ * in preLaunch and XD container applies them before the launch.
+ * <p>
+ * Tuning properties are passed as environment entries prefixed with
+ * {@link #PROPERTY_PREFIX} and set as system properties in a container.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class GroupTransports {
+
+	private final static Log log = LogFactory.getLog(GroupTransports.class);
+
+	/** Environment key for transport */
+	public final static String TRANSPORT = "xd.transport";
+
+	/** Environment key prefix for transport properties */
+	public final static String PROPERTY_PREFIX = "syarn.xd.prop.";
+
+	/** Group <-> transport */
+	private Map<String, Transport> transports = new HashMap<String, Transport>();
+
+	/** Group <-> transport properties */
+	private Map<String, Properties> properties = new HashMap<String, Properties>();
+
+	/**
+	 * Gets the environment entries for a group.
+	 *
+	 * @param group the group
+	 * @return the environment entries, empty if group has no settings
+	 */
+	public Map<String, String> getEnvironment(String group) {
+		Map<String, String> env = new HashMap<String, String>();
+		if (group == null) {
+			return env;
+		}
+		Transport transport = transports.get(group);
+		if (transport != null) {
+			env.put(TRANSPORT, transport.name());
+		}
+		Properties props = properties.get(group);
+		if (props != null) {
+			for (String name : props.stringPropertyNames()) {
+				env.put(PROPERTY_PREFIX + name, props.getProperty(name));
+			}
+		}
+		return env;
+	}
+
+	/**
+	 * Sets the transports per group.
+	 *
+	 * @param transports the transports
+	 */
+	public void setTransports(Map<String, Transport> transports) {
+		this.transports = transports;
+	}
+
+	/**
+	 * Sets the transport properties per group.
+	 *
+	 * @param properties the transport properties
+	 */
+	public void setProperties(Map<String, Properties> properties) {
+		this.properties = properties;
+	}
+
+	/**
+	 * Resolves a transport in a container. Transport from environment
+	 * set for a group wins over system property passed as an argument.
+	 * Falls back to {@link Transport#redis}.
+	 *
+	 * @param env the container environment
+	 * @return the transport
+	 */
+	public static Transport resolveTransport(Map<String, String> env) {
+		String value = env != null ? env.get(TRANSPORT) : null;
+		if (value == null || value.length() == 0) {
+			value = System.getProperty(TRANSPORT);
+		}
+		if (value != null && value.length() > 0) {
+			try {
+				return Transport.valueOf(value.trim());
+			} catch (IllegalArgumentException e) {
+				log.warn("Unknown transport " + value + ", using " + Transport.redis);
+			}
+		}
+		return Transport.redis;
+	}
+
+	/**
+	 * Applies transport properties from a container
+	 * environment as system properties.
+	 *
+	 * @param env the container environment
+	 * @return the count of applied properties
+	 */
+	public static int applyProperties(Map<String, String> env) {
+		int count = 0;
+		if (env == null) {
+			return count;
+		}
+		for (Entry<String, String> entry : env.entrySet()) {
+			if (entry.getKey().startsWith(PROPERTY_PREFIX)) {
+				System.setProperty(entry.getKey().substring(PROPERTY_PREFIX.length()), entry.getValue());
+				count++;
+			}
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples;
+
+import org.springframework.yarn.am.allocate.ContainerAllocator;
+
+/**
+ * Extension of {@link ContainerAllocator} able to withdraw outstanding
+ * asks from a resource manager. Asks sent with
+ * {@link ContainerAllocator#allocateContainers(int)} are otherwise
+ * outstanding until granted.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public interface WithdrawableContainerAllocator extends ContainerAllocator {
+
+	/**
+	 * Withdraws outstanding asks not yet granted. Asks
+	 * already being granted may still arrive.
+	 *
+	 * @param count the count of asks to withdraw
+	 */
+	void withdrawContainers(int count);
+
+}
@@ -18,8 +18,8 @@ package org.springframework.yarn.examples;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.UUID;
 
 import org.apache.commons.logging.Log;
@@ -27,18 +27,35 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.security.Credentials;
+import org.apache.hadoop.yarn.api.records.Container;
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.api.records.ContainerLaunchContext;
+import org.apache.hadoop.yarn.api.records.ContainerStatus;
+import org.apache.hadoop.yarn.api.records.LocalResource;
 import org.apache.hadoop.yarn.util.ConverterUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.yarn.YarnSystemConstants;
 import org.springframework.yarn.am.AppmasterService;
 import org.springframework.yarn.am.ContainerLauncherInterceptor;
 import org.springframework.yarn.am.container.AbstractLauncher;
-import org.springframework.yarn.examples.grid.ContainerGridListener;
+import org.springframework.yarn.examples.events.ControlEventRecorder;
+import org.springframework.yarn.examples.events.ControlEventType;
+import org.springframework.yarn.examples.grid.ContainerGroupsListener;
 import org.springframework.yarn.examples.grid.ContainerNode;
+import org.springframework.yarn.examples.grid.hazelcast.HazelcastManagedContainerGroups;
+import org.springframework.yarn.examples.grid.hazelcast.HazelcastYarnReconciler;
+import org.springframework.yarn.examples.grid.hazelcast.ReconcileHandler;
+import org.springframework.yarn.examples.grid.yarn.ContainerKeys;
+import org.springframework.yarn.examples.grid.yarn.YarnContainerGroup;
 import org.springframework.yarn.examples.grid.yarn.YarnContainerNode;
 import org.springframework.yarn.examples.grid.yarn.YarnManagedContainerGroups;
+import org.springframework.yarn.examples.heartbeat.HeartbeatRelayListener;
+import org.springframework.yarn.examples.heartbeat.HeartbeatRelayReceiver;
+import org.springframework.yarn.examples.metrics.AppmasterMetrics;
+import org.springframework.yarn.examples.metrics.ContainerLifecycleTracker;
+import org.springframework.yarn.examples.metrics.LifecycleStage;
+import org.springframework.yarn.examples.placement.ClusterTopology;
+import org.springframework.yarn.examples.placement.ModulePlacementPlanner;
 import org.springframework.yarn.thrift.hb.HeartbeatAppmasterService;
 import org.springframework.yarn.thrift.hb.HeartbeatMasterClientAdapter;
 import org.springframework.yarn.thrift.hb.HeartbeatNode;
@@ -62,6 +79,15 @@ public class XdAppmaster extends AbstractManagedContainerGroupsAppmaster
 
 	private final static Log log = LogFactory.getLog(XdAppmaster.class);
 
+	/** Env key for appmaster heartbeat relay port */
+	public final static String HEARTBEAT_RELAY_PORT = "syarn.hb.relay.port";
+
+	/** Env key for local port used to elect a relay on a host */
+	public final static String HEARTBEAT_RELAY_LOCAL_PORT = "syarn.hb.relay.local";
+
+	/** Env key telling container to join the grid */
+	public final static String GRID_ENABLED = "syarn.grid.enabled";
+
 	private String sessionId;
 
 	/** Container <-> Groups tracker */
@@ -71,6 +97,44 @@ public class XdAppmaster extends AbstractManagedContainerGroupsAppmaster
 	@Autowired
 	private HeartbeatAppmasterService heartbeatAppmasterService;
 
+	/** Group state shared in a hazelcast cluster if exists */
+	@Autowired(required = false)
+	private HazelcastManagedContainerGroups sharedGroups;
+
+	/** Reconciler for Yarn containers and grid members if exists */
+	@Autowired(required = false)
+	private HazelcastYarnReconciler gridReconciler;
+
+	/** Control plane metrics if exposed from a context */
+	@Autowired(required = false)
+	private AppmasterMetrics appmasterMetrics;
+
+	/** Lifecycle tracker if exposed from a context */
+	@Autowired(required = false)
+	private ContainerLifecycleTracker lifecycleTracker;
+
+	/** Event recorder if exposed from a context */
+	@Autowired(required = false)
+	private ControlEventRecorder eventRecorder;
+
+	/** Transport settings per group if exposed from a context */
+	@Autowired(required = false)
+	private GroupTransports groupTransports;
+
+	/** Planner for co-located module placement */
+	@Autowired(required = false)
+	private ModulePlacementPlanner placementPlanner = new ModulePlacementPlanner();
+
+	/** Receiver for relayed heartbeats if exposed from a context */
+	@Autowired(required = false)
+	private HeartbeatRelayReceiver heartbeatRelay;
+
+	/** Flag telling if zombie containers are replaced */
+	private boolean restartZombies = true;
+
+	/** Flag telling if failed containers are replaced */
+	private boolean replaceFailedContainers = true;
+
 	/**
 	 * Sets a new container count this application
 	 * should keep up and running.
@@ -89,8 +153,82 @@ public class XdAppmaster extends AbstractManagedContainerGroupsAppmaster
 	 * @param group the group name
 	 */
 	public void setRunningXdContainerCount(int count, String group) {
-		log.info("XXX incoming " + group + " " + count);
+		getEventRecorder().record(ControlEventType.GROUP_RESIZED, group, null, count);
+		getLifecycleTracker().groupChanged(group);
 		getManagedGroups().setProjectedGroupSize(group, count);
+		if (sharedGroups != null && sharedGroups.isRunning()) {
+			sharedGroups.setProjectedGroupSize(group, count);
+		}
+	}
+
+	/**
+	 * Sets a new container count for a group based on streams
+	 * it should host with their modules co-located.
+	 *
+	 * @param streamLengths the module counts of streams
+	 * @param group the group name
+	 */
+	public void setRunningXdContainerCountForStreams(List<Integer> streamLengths, String group) {
+		setRunningXdContainerCount(placementPlanner.getRequiredContainers(streamLengths), group);
+	}
+
+	/**
+	 * Gets the current topology of groups and hosts.
+	 *
+	 * @return the cluster topology
+	 */
+	public ClusterTopology getTopology() {
+		return ClusterTopology.of(getManagedGroups().getGroups());
+	}
+
+	/**
+	 * Plans placement of stream modules into containers of a group
+	 * keeping consecutive modules in same container or host.
+	 *
+	 * @param group the group name
+	 * @param modules the modules in stream order
+	 * @return the container ids in module order
+	 */
+	public List<String> planStream(String group, List<String> modules) {
+		ClusterTopology topology = getTopology();
+		List<String> placement = placementPlanner.place(group, modules, topology);
+		if (log.isDebugEnabled()) {
+			log.debug("Placed " + modules + " to " + placement + " with "
+					+ ModulePlacementPlanner.getCrossHostHops(placement, topology) + " cross host hops");
+		}
+		return placement;
+	}
+
+	/**
+	 * Sets if zombie containers found by grid reconciler
+	 * are replaced with new containers. If false, zombie containers
+	 * are only released.
+	 *
+	 * @param restartZombies the new restart zombies flag
+	 */
+	public void setRestartZombies(boolean restartZombies) {
+		this.restartZombies = restartZombies;
+	}
+
+	/**
+	 * Sets if failed containers are replaced with new
+	 * containers. If false, a failed container will fail
+	 * the whole application.
+	 *
+	 * @param replaceFailedContainers the new replace failed containers flag
+	 */
+	public void setReplaceFailedContainers(boolean replaceFailedContainers) {
+		this.replaceFailedContainers = replaceFailedContainers;
+	}
+
+	/**
+	 * Sets the session id passed to containers. Random
+	 * session id is created during init if not set.
+	 *
+	 * @param sessionId the new session id
+	 */
+	public void setSessionId(String sessionId) {
+		this.sessionId = sessionId;
 	}
 
 	/**
@@ -104,24 +242,39 @@ public class XdAppmaster extends AbstractManagedContainerGroupsAppmaster
 	@Override
 	protected void onInit() throws Exception {
 
-		sessionId = UUID.randomUUID().toString();
-
-		for (Entry<String, String> entry : System.getenv().entrySet()) {
-			log.info("XXXenv: " + entry.getKey() + " " + entry.getValue());
+		if (sessionId == null) {
+			sessionId = UUID.randomUUID().toString();
 		}
 
 		// for now no ref for appmaster in xml,
 		// set managedGroups here
 		setManagedGroups(managedGroups);
+		if (appmasterMetrics != null) {
+			setAppmasterMetrics(appmasterMetrics);
+		}
+		if (lifecycleTracker != null) {
+			setLifecycleTracker(lifecycleTracker);
+		}
+		if (eventRecorder != null) {
+			setEventRecorder(eventRecorder);
+		}
+		getManagedGroups().setMetrics(getAppmasterMetrics());
 
-		managedGroups.addContainerGridListener(new ContainerGridListener<YarnContainerNode>() {
+		getManagedGroups().addContainerGroupsListener(new ContainerGroupsListener<YarnContainerGroup, YarnContainerNode>() {
 			@Override
-			public void containerNodeRemoved(YarnContainerNode node) {
-				log.info("XXX containerNodeRemoved: " + node);
+			public void groupAdded(YarnContainerGroup group) {
 			}
 			@Override
-			public void containerNodeAdded(YarnContainerNode node) {
-				log.info("XXX containerNodeAdded: " + node);
+			public void groupRemoved(YarnContainerGroup group) {
+			}
+			@Override
+			public void groupMemberAdded(YarnContainerGroup group, YarnContainerNode node) {
+				getEventRecorder().record(ControlEventType.MEMBER_ADDED, node.getId(), group.getId());
+			}
+			@Override
+			public void groupMemberRemoved(YarnContainerGroup group, YarnContainerNode node) {
+				getEventRecorder().record(ControlEventType.MEMBER_REMOVED, node.getId(), group.getId());
+				placementPlanner.containerRemoved(node.getId());
 			}
 		});
 
@@ -129,9 +282,30 @@ public class XdAppmaster extends AbstractManagedContainerGroupsAppmaster
 		if(getLauncher() instanceof AbstractLauncher) {
 			((AbstractLauncher)getLauncher()).addInterceptor(this);
 		}
-		((HeartbeatAppmasterService) getAppmasterService()).addHeartbeatMasterClientListener(new HbMasterClient());
+		if (getAppmasterService() instanceof HeartbeatAppmasterService) {
+			((HeartbeatAppmasterService) getAppmasterService()).addHeartbeatMasterClientListener(new HbMasterClient());
+		}
 //		((HeartbeatAppmasterService) getAppmasterService()).setSessionId(sessionId);
 		heartbeatAppmasterService.setSessionId(sessionId);
+		if (gridReconciler != null && gridReconciler.isEnabled()) {
+			gridReconciler.setReconcileHandler(new GridReconcileHandler());
+		} else {
+			// joining the grid is the only readiness signal
+			getLifecycleTracker().setReadyStage(LifecycleStage.HEARTBEAT);
+		}
+		if (heartbeatRelay != null && heartbeatRelay.isEnabled()) {
+			heartbeatRelay.setSessionId(sessionId);
+			heartbeatRelay.setListener(new HeartbeatRelayListener() {
+				@Override
+				public void nodeUp(String containerId) {
+					onContainerUp(ConverterUtils.toContainerId(containerId));
+				}
+				@Override
+				public void nodeDead(String containerId) {
+					onContainerDead(ConverterUtils.toContainerId(containerId));
+				}
+			});
+		}
 	}
 
 	@Override
@@ -139,6 +313,16 @@ public class XdAppmaster extends AbstractManagedContainerGroupsAppmaster
 		if (log.isDebugEnabled()) {
 			log.debug("preLaunch: " + context);
 		}
+		String id = ConverterUtils.toString(context.getContainerId());
+		getLifecycleTracker().stage(id, LifecycleStage.PRELAUNCH);
+		if (context.getLocalResources() != null) {
+			// upper bound, nothing is transferred for resources already cached on a node
+			long bytes = 0;
+			for (LocalResource resource : context.getLocalResources().values()) {
+				bytes += resource.getSize();
+			}
+			getAppmasterMetrics().recordLaunch(bytes);
+		}
 
 		AppmasterService service = getAppmasterService();
 		if (service != null) {
@@ -147,10 +331,21 @@ public class XdAppmaster extends AbstractManagedContainerGroupsAppmaster
 			Map<String, String> env = new HashMap<String, String>(context.getEnvironment());
 			env.put(YarnSystemConstants.AMSERVICE_PORT, Integer.toString(port));
 			env.put(YarnSystemConstants.AMSERVICE_HOST, address);
-			env.put(YarnSystemConstants.SYARN_CONTAINER_ID, ConverterUtils.toString(context.getContainerId()));
-//			String xdGroup = getManagedGroups().findGroupNameByMember(ConverterUtils.toString(context.getContainerId()));
-			String xdGroup = getManagedGroups().getGroupByMember(ConverterUtils.toString(context.getContainerId())).getId();
+			env.put(YarnSystemConstants.SYARN_CONTAINER_ID, id);
+			YarnContainerGroup group = getManagedGroups().getGroupByMember(ContainerKeys.toKey(context.getContainerId()));
+			String xdGroup = group != null ? group.getId() : null;
 			env.put("syarn.cg.group", xdGroup != null ? xdGroup : "");
+			if (groupTransports != null) {
+				env.putAll(groupTransports.getEnvironment(xdGroup));
+			}
+			if (heartbeatRelay != null && heartbeatRelay.getPort() > 0) {
+				env.put(HEARTBEAT_RELAY_PORT, Integer.toString(heartbeatRelay.getPort()));
+				env.put(HEARTBEAT_RELAY_LOCAL_PORT, Integer.toString(heartbeatRelay.getRelayPort()));
+			}
+			if (gridReconciler != null && gridReconciler.isEnabled()) {
+				// reconciler expects every container to publish its identity
+				env.put(GRID_ENABLED, Boolean.TRUE.toString());
+			}
 			context.setEnvironment(env);
 
 			// testing
@@ -162,7 +357,7 @@ public class XdAppmaster extends AbstractManagedContainerGroupsAppmaster
 				ByteBuffer containerToken  = ByteBuffer.wrap(dob.getData(), 0, dob.getLength());
 				context.setContainerTokens(containerToken);
 			} catch (IOException e) {
-				log.error("XXX error setContainerTokens", e);
+				log.error("Error setting container tokens", e);
 			}
 
 
@@ -172,10 +367,105 @@ public class XdAppmaster extends AbstractManagedContainerGroupsAppmaster
 		}
 	}
 
+	@Override
+	protected void onContainerLaunched(Container container) {
+		super.onContainerLaunched(container);
+		if (gridReconciler != null && gridReconciler.isEnabled()) {
+			// zombie clock starts when container is launched
+			gridReconciler.yarnContainerLaunched(ConverterUtils.toString(container.getId()));
+		}
+	}
+
+	@Override
+	protected void onContainerCompleted(ContainerStatus status) {
+		if (heartbeatRelay != null) {
+			heartbeatRelay.forget(ConverterUtils.toString(status.getContainerId()));
+		}
+		super.onContainerCompleted(status);
+	}
+
+	@Override
+	protected void onContainerReleased(ContainerId containerId) {
+		// late relay heartbeats must not bring it up again
+		if (heartbeatRelay != null) {
+			heartbeatRelay.forget(ConverterUtils.toString(containerId));
+		}
+	}
+
 	@Override
 	protected boolean onContainerFailed(ContainerId containerId) {
-		log.info("onContainerFailed: " + containerId);
-		return false;
+		if (log.isDebugEnabled()) {
+			log.debug("onContainerFailed: " + containerId);
+		}
+		return replaceFailedContainers ? replaceFailedContainer(containerId) : false;
+	}
+
+	/**
+	 * Called when first heartbeat of a container is received.
+	 *
+	 * @param containerId the container id
+	 */
+	protected void onContainerUp(ContainerId containerId) {
+		// heartbeats are enabled after XD container is launched,
+		// container is ready when it joins the grid
+		String id = ConverterUtils.toString(containerId);
+		getAppmasterMetrics().recordHeartbeatUp();
+		getEventRecorder().record(ControlEventType.HEARTBEAT_UP, id);
+		getLifecycleTracker().stage(id, LifecycleStage.HEARTBEAT);
+		HeartbeatCommandMessage m = new HeartbeatCommandMessage();
+		m.setCommandMessageType(CommandMessageType.GENERIC);
+		m.setJsonData("fakedata");
+		heartbeatAppmasterService.sendCommand(m);
+//		((HeartbeatAppmasterService) getAppmasterService()).sendCommand(m);
+	}
+
+	/**
+	 * Called when heartbeat of a container is considered dead.
+	 *
+	 * @param containerId the container id
+	 */
+	protected void onContainerDead(ContainerId containerId) {
+		getAppmasterMetrics().recordHeartbeatDead();
+		getEventRecorder().record(ControlEventType.HEARTBEAT_DEAD, containerId);
+		// dead node may still hold the container
+		if (replaceFailedContainers) {
+			releaseContainer(containerId);
+		}
+		handleContainerFailed(containerId);
+	}
+
+	/**
+	 * Handler acting on zombies and ghosts found by the grid reconciler.
+	 */
+	private class GridReconcileHandler implements ReconcileHandler {
+		@Override
+		public void handleJoined(String containerId) {
+			getLifecycleTracker().stage(containerId, LifecycleStage.READY);
+		}
+
+		@Override
+		public void handleZombie(String containerId) {
+			YarnContainerGroup group = getManagedGroups().getGroupByMember(containerId);
+			getEventRecorder().record(ControlEventType.ZOMBIE, containerId, null, restartZombies ? 1 : 0);
+			getManagedGroups().removeContainerNode(containerId);
+			releaseContainer(ConverterUtils.toContainerId(containerId));
+			onContainerReleased(ConverterUtils.toContainerId(containerId));
+			if (group == null) {
+				return;
+			}
+			if (restartZombies) {
+				// removal dropped it from the ledger, net request asks a new one
+				requestRebalance();
+			} else if (group.getProjectedSize() > 0) {
+				getManagedGroups().setProjectedGroupSize(group.getId(), group.getProjectedSize() - 1);
+			}
+		}
+
+		@Override
+		public void handleGhost(String memberId, String containerId) {
+			getEventRecorder().record(ControlEventType.GHOST, memberId, containerId);
+			gridReconciler.getGrid().evictContainerNode(memberId);
+		}
 	}
 
 	/**
@@ -184,18 +474,12 @@ public class XdAppmaster extends AbstractManagedContainerGroupsAppmaster
 	private class HbMasterClient extends HeartbeatMasterClientAdapter {
 		@Override
 		public void nodeUp(HeartbeatNode node, NodeState state) {
-			log.info("XXX nodeUp nodeId=" + node.getId());
-			HeartbeatCommandMessage m = new HeartbeatCommandMessage();
-			m.setCommandMessageType(CommandMessageType.GENERIC);
-			m.setJsonData("fakedata");
-			heartbeatAppmasterService.sendCommand(m);
-//			((HeartbeatAppmasterService) getAppmasterService()).sendCommand(m);
+			onContainerUp(ConverterUtils.toContainerId(node.getId()));
 		}
 
 		@Override
 		public void nodeDead(HeartbeatNode node, NodeState state) {
-			log.info("XXX nodeDead nodeId=" + node.getId());
-			XdAppmaster.this.handleContainerFailed(ConverterUtils.toContainerId(node.getId()));
+			onContainerDead(ConverterUtils.toContainerId(node.getId()));
 		}
 	}
 
@@ -15,17 +15,32 @@
  */
 package org.springframework.yarn.examples;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.web.context.support.XmlWebApplicationContext;
 import org.springframework.xd.dirt.container.DefaultContainer;
 import org.springframework.xd.dirt.stream.StreamServer;
 import org.springframework.yarn.YarnSystemConstants;
+import org.springframework.yarn.am.AppmasterTrackService;
 import org.springframework.yarn.am.CommandLineAppmasterRunner;
-import org.springframework.yarn.am.track.UrlAppmasterTrackService;
 
 /**
  * Custom command line runner for XD Yarn Application Master.
@@ -39,42 +54,191 @@ public class XdAppmasterRunner extends CommandLineAppmasterRunner {
 
 	private final static Log log = LogFactory.getLog(XdAppmasterRunner.class);
 
+	/** System property for admin port, 0 or missing means ephemeral */
+	public final static String ADMIN_PORT_PROPERTY = "xd.admin.port";
+
+	/** Attempts to start admin, every attempt uses a new ephemeral port */
+	private final static int START_ATTEMPTS = 3;
+
+	/** Millis to wait for a started admin to accept connections */
+	private final static long LISTEN_TIMEOUT = 10000;
+
+	/** Millis appmaster registration waits for admin track url */
+	private final static long TRACK_URL_TIMEOUT = 120000;
+
 	@Override
 	protected ConfigurableApplicationContext getChildApplicationContext(
 			String configLocation, ConfigurableApplicationContext parent) {
 
-		log.info("Using xd.transport=" + System.getProperty("xd.transport"));
-		log.info("Using xd.store=" + System.getProperty("xd.store"));
-		log.info("Using xd.home=" + System.getProperty("xd.home"));
+		if (log.isDebugEnabled()) {
+			log.debug("Using xd.transport=" + System.getProperty("xd.transport") + " xd.store="
+					+ System.getProperty("xd.store") + " xd.home=" + System.getProperty("xd.home"));
+		}
 
-		XmlWebApplicationContext context = new XmlWebApplicationContext();
+		final XmlWebApplicationContext context = new XmlWebApplicationContext();
 		context.setConfigLocation("classpath:" + DefaultContainer.XD_INTERNAL_CONFIG_ROOT + "admin-server.xml");
 
-		final StreamServer server = new StreamServer(context, 8282);
-		server.afterPropertiesSet();
-		server.start();
+		final int fixedPort = Integer.getInteger(ADMIN_PORT_PROPERTY, 0);
+		final AtomicReference<StreamServer> server = new AtomicReference<StreamServer>();
 
-		// when we get fix for 0-port trick in spring-xd
-		//log.info("Streamserver tomcat port=" + server.getLocalPort());
+		// free port is reserved until server binds it, other process may
+		// still win it in between and then startup is retried on a new port
+		final FutureTask<Integer> started = new FutureTask<Integer>(new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				long start = System.currentTimeMillis();
+				for (int attempt = 1; ; attempt++) {
+					ServerSocket reservation = fixedPort > 0 ? null : reservePort();
+					int port = fixedPort > 0 ? fixedPort : reservation.getLocalPort();
+					StreamServer candidate = new StreamServer(context, port);
+					server.set(candidate);
+					candidate.afterPropertiesSet();
+					closeQuietly(reservation);
+					boolean listening = false;
+					try {
+						candidate.start();
+						listening = waitListening(port);
+					} catch (RuntimeException e) {
+						log.warn("Streamserver failed to start on port " + port, e);
+					}
+					if (listening) {
+						log.info("Streamserver started on port " + port + " in "
+								+ (System.currentTimeMillis() - start) + "ms");
+						return port;
+					}
+					candidate.stop();
+					if (fixedPort > 0 || attempt >= START_ATTEMPTS) {
+						throw new IllegalStateException("Streamserver is not listening on port " + port);
+					}
+					log.warn("Streamserver is not listening on port " + port + ", retrying on other port");
+				}
+			}
+		});
 
 		// context is already refreshed so just register singleton
-		// not really a proper way to do it but serves the demo purpose
-		// if streamserver could choose free port then below would
-		// make much more sense
+		// not really a proper way to do it but serves the demo purpose,
+		// track url is only accepted with registration which then waits
+		// until admin is listening
 		parent.getBeanFactory().registerSingleton(
-				YarnSystemConstants.DEFAULT_ID_AMTRACKSERVICE,
-				new UrlAppmasterTrackService("http://localhost:" + server.getPort()));
+				YarnSystemConstants.DEFAULT_ID_AMTRACKSERVICE, new AdminTrackService(started));
 
+		// listener is registered before the admin is started so that
+		// a close during startup still waits for it and stops the server
 		context.addApplicationListener(new ApplicationListener<ContextClosedEvent>() {
 			@Override
 			public void onApplicationEvent(ContextClosedEvent event) {
-				server.stop();
+				try {
+					started.get();
+				} catch (Exception e) {
+					// already reported by the startup task
+					return;
+				}
+				server.get().stop();
+			}
+		});
+
+		// start admin in parallel with appmaster initialization,
+		// appmaster is taken down if admin fails as it would run headless
+		final ConfigurableApplicationContext appmasterContext = parent;
+		new SimpleAsyncTaskExecutor("xd-admin-").execute(new Runnable() {
+			@Override
+			public void run() {
+				started.run();
+				try {
+					started.get();
+				} catch (Exception e) {
+					log.error("Streamserver failed to start, closing appmaster", e);
+					appmasterContext.close();
+				}
 			}
 		});
 
 		return context;
 	}
 
+	/**
+	 * Reserves a free local port by binding an ephemeral socket.
+	 *
+	 * @return the bound socket
+	 */
+	private static ServerSocket reservePort() {
+		try {
+			return new ServerSocket(0);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to find free port", e);
+		}
+	}
+
+	/**
+	 * Waits until a local port accepts connections.
+	 *
+	 * @param port the port
+	 * @return true, if port is listening
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private static boolean waitListening(int port) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + LISTEN_TIMEOUT;
+		do {
+			Socket socket = new Socket();
+			try {
+				socket.connect(new InetSocketAddress(InetAddress.getByName(null), port), 1000);
+				return true;
+			} catch (IOException e) {
+				Thread.sleep(200);
+			} finally {
+				try {
+					socket.close();
+				} catch (IOException e) {
+				}
+			}
+		} while (System.currentTimeMillis() < deadline);
+		return false;
+	}
+
+	private static void closeQuietly(ServerSocket socket) {
+		if (socket != null) {
+			try {
+				socket.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	private static String getLocalHostName() {
+		try {
+			return InetAddress.getLocalHost().getCanonicalHostName();
+		} catch (UnknownHostException e) {
+			return "localhost";
+		}
+	}
+
+	/**
+	 * Track service giving admin url once admin is listening.
+	 */
+	private static class AdminTrackService implements AppmasterTrackService {
+
+		private final Future<Integer> started;
+
+		AdminTrackService(Future<Integer> started) {
+			this.started = started;
+		}
+
+		@Override
+		public String getTrackUrl() {
+			try {
+				return "http://" + getLocalHostName() + ":" + started.get(TRACK_URL_TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				log.warn("Streamserver not started in " + TRACK_URL_TIMEOUT + "ms, no track url");
+			} catch (ExecutionException e) {
+				// already reported by the startup task
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return null;
+		}
+
+	}
+
 	public static void main(String[] args) {
 		new XdAppmasterRunner().doMain(args);
 	}
@@ -15,13 +15,20 @@
  */
 package org.springframework.yarn.examples;
 
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.security.Credentials;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.xd.dirt.core.Container;
 import org.springframework.xd.dirt.launcher.ContainerLauncher;
 import org.springframework.xd.dirt.server.options.AbstractOptions;
@@ -29,6 +36,9 @@ import org.springframework.xd.dirt.server.options.ContainerOptions;
 import org.springframework.xd.dirt.server.options.Transport;
 import org.springframework.yarn.YarnSystemConstants;
 import org.springframework.yarn.container.AbstractYarnContainer;
+import org.springframework.yarn.examples.grid.hazelcast.HazelcastContainerGrid;
+import org.springframework.yarn.examples.heartbeat.HeartbeatRelayClient;
+import org.springframework.yarn.examples.metrics.StartupPhases;
 import org.springframework.yarn.thrift.hb.HeartbeatAppmasterServiceClient;
 import org.springframework.yarn.thrift.hb.gen.NodeInfo;
 
@@ -38,12 +48,16 @@ import org.springframework.yarn.thrift.hb.gen.NodeInfo;
  * @author Janne Valkealahti
  *
  */
-public class XdContainer extends AbstractYarnContainer implements ApplicationContextAware {
+public class XdContainer extends AbstractYarnContainer implements ApplicationContextAware, DisposableBean {
 
 	private static final Log log = LogFactory.getLog(XdContainer.class);
 
 	private ApplicationContext context;
 
+	private volatile HeartbeatRelayClient relay;
+
+	private volatile HazelcastContainerGrid grid;
+
 	@Override
 	public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
 		this.context = applicationContext;
@@ -51,32 +65,98 @@ public class XdContainer extends AbstractYarnContainer implements ApplicationCon
 
 	@Override
 	protected void runInternal() {
-		log.info("XdContainer internal run starting, setting up XD container launcher");
-		log.info("Using xd.home=" + getEnvironment("xd.home"));
-		log.info("Using syarn.cg.group=" + getEnvironment("syarn.cg.group"));
+		final StartupPhases phases = new StartupPhases();
+		// time spent before we got here, jvm start and context refresh
+		phases.record("boot", ManagementFactory.getRuntimeMXBean().getUptime());
+		if (log.isDebugEnabled()) {
+			log.debug("Using xd.home=" + getEnvironment("xd.home") + " syarn.cg.group="
+					+ getEnvironment("syarn.cg.group"));
+		}
+
+		// joining the grid doesn't depend on xd container, join it while
+		// xd container is launching, identity is published only after
+		// launch as appmaster considers a container ready when it joins
+		Future<HazelcastContainerGrid> gridJoin = null;
+		if (Boolean.parseBoolean(getEnvironment(XdAppmaster.GRID_ENABLED))) {
+			gridJoin = context.getBean("taskExecutor", AsyncTaskExecutor.class)
+					.submit(new Callable<HazelcastContainerGrid>() {
+						@Override
+						public HazelcastContainerGrid call() throws Exception {
+							long start = System.currentTimeMillis();
+							grid = context.getBean(HazelcastContainerGrid.class);
+							grid.start();
+							phases.recordSince("grid", start);
+							return grid;
+						}
+					});
+		}
 
 		// setup needed options
+		long start = System.currentTimeMillis();
 		ContainerOptions options = new ContainerOptions();
 		AbstractOptions.setXDHome(getEnvironment("xd.home"));
-		AbstractOptions.setXDTransport(Transport.redis);
+		Transport transport = GroupTransports.resolveTransport(getEnvironment());
+		int applied = GroupTransports.applyProperties(getEnvironment());
+		AbstractOptions.setXDTransport(transport);
+		log.info("Using xd.transport=" + transport + " with " + applied + " transport properties for group "
+				+ getEnvironment("syarn.cg.group"));
 
 		// do the xd internal container launch
-		log.info("XdContainer launch");
 		ContainerLauncher launcher = context.getBean(ContainerLauncher.class);
 		Container container = launcher.launch(options);
-		log.info("XdContainer launched id=" + container.getId() + " jvm=" + container.getJvmName());
+		phases.recordSince("launch", start);
 
 		HeartbeatAppmasterServiceClient serviceClient = context.getBean(HeartbeatAppmasterServiceClient.class);
-		Credentials credentials = getCredentials();
-		String sessionId = new String(credentials.getSecretKey(new Text(YarnSystemConstants.SYARN_SEC_SESSIONID)));
-		serviceClient.setSessionId(sessionId);
+		serviceClient.setSessionId(getSessionId());
+
+		String relayPort = getEnvironment(XdAppmaster.HEARTBEAT_RELAY_PORT);
+		if (relayPort != null) {
+			// heartbeats go through a relay shared by containers on this host,
+			// thrift client stays silent as node info is never set
+			relay = new HeartbeatRelayClient(getEnvironment(YarnSystemConstants.SYARN_CONTAINER_ID),
+					getSessionId(), getEnvironment(YarnSystemConstants.AMSERVICE_HOST),
+					Integer.parseInt(relayPort));
+			String localPort = getEnvironment(XdAppmaster.HEARTBEAT_RELAY_LOCAL_PORT);
+			if (localPort != null) {
+				relay.setRelayPort(Integer.parseInt(localPort));
+			}
+			relay.start(context.getBean("taskScheduler", TaskScheduler.class));
+		} else {
+			// set empty node info order to enable heartbeats,
+			// only after xd container is up as first heartbeat means ready
+			serviceClient.setNodeInfo(new NodeInfo());
+		}
+		if (gridJoin != null) {
+			// appmaster joins grid members to containers by published identity
+			try {
+				gridJoin.get().setLocalContainerId(getEnvironment(YarnSystemConstants.SYARN_CONTAINER_ID));
+			} catch (Exception e) {
+				throw new IllegalStateException("Unable to join grid", e);
+			}
+		}
+		phases.record("run", phases.getElapsed());
+		log.info("XdContainer launched id=" + container.getId() + " jvm=" + container.getJvmName()
+				+ " startup " + phases);
+	}
 
-		// set empty node info order to enable heartbeats
-		serviceClient.setNodeInfo(new NodeInfo());
+	@Override
+	public void destroy() throws Exception {
+		if (relay != null) {
+			relay.stop();
+		}
+		if (grid != null) {
+			grid.stop();
+		}
 	}
 
 	@Override
 	public boolean isWaitCompleteState() {
 		return true;
 	}
+
+	private String getSessionId() {
+		Credentials credentials = getCredentials();
+		return new String(credentials.getSecretKey(new Text(YarnSystemConstants.SYARN_SEC_SESSIONID)));
+	}
+
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.events;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Immutable snapshot of a single event read from {@link ControlEventRecorder}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class ControlEvent {
+
+	private final long sequence;
+
+	private final long timestamp;
+
+	private final ControlEventType type;
+
+	private final String subject;
+
+	private final String detail;
+
+	private final long value;
+
+	/**
+	 * Instantiates a new control event.
+	 *
+	 * @param sequence the sequence number
+	 * @param timestamp the timestamp in millis
+	 * @param type the event type
+	 * @param subject the subject, usually a container id
+	 * @param detail the detail
+	 * @param value the value
+	 */
+	public ControlEvent(long sequence, long timestamp, ControlEventType type, String subject, String detail,
+			long value) {
+		this.sequence = sequence;
+		this.timestamp = timestamp;
+		this.type = type;
+		this.subject = subject;
+		this.detail = detail;
+		this.value = value;
+	}
+
+	/**
+	 * Gets the sequence number.
+	 *
+	 * @return the sequence
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Gets the timestamp.
+	 *
+	 * @return the timestamp in millis
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Gets the event type.
+	 *
+	 * @return the type
+	 */
+	public ControlEventType getType() {
+		return type;
+	}
+
+	/**
+	 * Gets the subject.
+	 *
+	 * @return the subject
+	 */
+	public String getSubject() {
+		return subject;
+	}
+
+	/**
+	 * Gets the detail.
+	 *
+	 * @return the detail
+	 */
+	public String getDetail() {
+		return detail;
+	}
+
+	/**
+	 * Gets the value.
+	 *
+	 * @return the value
+	 */
+	public long getValue() {
+		return value;
+	}
+
+	/**
+	 * Formats event as a tab separated line.
+	 *
+	 * @return the formatted line
+	 */
+	public String toLine() {
+		StringBuilder buf = new StringBuilder(96);
+		buf.append(sequence).append('\t');
+		buf.append(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS").format(new Date(timestamp))).append('\t');
+		buf.append(type).append('\t');
+		buf.append(subject != null ? subject : "-").append('\t');
+		buf.append(detail != null ? detail : "-").append('\t');
+		buf.append(value);
+		return buf.toString();
+	}
+
+	@Override
+	public String toString() {
+		return toLine();
+	}
+
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.events;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.util.Assert;
+import org.springframework.yarn.support.LifecycleObjectSupport;
+
+/**
+ * Recorder for control plane events kept in a fixed size ring buffer.
+ * <p>
+ * Recording an event only claims a slot and stores references to the
+ * given subject and detail, formatting of them is deferred until the
+ * event is read. Events are flushed periodically by a scheduled task
+ * to a rolling local file if one is set, and recent events can be
+ * queried from the buffer, also over JMX. If writer falls behind more
+ * than the buffer capacity, overwritten events are counted as dropped.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+@ManagedResource(objectName = "org.springframework.yarn.examples:type=Appmaster,name=events",
+		description = "Appmaster control plane events")
+public class ControlEventRecorder extends LifecycleObjectSupport {
+
+	private final static Log log = LogFactory.getLog(ControlEventRecorder.class);
+
+	/** Ring buffer slots */
+	private final Slot[] slots;
+
+	/** Mask for slot index */
+	private final int mask;
+
+	/** Next sequence to claim */
+	private final AtomicLong sequence = new AtomicLong();
+
+	/** Count of events overwritten before flushed */
+	private final AtomicLong dropped = new AtomicLong();
+
+	/** Next sequence to flush, guarded by flushLock */
+	private long flushed;
+
+	/** Lock for flush and file handling */
+	private final Object flushLock = new Object();
+
+	/** File to write events into, memory only if not set */
+	private File file;
+
+	/** Size in bytes after which file is rolled */
+	private long maxFileSize = 10 * 1024 * 1024;
+
+	/** Count of rolled files kept */
+	private int maxFiles = 5;
+
+	/** Interval in millis between flushes */
+	private long flushInterval = 1000;
+
+	/** Current writer if file is open */
+	private Writer writer;
+
+	/** Bytes written into current file */
+	private long written;
+
+	/** Current running task if any */
+	private volatile ScheduledFuture<?> runningTask;
+
+	/**
+	 * Instantiates a new control event recorder
+	 * with capacity of 8192 events.
+	 */
+	public ControlEventRecorder() {
+		this(8192);
+	}
+
+	/**
+	 * Instantiates a new control event recorder. Capacity
+	 * is rounded up to next power of two.
+	 *
+	 * @param capacity the buffer capacity
+	 */
+	public ControlEventRecorder(int capacity) {
+		Assert.isTrue(capacity > 0, "capacity must be positive");
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		slots = new Slot[size];
+		for (int i = 0; i < size; i++) {
+			slots[i] = new Slot();
+		}
+		mask = size - 1;
+	}
+
+	@Override
+	protected void doStart() {
+		if (file != null && getTaskScheduler() != null) {
+			runningTask = getTaskScheduler().scheduleAtFixedRate(new Runnable() {
+				@Override
+				public void run() {
+					flush();
+				}
+			}, flushInterval);
+		}
+	}
+
+	@Override
+	protected void doStop() {
+		if (runningTask != null) {
+			runningTask.cancel(false);
+		}
+		runningTask = null;
+		flush();
+		synchronized (flushLock) {
+			closeWriter();
+		}
+	}
+
+	/**
+	 * Records an event.
+	 *
+	 * @param type the event type
+	 * @param subject the subject, formatted lazily
+	 */
+	public void record(ControlEventType type, Object subject) {
+		record(type, subject, null, 0);
+	}
+
+	/**
+	 * Records an event.
+	 *
+	 * @param type the event type
+	 * @param subject the subject, formatted lazily
+	 * @param detail the detail, formatted lazily
+	 */
+	public void record(ControlEventType type, Object subject, Object detail) {
+		record(type, subject, detail, 0);
+	}
+
+	/**
+	 * Records an event.
+	 *
+	 * @param type the event type
+	 * @param subject the subject, formatted lazily
+	 * @param detail the detail, formatted lazily
+	 * @param value the value
+	 */
+	public void record(ControlEventType type, Object subject, Object detail, long value) {
+		long seq = sequence.getAndIncrement();
+		Slot slot = slots[(int) (seq & mask)];
+		// mark slot as being written, readers skip it
+		slot.sequence = -1;
+		slot.timestamp = System.currentTimeMillis();
+		slot.type = type;
+		slot.subject = subject;
+		slot.detail = detail;
+		slot.value = value;
+		slot.sequence = seq;
+	}
+
+	/**
+	 * Gets the latest events, oldest first.
+	 *
+	 * @param count the max count of events
+	 * @return the latest events
+	 */
+	public List<ControlEvent> getLatest(int count) {
+		return getEvents(null, null, count);
+	}
+
+	/**
+	 * Gets the latest events matching a type and a subject, oldest first.
+	 *
+	 * @param type the event type, <code>NULL</code> matches all
+	 * @param subject the subject, <code>NULL</code> matches all
+	 * @param count the max count of events
+	 * @return the matching events
+	 */
+	public List<ControlEvent> getEvents(ControlEventType type, String subject, int count) {
+		ArrayList<ControlEvent> ret = new ArrayList<ControlEvent>();
+		long end = sequence.get();
+		long start = Math.max(0, end - slots.length);
+		for (long seq = end - 1; seq >= start && ret.size() < count; seq--) {
+			ControlEvent event = read(seq);
+			if (event != null && (type == null || type == event.getType())
+					&& (subject == null || subject.equals(event.getSubject()))) {
+				ret.add(0, event);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Gets the latest events formatted as lines, oldest first.
+	 *
+	 * @param count the max count of events
+	 * @return the formatted events
+	 */
+	@ManagedOperation(description = "Latest events formatted as lines")
+	public String[] dumpLatest(int count) {
+		List<ControlEvent> events = getLatest(count);
+		String[] ret = new String[events.size()];
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = events.get(i).toLine();
+		}
+		return ret;
+	}
+
+	/**
+	 * Writes events recorded since last flush into the file.
+	 * Does nothing if file is not set.
+	 */
+	public void flush() {
+		if (file == null) {
+			return;
+		}
+		synchronized (flushLock) {
+			long end = sequence.get();
+			if (end - flushed > slots.length) {
+				dropped.addAndGet(end - flushed - slots.length);
+				flushed = end - slots.length;
+			}
+			try {
+				while (flushed < end) {
+					ControlEvent event = read(flushed);
+					if (event == null) {
+						// either still being written or already overwritten
+						if (sequence.get() - flushed > slots.length) {
+							dropped.incrementAndGet();
+							flushed++;
+							continue;
+						}
+						break;
+					}
+					String line = event.toLine();
+					getWriter().write(line);
+					getWriter().write('\n');
+					written += line.length() + 1;
+					flushed++;
+					if (written > maxFileSize) {
+						roll();
+					}
+				}
+				if (writer != null) {
+					writer.flush();
+				}
+			} catch (IOException e) {
+				log.error("Unable to write events to " + file, e);
+				closeWriter();
+			}
+		}
+	}
+
+	@ManagedAttribute(description = "Count of recorded events")
+	public long getRecordedCount() {
+		return sequence.get();
+	}
+
+	@ManagedAttribute(description = "Count of events overwritten before written to file")
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * Sets the file events are written into.
+	 *
+	 * @param file the new file
+	 */
+	public void setFile(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Sets the max file size.
+	 *
+	 * @param maxFileSize the new max file size in bytes
+	 */
+	public void setMaxFileSize(long maxFileSize) {
+		this.maxFileSize = maxFileSize;
+	}
+
+	/**
+	 * Sets the count of rolled files kept.
+	 *
+	 * @param maxFiles the new max files
+	 */
+	public void setMaxFiles(int maxFiles) {
+		this.maxFiles = maxFiles;
+	}
+
+	/**
+	 * Sets the flush interval.
+	 *
+	 * @param flushInterval the new flush interval in millis
+	 */
+	public void setFlushInterval(long flushInterval) {
+		this.flushInterval = flushInterval;
+	}
+
+	private ControlEvent read(long seq) {
+		Slot slot = slots[(int) (seq & mask)];
+		if (slot.sequence != seq) {
+			return null;
+		}
+		long timestamp = slot.timestamp;
+		ControlEventType type = slot.type;
+		Object subject = slot.subject;
+		Object detail = slot.detail;
+		long value = slot.value;
+		if (slot.sequence != seq) {
+			// overwritten while reading
+			return null;
+		}
+		return new ControlEvent(seq, timestamp, type, subject != null ? subject.toString() : null,
+				detail != null ? detail.toString() : null, value);
+	}
+
+	private Writer getWriter() throws IOException {
+		if (writer == null) {
+			written = file.length();
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8"));
+		}
+		return writer;
+	}
+
+	private void roll() {
+		closeWriter();
+		for (int i = maxFiles - 1; i > 0; i--) {
+			File from = new File(file.getPath() + "." + i);
+			if (from.exists()) {
+				File to = new File(file.getPath() + "." + (i + 1));
+				to.delete();
+				from.renameTo(to);
+			}
+		}
+		File to = new File(file.getPath() + ".1");
+		to.delete();
+		if (maxFiles > 0) {
+			file.renameTo(to);
+		} else {
+			file.delete();
+		}
+	}
+
+	private void closeWriter() {
+		if (writer != null) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+			}
+		}
+		writer = null;
+	}
+
+	/**
+	 * Single slot in a ring buffer.
+	 */
+	private static class Slot {
+		volatile long sequence = -1;
+		volatile long timestamp;
+		volatile ControlEventType type;
+		volatile Object subject;
+		volatile Object detail;
+		volatile long value;
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.events;
+
+/**
+ * Types of control plane events recorded by {@link ControlEventRecorder}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public enum ControlEventType {
+
+	/** Projected size of a group changed, value is the new size */
+	GROUP_RESIZED,
+
+	/** Container allocated, detail is the node */
+	ALLOCATED,
+
+	/** Allocated container rejected due to host state, detail is the node */
+	REJECTED,
+
+	/** Surplus container from speculative allocation released */
+	SURPLUS,
+
+	/** Container launched */
+	LAUNCHED,
+
+	/** Warm container adopted into a group, detail is the group */
+	ADOPTED,
+
+	/** Container completed, value is the exit status */
+	COMPLETED,
+
+	/** Failed container removed from its group */
+	FAILED,
+
+	/** Failed container replaced, detail is the group */
+	REPLACED,
+
+	/** Container released by rebalance */
+	RELEASED,
+
+	/** Container added to a group, detail is the group */
+	MEMBER_ADDED,
+
+	/** Container removed from a group, detail is the group */
+	MEMBER_REMOVED,
+
+	/** First heartbeat received from a container */
+	HEARTBEAT_UP,
+
+	/** Heartbeat of a container considered dead */
+	HEARTBEAT_DEAD,
+
+	/** Container running but not in a grid */
+	ZOMBIE,
+
+	/** Grid member without a container, detail is the container id if known */
+	GHOST,
+
+	/** Rebalance tick, value is the count of requested containers */
+	REBALANCE
+
+}
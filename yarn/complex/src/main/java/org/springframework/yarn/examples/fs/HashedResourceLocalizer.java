@@ -0,0 +1,268 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.fs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsAction;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.util.StringUtils;
+import org.apache.hadoop.yarn.api.records.LocalResource;
+import org.apache.hadoop.yarn.api.records.LocalResourceType;
+import org.apache.hadoop.yarn.api.records.LocalResourceVisibility;
+import org.apache.hadoop.yarn.util.ConverterUtils;
+import org.apache.hadoop.yarn.util.Records;
+import org.springframework.util.Assert;
+import org.springframework.yarn.fs.ResourceLocalizer;
+
+/**
+ * {@link ResourceLocalizer} addressing resources by their content.
+ * <p>
+ * Every file matching configured patterns is copied once into
+ * <code>cacheDir/&lt;hash&gt;/&lt;name&gt;</code> and localized from
+ * there. Path and timestamp of a cached file only change when its
+ * content changes, which lets NodeManagers reuse already localized
+ * files across containers and across application restarts when
+ * visibility is <code>PUBLIC</code>. Files with <code>PUBLIC</code>
+ * visibility are made world readable and every ancestor directory up
+ * to the root world executable, also for files already in the cache,
+ * because NodeManagers otherwise localize them as private.
+ * <p>
+ * Hash is taken from the file system checksum if it provides one and
+ * is computed from content otherwise.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class HashedResourceLocalizer implements ResourceLocalizer {
+
+	private final static Log log = LogFactory.getLog(HashedResourceLocalizer.class);
+
+	private Configuration configuration;
+
+	/** Patterns of files to localize */
+	private List<String> patterns;
+
+	/** Directory for content addressed copies */
+	private String cacheDir = "/xd/cache";
+
+	private LocalResourceType type = LocalResourceType.FILE;
+
+	private LocalResourceVisibility visibility = LocalResourceVisibility.PUBLIC;
+
+	/** Resolved resources, name <-> resource */
+	private volatile Map<String, LocalResource> resources;
+
+	/** Total size of resolved resources */
+	private volatile long totalSize;
+
+	@Override
+	public Map<String, LocalResource> getResources() {
+		if (resources == null) {
+			synchronized (this) {
+				if (resources == null) {
+					try {
+						resources = Collections.unmodifiableMap(resolveResources());
+					} catch (IOException e) {
+						throw new IllegalStateException("Unable to resolve resources", e);
+					}
+				}
+			}
+		}
+		return resources;
+	}
+
+	/**
+	 * Gets the total size of resources, which is the count of
+	 * bytes localized for a launch on a node without cached copies.
+	 *
+	 * @return the total size in bytes
+	 */
+	public long getTotalSize() {
+		getResources();
+		return totalSize;
+	}
+
+	/**
+	 * Sets the hadoop configuration.
+	 *
+	 * @param configuration the new configuration
+	 */
+	public void setConfiguration(Configuration configuration) {
+		this.configuration = configuration;
+	}
+
+	/**
+	 * Sets the patterns of files to localize.
+	 *
+	 * @param patterns the new patterns
+	 */
+	public void setPatterns(List<String> patterns) {
+		this.patterns = patterns;
+	}
+
+	/**
+	 * Sets the directory for content addressed copies.
+	 *
+	 * @param cacheDir the new cache dir
+	 */
+	public void setCacheDir(String cacheDir) {
+		this.cacheDir = cacheDir;
+	}
+
+	/**
+	 * Sets the resource type.
+	 *
+	 * @param type the new type
+	 */
+	public void setType(LocalResourceType type) {
+		this.type = type;
+	}
+
+	/**
+	 * Sets the resource visibility.
+	 *
+	 * @param visibility the new visibility
+	 */
+	public void setVisibility(LocalResourceVisibility visibility) {
+		this.visibility = visibility;
+	}
+
+	private Map<String, LocalResource> resolveResources() throws IOException {
+		Assert.notNull(configuration, "configuration must be set");
+		Assert.notEmpty(patterns, "patterns must be set");
+		FileSystem fs = FileSystem.get(configuration);
+		Map<String, LocalResource> ret = new HashMap<String, LocalResource>();
+		long size = 0;
+		int copied = 0;
+		Set<Path> checked = new HashSet<Path>();
+		for (String pattern : patterns) {
+			FileStatus[] statuses = fs.globStatus(new Path(pattern));
+			if (statuses == null) {
+				continue;
+			}
+			for (FileStatus status : statuses) {
+				if (status.isDirectory()) {
+					continue;
+				}
+				Path source = status.getPath();
+				Path target = new Path(new Path(cacheDir, hash(fs, source)), source.getName());
+				if (!fs.exists(target)) {
+					copy(fs, source, target);
+					copied++;
+				}
+				if (visibility == LocalResourceVisibility.PUBLIC) {
+					makePublic(fs, target, checked);
+				}
+				FileStatus targetStatus = fs.getFileStatus(target);
+				LocalResource resource = Records.newRecord(LocalResource.class);
+				resource.setResource(ConverterUtils.getYarnUrlFromPath(fs.makeQualified(target)));
+				resource.setSize(targetStatus.getLen());
+				resource.setTimestamp(targetStatus.getModificationTime());
+				resource.setType(type);
+				resource.setVisibility(visibility);
+				ret.put(source.getName(), resource);
+				size += targetStatus.getLen();
+			}
+		}
+		totalSize = size;
+		log.info("Localizing " + ret.size() + " resources of " + size + " bytes with visibility " + visibility
+				+ ", " + copied + " new copies in " + cacheDir);
+		return ret;
+	}
+
+	private void copy(FileSystem fs, Path source, Path target) throws IOException {
+		// copy aside and rename so that partial copy is never visible
+		Path tmp = new Path(target.getParent(), "." + target.getName() + "." + System.nanoTime());
+		try {
+			FileUtil.copy(fs, source, fs, tmp, false, configuration);
+			if (!fs.rename(tmp, target) && !fs.exists(target)) {
+				throw new IOException("Unable to copy " + source + " to " + target);
+			}
+		} finally {
+			if (fs.exists(tmp)) {
+				fs.delete(tmp, false);
+			}
+		}
+	}
+
+	private static void makePublic(FileSystem fs, Path target, Set<Path> checked) throws IOException {
+		// file needs to be world readable and every ancestor world
+		// executable, NodeManager checks these for public resources
+		grant(fs, target, FsAction.READ);
+		for (Path dir = target.getParent(); dir != null && checked.add(dir); dir = dir.getParent()) {
+			grant(fs, dir, FsAction.EXECUTE);
+		}
+	}
+
+	private static void grant(FileSystem fs, Path path, FsAction action) throws IOException {
+		FsPermission permission = fs.getFileStatus(path).getPermission();
+		if (permission.getOtherAction().implies(action) && permission.getGroupAction().implies(action)) {
+			return;
+		}
+		FsPermission granted = new FsPermission(permission.getUserAction(),
+				permission.getGroupAction().or(action), permission.getOtherAction().or(action),
+				permission.getStickyBit());
+		try {
+			fs.setPermission(path, granted);
+		} catch (IOException e) {
+			log.warn("Unable to set " + granted + " on " + path
+					+ ", public resources under it will be localized as private", e);
+		}
+	}
+
+	private static String hash(FileSystem fs, Path path) throws IOException {
+		FileChecksum checksum = fs.getFileChecksum(path);
+		if (checksum != null) {
+			return StringUtils.byteToHexString(checksum.getBytes());
+		}
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		InputStream in = fs.open(path);
+		try {
+			byte[] buf = new byte[65536];
+			int len;
+			while ((len = in.read(buf)) > 0) {
+				digest.update(buf, 0, len);
+			}
+		} finally {
+			in.close();
+		}
+		return StringUtils.byteToHexString(digest.digest());
+	}
+
+}
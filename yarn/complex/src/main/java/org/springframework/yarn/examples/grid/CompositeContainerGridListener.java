@@ -15,6 +15,7 @@
  */
 package org.springframework.yarn.examples.grid;
 
+import java.util.Collection;
 import java.util.Iterator;
 
 import org.springframework.yarn.listener.AbstractCompositeListener;
@@ -27,7 +28,7 @@ import org.springframework.yarn.listener.AbstractCompositeListener;
  * @param <CN> the type of {@link ContainerNode}
  */
 public class CompositeContainerGridListener<CN extends ContainerNode> extends
-		AbstractCompositeListener<ContainerGridListener<CN>> implements ContainerGridListener<CN> {
+		AbstractCompositeListener<ContainerGridListener<CN>> implements ContainerGridBatchListener<CN> {
 
 	@Override
 	public void containerNodeAdded(CN node) {
@@ -43,4 +44,29 @@ public class CompositeContainerGridListener<CN extends ContainerNode> extends
 		}
 	}
 
+	/**
+	 * Dispatches a batch of events. Listeners implementing
+	 * {@link ContainerGridBatchListener} get the whole batch, other
+	 * listeners are notified once per node.
+	 *
+	 * @param added the added nodes
+	 * @param removed the removed nodes
+	 */
+	@Override
+	public void containerNodesChanged(Collection<CN> added, Collection<CN> removed) {
+		for (Iterator<ContainerGridListener<CN>> iterator = getListeners().reverse(); iterator.hasNext();) {
+			ContainerGridListener<CN> listener = iterator.next();
+			if (listener instanceof ContainerGridBatchListener) {
+				((ContainerGridBatchListener<CN>)listener).containerNodesChanged(added, removed);
+			} else {
+				for (CN node : removed) {
+					listener.containerNodeRemoved(node);
+				}
+				for (CN node : added) {
+					listener.containerNodeAdded(node);
+				}
+			}
+		}
+	}
+
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid;
+
+import java.util.Collection;
+
+/**
+ * Extension of {@link ContainerGridListener} which is able to
+ * receive Container Node events as batches. Grid implementations
+ * which collect events before dispatching them will call
+ * {@link #containerNodesChanged(Collection, Collection)} instead
+ * of calling single node methods for every node.
+ *
+ * @author Janne Valkealahti
+ *
+ * @param <CN> the type of {@link ContainerNode}
+ */
+public interface ContainerGridBatchListener<CN extends ContainerNode> extends ContainerGridListener<CN> {
+
+	/**
+	 * Invoked when a batch of container nodes is added or removed.
+	 * Same node never exists in both collections.
+	 *
+	 * @param added the added nodes, never <code>NULL</code>
+	 * @param removed the removed nodes, never <code>NULL</code>
+	 */
+	void containerNodesChanged(Collection<CN> added, Collection<CN> removed);
+
+}
@@ -15,28 +15,65 @@
  */
 package org.springframework.yarn.examples.grid.hazelcast;
 
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.yarn.examples.grid.CompositeContainerGridListener;
 import org.springframework.yarn.examples.grid.ContainerGrid;
+import org.springframework.yarn.examples.grid.ContainerGridBatchListener;
 import org.springframework.yarn.examples.grid.ContainerGridListener;
 import org.springframework.yarn.examples.grid.ContainerNode;
 
 import com.hazelcast.config.Config;
 import com.hazelcast.core.Cluster;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.EntryListener;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.ITopic;
 import com.hazelcast.core.MembershipEvent;
 import com.hazelcast.core.MembershipListener;
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
 
 /**
  * Container grid implementation on top of Hazelcast.
+ * <p>
+ * Hazelcast membership events are not dispatched one by one. Events
+ * are queued and collected over a short batch window after which
+ * the whole batch is applied to the known nodes and dispatched to
+ * listeners at once. {@link ContainerGridBatchListener}s receive the
+ * batch as is and plain {@link ContainerGridListener}s are notified per
+ * node. Node added and removed within the same window cancel each other.
+ * Dispatching of events is serialized.
+ * <p>
+ * Member joining the grid from a Yarn container should set its
+ * container id via {@link #setLocalContainerId(String)} which is then
+ * published into a distributed identity map, either when the grid is
+ * started or later once the container is ready. This allows other parties
+ * to join grid member uuids to Yarn container ids using
+ * {@link #getContainerId(String)}. Identities are mirrored into a local
+ * map by an entry listener, so lookups never leave this member. Identity
+ * of a departed member is removed when its removal is flushed.
  *
  * @author Janne Valkealahti
  *
@@ -45,19 +82,52 @@ public class HazelcastContainerGrid implements ContainerGrid<ContainerNode>, Ini
 
 	private final static Log log = LogFactory.getLog(HazelcastContainerGrid.class);
 
+	/** Default window in millis to collect membership events */
+	public final static long DEFAULT_BATCH_WINDOW = 200;
+
+	/** Name of the distributed member uuid <-> container id map */
+	public final static String IDENTITIES_MAP = "syarn.grid.identities";
+
+	/** Name of the distributed topic used to evict members */
+	public final static String EVICTIONS_TOPIC = "syarn.grid.evictions";
+
 	private Config config = new Config();
 	private HazelcastInstance hazelcastInstance;
 	private final ReentrantLock lifecycleLock = new ReentrantLock();
 	private volatile boolean autoStartup = true;
 	private volatile int phase = 0;
 	private volatile boolean running;
-	private HashMap<String, ContainerNode> nodes = new HashMap<String, ContainerNode>();
+	private final Map<String, ContainerNode> nodes = new ConcurrentHashMap<String, ContainerNode>();
 	private CompositeContainerGridListener<ContainerNode> containerGridListener =
 			new CompositeContainerGridListener<ContainerNode>();
 
+	/** Window in millis to collect membership events */
+	private volatile long batchWindow = DEFAULT_BATCH_WINDOW;
+
+	/** Queued membership events waiting for dispatch */
+	private final ConcurrentLinkedQueue<MembershipChange> pendingChanges = new ConcurrentLinkedQueue<MembershipChange>();
+
+	/** Flag telling if flush is already scheduled */
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+	/** Lock serializing event dispatch */
+	private final ReentrantLock dispatchLock = new ReentrantLock();
+
+	/** Executor running the delayed flushes */
+	private ScheduledExecutorService flushExecutor;
+
+	/** Yarn container id of this member if any */
+	private String localContainerId;
+
+	/** Distributed structure for member uuid <-> container id */
+	private IMap<String, String> identities;
+
+	/** Local copy of identities, member uuid <-> container id */
+	private final Map<String, String> localIdentities = new ConcurrentHashMap<String, String>();
+
 	@Override
 	public Collection<ContainerNode> getContainerNodes() {
-		return nodes.values();
+		return Collections.unmodifiableList(new ArrayList<ContainerNode>(nodes.values()));
 	}
 
 	@Override
@@ -67,14 +137,27 @@ public class HazelcastContainerGrid implements ContainerGrid<ContainerNode>, Ini
 
 	@Override
 	public void addContainerNode(ContainerNode node) {
-		nodes.put(node.getId(), node);
-		containerGridListener.containerNodeAdded(node);
+		dispatchLock.lock();
+		try {
+			if (nodes.put(node.getId(), node) == null) {
+				containerGridListener.containerNodeAdded(node);
+			}
+		} finally {
+			dispatchLock.unlock();
+		}
 	}
 
 	@Override
 	public void removeContainerNode(String id) {
-		ContainerNode node = nodes.remove(id);
-		containerGridListener.containerNodeRemoved(node);
+		dispatchLock.lock();
+		try {
+			ContainerNode node = nodes.remove(id);
+			if (node != null) {
+				containerGridListener.containerNodeRemoved(node);
+			}
+		} finally {
+			dispatchLock.unlock();
+		}
 	}
 
 	@Override
@@ -110,6 +193,11 @@ public class HazelcastContainerGrid implements ContainerGrid<ContainerNode>, Ini
 		try {
 			if (running) {
 				hazelcastInstance.getLifecycleService().shutdown();
+				identities = null;
+				localIdentities.clear();
+				// dispatch what we got before going down
+				flushExecutor.shutdownNow();
+				flush();
 				running = false;
 				if (log.isInfoEnabled()) {
 					log.info("stopped " + this);
@@ -172,23 +260,229 @@ public class HazelcastContainerGrid implements ContainerGrid<ContainerNode>, Ini
 		this.config = config;
 	}
 
+	/**
+	 * Sets the window in millis used to collect membership
+	 * events into a batch. Zero dispatches events immediately.
+	 *
+	 * @param batchWindow the new batch window
+	 */
+	public void setBatchWindow(long batchWindow) {
+		this.batchWindow = batchWindow;
+	}
+
+	/**
+	 * Sets the Yarn container id of this grid member. If grid is
+	 * already running the id is published immediately, which allows
+	 * to join the grid before the container is ready.
+	 *
+	 * @param localContainerId the local container id
+	 */
+	public void setLocalContainerId(String localContainerId) {
+		lifecycleLock.lock();
+		try {
+			this.localContainerId = localContainerId;
+			if (running && localContainerId != null) {
+				identities.put(hazelcastInstance.getCluster().getLocalMember().getUuid(), localContainerId);
+			}
+		} finally {
+			lifecycleLock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the Yarn container id published by a grid member.
+	 *
+	 * @param memberId the member uuid
+	 * @return the container id or <code>NULL</code> if not known
+	 */
+	public String getContainerId(String memberId) {
+		return localIdentities.get(memberId);
+	}
+
+	/**
+	 * Evicts a member from the grid. Member is removed from
+	 * the local view and asked to leave the cluster.
+	 *
+	 * @param memberId the member uuid
+	 */
+	public void evictContainerNode(String memberId) {
+		removeContainerNode(memberId);
+		if (isRunning()) {
+			ITopic<String> topic = hazelcastInstance.getTopic(EVICTIONS_TOPIC);
+			topic.publish(memberId);
+			identities.remove(memberId);
+			localIdentities.remove(memberId);
+		}
+	}
+
+	/**
+	 * Applies all queued membership changes and dispatches
+	 * them to listeners as one batch.
+	 */
+	public void flush() {
+		dispatchLock.lock();
+		try {
+			flushScheduled.set(false);
+			// last change per node wins
+			Map<String, MembershipChange> changes = new LinkedHashMap<String, MembershipChange>();
+			MembershipChange change;
+			while ((change = pendingChanges.poll()) != null) {
+				changes.remove(change.id);
+				changes.put(change.id, change);
+			}
+			if (changes.isEmpty()) {
+				return;
+			}
+			List<ContainerNode> added = new ArrayList<ContainerNode>();
+			List<ContainerNode> removed = new ArrayList<ContainerNode>();
+			List<String> departed = new ArrayList<String>();
+			for (MembershipChange c : changes.values()) {
+				if (c.added) {
+					ContainerNode node = new HazelcastContainerNode(c.id);
+					if (nodes.put(c.id, node) == null) {
+						added.add(node);
+					}
+				} else {
+					ContainerNode node = nodes.remove(c.id);
+					if (node != null) {
+						removed.add(node);
+					}
+					departed.add(c.id);
+				}
+			}
+			removeIdentities(departed);
+			if (log.isDebugEnabled()) {
+				log.debug("Dispatching membership batch added=" + added.size() + " removed=" + removed.size());
+			}
+			if (!added.isEmpty() || !removed.isEmpty()) {
+				containerGridListener.containerNodesChanged(added, removed);
+			}
+		} finally {
+			dispatchLock.unlock();
+		}
+	}
+
 	private void init() {
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("hazelcast-grid-");
+		threadFactory.setDaemon(true);
+		flushExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
 		hazelcastInstance = Hazelcast.newHazelcastInstance(config);
+		identities = hazelcastInstance.getMap(IDENTITIES_MAP);
+		// listen before copying existing entries so nothing is missed
+		identities.addEntryListener(new IdentityListener(), true);
+		for (Entry<String, String> entry : identities.entrySet()) {
+			localIdentities.put(entry.getKey(), entry.getValue());
+		}
+		final String localMemberId = hazelcastInstance.getCluster().getLocalMember().getUuid();
+		if (localContainerId != null) {
+			identities.put(localMemberId, localContainerId);
+		}
+		ITopic<String> evictions = hazelcastInstance.getTopic(EVICTIONS_TOPIC);
+		evictions.addMessageListener(new MessageListener<String>() {
+			@Override
+			public void onMessage(Message<String> message) {
+				if (localMemberId.equals(message.getMessageObject())) {
+					log.warn("This member " + localMemberId + " evicted from grid, leaving");
+					// don't shutdown from hazelcast's event thread
+					flushExecutor.execute(new Runnable() {
+						@Override
+						public void run() {
+							stop();
+						}
+					});
+				}
+			}
+		});
 		Cluster cluster = hazelcastInstance.getCluster();
 		cluster.addMembershipListener(new MembershipListener(){
-		    public void memberAdded(MembershipEvent membersipEvent) {
-		        log.info("MemberAdded " + membersipEvent);
-		        addContainerNode(new HazelcastContainerNode(membersipEvent.getMember().getUuid()));
-		    }
-
-		    public void memberRemoved(MembershipEvent membersipEvent) {
-		    	log.info("MemberRemoved " + membersipEvent);
-		    	removeContainerNode(membersipEvent.getMember().getUuid());
-		    }
+			public void memberAdded(MembershipEvent membersipEvent) {
+				if (log.isDebugEnabled()) {
+					log.debug("MemberAdded " + membersipEvent);
+				}
+				enqueue(membersipEvent.getMember().getUuid(), true);
+			}
+
+			public void memberRemoved(MembershipEvent membersipEvent) {
+				if (log.isDebugEnabled()) {
+					log.debug("MemberRemoved " + membersipEvent);
+				}
+				enqueue(membersipEvent.getMember().getUuid(), false);
+			}
 		});
 	}
 
-	public static class HazelcastContainerNode implements ContainerNode {
+	/**
+	 * Queues a membership change to be dispatched with
+	 * a next batch.
+	 *
+	 * @param memberId the member uuid
+	 * @param added true if member was added, false if removed
+	 */
+	void enqueue(String memberId, boolean added) {
+		pendingChanges.add(new MembershipChange(memberId, added));
+		long window = batchWindow;
+		if (window <= 0) {
+			flush();
+		} else if (flushScheduled.compareAndSet(false, true)) {
+			try {
+				flushExecutor.schedule(new Runnable() {
+					@Override
+					public void run() {
+						flush();
+					}
+				}, window, TimeUnit.MILLISECONDS);
+			} catch (RuntimeException e) {
+				// executor already down, stop() will flush
+				flushScheduled.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Removes identities of departed members. Departed member can't
+	 * remove its own identity, every member drops it from a local copy
+	 * and the oldest member from the distributed map.
+	 *
+	 * @param memberIds the member uuids
+	 */
+	private void removeIdentities(List<String> memberIds) {
+		if (memberIds.isEmpty()) {
+			return;
+		}
+		for (String memberId : memberIds) {
+			localIdentities.remove(memberId);
+		}
+		IMap<String, String> map = identities;
+		if (map == null) {
+			// stopped
+			return;
+		}
+		try {
+			if (!hazelcastInstance.getCluster().getMembers().iterator().next().localMember()) {
+				return;
+			}
+			for (String memberId : memberIds) {
+				// may be called from hazelcast's event thread, don't block it
+				map.removeAsync(memberId);
+			}
+		} catch (RuntimeException e) {
+			log.warn("Unable to remove identities of departed members " + memberIds, e);
+		}
+	}
+
+	/**
+	 * Queued membership change.
+	 */
+	private static class MembershipChange {
+		final String id;
+		final boolean added;
+		MembershipChange(String id, boolean added) {
+			this.id = id;
+			this.added = added;
+		}
+	}
+
+	public static class HazelcastContainerNode implements ContainerNode, Serializable {
 
 		private final String id;
 
@@ -201,6 +495,38 @@ public class HazelcastContainerGrid implements ContainerGrid<ContainerNode>, Ini
 			return id;
 		}
 
+		@Override
+		public String toString() {
+			return "HazelcastContainerNode [id=" + id + "]";
+		}
+
+	}
+
+	/**
+	 * Listener mirroring the identity map into a local map.
+	 */
+	private class IdentityListener implements EntryListener<String, String> {
+
+		@Override
+		public void entryAdded(EntryEvent<String, String> event) {
+			localIdentities.put(event.getKey(), event.getValue());
+		}
+
+		@Override
+		public void entryUpdated(EntryEvent<String, String> event) {
+			localIdentities.put(event.getKey(), event.getValue());
+		}
+
+		@Override
+		public void entryRemoved(EntryEvent<String, String> event) {
+			localIdentities.remove(event.getKey());
+		}
+
+		@Override
+		public void entryEvicted(EntryEvent<String, String> event) {
+			localIdentities.remove(event.getKey());
+		}
+
 	}
 
 }
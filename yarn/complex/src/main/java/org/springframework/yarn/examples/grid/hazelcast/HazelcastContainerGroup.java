@@ -0,0 +1,186 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.hazelcast;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import org.springframework.yarn.examples.grid.ContainerGroup;
+
+/**
+ * Container Group stored in a Hazelcast distributed map. Instances
+ * are value objects which are copied in and out of the map, thus
+ * modifying an instance doesn't change the shared state until it
+ * is written back to the map.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class HazelcastContainerGroup implements ContainerGroup, Serializable {
+
+	/** Group identifier, usually just name */
+	private final String id;
+
+	/** Current projected size of this group */
+	private int projectedSize;
+
+	/** Current member count of this group */
+	private int size;
+
+	/** Times of pending asks, oldest first */
+	private final LinkedList<Long> asks = new LinkedList<Long>();
+
+	/**
+	 * Instantiates a new hazelcast container group.
+	 *
+	 * @param id Group identifier
+	 */
+	public HazelcastContainerGroup(String id) {
+		this(id, 0);
+	}
+
+	/**
+	 * Instantiates a new hazelcast container group.
+	 *
+	 * @param id the id
+	 * @param projectedSize the projected size
+	 */
+	public HazelcastContainerGroup(String id, int projectedSize) {
+		this.id = id;
+		this.projectedSize = projectedSize;
+	}
+
+	@Override
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * Gets the projected size.
+	 *
+	 * @return the projected size
+	 */
+	public int getProjectedSize() {
+		return projectedSize;
+	}
+
+	/**
+	 * Sets the projected size.
+	 *
+	 * @param projectedSize the new projected size
+	 */
+	public void setProjectedSize(int projectedSize) {
+		this.projectedSize = projectedSize;
+	}
+
+	/**
+	 * Gets the size.
+	 *
+	 * @return the size
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Sets the size.
+	 *
+	 * @param size the new size
+	 */
+	public void setSize(int size) {
+		this.size = size;
+	}
+
+	/**
+	 * Gets the count of pending asks.
+	 *
+	 * @return the count of pending asks
+	 */
+	public int getPending() {
+		return asks.size();
+	}
+
+	/**
+	 * Records asks sent for new members.
+	 *
+	 * @param count the count of asks
+	 * @param time the time of asks
+	 */
+	public void asked(int count, long time) {
+		for (int i = 0; i < count; i++) {
+			asks.addLast(time);
+		}
+	}
+
+	/**
+	 * Records a joined member consuming the oldest pending ask.
+	 */
+	public void granted() {
+		if (!asks.isEmpty()) {
+			asks.removeFirst();
+		}
+	}
+
+	/**
+	 * Cancels newest pending asks.
+	 *
+	 * @param count the count of asks
+	 */
+	public void cancel(int count) {
+		for (int i = 0; i < count && !asks.isEmpty(); i++) {
+			asks.removeLast();
+		}
+	}
+
+	/**
+	 * Expires pending asks older than a given time.
+	 *
+	 * @param limit the time before which asks are expired
+	 * @return the count of expired asks
+	 */
+	public int expire(long limit) {
+		int count = 0;
+		for (Iterator<Long> iterator = asks.iterator(); iterator.hasNext();) {
+			if (iterator.next() >= limit) {
+				break;
+			}
+			iterator.remove();
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Checks if is full.
+	 *
+	 * @return true, if is full
+	 */
+	public boolean isFull() {
+		if (projectedSize < 0) {
+			return false;
+		} else {
+			return !(size < projectedSize);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "HazelcastContainerGroup [id=" + id + ", projectedSize=" + projectedSize + ", size=" + size
+				+ ", pending=" + asks.size() + "]";
+	}
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.hazelcast;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.yarn.examples.grid.GroupsRebalanceData;
+
+/**
+ * {@link GroupsRebalanceData} for {@link HazelcastManagedContainerGroups}
+ * containing a count of new members needed per group and a list
+ * of member identifiers which were removed from the groups.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class HazelcastGroupsRebalanceData implements GroupsRebalanceData {
+
+	/** Mapping group id <-> count of needed members */
+	private final Map<String, Integer> allocateCounts = new HashMap<String, Integer>();
+
+	/** Members removed from groups */
+	private final List<String> releasedMembers = new ArrayList<String>();
+
+	/**
+	 * Gets the counts of needed new members keyed by group id.
+	 *
+	 * @return the allocate counts
+	 */
+	public Map<String, Integer> getAllocateCounts() {
+		return allocateCounts;
+	}
+
+	/**
+	 * Gets the identifiers of members which were
+	 * removed from groups and should be released.
+	 *
+	 * @return the released members
+	 */
+	public List<String> getReleasedMembers() {
+		return releasedMembers;
+	}
+
+	/**
+	 * Adds a count of needed members for a group.
+	 *
+	 * @param group the group id
+	 * @param count the count
+	 */
+	public void addAllocateCount(String group, int count) {
+		allocateCounts.put(group, count);
+	}
+
+	/**
+	 * Adds a released member.
+	 *
+	 * @param id the member id
+	 */
+	public void addReleasedMember(String id) {
+		releasedMembers.add(id);
+	}
+
+	@Override
+	public String toString() {
+		return "HazelcastGroupsRebalanceData [allocateCounts=" + allocateCounts + ", releasedMembers="
+				+ releasedMembers + "]";
+	}
+
+}
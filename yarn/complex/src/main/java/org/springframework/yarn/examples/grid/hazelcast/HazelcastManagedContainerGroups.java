@@ -0,0 +1,763 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.hazelcast;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.util.Assert;
+import org.springframework.yarn.examples.grid.CompositeContainerGridListener;
+import org.springframework.yarn.examples.grid.CompositeContainerGroupsListener;
+import org.springframework.yarn.examples.grid.ContainerGridListener;
+import org.springframework.yarn.examples.grid.ContainerGroupsListener;
+import org.springframework.yarn.examples.grid.ContainerNode;
+import org.springframework.yarn.examples.grid.ManagedContainerGroups;
+import org.springframework.yarn.examples.grid.RebalancePolicy;
+import org.springframework.yarn.examples.grid.hazelcast.HazelcastContainerGrid.HazelcastContainerNode;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.MapConfig;
+import com.hazelcast.config.NearCacheConfig;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.EntryListener;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+
+/**
+ * Implementation of {@link ManagedContainerGroups} keeping its group
+ * and member state in Hazelcast distributed maps. Every instance connected
+ * to a same cluster shares one consistent view of groups and members, thus
+ * it is possible to have multiple Application Master replicas or external
+ * controllers working with the same groups.
+ * <p>
+ * Writes are done against the distributed maps using cluster wide locks
+ * on group keys. Reads are served from a local view which is kept up to
+ * date by map entry listeners and backed by near caches on both maps.
+ * Map entry events are translated into {@link ContainerGroupsListener}
+ * and {@link ContainerGridListener} events, meaning listeners are notified
+ * regardless of which instance made the change.
+ * <p>
+ * Asks for new members are kept pending in a group until a member
+ * joins it, thus repeated rebalance calls only ask what is not already
+ * asked. Asks not answered within a timeout are expired and asked again.
+ * If {@link HazelcastContainerGrid} is set, its members are added to
+ * and removed from the groups while this class is running.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class HazelcastManagedContainerGroups implements
+		ManagedContainerGroups<HazelcastContainerNode, HazelcastContainerGroup, HazelcastGroupsRebalanceData>,
+		InitializingBean, SmartLifecycle {
+
+	private final static Log log = LogFactory.getLog(HazelcastManagedContainerGroups.class);
+
+	/** Reservation for default group name */
+	public final static String DEFAULT_GROUP = "default";
+
+	/** Reservation for default fallback group name */
+	public final static String DEFAULT_FALLBACK_GROUP = "fallback-default";
+
+	/** Default name of the distributed groups map */
+	public final static String DEFAULT_GROUPS_MAP = "syarn.cg.groups";
+
+	/** Default name of the distributed members map */
+	public final static String DEFAULT_MEMBERS_MAP = "syarn.cg.members";
+
+	private Config config = new Config();
+	private HazelcastInstance hazelcastInstance;
+	private boolean ownsInstance;
+	private final ReentrantLock lifecycleLock = new ReentrantLock();
+	private volatile boolean autoStartup = true;
+	private volatile int phase = 0;
+	private volatile boolean running;
+
+	private String groupsMapName = DEFAULT_GROUPS_MAP;
+	private String membersMapName = DEFAULT_MEMBERS_MAP;
+
+	/** Distributed structure for group id <-> group */
+	private IMap<String, HazelcastContainerGroup> groupsMap;
+
+	/** Distributed structure for member id <-> group id */
+	private IMap<String, String> membersMap;
+
+	/** Local view of groups */
+	private final Map<String, HazelcastContainerGroup> localGroups =
+			new ConcurrentHashMap<String, HazelcastContainerGroup>();
+
+	/** Local view of member id <-> group id */
+	private final Map<String, String> localMembers = new ConcurrentHashMap<String, String>();
+
+	/** Groups registered before the maps are available */
+	private final Map<String, HazelcastContainerGroup> initialGroups =
+			new ConcurrentHashMap<String, HazelcastContainerGroup>();
+
+	private final GroupsEntryListener groupsEntryListener = new GroupsEntryListener();
+	private final MembersEntryListener membersEntryListener = new MembersEntryListener();
+
+	/** Listener dispatcher for container grid events */
+	private CompositeContainerGridListener<HazelcastContainerNode> containerGridListener =
+			new CompositeContainerGridListener<HazelcastContainerNode>();
+
+	/** Listener dispatcher for container group events */
+	private CompositeContainerGroupsListener<HazelcastContainerGroup, HazelcastContainerNode> containerGroupsListener =
+			new CompositeContainerGroupsListener<HazelcastContainerGroup, HazelcastContainerNode>();
+
+	/** Current rebalance policy */
+	private RebalancePolicy rebalancePolicy = RebalancePolicy.NONE;
+
+	/** Time in millis after which pending ask is asked again */
+	private long askTimeout = 60000;
+
+	/** Grid whose members are added to groups if exists */
+	private HazelcastContainerGrid grid;
+
+	/**
+	 * Instantiates a new hazelcast managed container groups.
+	 */
+	public HazelcastManagedContainerGroups() {
+		this(true);
+	}
+
+	/**
+	 * Instantiates a new hazelcast managed container groups.
+	 *
+	 * @param registerDefaultGroup the register default group
+	 */
+	public HazelcastManagedContainerGroups(boolean registerDefaultGroup) {
+		if (registerDefaultGroup) {
+			initialGroups.put(DEFAULT_GROUP, new HazelcastContainerGroup(DEFAULT_GROUP));
+		}
+		initialGroups.put(DEFAULT_FALLBACK_GROUP, new HazelcastContainerGroup(DEFAULT_FALLBACK_GROUP, -1));
+	}
+
+	@Override
+	public void addGroup(HazelcastContainerGroup group) {
+		Assert.notNull(group, "Group must not be null");
+		Assert.notNull(group.getId(), "Group id must not be null");
+		assertRunning();
+		HazelcastContainerGroup existing = groupsMap.putIfAbsent(group.getId(), group);
+		if (existing != null) {
+			if (log.isDebugEnabled()) {
+				log.debug("Group " + group.getId() + " already exists, keeping " + existing);
+			}
+			group = existing;
+		}
+		applyGroup(group);
+	}
+
+	@Override
+	public void removeGroup(String id) {
+		assertRunning();
+		groupsMap.remove(id);
+		applyGroupRemoved(id);
+	}
+
+	@Override
+	public HazelcastContainerGroup getGroup(String id) {
+		return localGroups.get(id);
+	}
+
+	@Override
+	public Collection<HazelcastContainerGroup> getGroups() {
+		return Collections.unmodifiableCollection(localGroups.values());
+	}
+
+	@Override
+	public HazelcastContainerGroup getGroupByMember(String id) {
+		String groupId = localMembers.get(id);
+		return groupId != null ? localGroups.get(groupId) : null;
+	}
+
+	@Override
+	public Collection<HazelcastContainerNode> getContainerNodes() {
+		ArrayList<HazelcastContainerNode> ret = new ArrayList<HazelcastContainerNode>();
+		for (String id : localMembers.keySet()) {
+			ret.add(new HazelcastContainerNode(id));
+		}
+		return ret;
+	}
+
+	@Override
+	public HazelcastContainerNode getContainerNode(String id) {
+		return localMembers.containsKey(id) ? new HazelcastContainerNode(id) : null;
+	}
+
+	@Override
+	public void addContainerNode(HazelcastContainerNode node) {
+		Assert.notNull(node, "Node must not be null");
+		assertRunning();
+		String id = node.getId();
+		if (membersMap.containsKey(id)) {
+			if (log.isDebugEnabled()) {
+				log.debug("Node " + id + " already a member of group " + membersMap.get(id));
+			}
+			return;
+		}
+
+		String joined = null;
+		for (String groupId : getSortedGroupIds()) {
+			if (!DEFAULT_FALLBACK_GROUP.equals(groupId) && joinGroup(groupId, id)) {
+				joined = groupId;
+				break;
+			}
+		}
+		if (joined == null) {
+			if (log.isDebugEnabled()) {
+				log.debug("No free groups for node " + id + " adding to fallback group");
+			}
+			if (joinGroup(DEFAULT_FALLBACK_GROUP, id)) {
+				joined = DEFAULT_FALLBACK_GROUP;
+			}
+		}
+		if (joined != null) {
+			applyMemberAdded(id, joined);
+		}
+	}
+
+	@Override
+	public void removeContainerNode(String id) {
+		assertRunning();
+		String groupId = membersMap.remove(id);
+		if (groupId != null) {
+			adjustGroupSize(groupId, -1);
+		}
+		applyMemberRemoved(id);
+	}
+
+	@Override
+	public void addContainerGridListener(ContainerGridListener<HazelcastContainerNode> listener) {
+		containerGridListener.register(listener);
+	}
+
+	@Override
+	public void addContainerGroupsListener(
+			ContainerGroupsListener<HazelcastContainerGroup, HazelcastContainerNode> listener) {
+		containerGroupsListener.register(listener);
+	}
+
+	@Override
+	public boolean setProjectedGroupSize(String id, int size) {
+		assertRunning();
+		HazelcastContainerGroup group = null;
+		groupsMap.lock(id);
+		try {
+			group = groupsMap.get(id);
+			if (group == null) {
+				group = new HazelcastContainerGroup(id);
+				if (log.isDebugEnabled()) {
+					log.debug("Creating group: " + id);
+				}
+			}
+			if (log.isDebugEnabled()) {
+				log.debug("Setting projected size group=" + id + " oldsize=" + group.getProjectedSize() + " newsize="
+						+ size);
+			}
+			group.setProjectedSize(size);
+			groupsMap.put(id, group);
+		} finally {
+			groupsMap.unlock(id);
+		}
+		applyGroup(group);
+		return true;
+	}
+
+	@Override
+	public void setRebalancePolicy(RebalancePolicy policy) {
+		// not yet supported
+		this.rebalancePolicy = policy;
+	}
+
+	@Override
+	public HazelcastGroupsRebalanceData getGroupsRebalanceData() {
+		assertRunning();
+		HazelcastGroupsRebalanceData data = new HazelcastGroupsRebalanceData();
+		for (String groupId : getSortedGroupIds()) {
+			List<String> removed = new ArrayList<String>();
+			HazelcastContainerGroup group = null;
+			groupsMap.lock(groupId);
+			try {
+				group = groupsMap.get(groupId);
+				if (group == null || group.getProjectedSize() < 0) {
+					continue;
+				}
+				long now = now();
+				boolean changed = group.expire(now - askTimeout) > 0;
+				int pending = group.getPending();
+				int needed = group.getProjectedSize() - group.getSize() - pending;
+				if (needed > 0) {
+					group.asked(needed, now);
+					data.addAllocateCount(groupId, needed);
+					changed = true;
+				} else if (needed < 0 && pending > 0) {
+					group.cancel(Math.min(pending, -needed));
+					changed = true;
+				}
+				int surplus = group.getSize() - group.getProjectedSize();
+				for (String memberId : findLocalMembers(groupId, Math.max(0, surplus))) {
+					if (membersMap.remove(memberId, groupId)) {
+						group.setSize(group.getSize() - 1);
+						removed.add(memberId);
+						changed = true;
+					}
+				}
+				if (changed) {
+					groupsMap.put(groupId, group);
+				}
+			} finally {
+				groupsMap.unlock(groupId);
+			}
+			applyGroup(group);
+			for (String memberId : removed) {
+				data.addReleasedMember(memberId);
+				applyMemberRemoved(memberId);
+			}
+		}
+		return data;
+	}
+
+	@Override
+	public void start() {
+		lifecycleLock.lock();
+		try {
+			if (!running) {
+				init();
+				running = true;
+				if (log.isInfoEnabled()) {
+					log.info("started " + this);
+				}
+			} else {
+				if (log.isDebugEnabled()) {
+					log.debug("already started " + this);
+				}
+			}
+		} finally {
+			lifecycleLock.unlock();
+		}
+	}
+
+	@Override
+	public void stop() {
+		lifecycleLock.lock();
+		try {
+			if (running) {
+				groupsMap.removeEntryListener(groupsEntryListener);
+				membersMap.removeEntryListener(membersEntryListener);
+				if (ownsInstance) {
+					hazelcastInstance.getLifecycleService().shutdown();
+					hazelcastInstance = null;
+				}
+				running = false;
+				if (log.isInfoEnabled()) {
+					log.info("stopped " + this);
+				}
+			} else {
+				if (log.isDebugEnabled()) {
+					log.debug("already stopped " + this);
+				}
+			}
+		} finally {
+			lifecycleLock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		lifecycleLock.lock();
+		try {
+			return running;
+		} finally {
+			lifecycleLock.unlock();
+		}
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.hasText(groupsMapName, "Groups map name must be set");
+		Assert.hasText(membersMapName, "Members map name must be set");
+		if (grid != null) {
+			grid.addContainerGridListener(new ContainerGridListener<ContainerNode>() {
+				@Override
+				public void containerNodeAdded(ContainerNode node) {
+					if (isRunning()) {
+						addContainerNode(new HazelcastContainerNode(node.getId()));
+					}
+				}
+				@Override
+				public void containerNodeRemoved(ContainerNode node) {
+					if (isRunning()) {
+						removeContainerNode(node.getId());
+					}
+				}
+			});
+		}
+	}
+
+	@Override
+	public int getPhase() {
+		return phase;
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return autoStartup;
+	}
+
+	@Override
+	public void stop(Runnable callback) {
+		lifecycleLock.lock();
+		try {
+			stop();
+			callback.run();
+		} finally {
+			lifecycleLock.unlock();
+		}
+	}
+
+	public void setPhase(int phase) {
+		this.phase = phase;
+	}
+
+	public void setAutoStartup(boolean autoStartup) {
+		this.autoStartup = autoStartup;
+	}
+
+	/**
+	 * Sets the Hazelcast config used if instance is created
+	 * by this class. Near caches for groups and members maps
+	 * are added to this config.
+	 *
+	 * @param config the hazelcast config
+	 */
+	public void setHazelcastConfig(Config config) {
+		this.config = config;
+	}
+
+	/**
+	 * Sets the Hazelcast instance. If instance is set it is
+	 * not shutdown when this class is stopped. Instance should be
+	 * created with a config prepared by {@link #configureNearCaches(Config)}
+	 * order to have near caches for the distributed maps.
+	 *
+	 * @param hazelcastInstance the hazelcast instance
+	 */
+	public void setHazelcastInstance(HazelcastInstance hazelcastInstance) {
+		this.hazelcastInstance = hazelcastInstance;
+	}
+
+	/**
+	 * Sets the name of the distributed groups map.
+	 *
+	 * @param groupsMapName the groups map name
+	 */
+	public void setGroupsMapName(String groupsMapName) {
+		this.groupsMapName = groupsMapName;
+	}
+
+	/**
+	 * Sets the name of the distributed members map.
+	 *
+	 * @param membersMapName the members map name
+	 */
+	public void setMembersMapName(String membersMapName) {
+		this.membersMapName = membersMapName;
+	}
+
+	/**
+	 * Sets the time after which a pending ask is expired
+	 * and asked again.
+	 *
+	 * @param askTimeout the new ask timeout in millis
+	 */
+	public void setAskTimeout(long askTimeout) {
+		this.askTimeout = askTimeout;
+	}
+
+	/**
+	 * Sets the grid whose members are added to groups.
+	 *
+	 * @param grid the new grid
+	 */
+	public void setGrid(HazelcastContainerGrid grid) {
+		this.grid = grid;
+	}
+
+	/**
+	 * Sets the group sizes. Sizes are written into distributed
+	 * map when this class is started and will override sizes set
+	 * by other instances.
+	 *
+	 * @param groupSizes the group sizes
+	 */
+	public void setGroupSizes(Map<String, Integer> groupSizes) {
+		for (Entry<String, Integer> entry : groupSizes.entrySet()) {
+			initialGroups.put(entry.getKey(), new HazelcastContainerGroup(entry.getKey(), entry.getValue()));
+		}
+	}
+
+	/**
+	 * Adds near cache configs for groups and members maps
+	 * into a given Hazelcast config.
+	 *
+	 * @param config the hazelcast config
+	 * @return the same config
+	 */
+	public Config configureNearCaches(Config config) {
+		for (String name : new String[] { groupsMapName, membersMapName }) {
+			MapConfig mapConfig = config.getMapConfigs().get(name);
+			if (mapConfig == null) {
+				mapConfig = new MapConfig(name);
+				config.addMapConfig(mapConfig);
+			}
+			if (mapConfig.getNearCacheConfig() == null) {
+				mapConfig.setNearCacheConfig(new NearCacheConfig().setInvalidateOnChange(true));
+			}
+		}
+		return config;
+	}
+
+	/**
+	 * Gets the hazelcast instance used by this class.
+	 *
+	 * @return the hazelcast instance
+	 */
+	public HazelcastInstance getHazelcastInstance() {
+		return hazelcastInstance;
+	}
+
+	private void init() {
+		if (hazelcastInstance == null) {
+			hazelcastInstance = Hazelcast.newHazelcastInstance(configureNearCaches(config));
+			ownsInstance = true;
+		}
+		groupsMap = hazelcastInstance.getMap(groupsMapName);
+		membersMap = hazelcastInstance.getMap(membersMapName);
+		groupsMap.addEntryListener(groupsEntryListener, true);
+		membersMap.addEntryListener(membersEntryListener, true);
+
+		for (HazelcastContainerGroup group : initialGroups.values()) {
+			groupsMap.lock(group.getId());
+			try {
+				HazelcastContainerGroup existing = groupsMap.get(group.getId());
+				if (existing != null) {
+					existing.setProjectedSize(group.getProjectedSize());
+					group = existing;
+				}
+				groupsMap.put(group.getId(), group);
+			} finally {
+				groupsMap.unlock(group.getId());
+			}
+		}
+
+		// initial state, later changes arrive via listeners
+		for (Entry<String, HazelcastContainerGroup> entry : groupsMap.entrySet()) {
+			applyGroup(entry.getValue());
+		}
+		for (Entry<String, String> entry : membersMap.entrySet()) {
+			applyMemberAdded(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Gets the current time. Exists for tests.
+	 *
+	 * @return the current time in millis
+	 */
+	protected long now() {
+		return System.currentTimeMillis();
+	}
+
+	private void assertRunning() {
+		Assert.state(groupsMap != null && membersMap != null, "Managed groups are not started");
+	}
+
+	/**
+	 * Joins member to a group if group is not full. Size is
+	 * reserved before the membership is written and rolled back
+	 * if some other party already added the member.
+	 */
+	private boolean joinGroup(String groupId, String memberId) {
+		groupsMap.lock(groupId);
+		try {
+			HazelcastContainerGroup group = groupsMap.get(groupId);
+			if (group == null || group.isFull()) {
+				return false;
+			}
+			if (membersMap.putIfAbsent(memberId, groupId) != null) {
+				return false;
+			}
+			group.setSize(group.getSize() + 1);
+			group.granted();
+			groupsMap.put(groupId, group);
+			applyGroup(group);
+			return true;
+		} finally {
+			groupsMap.unlock(groupId);
+		}
+	}
+
+	private void adjustGroupSize(String groupId, int delta) {
+		groupsMap.lock(groupId);
+		try {
+			HazelcastContainerGroup group = groupsMap.get(groupId);
+			if (group != null) {
+				group.setSize(Math.max(0, group.getSize() + delta));
+				groupsMap.put(groupId, group);
+				applyGroup(group);
+			}
+		} finally {
+			groupsMap.unlock(groupId);
+		}
+	}
+
+	private List<String> getSortedGroupIds() {
+		List<String> ids = new ArrayList<String>(localGroups.keySet());
+		Collections.sort(ids);
+		return ids;
+	}
+
+	private List<String> findLocalMembers(String groupId, int count) {
+		List<String> ids = new ArrayList<String>();
+		for (Entry<String, String> entry : localMembers.entrySet()) {
+			if (ids.size() >= count) {
+				break;
+			}
+			if (groupId.equals(entry.getValue())) {
+				ids.add(entry.getKey());
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Applies group into a local view. Listeners are notified
+	 * only if group was not known, thus calling this method
+	 * multiple times for same group is safe.
+	 */
+	private void applyGroup(HazelcastContainerGroup group) {
+		if (group == null) {
+			return;
+		}
+		HazelcastContainerGroup old = localGroups.put(group.getId(), group);
+		if (old == null) {
+			containerGroupsListener.groupAdded(group);
+		}
+	}
+
+	private void applyGroupRemoved(String id) {
+		HazelcastContainerGroup old = localGroups.remove(id);
+		if (old != null) {
+			containerGroupsListener.groupRemoved(old);
+		}
+	}
+
+	private void applyMemberAdded(String memberId, String groupId) {
+		String old = localMembers.put(memberId, groupId);
+		if (groupId.equals(old)) {
+			return;
+		}
+		HazelcastContainerNode node = new HazelcastContainerNode(memberId);
+		if (old != null) {
+			containerGroupsListener.groupMemberRemoved(resolveGroup(old), node);
+		} else {
+			containerGridListener.containerNodeAdded(node);
+		}
+		containerGroupsListener.groupMemberAdded(resolveGroup(groupId), node);
+	}
+
+	private void applyMemberRemoved(String memberId) {
+		String old = localMembers.remove(memberId);
+		if (old != null) {
+			HazelcastContainerNode node = new HazelcastContainerNode(memberId);
+			containerGridListener.containerNodeRemoved(node);
+			containerGroupsListener.groupMemberRemoved(resolveGroup(old), node);
+		}
+	}
+
+	private HazelcastContainerGroup resolveGroup(String groupId) {
+		HazelcastContainerGroup group = localGroups.get(groupId);
+		if (group == null) {
+			group = groupsMap.get(groupId);
+		}
+		return group != null ? group : new HazelcastContainerGroup(groupId);
+	}
+
+	/**
+	 * Entry listener mapping distributed group changes into a local view.
+	 */
+	private class GroupsEntryListener implements EntryListener<String, HazelcastContainerGroup> {
+
+		@Override
+		public void entryAdded(EntryEvent<String, HazelcastContainerGroup> event) {
+			applyGroup(event.getValue());
+		}
+
+		@Override
+		public void entryRemoved(EntryEvent<String, HazelcastContainerGroup> event) {
+			applyGroupRemoved(event.getKey());
+		}
+
+		@Override
+		public void entryUpdated(EntryEvent<String, HazelcastContainerGroup> event) {
+			applyGroup(event.getValue());
+		}
+
+		@Override
+		public void entryEvicted(EntryEvent<String, HazelcastContainerGroup> event) {
+			applyGroupRemoved(event.getKey());
+		}
+
+	}
+
+	/**
+	 * Entry listener mapping distributed member changes into a local view.
+	 */
+	private class MembersEntryListener implements EntryListener<String, String> {
+
+		@Override
+		public void entryAdded(EntryEvent<String, String> event) {
+			applyMemberAdded(event.getKey(), event.getValue());
+		}
+
+		@Override
+		public void entryRemoved(EntryEvent<String, String> event) {
+			applyMemberRemoved(event.getKey());
+		}
+
+		@Override
+		public void entryUpdated(EntryEvent<String, String> event) {
+			applyMemberAdded(event.getKey(), event.getValue());
+		}
+
+		@Override
+		public void entryEvicted(EntryEvent<String, String> event) {
+			applyMemberRemoved(event.getKey());
+		}
+
+	}
+
+}
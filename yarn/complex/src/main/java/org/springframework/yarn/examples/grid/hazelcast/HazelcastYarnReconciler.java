@@ -0,0 +1,415 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.hazelcast;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ScheduledFuture;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+import org.springframework.yarn.examples.grid.ContainerGridBatchListener;
+import org.springframework.yarn.examples.grid.ContainerGridListener;
+import org.springframework.yarn.examples.grid.ContainerNode;
+import org.springframework.yarn.examples.grid.yarn.ContainerKeys;
+import org.springframework.yarn.examples.grid.yarn.YarnContainerNode;
+import org.springframework.yarn.examples.grid.yarn.YarnManagedContainerGroups;
+import org.springframework.yarn.support.LifecycleObjectSupport;
+
+/**
+ * Reconciler joining Yarn containers tracked by {@link YarnManagedContainerGroups}
+ * with members of {@link HazelcastContainerGrid}. Yarn container ids are joined
+ * with grid member uuids using identities published by the members.
+ * <p>
+ * State is updated incrementally from listener events of both sides and
+ * only unjoined entries are kept as candidates. Periodic check goes through
+ * candidates only and reports:
+ * <ul>
+ * <li>zombies, Yarn container launched but not in grid after zombie timeout</li>
+ * <li>ghosts, member in grid but no Yarn container after ghost timeout</li>
+ * </ul>
+ * Actions for zombies and ghosts are delegated to {@link ReconcileHandler},
+ * which is also told when a container joins the grid.
+ * Reconciler is disabled by default as it only works if containers
+ * join the grid and publish their identities.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class HazelcastYarnReconciler extends LifecycleObjectSupport {
+
+	private final static Log log = LogFactory.getLog(HazelcastYarnReconciler.class);
+
+	private YarnManagedContainerGroups managedGroups;
+
+	private HazelcastContainerGrid grid;
+
+	private ReconcileHandler reconcileHandler;
+
+	/** Flag telling if reconciling is enabled */
+	private boolean enabled;
+
+	/** Time in millis container may stay out of the grid */
+	private long zombieTimeout = 120000;
+
+	/** Time in millis member may stay in the grid without container */
+	private long ghostTimeout = 30000;
+
+	/** Interval in millis for checking candidates */
+	private long checkInterval = 5000;
+
+	/** Joined container id <-> member uuid */
+	private final Map<String, String> joinedByContainer = new HashMap<String, String>();
+
+	/** Joined member uuid <-> container id */
+	private final Map<String, String> joinedByMember = new HashMap<String, String>();
+
+	/** Zombie candidates, container id <-> time since */
+	private final Map<String, Long> yarnOnly = new HashMap<String, Long>();
+
+	/** Ghost candidates, member uuid <-> time since */
+	private final Map<String, Long> gridOnly = new HashMap<String, Long>();
+
+	/** Container ids joined but not yet dispatched */
+	private final List<String> joined = new ArrayList<String>();
+
+	/** Current running task if any */
+	private volatile ScheduledFuture<?> runningTask;
+
+	@Override
+	protected void onInit() throws Exception {
+		if (!enabled) {
+			return;
+		}
+		Assert.notNull(managedGroups, "managedGroups must be set");
+		Assert.notNull(grid, "grid must be set");
+		managedGroups.addContainerGridListener(new ContainerGridListener<YarnContainerNode>() {
+			@Override
+			public void containerNodeAdded(YarnContainerNode node) {
+				// allocated only, tracked once launched
+			}
+			@Override
+			public void containerNodeRemoved(YarnContainerNode node) {
+				yarnContainerRemoved(node.getId());
+			}
+		});
+		grid.addContainerGridListener(new ContainerGridBatchListener<ContainerNode>() {
+			@Override
+			public void containerNodeAdded(ContainerNode node) {
+				gridMemberAdded(node.getId());
+			}
+			@Override
+			public void containerNodeRemoved(ContainerNode node) {
+				gridMemberRemoved(node.getId());
+			}
+			@Override
+			public void containerNodesChanged(Collection<ContainerNode> added, Collection<ContainerNode> removed) {
+				for (ContainerNode node : removed) {
+					gridMemberRemoved(node.getId());
+				}
+				for (ContainerNode node : added) {
+					gridMemberAdded(node.getId());
+				}
+			}
+		});
+	}
+
+	@Override
+	protected void doStart() {
+		if (!enabled) {
+			return;
+		}
+		runningTask = getTaskScheduler().scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				check();
+			}
+		}, checkInterval);
+	}
+
+	@Override
+	protected void doStop() {
+		if (runningTask != null) {
+			runningTask.cancel(true);
+		}
+		runningTask = null;
+	}
+
+	/**
+	 * Handles Yarn container launched event. Only launched containers
+	 * can join the grid, thus zombie timeout starts from a launch.
+	 * Containers not tracked anymore or kept in a warm pool are ignored.
+	 *
+	 * @param containerId the container id
+	 */
+	public void yarnContainerLaunched(String containerId) {
+		long key = ContainerKeys.toKey(containerId);
+		if (!managedGroups.isTracked(key) || managedGroups.getWarmPool().hasMember(key)) {
+			return;
+		}
+		synchronized (this) {
+			String memberId = findGhostCandidate(containerId);
+			if (memberId != null) {
+				join(containerId, memberId);
+			} else if (!joinedByContainer.containsKey(containerId)) {
+				yarnOnly.put(containerId, now());
+			}
+		}
+		dispatchJoined();
+	}
+
+	/**
+	 * Handles Yarn container removed event.
+	 *
+	 * @param containerId the container id
+	 */
+	public synchronized void yarnContainerRemoved(String containerId) {
+		yarnOnly.remove(containerId);
+		String memberId = joinedByContainer.remove(containerId);
+		if (memberId != null) {
+			joinedByMember.remove(memberId);
+			gridOnly.put(memberId, now());
+		}
+	}
+
+	/**
+	 * Handles grid member added event.
+	 *
+	 * @param memberId the member uuid
+	 */
+	public void gridMemberAdded(String memberId) {
+		synchronized (this) {
+			if (joinedByMember.containsKey(memberId)) {
+				return;
+			}
+			String containerId = grid.getContainerId(memberId);
+			if (containerId != null && yarnOnly.remove(containerId) != null) {
+				join(containerId, memberId);
+			} else {
+				gridOnly.put(memberId, now());
+			}
+		}
+		dispatchJoined();
+	}
+
+	/**
+	 * Handles grid member removed event.
+	 *
+	 * @param memberId the member uuid
+	 */
+	public synchronized void gridMemberRemoved(String memberId) {
+		gridOnly.remove(memberId);
+		String containerId = joinedByMember.remove(memberId);
+		if (containerId != null) {
+			joinedByContainer.remove(containerId);
+			yarnOnly.put(containerId, now());
+		}
+	}
+
+	/**
+	 * Checks the candidates and dispatches zombies
+	 * and ghosts to {@link ReconcileHandler}.
+	 */
+	public void check() {
+		List<String> zombies = new ArrayList<String>();
+		Map<String, String> ghosts = new HashMap<String, String>();
+		long now = now();
+		synchronized (this) {
+			for (Iterator<Entry<String, Long>> iterator = gridOnly.entrySet().iterator(); iterator.hasNext();) {
+				Entry<String, Long> entry = iterator.next();
+				// identity may have been published after member joined
+				String containerId = grid.getContainerId(entry.getKey());
+				if (containerId != null && yarnOnly.remove(containerId) != null) {
+					iterator.remove();
+					join(containerId, entry.getKey());
+				} else if (now - entry.getValue() > ghostTimeout) {
+					iterator.remove();
+					ghosts.put(entry.getKey(), containerId);
+				}
+			}
+			for (Iterator<Entry<String, Long>> iterator = yarnOnly.entrySet().iterator(); iterator.hasNext();) {
+				Entry<String, Long> entry = iterator.next();
+				if (now - entry.getValue() > zombieTimeout) {
+					iterator.remove();
+					zombies.add(entry.getKey());
+				}
+			}
+		}
+
+		dispatchJoined();
+		for (String containerId : zombies) {
+			log.warn("Found zombie container " + containerId);
+			if (reconcileHandler != null) {
+				reconcileHandler.handleZombie(containerId);
+			}
+		}
+		for (Entry<String, String> entry : ghosts.entrySet()) {
+			log.warn("Found ghost member " + entry.getKey() + " containerId=" + entry.getValue());
+			if (reconcileHandler != null) {
+				reconcileHandler.handleGhost(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Gets the Yarn container id joined to a grid member.
+	 *
+	 * @param memberId the member uuid
+	 * @return the container id or <code>NULL</code> if not joined
+	 */
+	public synchronized String getJoinedContainerId(String memberId) {
+		return joinedByMember.get(memberId);
+	}
+
+	/**
+	 * Gets the count of joined containers.
+	 *
+	 * @return the joined count
+	 */
+	public synchronized int getJoinedCount() {
+		return joinedByContainer.size();
+	}
+
+	/**
+	 * Checks if reconciling is enabled.
+	 *
+	 * @return true, if enabled
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Sets if reconciling is enabled. Containers are then
+	 * asked to join the grid and a container not joining
+	 * within zombie timeout is handled as a zombie.
+	 *
+	 * @param enabled the new enabled flag
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Sets the managed groups.
+	 *
+	 * @param managedGroups the new managed groups
+	 */
+	public void setManagedGroups(YarnManagedContainerGroups managedGroups) {
+		this.managedGroups = managedGroups;
+	}
+
+	/**
+	 * Gets the hazelcast grid.
+	 *
+	 * @return the grid
+	 */
+	public HazelcastContainerGrid getGrid() {
+		return grid;
+	}
+
+	/**
+	 * Sets the hazelcast grid.
+	 *
+	 * @param grid the new grid
+	 */
+	public void setGrid(HazelcastContainerGrid grid) {
+		this.grid = grid;
+	}
+
+	/**
+	 * Sets the reconcile handler.
+	 *
+	 * @param reconcileHandler the new reconcile handler
+	 */
+	public void setReconcileHandler(ReconcileHandler reconcileHandler) {
+		this.reconcileHandler = reconcileHandler;
+	}
+
+	/**
+	 * Sets the zombie timeout.
+	 *
+	 * @param zombieTimeout the new zombie timeout in millis
+	 */
+	public void setZombieTimeout(long zombieTimeout) {
+		this.zombieTimeout = zombieTimeout;
+	}
+
+	/**
+	 * Sets the ghost timeout.
+	 *
+	 * @param ghostTimeout the new ghost timeout in millis
+	 */
+	public void setGhostTimeout(long ghostTimeout) {
+		this.ghostTimeout = ghostTimeout;
+	}
+
+	/**
+	 * Sets the check interval.
+	 *
+	 * @param checkInterval the new check interval in millis
+	 */
+	public void setCheckInterval(long checkInterval) {
+		this.checkInterval = checkInterval;
+	}
+
+	private void join(String containerId, String memberId) {
+		gridOnly.remove(memberId);
+		yarnOnly.remove(containerId);
+		joinedByContainer.put(containerId, memberId);
+		joinedByMember.put(memberId, containerId);
+		joined.add(containerId);
+		if (log.isDebugEnabled()) {
+			log.debug("Joined container " + containerId + " to member " + memberId);
+		}
+	}
+
+	private void dispatchJoined() {
+		List<String> containerIds;
+		synchronized (this) {
+			if (joined.isEmpty()) {
+				return;
+			}
+			containerIds = new ArrayList<String>(joined);
+			joined.clear();
+		}
+		if (reconcileHandler != null) {
+			for (String containerId : containerIds) {
+				reconcileHandler.handleJoined(containerId);
+			}
+		}
+	}
+
+	private String findGhostCandidate(String containerId) {
+		for (String memberId : gridOnly.keySet()) {
+			if (containerId.equals(grid.getContainerId(memberId))) {
+				return memberId;
+			}
+		}
+		return null;
+	}
+
+	private static long now() {
+		return System.currentTimeMillis();
+	}
+
+}
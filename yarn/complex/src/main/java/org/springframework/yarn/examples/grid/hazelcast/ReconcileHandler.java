@@ -0,0 +1,53 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.hazelcast;
+
+/**
+ * Handler called by {@link HazelcastYarnReconciler} when Yarn
+ * container joins Hazelcast grid and when container tracking
+ * and grid membership disagree.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public interface ReconcileHandler {
+
+	/**
+	 * Invoked when Yarn container joins the grid, meaning
+	 * container is up and ready to take work.
+	 *
+	 * @param containerId the Yarn container id
+	 */
+	void handleJoined(String containerId);
+
+	/**
+	 * Invoked when Yarn container is running but its member
+	 * never joined or has left the grid.
+	 *
+	 * @param containerId the Yarn container id
+	 */
+	void handleZombie(String containerId);
+
+	/**
+	 * Invoked when grid member exists but there is no
+	 * Yarn container backing it.
+	 *
+	 * @param memberId the grid member uuid
+	 * @param containerId the Yarn container id if known, <code>NULL</code> otherwise
+	 */
+	void handleGhost(String memberId, String containerId);
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.yarn;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.api.records.NodeReport;
+import org.apache.hadoop.yarn.client.YarnClient;
+import org.apache.hadoop.yarn.client.YarnClientImpl;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.yarn.support.LifecycleObjectSupport;
+
+/**
+ * Cached view of cluster nodes. Node reports are fetched from a
+ * resource manager periodically and kept as an immutable snapshot
+ * keyed by host, thus lookups never go remote.
+ * <p>
+ * Hadoop node reports don't carry labels, labels are given
+ * per host with {@link #setLabels(Map)}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class ClusterNodeView extends LifecycleObjectSupport {
+
+	private final static Log log = LogFactory.getLog(ClusterNodeView.class);
+
+	/** Hadoop configuration */
+	private Configuration configuration;
+
+	/** Client used to fetch node reports */
+	private YarnClient yarnClient;
+
+	/** Flag telling if client was created here */
+	private boolean ownClient;
+
+	/** Refresh interval in millis */
+	private long refreshInterval = 30000;
+
+	/** Mapping host <-> labels */
+	private Map<String, List<String>> labels = new HashMap<String, List<String>>();
+
+	/** Current snapshot, host <-> node report */
+	private volatile Map<String, NodeReport> nodes = Collections.emptyMap();
+
+	/** Time of a last successful refresh */
+	private volatile long refreshed;
+
+	private volatile ScheduledFuture<?> refreshTask;
+
+	@Override
+	protected void onInit() throws Exception {
+		if (yarnClient == null && configuration != null && refreshInterval > 0) {
+			yarnClient = new YarnClientImpl();
+			yarnClient.init(configuration);
+			ownClient = true;
+		}
+	}
+
+	@Override
+	protected void doStart() {
+		if (ownClient) {
+			yarnClient.start();
+		}
+		TaskScheduler taskScheduler = getTaskScheduler();
+		if (taskScheduler == null) {
+			refresh();
+			return;
+		}
+		// first fetch is done by a scheduler, not to block
+		// context startup on a resource manager call
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				refresh();
+			}
+		};
+		if (refreshInterval > 0) {
+			refreshTask = taskScheduler.scheduleAtFixedRate(task, refreshInterval);
+		} else if (yarnClient != null) {
+			taskScheduler.schedule(task, new Date());
+		}
+	}
+
+	@Override
+	protected void doStop() {
+		if (refreshTask != null) {
+			refreshTask.cancel(false);
+			refreshTask = null;
+		}
+		if (ownClient) {
+			yarnClient.stop();
+		}
+	}
+
+	/**
+	 * Refreshes a snapshot from a resource manager. Old snapshot
+	 * is kept if fetching fails.
+	 */
+	public void refresh() {
+		if (yarnClient == null) {
+			return;
+		}
+		try {
+			setNodeReports(yarnClient.getNodeReports());
+		} catch (Exception e) {
+			log.warn("Unable to refresh node reports, keeping snapshot of " + nodes.size() + " nodes", e);
+		}
+	}
+
+	/**
+	 * Replaces a snapshot with given node reports.
+	 *
+	 * @param reports the node reports
+	 */
+	public void setNodeReports(Collection<NodeReport> reports) {
+		Map<String, NodeReport> snapshot = new HashMap<String, NodeReport>(reports.size() * 2);
+		for (NodeReport report : reports) {
+			if (report.getNodeId() != null) {
+				snapshot.put(report.getNodeId().getHost(), report);
+			}
+		}
+		nodes = Collections.unmodifiableMap(snapshot);
+		refreshed = System.currentTimeMillis();
+		if (log.isDebugEnabled()) {
+			log.debug("Refreshed node view with " + snapshot.size() + " nodes");
+		}
+	}
+
+	/**
+	 * Gets the node report of a host.
+	 *
+	 * @param host the host
+	 * @return the node report or <code>NULL</code> if not known
+	 */
+	public NodeReport getNode(String host) {
+		return host != null ? nodes.get(host) : null;
+	}
+
+	/**
+	 * Gets all node reports of a current snapshot.
+	 *
+	 * @return the node reports
+	 */
+	public Collection<NodeReport> getNodes() {
+		return nodes.values();
+	}
+
+	/**
+	 * Gets the labels of a host.
+	 *
+	 * @param host the host
+	 * @return the labels, empty if none
+	 */
+	public List<String> getLabels(String host) {
+		List<String> hostLabels = host != null ? labels.get(host) : null;
+		return hostLabels != null ? hostLabels : Collections.<String>emptyList();
+	}
+
+	/**
+	 * Sets the labels per host.
+	 *
+	 * @param labels the mapping host and labels
+	 */
+	public void setLabels(Map<String, List<String>> labels) {
+		this.labels = labels;
+	}
+
+	/**
+	 * Checks if this view has a source of node reports, either
+	 * a client fetching reports or reports already set directly.
+	 *
+	 * @return true, if view has a source of node reports
+	 */
+	public boolean hasNodeSource() {
+		return yarnClient != null || (configuration != null && refreshInterval > 0) || refreshed > 0;
+	}
+
+	/**
+	 * Gets the time of a last successful refresh.
+	 *
+	 * @return the time in millis, zero if never refreshed
+	 */
+	public long getRefreshed() {
+		return refreshed;
+	}
+
+	/**
+	 * Sets the Hadoop configuration used to create
+	 * a client if one is not set.
+	 *
+	 * @param configuration the new configuration
+	 */
+	public void setConfiguration(Configuration configuration) {
+		this.configuration = configuration;
+	}
+
+	/**
+	 * Sets the client used to fetch node reports.
+	 *
+	 * @param yarnClient the new yarn client
+	 */
+	public void setYarnClient(YarnClient yarnClient) {
+		this.yarnClient = yarnClient;
+	}
+
+	/**
+	 * Sets the refresh interval. Zero disables periodic refresh and
+	 * no client is created from a configuration, reports are then
+	 * only set via {@link #setNodeReports(Collection)}.
+	 *
+	 * @param refreshInterval the new refresh interval in millis
+	 */
+	public void setRefreshInterval(long refreshInterval) {
+		this.refreshInterval = refreshInterval;
+	}
+
+}
@@ -0,0 +1,516 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.yarn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.Container;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.hadoop.yarn.api.records.Priority;
+import org.apache.hadoop.yarn.api.records.Resource;
+import org.apache.hadoop.yarn.util.RackResolver;
+import org.apache.hadoop.yarn.util.Records;
+import org.springframework.util.Assert;
+import org.springframework.yarn.examples.grid.ContainerGridListener;
+import org.springframework.yarn.examples.grid.ContainerGroupsListener;
+
+/**
+ * Compact store for container nodes of a large fleet. Node data is
+ * kept in primitive arrays indexed by a slot and strings like hosts,
+ * racks and groups are kept once in dictionaries. Full Yarn
+ * {@link Container} record is only kept until the container is
+ * launched, after that a record is materialized on demand from
+ * stored fields without a container token. Records are built outside
+ * of the store lock and hosts, keys and resources are read by
+ * {@link YarnContainerNode} accessors without building a record.
+ * <p>
+ * Store follows nodes via listeners registered by
+ * {@link YarnManagedContainerGroups}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class CompactContainerNodeStore implements ContainerGridListener<YarnContainerNode>,
+		ContainerGroupsListener<YarnContainerGroup, YarnContainerNode> {
+
+	/** State of allocated but not launched container */
+	public final static byte STATE_ALLOCATED = 0;
+
+	/** State of launched container */
+	public final static byte STATE_LAUNCHED = 1;
+
+	/** Mapping container key <-> node */
+	private final LongObjectHashMap<CompactYarnContainerNode> nodes = new LongObjectHashMap<CompactYarnContainerNode>();
+
+	/** Full records of containers not yet launched */
+	private final LongObjectHashMap<Container> unlaunched = new LongObjectHashMap<Container>();
+
+	private final Dictionary hostNames = new Dictionary();
+	private final Dictionary rackNames = new Dictionary();
+	private final Dictionary groupNames = new Dictionary();
+
+	private long[] keys = new long[0];
+	private int[] hosts = new int[0];
+	private int[] ports = new int[0];
+	private int[] httpPorts = new int[0];
+	private int[] racks = new int[0];
+	private int[] groups = new int[0];
+	private int[] memory = new int[0];
+	private int[] cores = new int[0];
+	private int[] priorities = new int[0];
+	private byte[] states = new byte[0];
+	private long[] allocated = new long[0];
+	private long[] launched = new long[0];
+
+	/** Free slots as a stack */
+	private int[] free = new int[0];
+	private int freeCount;
+	private int slots;
+
+	/** Shared application id of all stored containers, set once */
+	private volatile long clusterTimestamp = -1;
+	private volatile int applicationId;
+
+	/** Flag telling if rack resolving is used */
+	private boolean resolveRacks;
+
+	/**
+	 * Adds a container and creates a node for it.
+	 *
+	 * @param container the container
+	 * @return the node
+	 */
+	public synchronized YarnContainerNode add(Container container) {
+		Assert.notNull(container, "Yarn Container must be set");
+		ContainerId containerId = container.getId();
+		Assert.notNull(containerId, "Yarn Container id must be set");
+		long key = ContainerKeys.toKey(containerId);
+		Assert.isTrue(key != ContainerKeys.NO_KEY, "Malformed container id " + containerId);
+		CompactYarnContainerNode existing = nodes.get(key);
+		if (existing != null) {
+			return existing;
+		}
+		ApplicationId appId = containerId.getApplicationAttemptId().getApplicationId();
+		if (clusterTimestamp < 0) {
+			clusterTimestamp = appId.getClusterTimestamp();
+			applicationId = appId.getId();
+		}
+		Assert.isTrue(clusterTimestamp == appId.getClusterTimestamp() && applicationId == appId.getId(),
+				"Containers of one application can be stored");
+
+		int slot = freeCount > 0 ? free[--freeCount] : nextSlot();
+		String host = container.getNodeId() != null ? container.getNodeId().getHost() : null;
+		keys[slot] = key;
+		hosts[slot] = hostNames.index(host);
+		ports[slot] = container.getNodeId() != null ? container.getNodeId().getPort() : -1;
+		httpPorts[slot] = parsePort(host, container.getNodeHttpAddress());
+		racks[slot] = resolveRacks && host != null ? rackNames.index(RackResolver.resolve(host).getNetworkLocation()) : -1;
+		groups[slot] = -1;
+		memory[slot] = container.getResource() != null ? container.getResource().getMemory() : -1;
+		cores[slot] = container.getResource() != null ? container.getResource().getVirtualCores() : -1;
+		priorities[slot] = container.getPriority() != null ? container.getPriority().getPriority() : -1;
+		states[slot] = STATE_ALLOCATED;
+		allocated[slot] = System.currentTimeMillis();
+		launched[slot] = 0;
+
+		CompactYarnContainerNode node = new CompactYarnContainerNode(this, key, slot);
+		nodes.put(key, node);
+		unlaunched.put(key, container);
+		return node;
+	}
+
+	/**
+	 * Gets a node.
+	 *
+	 * @param key the container key
+	 * @return the node or <code>NULL</code> if not stored
+	 */
+	public synchronized YarnContainerNode get(long key) {
+		return nodes.get(key);
+	}
+
+	/**
+	 * Removes a node and frees its slot.
+	 *
+	 * @param key the container key
+	 */
+	public synchronized void remove(long key) {
+		CompactYarnContainerNode node = nodes.remove(key);
+		if (node == null) {
+			return;
+		}
+		// node may still be referenced, i.e. by listeners
+		Container container = unlaunched.remove(key);
+		node.detached = container != null ? container : materialize(node.slot, key);
+		keys[node.slot] = ContainerKeys.NO_KEY;
+		if (freeCount == free.length) {
+			free = Arrays.copyOf(free, Math.max(16, free.length * 2));
+		}
+		free[freeCount++] = node.slot;
+	}
+
+	/**
+	 * Marks container launched. Full record is
+	 * no longer kept after this.
+	 *
+	 * @param key the container key
+	 */
+	public synchronized void launched(long key) {
+		CompactYarnContainerNode node = nodes.get(key);
+		if (node != null) {
+			states[node.slot] = STATE_LAUNCHED;
+			launched[node.slot] = System.currentTimeMillis();
+			unlaunched.remove(key);
+		}
+	}
+
+	/**
+	 * Gets the group name of a node.
+	 *
+	 * @param key the container key
+	 * @return the group name or <code>NULL</code> if not in a group
+	 */
+	public synchronized String getGroup(long key) {
+		CompactYarnContainerNode node = nodes.get(key);
+		return node != null ? groupNames.get(groups[node.slot]) : null;
+	}
+
+	/**
+	 * Gets the state of a node.
+	 *
+	 * @param key the container key
+	 * @return the state or -1 if not stored
+	 */
+	public synchronized byte getState(long key) {
+		CompactYarnContainerNode node = nodes.get(key);
+		return node != null ? states[node.slot] : -1;
+	}
+
+	/**
+	 * Gets the host of a node.
+	 *
+	 * @param key the container key
+	 * @return the host or <code>NULL</code> if not stored
+	 */
+	public synchronized String getHost(long key) {
+		CompactYarnContainerNode node = nodes.get(key);
+		return node != null ? hostNames.get(hosts[node.slot]) : null;
+	}
+
+	/**
+	 * Gets the rack of a node.
+	 *
+	 * @param key the container key
+	 * @return the rack or <code>NULL</code> if not resolved
+	 */
+	public synchronized String getRack(long key) {
+		CompactYarnContainerNode node = nodes.get(key);
+		return node != null ? rackNames.get(racks[node.slot]) : null;
+	}
+
+	/**
+	 * Gets the allocation time of a node.
+	 *
+	 * @param key the container key
+	 * @return the allocation time in millis or 0 if not stored
+	 */
+	public synchronized long getAllocatedTime(long key) {
+		CompactYarnContainerNode node = nodes.get(key);
+		return node != null ? allocated[node.slot] : 0;
+	}
+
+	/**
+	 * Gets the launch time of a node.
+	 *
+	 * @param key the container key
+	 * @return the launch time in millis or 0 if not launched
+	 */
+	public synchronized long getLaunchedTime(long key) {
+		CompactYarnContainerNode node = nodes.get(key);
+		return node != null ? launched[node.slot] : 0;
+	}
+
+	/**
+	 * Gets the count of stored nodes.
+	 *
+	 * @return the size
+	 */
+	public synchronized int getSize() {
+		return nodes.size();
+	}
+
+	/**
+	 * Gets the count of full records kept for containers not yet launched.
+	 *
+	 * @return the count of kept records
+	 */
+	public synchronized int getUnlaunchedSize() {
+		return unlaunched.size();
+	}
+
+	/**
+	 * Sets the resolve racks.
+	 *
+	 * @param resolveRacks the new resolve racks
+	 */
+	public void setResolveRacks(boolean resolveRacks) {
+		this.resolveRacks = resolveRacks;
+	}
+
+	@Override
+	public void containerNodeAdded(YarnContainerNode node) {
+	}
+
+	@Override
+	public void containerNodeRemoved(YarnContainerNode node) {
+		remove(node.getKey());
+	}
+
+	@Override
+	public void groupAdded(YarnContainerGroup group) {
+	}
+
+	@Override
+	public void groupRemoved(YarnContainerGroup group) {
+	}
+
+	@Override
+	public synchronized void groupMemberAdded(YarnContainerGroup group, YarnContainerNode node) {
+		CompactYarnContainerNode n = nodes.get(node.getKey());
+		if (n != null) {
+			groups[n.slot] = groupNames.index(group.getId());
+		}
+	}
+
+	@Override
+	public synchronized void groupMemberRemoved(YarnContainerGroup group, YarnContainerNode node) {
+		CompactYarnContainerNode n = nodes.get(node.getKey());
+		if (n != null && groups[n.slot] == groupNames.index(group.getId())) {
+			groups[n.slot] = -1;
+		}
+	}
+
+	/**
+	 * Gets a full record if kept, otherwise materializes
+	 * a new record from stored fields.
+	 *
+	 * @param node the node
+	 * @return the container
+	 */
+	Container getContainer(CompactYarnContainerNode node) {
+		String host;
+		int port, httpPort, mem, vcores, priority;
+		synchronized (this) {
+			if (keys[node.slot] != node.key) {
+				return node.detached;
+			}
+			Container container = unlaunched.get(node.key);
+			if (container != null) {
+				return container;
+			}
+			int slot = node.slot;
+			host = hostNames.get(hosts[slot]);
+			port = ports[slot];
+			httpPort = httpPorts[slot];
+			mem = memory[slot];
+			vcores = cores[slot];
+			priority = priorities[slot];
+		}
+		return materialize(node.key, host, port, httpPort, mem, vcores, priority);
+	}
+
+	/**
+	 * Gets the host of a node.
+	 *
+	 * @param node the node
+	 * @return the host or <code>NULL</code> if not known
+	 */
+	synchronized String getHost(CompactYarnContainerNode node) {
+		if (keys[node.slot] != node.key) {
+			Container container = node.detached;
+			return container != null && container.getNodeId() != null ? container.getNodeId().getHost() : null;
+		}
+		return hostNames.get(hosts[node.slot]);
+	}
+
+	/**
+	 * Gets the memory of a node.
+	 *
+	 * @param node the node
+	 * @return the memory in megabytes, negative if not known
+	 */
+	synchronized int getMemory(CompactYarnContainerNode node) {
+		if (keys[node.slot] != node.key) {
+			Container container = node.detached;
+			return container != null && container.getResource() != null ? container.getResource().getMemory() : -1;
+		}
+		return memory[node.slot];
+	}
+
+	/**
+	 * Gets the virtual cores of a node.
+	 *
+	 * @param node the node
+	 * @return the virtual cores, negative if not known
+	 */
+	synchronized int getVirtualCores(CompactYarnContainerNode node) {
+		if (keys[node.slot] != node.key) {
+			Container container = node.detached;
+			return container != null && container.getResource() != null ? container.getResource().getVirtualCores() : -1;
+		}
+		return cores[node.slot];
+	}
+
+	private Container materialize(int slot, long key) {
+		return materialize(key, hostNames.get(hosts[slot]), ports[slot], httpPorts[slot], memory[slot], cores[slot],
+				priorities[slot]);
+	}
+
+	private Container materialize(long key, String host, int port, int httpPort, int mem, int vcores, int priority) {
+		Container container = Records.newRecord(Container.class);
+		container.setId(toContainerId(key));
+		if (host != null) {
+			NodeId nodeId = Records.newRecord(NodeId.class);
+			nodeId.setHost(host);
+			nodeId.setPort(port);
+			container.setNodeId(nodeId);
+			if (httpPort >= 0) {
+				container.setNodeHttpAddress(host + ":" + httpPort);
+			}
+		}
+		if (mem >= 0) {
+			Resource resource = Records.newRecord(Resource.class);
+			resource.setMemory(mem);
+			resource.setVirtualCores(vcores);
+			container.setResource(resource);
+		}
+		if (priority >= 0) {
+			Priority p = Records.newRecord(Priority.class);
+			p.setPriority(priority);
+			container.setPriority(p);
+		}
+		return container;
+	}
+
+	/**
+	 * Builds a container id for a key.
+	 *
+	 * @param key the container key
+	 * @return the container id
+	 */
+	ContainerId toContainerId(long key) {
+		ApplicationId appId = Records.newRecord(ApplicationId.class);
+		appId.setClusterTimestamp(clusterTimestamp);
+		appId.setId(applicationId);
+		ApplicationAttemptId attemptId = Records.newRecord(ApplicationAttemptId.class);
+		attemptId.setApplicationId(appId);
+		attemptId.setAttemptId((int) (key >>> 32));
+		ContainerId containerId = Records.newRecord(ContainerId.class);
+		containerId.setApplicationAttemptId(attemptId);
+		containerId.setId((int) key);
+		return containerId;
+	}
+
+	/**
+	 * Builds a container id string for a key in a same
+	 * format as {@link ContainerId#toString()}.
+	 *
+	 * @param key the container key
+	 * @return the container id string
+	 */
+	String toIdString(long key) {
+		StringBuilder buf = new StringBuilder(40);
+		buf.append("container_").append(clusterTimestamp).append('_');
+		pad(buf, applicationId, 4).append('_');
+		pad(buf, (int) (key >>> 32), 2).append('_');
+		return pad(buf, (int) key, 6).toString();
+	}
+
+	private static StringBuilder pad(StringBuilder buf, int value, int digits) {
+		String s = Integer.toString(value);
+		for (int i = s.length(); i < digits; i++) {
+			buf.append('0');
+		}
+		return buf.append(s);
+	}
+
+	private int nextSlot() {
+		if (slots == keys.length) {
+			int capacity = Math.max(16, keys.length * 2);
+			keys = Arrays.copyOf(keys, capacity);
+			hosts = Arrays.copyOf(hosts, capacity);
+			ports = Arrays.copyOf(ports, capacity);
+			httpPorts = Arrays.copyOf(httpPorts, capacity);
+			racks = Arrays.copyOf(racks, capacity);
+			groups = Arrays.copyOf(groups, capacity);
+			memory = Arrays.copyOf(memory, capacity);
+			cores = Arrays.copyOf(cores, capacity);
+			priorities = Arrays.copyOf(priorities, capacity);
+			states = Arrays.copyOf(states, capacity);
+			allocated = Arrays.copyOf(allocated, capacity);
+			launched = Arrays.copyOf(launched, capacity);
+		}
+		return slots++;
+	}
+
+	private static int parsePort(String host, String httpAddress) {
+		// only host:port on a container host can be stored as a port
+		if (host == null || httpAddress == null || httpAddress.length() <= host.length() + 1
+				|| !httpAddress.startsWith(host) || httpAddress.charAt(host.length()) != ':') {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(httpAddress.substring(host.length() + 1));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Dictionary of strings stored once and referred by index.
+	 */
+	private static class Dictionary {
+
+		private final List<String> values = new ArrayList<String>();
+		private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+
+		int index(String value) {
+			if (value == null) {
+				return -1;
+			}
+			Integer index = indexes.get(value);
+			if (index == null) {
+				index = values.size();
+				values.add(value);
+				indexes.put(value, index);
+			}
+			return index;
+		}
+
+		String get(int index) {
+			return index < 0 ? null : values.get(index);
+		}
+
+	}
+
+}
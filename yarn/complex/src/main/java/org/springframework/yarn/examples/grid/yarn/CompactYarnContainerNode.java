@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.yarn;
+
+import org.apache.hadoop.yarn.api.records.Container;
+
+/**
+ * {@link YarnContainerNode} whose data is kept in
+ * a {@link CompactContainerNodeStore}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class CompactYarnContainerNode implements YarnContainerNode {
+
+	private final CompactContainerNodeStore store;
+
+	final long key;
+
+	final int slot;
+
+	/** Record kept after node is removed from a store */
+	volatile Container detached;
+
+	/**
+	 * Instantiates a new compact yarn container node.
+	 *
+	 * @param store the store
+	 * @param key the container key
+	 * @param slot the slot in a store
+	 */
+	CompactYarnContainerNode(CompactContainerNodeStore store, long key, int slot) {
+		this.store = store;
+		this.key = key;
+		this.slot = slot;
+	}
+
+	@Override
+	public Container getContainer() {
+		return store.getContainer(this);
+	}
+
+	@Override
+	public String getId() {
+		return store.toIdString(key);
+	}
+
+	@Override
+	public long getKey() {
+		return key;
+	}
+
+	@Override
+	public String getHost() {
+		return store.getHost(this);
+	}
+
+	@Override
+	public int getMemory() {
+		return store.getMemory(this);
+	}
+
+	@Override
+	public int getVirtualCores() {
+		return store.getVirtualCores(this);
+	}
+
+	@Override
+	public String toString() {
+		return "CompactYarnContainerNode [id=" + getId() + "]";
+	}
+
+}
@@ -36,4 +36,15 @@ public interface ContainerGroupResolver {
 	 */
 	List<String> resolveGroupNames(Container container);
 
+	/**
+	 * Resolve how specifically a group is pinned to a container.
+	 * Higher value means a more specific match, i.e. exact host
+	 * match is more specific than rack or wildcard match.
+	 *
+	 * @param container the container
+	 * @param groupName the group name
+	 * @return the specificity, negative if group doesn't match
+	 */
+	int resolveSpecificity(Container container, String groupName);
+
 }
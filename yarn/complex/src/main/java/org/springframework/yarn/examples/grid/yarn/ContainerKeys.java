@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.yarn;
+
+import org.apache.hadoop.yarn.api.records.ContainerId;
+
+/**
+ * Utility methods for compact numeric container keys. Key is
+ * built from an application attempt and a container sequence
+ * number which together identify a container within
+ * one application.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public abstract class ContainerKeys {
+
+	/** Key used for missing or malformed container id, nodes with it are rejected */
+	public final static long NO_KEY = -1;
+
+	/**
+	 * Gets a key for a container id.
+	 *
+	 * @param containerId the container id
+	 * @return the key or {@link #NO_KEY} if id is <code>NULL</code>
+	 */
+	public static long toKey(ContainerId containerId) {
+		if (containerId == null || containerId.getApplicationAttemptId() == null) {
+			return NO_KEY;
+		}
+		return toKey(containerId.getApplicationAttemptId().getAttemptId(), containerId.getId());
+	}
+
+	/**
+	 * Gets a key for a container id string without
+	 * converting it to a {@link ContainerId}.
+	 *
+	 * @param containerId the container id string
+	 * @return the key or {@link #NO_KEY} if id can't be parsed
+	 */
+	public static long toKey(String containerId) {
+		if (containerId == null) {
+			return NO_KEY;
+		}
+		// container_<timestamp>_<app>_<attempt>_<sequence>
+		int end = containerId.length();
+		int sep = containerId.lastIndexOf('_');
+		if (sep < 0) {
+			return NO_KEY;
+		}
+		long sequence = parse(containerId, sep + 1, end);
+		int attemptSep = containerId.lastIndexOf('_', sep - 1);
+		if (attemptSep < 0) {
+			return NO_KEY;
+		}
+		long attempt = parse(containerId, attemptSep + 1, sep);
+		if (sequence < 0 || attempt < 0) {
+			return NO_KEY;
+		}
+		return toKey((int) attempt, (int) sequence);
+	}
+
+	/**
+	 * Gets a key for an attempt and a sequence number.
+	 *
+	 * @param attempt the application attempt
+	 * @param sequence the container sequence number
+	 * @return the key
+	 */
+	public static long toKey(int attempt, int sequence) {
+		return ((long) attempt << 32) | (sequence & 0xffffffffL);
+	}
+
+	private static long parse(String string, int start, int end) {
+		if (start >= end) {
+			return -1;
+		}
+		long value = 0;
+		for (int i = start; i < end; i++) {
+			char c = string.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			value = value * 10 + (c - '0');
+			if (value > Integer.MAX_VALUE) {
+				return -1;
+			}
+		}
+		return value;
+	}
+
+}
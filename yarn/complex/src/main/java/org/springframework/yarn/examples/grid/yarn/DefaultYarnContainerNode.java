@@ -16,6 +16,7 @@
 package org.springframework.yarn.examples.grid.yarn;
 
 import org.apache.hadoop.yarn.api.records.Container;
+import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.util.ConverterUtils;
 
 /**
@@ -28,13 +29,19 @@ public class DefaultYarnContainerNode implements YarnContainerNode {
 
 	private Container container;
 
+	/** Cached container id string */
+	private String id;
+
+	/** Cached container key */
+	private long key = ContainerKeys.NO_KEY;
+
 	/**
 	 * Instantiates a new default yarn container node.
 	 *
 	 * @param container the container
 	 */
 	public DefaultYarnContainerNode(Container container) {
-		this.container = container;
+		setContainer(container);
 	}
 
 	@Override
@@ -44,7 +51,27 @@ public class DefaultYarnContainerNode implements YarnContainerNode {
 
 	@Override
 	public String getId() {
-		return container != null ? ConverterUtils.toString(container.getId()) : null;
+		return id;
+	}
+
+	@Override
+	public long getKey() {
+		return key;
+	}
+
+	@Override
+	public String getHost() {
+		return container != null && container.getNodeId() != null ? container.getNodeId().getHost() : null;
+	}
+
+	@Override
+	public int getMemory() {
+		return container != null && container.getResource() != null ? container.getResource().getMemory() : -1;
+	}
+
+	@Override
+	public int getVirtualCores() {
+		return container != null && container.getResource() != null ? container.getResource().getVirtualCores() : -1;
 	}
 
 	/**
@@ -54,6 +81,9 @@ public class DefaultYarnContainerNode implements YarnContainerNode {
 	 */
 	public void setContainer(Container container) {
 		this.container = container;
+		ContainerId containerId = container != null ? container.getId() : null;
+		this.id = containerId != null ? ConverterUtils.toString(containerId) : null;
+		this.key = ContainerKeys.toKey(containerId);
 	}
 
 	@Override
@@ -15,8 +15,12 @@
  */
 package org.springframework.yarn.examples.grid.yarn;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.hadoop.yarn.api.records.Container;
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.springframework.yarn.am.allocate.ContainerAllocateData;
 
@@ -32,6 +36,12 @@ public class DefaultYarnGroupsRebalanceData implements YarnGroupsRebalanceData {
 
 	private ContainerAllocateData allocateData;
 
+	private List<Container> adoptedContainers = new ArrayList<Container>();
+
+	private Map<String, Integer> allocateCounts = new HashMap<String, Integer>();
+
+	private int withdrawCount;
+
 	/**
 	 * Instantiates a new default yarn groups rebalance data.
 	 */
@@ -77,4 +87,46 @@ public class DefaultYarnGroupsRebalanceData implements YarnGroupsRebalanceData {
 		this.allocateData = allocateData;
 	}
 
+	@Override
+	public List<Container> getAdoptedContainers() {
+		return adoptedContainers;
+	}
+
+	/**
+	 * Sets the adopted containers.
+	 *
+	 * @param adoptedContainers the new adopted containers
+	 */
+	public void setAdoptedContainers(List<Container> adoptedContainers) {
+		this.adoptedContainers = adoptedContainers;
+	}
+
+	@Override
+	public Map<String, Integer> getAllocateCounts() {
+		return allocateCounts;
+	}
+
+	/**
+	 * Sets the allocate counts.
+	 *
+	 * @param allocateCounts the new allocate counts
+	 */
+	public void setAllocateCounts(Map<String, Integer> allocateCounts) {
+		this.allocateCounts = allocateCounts;
+	}
+
+	@Override
+	public int getWithdrawCount() {
+		return withdrawCount;
+	}
+
+	/**
+	 * Sets the withdraw count.
+	 *
+	 * @param withdrawCount the new withdraw count
+	 */
+	public void setWithdrawCount(int withdrawCount) {
+		this.withdrawCount = withdrawCount;
+	}
+
 }
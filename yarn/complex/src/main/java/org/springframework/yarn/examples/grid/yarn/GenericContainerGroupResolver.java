@@ -42,8 +42,20 @@ public class GenericContainerGroupResolver implements ContainerGroupResolver, In
 
 	private final static Log log = LogFactory.getLog(GenericContainerGroupResolver.class);
 
+	/** Specificity of a wildcard match */
+	public final static int SPECIFICITY_ANY = 0;
+
+	/** Specificity of a rack match */
+	public final static int SPECIFICITY_RACK = 1;
+
+	/** Specificity of a host pattern match */
+	public final static int SPECIFICITY_PATTERN = 2;
+
+	/** Specificity of an exact host match */
+	public final static int SPECIFICITY_HOST = 3;
+
 	/** Map of resolve instructions */
-	private Map<String, List<String>> resolves = new Hashtable<String, List<String>>();
+	private volatile Map<String, List<String>> resolves = new Hashtable<String, List<String>>();
 
 	/** Hadoop configuration */
 	private Configuration configuration;
@@ -56,6 +68,7 @@ public class GenericContainerGroupResolver implements ContainerGroupResolver, In
 		String containerHost = container.getNodeId().getHost();
 		String rack = resolveRacks ? RackResolver.resolve(containerHost).getNetworkLocation() : null;
 		ArrayList<String> found = new ArrayList<String>();
+		Map<String, List<String>> resolves = this.resolves;
 		for (Entry<String, List<String>> entry : resolves.entrySet()) {
 			for (String host : entry.getValue()) {
 				if (safeMatch(containerHost, host) || safeMatch(rack, host)) {
@@ -67,6 +80,32 @@ public class GenericContainerGroupResolver implements ContainerGroupResolver, In
 		return found;
 	}
 
+	@Override
+	public int resolveSpecificity(Container container, String groupName) {
+		List<String> hosts = resolves.get(groupName);
+		if (hosts == null) {
+			return -1;
+		}
+		String containerHost = container.getNodeId().getHost();
+		String rack = null;
+		int specificity = -1;
+		for (String host : hosts) {
+			if (host.equals(containerHost)) {
+				return SPECIFICITY_HOST;
+			} else if (safeMatch(containerHost, host)) {
+				specificity = Math.max(specificity, "*".equals(host) ? SPECIFICITY_ANY : SPECIFICITY_PATTERN);
+			} else if (resolveRacks) {
+				if (rack == null) {
+					rack = RackResolver.resolve(containerHost).getNetworkLocation();
+				}
+				if (safeMatch(rack, host)) {
+					specificity = Math.max(specificity, SPECIFICITY_RACK);
+				}
+			}
+		}
+		return specificity;
+	}
+
 	@Override
 	public void afterPropertiesSet() throws Exception {
 		if (resolveRacks) {
@@ -93,9 +132,19 @@ public class GenericContainerGroupResolver implements ContainerGroupResolver, In
 		resolves.put(groupName, Arrays.asList(hosts));
 	}
 
+	/**
+	 * Gets the resolves.
+	 *
+	 * @return the resolves
+	 */
+	public Map<String, List<String>> getResolves() {
+		return resolves;
+	}
+
 	/**
 	 * Sets the new resolves. Old existing resolves
-	 * are overridden.
+	 * are overridden. Map is swapped as a whole and
+	 * should not be modified after it has been set.
 	 *
 	 * @param resolves the resolves
 	 */
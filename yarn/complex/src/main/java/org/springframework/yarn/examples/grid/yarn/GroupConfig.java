@@ -0,0 +1,270 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.yarn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Parsed and validated definitions of container groups. Definitions
+ * are read from properties keyed as <code>group.&lt;id&gt;.&lt;attribute&gt;</code>
+ * where attribute is one of:
+ * <ul>
+ * <li><code>size</code> projected size, -1 for unlimited, defaults to zero</li>
+ * <li><code>hosts</code> comma delimited host patterns</li>
+ * <li><code>rule</code> node rule, see {@link NodePredicates}</li>
+ * <li><code>maxPerHost</code>, <code>maxPerRack</code> and <code>maxSkew</code>
+ * spread constraints, see {@link YarnContainerGroup}</li>
+ * </ul>
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class GroupConfig {
+
+	private final static String PREFIX = "group.";
+
+	private final static List<String> ATTRIBUTES = Arrays.asList("size", "hosts", "rule", "maxPerHost",
+			"maxPerRack", "maxSkew");
+
+	/** Mapping group id <-> definition */
+	private final Map<String, GroupDefinition> groups;
+
+	/**
+	 * Instantiates a new group config.
+	 *
+	 * @param groups the mapping group id and definition
+	 */
+	public GroupConfig(Map<String, GroupDefinition> groups) {
+		this.groups = Collections.unmodifiableMap(groups);
+	}
+
+	/**
+	 * Parses and validates a config from properties.
+	 *
+	 * @param properties the properties
+	 * @return the group config
+	 * @throws IllegalArgumentException if config is not valid
+	 */
+	public static GroupConfig parse(Properties properties) {
+		Map<String, Map<String, String>> raw = new TreeMap<String, Map<String, String>>();
+		for (String key : properties.stringPropertyNames()) {
+			int dot = key.lastIndexOf('.');
+			if (!key.startsWith(PREFIX) || dot <= PREFIX.length()) {
+				throw new IllegalArgumentException("Invalid group config key " + key);
+			}
+			String id = key.substring(PREFIX.length(), dot);
+			String attribute = key.substring(dot + 1);
+			if (!ATTRIBUTES.contains(attribute)) {
+				throw new IllegalArgumentException("Unknown attribute " + attribute + " for group " + id);
+			}
+			if (id.equals(YarnManagedContainerGroups.DEFAULT_FALLBACK_GROUP)
+					|| id.equals(YarnManagedContainerGroups.WARM_POOL_GROUP)) {
+				throw new IllegalArgumentException("Group id " + id + " is reserved");
+			}
+			Map<String, String> attributes = raw.get(id);
+			if (attributes == null) {
+				attributes = new TreeMap<String, String>();
+				raw.put(id, attributes);
+			}
+			attributes.put(attribute, properties.getProperty(key).trim());
+		}
+
+		Map<String, GroupDefinition> groups = new TreeMap<String, GroupDefinition>();
+		for (Map.Entry<String, Map<String, String>> entry : raw.entrySet()) {
+			String id = entry.getKey();
+			Map<String, String> attributes = entry.getValue();
+			GroupDefinition definition = new GroupDefinition(id);
+			definition.size = parseInt(id, "size", attributes.get("size"), -1, 0);
+			definition.maxPerHost = parseInt(id, "maxPerHost", attributes.get("maxPerHost"), 0, 0);
+			definition.maxPerRack = parseInt(id, "maxPerRack", attributes.get("maxPerRack"), 0, 0);
+			definition.maxSkew = parseInt(id, "maxSkew", attributes.get("maxSkew"), 0, 0);
+			String hosts = attributes.get("hosts");
+			if (hosts != null) {
+				definition.hosts = new ArrayList<String>();
+				for (String host : StringUtils.commaDelimitedListToStringArray(hosts)) {
+					host = host.trim();
+					if (host.length() == 0) {
+						continue;
+					}
+					if (!host.equals("*")) {
+						try {
+							Pattern.compile(host);
+						} catch (PatternSyntaxException e) {
+							throw new IllegalArgumentException("Invalid host pattern " + host + " for group " + id);
+						}
+					}
+					definition.hosts.add(host);
+				}
+				if (definition.hosts.isEmpty()) {
+					throw new IllegalArgumentException("Empty hosts for group " + id);
+				}
+			}
+			String rule = attributes.get("rule");
+			if (rule != null) {
+				NodePredicates.compile(rule);
+				definition.rule = rule;
+			}
+			groups.put(id, definition);
+		}
+		return new GroupConfig(groups);
+	}
+
+	/**
+	 * Gets the group definitions.
+	 *
+	 * @return the mapping group id and definition
+	 */
+	public Map<String, GroupDefinition> getGroups() {
+		return groups;
+	}
+
+	private static int parseInt(String id, String attribute, String value, int min, int defaultValue) {
+		if (!StringUtils.hasText(value)) {
+			return defaultValue;
+		}
+		int ret;
+		try {
+			ret = Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid " + attribute + " " + value + " for group " + id);
+		}
+		if (ret < min) {
+			throw new IllegalArgumentException("Invalid " + attribute + " " + value + " for group " + id);
+		}
+		return ret;
+	}
+
+	/**
+	 * Definition of one group.
+	 */
+	public static class GroupDefinition {
+
+		private final String id;
+		private int size;
+		private List<String> hosts;
+		private String rule;
+		private int maxPerHost;
+		private int maxPerRack;
+		private int maxSkew;
+
+		GroupDefinition(String id) {
+			this.id = id;
+		}
+
+		/**
+		 * Gets the group id.
+		 *
+		 * @return the group id
+		 */
+		public String getId() {
+			return id;
+		}
+
+		/**
+		 * Gets the projected size.
+		 *
+		 * @return the projected size
+		 */
+		public int getSize() {
+			return size;
+		}
+
+		/**
+		 * Gets the host patterns.
+		 *
+		 * @return the host patterns or <code>NULL</code> if not set
+		 */
+		public List<String> getHosts() {
+			return hosts;
+		}
+
+		/**
+		 * Gets the node rule.
+		 *
+		 * @return the node rule or <code>NULL</code> if not set
+		 */
+		public String getRule() {
+			return rule;
+		}
+
+		/**
+		 * Gets the max members per host.
+		 *
+		 * @return the max members per host
+		 */
+		public int getMaxPerHost() {
+			return maxPerHost;
+		}
+
+		/**
+		 * Gets the max members per rack.
+		 *
+		 * @return the max members per rack
+		 */
+		public int getMaxPerRack() {
+			return maxPerRack;
+		}
+
+		/**
+		 * Gets the max skew.
+		 *
+		 * @return the max skew
+		 */
+		public int getMaxSkew() {
+			return maxSkew;
+		}
+
+		/**
+		 * Checks if constraints of a live group differ from this definition.
+		 *
+		 * @param group the group
+		 * @return true, if constraints differ
+		 */
+		public boolean constraintsDiffer(YarnContainerGroup group) {
+			return group.getMaxPerHost() != maxPerHost || group.getMaxPerRack() != maxPerRack
+					|| group.getMaxSkew() != maxSkew;
+		}
+
+		/**
+		 * Checks if hosts of a live group differ from this definition.
+		 *
+		 * @param group the group
+		 * @return true, if hosts differ
+		 */
+		public boolean hostsDiffer(YarnContainerGroup group) {
+			return hosts != null && !ObjectUtils.nullSafeEquals(hosts, group.getHosts());
+		}
+
+		@Override
+		public String toString() {
+			return "GroupDefinition [id=" + id + ", size=" + size + ", hosts=" + hosts + ", rule=" + rule
+					+ ", maxPerHost=" + maxPerHost + ", maxPerRack=" + maxPerRack + ", maxSkew=" + maxSkew + "]";
+		}
+
+	}
+
+}
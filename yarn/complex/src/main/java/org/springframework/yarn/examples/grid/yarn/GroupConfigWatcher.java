@@ -0,0 +1,338 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.yarn;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ScheduledFuture;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.yarn.examples.grid.yarn.GroupConfig.GroupDefinition;
+import org.springframework.yarn.support.LifecycleObjectSupport;
+
+/**
+ * Watches a group config file and applies changes to live
+ * {@link YarnManagedContainerGroups} without restarting an appmaster.
+ * File is a properties file parsed by {@link GroupConfig} and can be on
+ * any Hadoop file system, i.e. local file or HDFS path. Once a file is
+ * applied it is a full definition of managed groups.
+ * <p>
+ * A changed file is parsed and validated first, invalid file is
+ * logged and ignored. Valid config is diffed against live groups and
+ * only differences are applied in order safe for allocations running
+ * concurrently: new groups are added empty, resolver rules are swapped
+ * as a whole, sizes are changed and finally groups not in a config are
+ * retired. Unchanged groups are not touched.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+@ManagedResource(objectName = "org.springframework.yarn.examples:type=Appmaster,name=groupConfig",
+		description = "Group config watcher")
+public class GroupConfigWatcher extends LifecycleObjectSupport {
+
+	private final static Log log = LogFactory.getLog(GroupConfigWatcher.class);
+
+	/** Hadoop configuration */
+	private Configuration configuration;
+
+	/** Path of a watched file, watching disabled if not set */
+	private String path;
+
+	/** Check interval in millis */
+	private long interval = 10000;
+
+	private YarnManagedContainerGroups managedGroups;
+
+	private ContainerGroupResolver resolver;
+
+	/** Modification time of a last read file */
+	private long lastModified = -1;
+
+	/** Length of a last read file */
+	private long lastLength = -1;
+
+	/** Modification time seen on a previous check */
+	private long seenModified = -1;
+
+	/** Length seen on a previous check */
+	private long seenLength = -1;
+
+	private volatile long applied;
+
+	private volatile long rejected;
+
+	private volatile String lastError;
+
+	private volatile ScheduledFuture<?> checkTask;
+
+	@Override
+	protected void onInit() throws Exception {
+		if (StringUtils.hasText(path)) {
+			Assert.notNull(configuration, "Hadoop configuration must be set");
+			Assert.notNull(managedGroups, "Managed groups must be set");
+		}
+	}
+
+	@Override
+	protected void doStart() {
+		if (!StringUtils.hasText(path)) {
+			return;
+		}
+		check();
+		TaskScheduler taskScheduler = getTaskScheduler();
+		if (taskScheduler != null && interval > 0) {
+			checkTask = taskScheduler.scheduleAtFixedRate(new Runnable() {
+				@Override
+				public void run() {
+					check();
+				}
+			}, interval);
+		}
+	}
+
+	@Override
+	protected void doStop() {
+		if (checkTask != null) {
+			checkTask.cancel(false);
+			checkTask = null;
+		}
+	}
+
+	/**
+	 * Checks if a file has changed and applies it. A changed file
+	 * is read only after two consecutive checks have seen the same
+	 * modification time and length, thus a file still being written
+	 * is not applied half way.
+	 *
+	 * @return true, if a changed file was applied
+	 */
+	public synchronized boolean check() {
+		Properties properties;
+		try {
+			Path p = new Path(path);
+			FileSystem fs = p.getFileSystem(configuration);
+			FileStatus status = fs.getFileStatus(p);
+			long modified = status.getModificationTime();
+			long length = status.getLen();
+			if (modified == lastModified && length == lastLength) {
+				return false;
+			}
+			if (modified != seenModified || length != seenLength) {
+				seenModified = modified;
+				seenLength = length;
+				return false;
+			}
+			properties = new Properties();
+			InputStream in = fs.open(p);
+			try {
+				properties.load(in);
+			} finally {
+				in.close();
+			}
+			// failed read is retried, broken file is
+			// not read again until modified
+			lastModified = modified;
+			lastLength = length;
+		} catch (IOException e) {
+			log.warn("Unable to read group config " + path, e);
+			return false;
+		}
+		try {
+			apply(GroupConfig.parse(properties));
+			return true;
+		} catch (IllegalArgumentException e) {
+			rejected++;
+			lastError = e.getMessage();
+			log.error("Invalid group config " + path + ", keeping current groups: " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Applies a config to live groups.
+	 *
+	 * @param config the group config
+	 * @throws IllegalArgumentException if config can't be used with a resolver or racks can't be resolved
+	 */
+	public synchronized void apply(GroupConfig config) {
+		Map<String, GroupDefinition> definitions = config.getGroups();
+		Map<String, String> rules = new LinkedHashMap<String, String>();
+		Map<String, List<String>> resolves = new Hashtable<String, List<String>>();
+		for (GroupDefinition definition : definitions.values()) {
+			if (definition.getRule() != null) {
+				rules.put(definition.getId(), definition.getRule());
+			}
+			if (definition.getHosts() != null) {
+				resolves.put(definition.getId(), definition.getHosts());
+			}
+			if (definition.getMaxPerRack() > 0) {
+				managedGroups.enableRackResolving();
+			}
+		}
+		if (!rules.isEmpty() && !(resolver instanceof NodeAttributeGroupResolver)) {
+			throw new IllegalArgumentException("Node rules set but resolver is not a NodeAttributeGroupResolver");
+		}
+
+		List<String> added = new ArrayList<String>();
+		List<String> changed = new ArrayList<String>();
+		List<String> removed = new ArrayList<String>();
+
+		// add new groups empty, update attributes not driving allocation
+		for (GroupDefinition definition : definitions.values()) {
+			String id = definition.getId();
+			YarnContainerGroup group = managedGroups.getGroup(id);
+			if (group == null) {
+				group = new YarnContainerGroup(id, 0);
+				group.setHosts(definition.getHosts());
+				group.setMaxPerHost(definition.getMaxPerHost());
+				group.setMaxPerRack(definition.getMaxPerRack());
+				group.setMaxSkew(definition.getMaxSkew());
+				managedGroups.addGroup(group);
+				added.add(id);
+				continue;
+			}
+			boolean groupChanged = false;
+			if (definition.hostsDiffer(group)) {
+				group.setHosts(definition.getHosts());
+				groupChanged = true;
+			}
+			if (definition.constraintsDiffer(group)) {
+				managedGroups.setGroupConstraints(id, definition.getMaxPerHost(), definition.getMaxPerRack(),
+						definition.getMaxSkew());
+				groupChanged = true;
+			}
+			if (groupChanged) {
+				changed.add(id);
+			}
+		}
+
+		// swap resolver rules so that new groups resolve and removed ones don't
+		if (resolver instanceof NodeAttributeGroupResolver) {
+			NodeAttributeGroupResolver nodeResolver = (NodeAttributeGroupResolver) resolver;
+			if (!rules.equals(nodeResolver.getRules())) {
+				nodeResolver.setRules(rules);
+				log.info("Swapped node rules " + rules);
+			}
+		} else if (resolver instanceof GenericContainerGroupResolver) {
+			GenericContainerGroupResolver genericResolver = (GenericContainerGroupResolver) resolver;
+			if (!resolves.equals(genericResolver.getResolves())) {
+				genericResolver.setResolves(resolves);
+				log.info("Swapped host resolves " + resolves);
+			}
+		}
+
+		for (GroupDefinition definition : definitions.values()) {
+			String id = definition.getId();
+			YarnContainerGroup group = managedGroups.getGroup(id);
+			if (group.getProjectedSize() != definition.getSize() || managedGroups.isRetiring(id)) {
+				managedGroups.setProjectedGroupSize(id, definition.getSize());
+				if (!added.contains(id) && !changed.contains(id)) {
+					changed.add(id);
+				}
+			}
+		}
+
+		for (YarnContainerGroup group : new ArrayList<YarnContainerGroup>(managedGroups.getGroups())) {
+			String id = group.getId();
+			if (!definitions.containsKey(id) && !managedGroups.isRetiring(id)) {
+				managedGroups.retireGroup(id);
+				removed.add(id);
+			}
+		}
+
+		applied++;
+		lastError = null;
+		log.info("Applied group config added=" + added + " changed=" + changed + " removed=" + removed);
+	}
+
+	/**
+	 * Sets the Hadoop configuration.
+	 *
+	 * @param configuration the new configuration
+	 */
+	public void setConfiguration(Configuration configuration) {
+		this.configuration = configuration;
+	}
+
+	/**
+	 * Sets the path of a watched file. Empty path disables watching.
+	 *
+	 * @param path the new path
+	 */
+	public void setPath(String path) {
+		this.path = path;
+	}
+
+	/**
+	 * Sets the check interval.
+	 *
+	 * @param interval the new interval in millis
+	 */
+	public void setInterval(long interval) {
+		this.interval = interval;
+	}
+
+	/**
+	 * Sets the managed groups.
+	 *
+	 * @param managedGroups the new managed groups
+	 */
+	public void setManagedGroups(YarnManagedContainerGroups managedGroups) {
+		this.managedGroups = managedGroups;
+	}
+
+	/**
+	 * Sets the resolver whose rules are swapped.
+	 *
+	 * @param resolver the new resolver
+	 */
+	public void setResolver(ContainerGroupResolver resolver) {
+		this.resolver = resolver;
+	}
+
+	@ManagedAttribute(description = "Count of applied configs")
+	public long getApplied() {
+		return applied;
+	}
+
+	@ManagedAttribute(description = "Count of rejected configs")
+	public long getRejected() {
+		return rejected;
+	}
+
+	@ManagedAttribute(description = "Error of a last rejected config")
+	public String getLastError() {
+		return lastError;
+	}
+
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.yarn;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.yarn.util.RackResolver;
+import org.springframework.yarn.examples.grid.ContainerGroupsListener;
+
+/**
+ * Tracks hosts and racks of group members and checks spread
+ * constraints set to a {@link YarnContainerGroup}. Only members
+ * of groups having constraints are tracked.
+ * <p>
+ * Placements follow members via a listener registered by
+ * {@link YarnManagedContainerGroups}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class GroupPlacements implements ContainerGroupsListener<YarnContainerGroup, YarnContainerNode> {
+
+	/** Mapping group id <-> placement counts */
+	private final Map<String, Counts> groups = new HashMap<String, Counts>();
+
+	/** Mapping host <-> rack */
+	private final Map<String, String> racks = new HashMap<String, String>();
+
+	/** Flag telling if rack resolving is used */
+	private volatile boolean resolveRacks;
+
+	/** Count of nodes rejected by constraints */
+	private long rejected;
+
+	@Override
+	public void groupAdded(YarnContainerGroup group) {
+	}
+
+	@Override
+	public synchronized void groupRemoved(YarnContainerGroup group) {
+		groups.remove(group.getId());
+	}
+
+	@Override
+	public synchronized void groupMemberAdded(YarnContainerGroup group, YarnContainerNode node) {
+		if (!group.isConstrained()) {
+			return;
+		}
+		String host = node.getHost();
+		Counts counts = getCounts(group.getId());
+		if (host != null && counts.hosts.put(node.getKey(), host) == null) {
+			increment(counts.perHost, host);
+			String rack = rackOf(host);
+			if (rack != null) {
+				increment(counts.perRack, rack);
+			}
+		}
+	}
+
+	@Override
+	public synchronized void groupMemberRemoved(YarnContainerGroup group, YarnContainerNode node) {
+		Counts counts = groups.get(group.getId());
+		String host = counts != null ? counts.hosts.remove(node.getKey()) : null;
+		if (host != null) {
+			decrement(counts.perHost, host);
+			String rack = rackOf(host);
+			if (rack != null) {
+				decrement(counts.perRack, rack);
+			}
+		}
+	}
+
+	/**
+	 * Counts members of a group again, i.e. after its
+	 * constraints have been changed.
+	 *
+	 * @param group the group
+	 */
+	public synchronized void recount(YarnContainerGroup group) {
+		groups.remove(group.getId());
+		for (YarnContainerNode node : group.getMembers()) {
+			groupMemberAdded(group, node);
+		}
+	}
+
+	/**
+	 * Checks if a container placed on a host can join a group
+	 * without breaking its constraints.
+	 *
+	 * @param group the group
+	 * @param node the container node
+	 * @return true, if allowed
+	 */
+	public synchronized boolean allows(YarnContainerGroup group, YarnContainerNode node) {
+		if (!group.isConstrained()) {
+			return true;
+		}
+		String host = node.getHost();
+		if (host == null) {
+			return true;
+		}
+		Counts counts = groups.get(group.getId());
+		int onHost = counts != null ? count(counts.perHost, host) : 0;
+		if (group.getMaxPerHost() > 0 && onHost >= group.getMaxPerHost()) {
+			return false;
+		}
+		String rack = rackOf(host);
+		if (group.getMaxPerRack() > 0 && rack != null && counts != null
+				&& count(counts.perRack, rack) >= group.getMaxPerRack()) {
+			return false;
+		}
+		if (group.getMaxSkew() > 0 && counts != null && onHost > 0) {
+			// new hosts always lower skew, loaded ones may not exceed least loaded by more than skew
+			int min = Integer.MAX_VALUE;
+			for (Integer count : counts.perHost.values()) {
+				min = Math.min(min, count);
+			}
+			if (onHost + 1 - min > group.getMaxSkew()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the count of group members on a host.
+	 *
+	 * @param group the group id
+	 * @param host the host
+	 * @return the count of members
+	 */
+	public synchronized int getHostCount(String group, String host) {
+		Counts counts = groups.get(group);
+		return counts != null ? count(counts.perHost, host) : 0;
+	}
+
+	/**
+	 * Gets the count of group members on a rack.
+	 *
+	 * @param group the group id
+	 * @param rack the rack
+	 * @return the count of members
+	 */
+	public synchronized int getRackCount(String group, String rack) {
+		Counts counts = groups.get(group);
+		return counts != null ? count(counts.perRack, rack) : 0;
+	}
+
+	/**
+	 * Gets the count of member hosts of a group.
+	 *
+	 * @param group the group id
+	 * @return the count of hosts
+	 */
+	public synchronized int getHostSpread(String group) {
+		Counts counts = groups.get(group);
+		return counts != null ? counts.perHost.size() : 0;
+	}
+
+	/**
+	 * Records a node rejected by constraints.
+	 */
+	public synchronized void rejected() {
+		rejected++;
+	}
+
+	/**
+	 * Gets the count of nodes rejected by constraints.
+	 *
+	 * @return the count of rejected nodes
+	 */
+	public synchronized long getRejected() {
+		return rejected;
+	}
+
+	/**
+	 * Checks if racks are resolved.
+	 *
+	 * @return true, if racks are resolved
+	 */
+	public boolean isResolveRacks() {
+		return resolveRacks;
+	}
+
+	/**
+	 * Sets the resolve racks.
+	 *
+	 * @param resolveRacks the new resolve racks
+	 */
+	public void setResolveRacks(boolean resolveRacks) {
+		this.resolveRacks = resolveRacks;
+	}
+
+	private Counts getCounts(String group) {
+		Counts counts = groups.get(group);
+		if (counts == null) {
+			counts = new Counts();
+			groups.put(group, counts);
+		}
+		return counts;
+	}
+
+	private String rackOf(String host) {
+		if (!resolveRacks) {
+			return null;
+		}
+		String rack = racks.get(host);
+		if (rack == null) {
+			rack = RackResolver.resolve(host).getNetworkLocation();
+			racks.put(host, rack);
+		}
+		return rack;
+	}
+
+	private static int count(Map<String, Integer> counts, String name) {
+		Integer count = counts.get(name);
+		return count != null ? count : 0;
+	}
+
+	private static void increment(Map<String, Integer> counts, String name) {
+		counts.put(name, count(counts, name) + 1);
+	}
+
+	private static void decrement(Map<String, Integer> counts, String name) {
+		int count = count(counts, name) - 1;
+		if (count > 0) {
+			counts.put(name, count);
+		} else {
+			counts.remove(name);
+		}
+	}
+
+	/**
+	 * Placement counts of one group.
+	 */
+	private static class Counts {
+
+		/** Mapping member key <-> host */
+		final LongObjectHashMap<String> hosts = new LongObjectHashMap<String>();
+
+		/** Mapping host <-> count of members */
+		final Map<String, Integer> perHost = new HashMap<String, Integer>();
+
+		/** Mapping rack <-> count of members */
+		final Map<String, Integer> perRack = new HashMap<String, Integer>();
+
+	}
+
+}
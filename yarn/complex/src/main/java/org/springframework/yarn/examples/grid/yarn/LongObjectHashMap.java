@@ -0,0 +1,253 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.yarn;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.util.Assert;
+
+/**
+ * Open addressing hash map keyed by primitive longs. Avoids boxing
+ * of keys and entry objects on lookups done on every control loop
+ * round. <code>NULL</code> values are not supported. Not thread safe.
+ *
+ * @author Janne Valkealahti
+ *
+ * @param <V> the type of values
+ */
+public class LongObjectHashMap<V> {
+
+	private long[] keys;
+
+	private Object[] values;
+
+	private int size;
+
+	private int mask;
+
+	/**
+	 * Instantiates a new long object hash map.
+	 */
+	public LongObjectHashMap() {
+		this(16);
+	}
+
+	/**
+	 * Instantiates a new long object hash map.
+	 *
+	 * @param expectedSize the expected size
+	 */
+	public LongObjectHashMap(int expectedSize) {
+		int capacity = 2;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	/**
+	 * Gets a value mapped to a key.
+	 *
+	 * @param key the key
+	 * @return the value or <code>NULL</code> if key is not mapped
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int i = index(key);
+		return i < 0 ? null : (V) values[i];
+	}
+
+	/**
+	 * Checks if key is mapped.
+	 *
+	 * @param key the key
+	 * @return true, if key is mapped
+	 */
+	public boolean containsKey(long key) {
+		return index(key) >= 0;
+	}
+
+	/**
+	 * Maps a value to a key.
+	 *
+	 * @param key the key
+	 * @param value the value
+	 * @return the previous value or <code>NULL</code> if key was not mapped
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		Assert.notNull(value, "value must not be null");
+		int i = slot(key);
+		while (values[i] != null) {
+			if (keys[i] == key) {
+				V old = (V) values[i];
+				values[i] = value;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++size * 2 > keys.length) {
+			rehash(keys.length << 1);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes a mapping of a key.
+	 *
+	 * @param key the key
+	 * @return the removed value or <code>NULL</code> if key was not mapped
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int i = index(key);
+		if (i < 0) {
+			return null;
+		}
+		V old = (V) values[i];
+		values[i] = null;
+		size--;
+		// shift following entries of a probe chain back to keep lookups intact
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (values[j] == null) {
+				break;
+			}
+			int home = slot(keys[j]);
+			if ((j > i && (home <= i || home > j)) || (j < i && home <= i && home > j)) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				values[j] = null;
+				i = j;
+			}
+		}
+		return old;
+	}
+
+	/**
+	 * Gets the count of mappings.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Checks if map is empty.
+	 *
+	 * @return true, if map is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Gets a copy of values.
+	 *
+	 * @return the list of values
+	 */
+	@SuppressWarnings("unchecked")
+	public List<V> values() {
+		ArrayList<V> ret = new ArrayList<V>(size);
+		for (Object value : values) {
+			if (value != null) {
+				ret.add((V) value);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Gets a copy of keys.
+	 *
+	 * @return the array of keys
+	 */
+	public long[] keys() {
+		long[] ret = new long[size];
+		int n = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				ret[n++] = keys[i];
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Removes all mappings.
+	 */
+	public void clear() {
+		for (int i = 0; i < values.length; i++) {
+			values[i] = null;
+		}
+		size = 0;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder("{");
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				if (buf.length() > 1) {
+					buf.append(", ");
+				}
+				buf.append(keys[i]).append('=').append(values[i]);
+			}
+		}
+		return buf.append('}').toString();
+	}
+
+	private int index(long key) {
+		int i = slot(key);
+		while (values[i] != null) {
+			if (keys[i] == key) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(capacity);
+		size = 0;
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				put(oldKeys[i], (V) oldValues[i]);
+			}
+		}
+	}
+
+}
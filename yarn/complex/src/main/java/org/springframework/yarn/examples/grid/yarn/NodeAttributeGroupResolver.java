@@ -0,0 +1,150 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.yarn;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.hadoop.yarn.api.records.Container;
+import org.apache.hadoop.yarn.api.records.NodeReport;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+/**
+ * Resolver mapping {@link Container}s into groups based on attributes
+ * of a node container is running on. Rules are compiled with
+ * {@link NodePredicates} and evaluated against a {@link ClusterNodeView},
+ * resolving never calls a resource manager. Containers on nodes not
+ * yet in a view don't match any group.
+ * <p>
+ * Specificity of a match is a count of terms in a matched rule, thus
+ * a rule <code>memory &gt;= 16g &amp;&amp; healthy</code> is preferred
+ * over <code>healthy</code>.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class NodeAttributeGroupResolver implements ContainerGroupResolver, InitializingBean {
+
+	/** Cluster node view */
+	private ClusterNodeView nodeView;
+
+	/** Mapping group name <-> rule */
+	private Map<String, String> rules = new LinkedHashMap<String, String>();
+
+	/** Compiled rules */
+	private volatile Map<String, CompiledRule> compiled = new LinkedHashMap<String, CompiledRule>();
+
+	@Override
+	public List<String> resolveGroupNames(Container container) {
+		List<String> found = new ArrayList<String>();
+		String host = container.getNodeId() != null ? container.getNodeId().getHost() : null;
+		NodeReport node = nodeView.getNode(host);
+		if (node == null) {
+			return found;
+		}
+		List<String> labels = nodeView.getLabels(host);
+		for (Entry<String, CompiledRule> entry : compiled.entrySet()) {
+			if (entry.getValue().predicate.matches(node, labels)) {
+				found.add(entry.getKey());
+			}
+		}
+		return found;
+	}
+
+	@Override
+	public int resolveSpecificity(Container container, String groupName) {
+		CompiledRule rule = compiled.get(groupName);
+		if (rule == null) {
+			return -1;
+		}
+		String host = container.getNodeId() != null ? container.getNodeId().getHost() : null;
+		NodeReport node = nodeView.getNode(host);
+		if (node == null || !rule.predicate.matches(node, nodeView.getLabels(host))) {
+			return -1;
+		}
+		return rule.terms;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(nodeView, "Cluster node view must be set");
+		Assert.state(nodeView.hasNodeSource(), "Cluster node view has no client and no node reports, "
+				+ "every container would end up in a fallback group");
+		compiled = compile(rules);
+	}
+
+	/**
+	 * Gets the rules.
+	 *
+	 * @return the mapping group name and rule
+	 */
+	public Map<String, String> getRules() {
+		return rules;
+	}
+
+	/**
+	 * Sets the rules. Rules are compiled when set after
+	 * bean has been initialized.
+	 *
+	 * @param rules the mapping group name and rule
+	 * @throws IllegalArgumentException if rule is not valid
+	 */
+	public void setRules(Map<String, String> rules) {
+		if (nodeView != null) {
+			compiled = compile(rules);
+		}
+		this.rules = rules;
+	}
+
+	/**
+	 * Sets the cluster node view.
+	 *
+	 * @param nodeView the new cluster node view
+	 */
+	public void setNodeView(ClusterNodeView nodeView) {
+		this.nodeView = nodeView;
+	}
+
+	private static Map<String, CompiledRule> compile(Map<String, String> rules) {
+		Map<String, CompiledRule> ret = new LinkedHashMap<String, CompiledRule>();
+		for (Entry<String, String> entry : rules.entrySet()) {
+			List<NodePredicate> terms = NodePredicates.compileTerms(entry.getValue());
+			ret.put(entry.getKey(), new CompiledRule(NodePredicates.and(terms), terms.size()));
+		}
+		return ret;
+	}
+
+	/**
+	 * Rule compiled into a predicate.
+	 */
+	private static class CompiledRule {
+
+		final NodePredicate predicate;
+
+		final int terms;
+
+		CompiledRule(NodePredicate predicate, int terms) {
+			this.predicate = predicate;
+			this.terms = terms;
+		}
+
+	}
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.yarn;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Tracks container failures per host. Every failure puts the host
+ * into a backoff period which grows exponentially with consecutive
+ * failures. Host having too many failures within a failure window
+ * is blacklisted for a longer period.
+ * <p>
+ * Containers allocated on a host which is either in backoff or
+ * blacklisted should not be used.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class NodeFailureTracker {
+
+	private final static Log log = LogFactory.getLog(NodeFailureTracker.class);
+
+	/** Backoff in millis after first failure */
+	private long initialBackoff = 1000;
+
+	/** Maximum backoff in millis */
+	private long maxBackoff = 60000;
+
+	/** Window in millis after which failure count is reset */
+	private long failureWindow = 600000;
+
+	/** Failure count within window causing blacklisting */
+	private int blacklistThreshold = 3;
+
+	/** Time in millis host is kept in blacklist */
+	private long blacklistDuration = 600000;
+
+	/** Mapping host <-> failure state */
+	private final Map<String, HostState> hosts = new HashMap<String, HostState>();
+
+	/**
+	 * Records a container failure on a host.
+	 *
+	 * @param host the host
+	 * @return true if host got blacklisted
+	 */
+	public synchronized boolean recordFailure(String host) {
+		if (host == null) {
+			return false;
+		}
+		long now = now();
+		HostState state = hosts.get(host);
+		if (state == null || now - state.lastFailure > failureWindow) {
+			state = new HostState();
+			hosts.put(host, state);
+		}
+		state.failures++;
+		state.lastFailure = now;
+		long backoff = initialBackoff << Math.min(state.failures - 1, 30);
+		state.backoffUntil = now + Math.min(backoff > 0 ? backoff : maxBackoff, maxBackoff);
+		if (state.failures >= blacklistThreshold) {
+			state.blacklistedUntil = now + blacklistDuration;
+			log.warn("Blacklisting host " + host + " after " + state.failures + " failures");
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if containers from a host can be used.
+	 *
+	 * @param host the host
+	 * @return true, if host is not in backoff or blacklisted
+	 */
+	public synchronized boolean isAccepted(String host) {
+		HostState state = hosts.get(host);
+		if (state == null) {
+			return true;
+		}
+		long now = now();
+		return now >= state.backoffUntil && now >= state.blacklistedUntil;
+	}
+
+	/**
+	 * Checks if host is blacklisted.
+	 *
+	 * @param host the host
+	 * @return true, if host is blacklisted
+	 */
+	public synchronized boolean isBlacklisted(String host) {
+		HostState state = hosts.get(host);
+		return state != null && now() < state.blacklistedUntil;
+	}
+
+	/**
+	 * Gets the currently blacklisted hosts.
+	 *
+	 * @return the blacklisted hosts
+	 */
+	public synchronized Collection<String> getBlacklistedHosts() {
+		ArrayList<String> ret = new ArrayList<String>();
+		long now = now();
+		for (Entry<String, HostState> entry : hosts.entrySet()) {
+			if (now < entry.getValue().blacklistedUntil) {
+				ret.add(entry.getKey());
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Gets the count of suspect hosts, meaning hosts having
+	 * failures within current window but not blacklisted.
+	 *
+	 * @return the count of suspect hosts
+	 */
+	public synchronized int getSuspectCount() {
+		int count = 0;
+		long now = now();
+		for (HostState state : hosts.values()) {
+			if (now >= state.blacklistedUntil && now - state.lastFailure <= failureWindow) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the failure count of a host within current window.
+	 *
+	 * @param host the host
+	 * @return the failure count
+	 */
+	public synchronized int getFailureCount(String host) {
+		HostState state = hosts.get(host);
+		return state != null && now() - state.lastFailure <= failureWindow ? state.failures : 0;
+	}
+
+	/**
+	 * Sets the initial backoff.
+	 *
+	 * @param initialBackoff the new initial backoff in millis
+	 */
+	public void setInitialBackoff(long initialBackoff) {
+		this.initialBackoff = initialBackoff;
+	}
+
+	/**
+	 * Sets the max backoff.
+	 *
+	 * @param maxBackoff the new max backoff in millis
+	 */
+	public void setMaxBackoff(long maxBackoff) {
+		this.maxBackoff = maxBackoff;
+	}
+
+	/**
+	 * Sets the failure window.
+	 *
+	 * @param failureWindow the new failure window in millis
+	 */
+	public void setFailureWindow(long failureWindow) {
+		this.failureWindow = failureWindow;
+	}
+
+	/**
+	 * Sets the blacklist threshold.
+	 *
+	 * @param blacklistThreshold the new blacklist threshold
+	 */
+	public void setBlacklistThreshold(int blacklistThreshold) {
+		this.blacklistThreshold = blacklistThreshold;
+	}
+
+	/**
+	 * Sets the blacklist duration.
+	 *
+	 * @param blacklistDuration the new blacklist duration in millis
+	 */
+	public void setBlacklistDuration(long blacklistDuration) {
+		this.blacklistDuration = blacklistDuration;
+	}
+
+	/**
+	 * Gets the current time. Exists for tests.
+	 *
+	 * @return the current time in millis
+	 */
+	protected long now() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * Failure state of a host.
+	 */
+	private static class HostState {
+		int failures;
+		long lastFailure;
+		long backoffUntil;
+		long blacklistedUntil;
+	}
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.yarn;
+
+import java.util.List;
+
+import org.apache.hadoop.yarn.api.records.NodeReport;
+
+/**
+ * Predicate matching a cluster node.
+ *
+ * @author Janne Valkealahti
+ * @see NodePredicates
+ *
+ */
+public interface NodePredicate {
+
+	/**
+	 * Checks if a node matches.
+	 *
+	 * @param node the node report
+	 * @param labels the labels of a node
+	 * @return true, if matches
+	 */
+	boolean matches(NodeReport node, List<String> labels);
+
+}
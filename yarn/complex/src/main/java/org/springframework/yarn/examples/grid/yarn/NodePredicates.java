@@ -0,0 +1,280 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.yarn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.yarn.api.records.NodeHealthStatus;
+import org.apache.hadoop.yarn.api.records.NodeReport;
+import org.apache.hadoop.yarn.api.records.NodeState;
+import org.apache.hadoop.yarn.api.records.Resource;
+import org.springframework.util.StringUtils;
+
+/**
+ * Compiles node rules into {@link NodePredicate}s. A rule is a list
+ * of terms joined with <code>&amp;&amp;</code>, all of which must match:
+ * <ul>
+ * <li><code>memory</code>, <code>vcores</code>, <code>availableMemory</code>,
+ * <code>availableVcores</code> and <code>containers</code> compared with
+ * <code>&gt;=</code>, <code>&lt;=</code>, <code>&gt;</code>, <code>&lt;</code>,
+ * <code>==</code> or <code>!=</code>. Memory is in megabytes unless
+ * suffixed with <code>g</code>.</li>
+ * <li><code>host</code>, <code>rack</code> and <code>state</code> compared
+ * with <code>==</code> or <code>!=</code>.</li>
+ * <li><code>healthy</code> for a running node reporting healthy.</li>
+ * <li><code>label:name</code> for a node having a label.</li>
+ * <li><code>*</code> matching all nodes.</li>
+ * </ul>
+ * Terms other than <code>*</code> can be negated with <code>!</code>,
+ * for example <code>memory &gt;= 16g &amp;&amp; healthy &amp;&amp; !label:ssd</code>.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public abstract class NodePredicates {
+
+	/** Numeric attributes, index is used by compiled predicates */
+	private final static String[] NUMERIC_ATTRIBUTES = { "memory", "vcores", "availableMemory", "availableVcores",
+			"containers" };
+
+	/** Operators, index is used by compiled predicates */
+	private final static String[] OPERATORS = { ">=", "<=", "==", "!=", ">", "<" };
+
+	private final static Pattern COMPARISON = Pattern.compile("(\\w+)\\s*(>=|<=|==|!=|>|<)\\s*(\\S+)");
+
+	/**
+	 * Compiles a rule into a predicate.
+	 *
+	 * @param rule the rule
+	 * @return the node predicate
+	 * @throws IllegalArgumentException if rule is not valid
+	 */
+	public static NodePredicate compile(String rule) {
+		return and(compileTerms(rule));
+	}
+
+	/**
+	 * Compiles terms of a rule into predicates.
+	 *
+	 * @param rule the rule
+	 * @return the node predicates, one per term
+	 * @throws IllegalArgumentException if rule is not valid
+	 */
+	public static List<NodePredicate> compileTerms(String rule) {
+		if (!StringUtils.hasText(rule)) {
+			throw new IllegalArgumentException("Empty node rule");
+		}
+		List<NodePredicate> terms = new ArrayList<NodePredicate>();
+		for (String term : rule.split("&&")) {
+			terms.add(compileTerm(term.trim(), rule));
+		}
+		return terms;
+	}
+
+	/**
+	 * Combines predicates into one matching if all match.
+	 *
+	 * @param predicates the predicates
+	 * @return the node predicate
+	 */
+	public static NodePredicate and(final List<NodePredicate> predicates) {
+		if (predicates.size() == 1) {
+			return predicates.get(0);
+		}
+		return new NodePredicate() {
+			@Override
+			public boolean matches(NodeReport node, List<String> labels) {
+				for (NodePredicate predicate : predicates) {
+					if (!predicate.matches(node, labels)) {
+						return false;
+					}
+				}
+				return true;
+			}
+		};
+	}
+
+	private static NodePredicate compileTerm(String term, String rule) {
+		if (term.equals("*")) {
+			return new NodePredicate() {
+				@Override
+				public boolean matches(NodeReport node, List<String> labels) {
+					return true;
+				}
+			};
+		}
+		if (term.startsWith("!")) {
+			final NodePredicate negated = compileTerm(term.substring(1).trim(), rule);
+			return new NodePredicate() {
+				@Override
+				public boolean matches(NodeReport node, List<String> labels) {
+					return !negated.matches(node, labels);
+				}
+			};
+		}
+		if (term.equals("healthy")) {
+			return new NodePredicate() {
+				@Override
+				public boolean matches(NodeReport node, List<String> labels) {
+					NodeHealthStatus health = node.getNodeHealthStatus();
+					return node.getNodeState() == NodeState.RUNNING && health != null && health.getIsNodeHealthy();
+				}
+			};
+		}
+		if (term.startsWith("label:")) {
+			final String label = term.substring(6).trim();
+			if (label.length() == 0) {
+				throw new IllegalArgumentException("Missing label in node rule '" + rule + "'");
+			}
+			return new NodePredicate() {
+				@Override
+				public boolean matches(NodeReport node, List<String> labels) {
+					return labels.contains(label);
+				}
+			};
+		}
+		Matcher matcher = COMPARISON.matcher(term);
+		if (!matcher.matches()) {
+			throw new IllegalArgumentException("Invalid term '" + term + "' in node rule '" + rule + "'");
+		}
+		String attribute = matcher.group(1);
+		String op = matcher.group(2);
+		String value = matcher.group(3);
+		if (attribute.equals("host") || attribute.equals("rack") || attribute.equals("state")) {
+			if (!op.equals("==") && !op.equals("!=")) {
+				throw new IllegalArgumentException("Attribute " + attribute + " can only be compared with == or != in node rule '"
+						+ rule + "'");
+			}
+			return new TextComparison(attribute, op.equals("=="), value);
+		}
+		if (indexOf(NUMERIC_ATTRIBUTES, attribute) < 0) {
+			throw new IllegalArgumentException("Unknown attribute " + attribute + " in node rule '" + rule + "'");
+		}
+		return new NumberComparison(attribute, op, parseNumber(attribute, value, rule));
+	}
+
+	private static long parseNumber(String attribute, String value, String rule) {
+		long multiplier = 1;
+		if (attribute.toLowerCase().endsWith("memory") && (value.endsWith("g") || value.endsWith("G"))) {
+			multiplier = 1024;
+			value = value.substring(0, value.length() - 1);
+		} else if (attribute.toLowerCase().endsWith("memory") && (value.endsWith("m") || value.endsWith("M"))) {
+			value = value.substring(0, value.length() - 1);
+		}
+		try {
+			return Long.parseLong(value) * multiplier;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid number '" + value + "' in node rule '" + rule + "'");
+		}
+	}
+
+	private static int indexOf(String[] values, String value) {
+		for (int i = 0; i < values.length; i++) {
+			if (values[i].equals(value)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Predicate comparing a numeric attribute.
+	 */
+	private static class NumberComparison implements NodePredicate {
+
+		private final int attribute;
+		private final int op;
+		private final long value;
+
+		NumberComparison(String attribute, String op, long value) {
+			this.attribute = indexOf(NUMERIC_ATTRIBUTES, attribute);
+			this.op = indexOf(OPERATORS, op);
+			this.value = value;
+		}
+
+		@Override
+		public boolean matches(NodeReport node, List<String> labels) {
+			long actual = get(node);
+			switch (op) {
+			case 0:
+				return actual >= value;
+			case 1:
+				return actual <= value;
+			case 2:
+				return actual == value;
+			case 3:
+				return actual != value;
+			case 4:
+				return actual > value;
+			default:
+				return actual < value;
+			}
+		}
+
+		private long get(NodeReport node) {
+			Resource capability = node.getCapability();
+			Resource used = node.getUsed();
+			switch (attribute) {
+			case 0:
+				return capability != null ? capability.getMemory() : 0;
+			case 1:
+				return capability != null ? capability.getVirtualCores() : 0;
+			case 2:
+				return (capability != null ? capability.getMemory() : 0) - (used != null ? used.getMemory() : 0);
+			case 3:
+				return (capability != null ? capability.getVirtualCores() : 0)
+						- (used != null ? used.getVirtualCores() : 0);
+			default:
+				return node.getNumContainers();
+			}
+		}
+
+	}
+
+	/**
+	 * Predicate comparing a textual attribute.
+	 */
+	private static class TextComparison implements NodePredicate {
+
+		private final String attribute;
+		private final boolean equal;
+		private final String value;
+
+		TextComparison(String attribute, boolean equal, String value) {
+			this.attribute = attribute;
+			this.equal = equal;
+			this.value = value;
+		}
+
+		@Override
+		public boolean matches(NodeReport node, List<String> labels) {
+			String actual;
+			if (attribute.equals("host")) {
+				actual = node.getNodeId() != null ? node.getNodeId().getHost() : null;
+			} else if (attribute.equals("rack")) {
+				actual = node.getRackName();
+			} else {
+				actual = node.getNodeState() != null ? node.getNodeState().name() : null;
+			}
+			return value.equals(actual) == equal;
+		}
+
+	}
+
+}
@@ -0,0 +1,448 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.yarn;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Ledger of container requests per group. Tracks asks sent to resource
+ * manager but not yet granted and granted containers not yet launched.
+ * Net request of a group is its projected size minus members and pending
+ * asks.
+ * <p>
+ * An ask stays outstanding on resource manager side until it is granted
+ * or withdrawn, thus an ask is counted as pending until the same happens
+ * here. If asks can be withdrawn from an allocator, asks which are not
+ * granted within a timeout and asks cancelled by a shrinking or removed
+ * group are withdrawn and collected with {@link #drainWithdrawn()}.
+ * Otherwise stale asks are kept pending and cancelled asks are orphaned,
+ * meaning those are consumed by a next grant not having a pending ask
+ * of its own.
+ * <p>
+ * Asks are not bound to groups on resource manager side, so a grant
+ * is first accounted to the group receiving it, then to its speculative
+ * extras, then to orphaned asks and lastly to the oldest pending ask of
+ * any group. Speculative extras are asks on top of a net request of a
+ * group and are kept apart from its pending asks.
+ * <p>
+ * Containers are identified by keys from {@link ContainerKeys}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class RequestLedger {
+
+	/** Time in millis after which ask is considered stale */
+	private long askTimeout = 60000;
+
+	/** Group <-> times of pending asks, oldest first */
+	private final Map<String, LinkedList<Long>> pending = new HashMap<String, LinkedList<Long>>();
+
+	/** Group <-> times of speculative extra asks, oldest first */
+	private final Map<String, LinkedList<Long>> extras = new HashMap<String, LinkedList<Long>>();
+
+	/** Container key <-> group of granted containers not yet launched */
+	private final LongObjectHashMap<String> launching = new LongObjectHashMap<String>();
+
+	/** Group <-> count of granted containers not yet launched */
+	private final Map<String, Integer> launchingCounts = new HashMap<String, Integer>();
+
+	/** Group <-> count of granted containers */
+	private final Map<String, Long> granted = new HashMap<String, Long>();
+
+	/** Count of expired asks */
+	private long expired;
+
+	/** Count of cancelled asks still outstanding on resource manager */
+	private int orphaned;
+
+	/** Count of asks to withdraw from an allocator */
+	private int withdrawn;
+
+	/** Flag telling if asks can be withdrawn from an allocator */
+	private boolean withdrawAsks;
+
+	/**
+	 * Records asks sent for a group.
+	 *
+	 * @param group the group id
+	 * @param count the count of asks
+	 */
+	public synchronized void asked(String group, int count) {
+		LinkedList<Long> asks = getPendingInternal(group);
+		long now = now();
+		for (int i = 0; i < count; i++) {
+			asks.addLast(now);
+		}
+	}
+
+	/**
+	 * Records speculative extra asks sent for a group.
+	 *
+	 * @param group the group id
+	 * @param count the count of extra asks
+	 */
+	public synchronized void askedSpeculative(String group, int count) {
+		LinkedList<Long> asks = extras.get(group);
+		if (asks == null) {
+			asks = new LinkedList<Long>();
+			extras.put(group, asks);
+		}
+		long now = now();
+		for (int i = 0; i < count; i++) {
+			asks.addLast(now);
+		}
+	}
+
+	/**
+	 * Cancels newest pending asks of a group. Cancelled asks are
+	 * either withdrawn or orphaned.
+	 *
+	 * @param group the group id
+	 * @param count the count of asks
+	 */
+	public synchronized void cancel(String group, int count) {
+		LinkedList<Long> asks = pending.get(group);
+		for (int i = 0; asks != null && i < count && !asks.isEmpty(); i++) {
+			asks.removeLast();
+			cancelled();
+		}
+	}
+
+	/**
+	 * Removes all state of a group. Its pending asks are
+	 * cancelled and its launching containers forgotten.
+	 *
+	 * @param group the group id
+	 */
+	public synchronized void removeGroup(String group) {
+		LinkedList<Long> asks = pending.remove(group);
+		for (int i = 0; asks != null && i < asks.size(); i++) {
+			cancelled();
+		}
+		asks = extras.remove(group);
+		for (int i = 0; asks != null && i < asks.size(); i++) {
+			cancelled();
+		}
+		if (launchingCounts.remove(group) != null) {
+			for (long key : launching.keys()) {
+				if (group.equals(launching.get(key))) {
+					launching.remove(key);
+				}
+			}
+		}
+		granted.remove(group);
+	}
+
+	/**
+	 * Records a granted container.
+	 *
+	 * @param group the group container was added to, <code>NULL</code> if none
+	 * @param key the container key
+	 * @return the group whose ask was consumed, <code>NULL</code> if none was pending
+	 */
+	public synchronized String granted(String group, long key) {
+		if (group != null) {
+			addLaunching(key, group);
+			Long count = granted.get(group);
+			granted.put(group, count != null ? count + 1 : 1);
+		}
+		String consumed = null;
+		LinkedList<Long> asks = group != null ? pending.get(group) : null;
+		LinkedList<Long> extra = group != null ? extras.get(group) : null;
+		if (asks != null && !asks.isEmpty()) {
+			consumed = group;
+		} else if (extra != null && !extra.isEmpty()) {
+			extra.removeFirst();
+			return group;
+		} else if (orphaned > 0) {
+			orphaned--;
+			return null;
+		} else {
+			long oldest = Long.MAX_VALUE;
+			for (Entry<String, LinkedList<Long>> entry : pending.entrySet()) {
+				if (!entry.getValue().isEmpty() && entry.getValue().getFirst() < oldest) {
+					oldest = entry.getValue().getFirst();
+					consumed = entry.getKey();
+				}
+			}
+		}
+		if (consumed != null) {
+			pending.get(consumed).removeFirst();
+		}
+		return consumed;
+	}
+
+	/**
+	 * Records a granted container not matching any group, consuming
+	 * a speculative extra ask of a group which asked it first.
+	 *
+	 * @return the group whose extra ask was consumed, <code>NULL</code> if none was pending
+	 */
+	public synchronized String grantedSpeculative() {
+		String consumed = null;
+		long oldest = Long.MAX_VALUE;
+		for (Entry<String, LinkedList<Long>> entry : extras.entrySet()) {
+			if (!entry.getValue().isEmpty() && entry.getValue().getFirst() < oldest) {
+				oldest = entry.getValue().getFirst();
+				consumed = entry.getKey();
+			}
+		}
+		if (consumed != null) {
+			extras.get(consumed).removeFirst();
+		}
+		return consumed;
+	}
+
+	/**
+	 * Records a launched container.
+	 *
+	 * @param key the container key
+	 */
+	public synchronized void launched(long key) {
+		removeLaunching(key);
+	}
+
+	/**
+	 * Records a removed container.
+	 *
+	 * @param key the container key
+	 */
+	public void removed(long key) {
+		launched(key);
+	}
+
+	/**
+	 * Gets the count of pending asks of a group. If asks can be
+	 * withdrawn, stale asks are expired and withdrawn before counting.
+	 *
+	 * @param group the group id
+	 * @return the count of pending asks
+	 */
+	public synchronized int getPending(String group) {
+		LinkedList<Long> asks = pending.get(group);
+		if (withdrawAsks) {
+			expire(asks);
+			expire(extras.get(group));
+		}
+		return asks != null ? asks.size() : 0;
+	}
+
+	/**
+	 * Gets the count of speculative extra asks of a group
+	 * not yet granted.
+	 *
+	 * @param group the group id
+	 * @return the count of extra asks
+	 */
+	public synchronized int getSpeculative(String group) {
+		LinkedList<Long> asks = extras.get(group);
+		return asks != null ? asks.size() : 0;
+	}
+
+	/**
+	 * Gets the count of stale asks of a group, meaning
+	 * asks pending longer than a timeout.
+	 *
+	 * @param group the group id
+	 * @return the count of stale asks
+	 */
+	public synchronized int getStale(String group) {
+		LinkedList<Long> asks = pending.get(group);
+		if (asks == null) {
+			return 0;
+		}
+		long limit = now() - askTimeout;
+		int count = 0;
+		for (Long time : asks) {
+			if (time >= limit) {
+				break;
+			}
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the count of all asks outstanding on resource manager,
+	 * meaning pending asks of all groups and orphaned asks.
+	 *
+	 * @return the count of outstanding asks
+	 */
+	public synchronized int getOutstanding() {
+		int count = orphaned;
+		for (LinkedList<Long> asks : pending.values()) {
+			count += asks.size();
+		}
+		for (LinkedList<Long> asks : extras.values()) {
+			count += asks.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the count of cancelled asks not withdrawn
+	 * and not yet consumed by a grant.
+	 *
+	 * @return the count of orphaned asks
+	 */
+	public synchronized int getOrphaned() {
+		return orphaned;
+	}
+
+	/**
+	 * Gets and resets the count of asks to withdraw from an allocator.
+	 *
+	 * @return the count of asks to withdraw
+	 */
+	public synchronized int drainWithdrawn() {
+		int count = withdrawn;
+		withdrawn = 0;
+		return count;
+	}
+
+	/**
+	 * Gets the count of granted containers of a group not yet launched.
+	 *
+	 * @param group the group id
+	 * @return the count of launching containers
+	 */
+	public synchronized int getLaunching(String group) {
+		Integer count = launchingCounts.get(group);
+		return count != null ? count : 0;
+	}
+
+	/**
+	 * Gets the count of granted containers of a group.
+	 *
+	 * @param group the group id
+	 * @return the count of granted containers
+	 */
+	public synchronized long getGranted(String group) {
+		Long count = granted.get(group);
+		return count != null ? count : 0;
+	}
+
+	/**
+	 * Gets the count of expired asks.
+	 *
+	 * @return the count of expired asks
+	 */
+	public synchronized long getExpired() {
+		return expired;
+	}
+
+	/**
+	 * Sets the ask timeout.
+	 *
+	 * @param askTimeout the new ask timeout in millis
+	 */
+	public void setAskTimeout(long askTimeout) {
+		this.askTimeout = askTimeout;
+	}
+
+	/**
+	 * Sets if asks can be withdrawn from an allocator. If disabled
+	 * which is a default, asks are kept pending until granted.
+	 *
+	 * @param withdrawAsks the new withdraw asks flag
+	 */
+	public synchronized void setWithdrawAsks(boolean withdrawAsks) {
+		this.withdrawAsks = withdrawAsks;
+	}
+
+	/**
+	 * Checks if asks can be withdrawn from an allocator.
+	 *
+	 * @return true, if asks are withdrawn
+	 */
+	public synchronized boolean isWithdrawAsks() {
+		return withdrawAsks;
+	}
+
+	/**
+	 * Gets the current time. Exists for tests.
+	 *
+	 * @return the current time in millis
+	 */
+	protected long now() {
+		return System.currentTimeMillis();
+	}
+
+	private void expire(LinkedList<Long> asks) {
+		if (asks == null) {
+			return;
+		}
+		long limit = now() - askTimeout;
+		for (Iterator<Long> iterator = asks.iterator(); iterator.hasNext();) {
+			if (iterator.next() >= limit) {
+				break;
+			}
+			iterator.remove();
+			expired++;
+			withdrawn++;
+		}
+	}
+
+	private void cancelled() {
+		if (withdrawAsks) {
+			withdrawn++;
+		} else {
+			orphaned++;
+		}
+	}
+
+	private void addLaunching(long key, String group) {
+		String old = launching.put(key, group);
+		if (old != null) {
+			decrementLaunching(old);
+		}
+		Integer count = launchingCounts.get(group);
+		launchingCounts.put(group, count != null ? count + 1 : 1);
+	}
+
+	private boolean removeLaunching(long key) {
+		String group = launching.remove(key);
+		if (group == null) {
+			return false;
+		}
+		decrementLaunching(group);
+		return true;
+	}
+
+	private void decrementLaunching(String group) {
+		Integer count = launchingCounts.get(group);
+		if (count == null || count <= 1) {
+			launchingCounts.remove(group);
+		} else {
+			launchingCounts.put(group, count - 1);
+		}
+	}
+
+	private LinkedList<Long> getPendingInternal(String group) {
+		LinkedList<Long> asks = pending.get(group);
+		if (asks == null) {
+			asks = new LinkedList<Long>();
+			pending.put(group, asks);
+		}
+		return asks;
+	}
+
+}
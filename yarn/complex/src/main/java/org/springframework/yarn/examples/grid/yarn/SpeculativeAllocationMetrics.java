@@ -0,0 +1,245 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.yarn;
+
+import java.util.LinkedList;
+
+/**
+ * Metrics for speculative allocation done by {@link YarnManagedContainerGroups}.
+ * <p>
+ * Every speculative request is tracked as a round asking N+k containers
+ * for a group. Group is ready when N containers have arrived while exact
+ * allocation would have needed to wait the slowest of its requests.
+ * Saved latency of a round is estimated as time between the Nth and
+ * the last arrival of the round. Wasted capacity is counted as extra
+ * containers released and time extra containers spend in a warm pool.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class SpeculativeAllocationMetrics {
+
+	/** Rounds in order of requests */
+	private final LinkedList<Round> rounds = new LinkedList<Round>();
+
+	private long roundCount;
+	private long requestedExtra;
+	private long adopted;
+	private long released;
+	private long pooled;
+	private long adoptedFromPool;
+	private long savedMillis;
+	private long readyMillis;
+	private long readyRounds;
+	private long warmIdleMillis;
+
+	/**
+	 * Records a start of a speculative round.
+	 *
+	 * @param groupId the group id
+	 * @param needed the needed container count
+	 * @param extra the extra container count
+	 */
+	public synchronized void roundStarted(String groupId, int needed, int extra) {
+		Round round = new Round();
+		round.groupId = groupId;
+		round.needed = needed;
+		round.extra = extra;
+		round.start = now();
+		rounds.add(round);
+		roundCount++;
+		requestedExtra += extra;
+	}
+
+	/**
+	 * Records a new container adopted into a group.
+	 *
+	 * @param groupId the group id
+	 */
+	public synchronized void containerAdopted(String groupId) {
+		adopted++;
+		for (Round round : rounds) {
+			if (round.groupId.equals(groupId) && round.arrived < round.needed) {
+				arrived(round);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Records an extra container which was not needed.
+	 *
+	 * @param toPool true if container went to warm pool, false if released
+	 */
+	public synchronized void containerSurplus(boolean toPool) {
+		if (toPool) {
+			pooled++;
+		} else {
+			released++;
+		}
+		for (Round round : rounds) {
+			if (round.arrived >= round.needed && round.arrived < round.needed + round.extra) {
+				arrived(round);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Records a container adopted from a warm pool.
+	 *
+	 * @param idleMillis the time container spent in a pool
+	 */
+	public synchronized void containerAdoptedFromPool(long idleMillis) {
+		adoptedFromPool++;
+		warmIdleMillis += idleMillis;
+	}
+
+	/**
+	 * Records a container released from a warm pool.
+	 *
+	 * @param idleMillis the time container spent in a pool
+	 */
+	public synchronized void containerReleasedFromPool(long idleMillis) {
+		released++;
+		warmIdleMillis += idleMillis;
+	}
+
+	/**
+	 * Gets the count of started rounds.
+	 *
+	 * @return the round count
+	 */
+	public synchronized long getRounds() {
+		return roundCount;
+	}
+
+	/**
+	 * Gets the count of requested extra containers.
+	 *
+	 * @return the requested extra count
+	 */
+	public synchronized long getRequestedExtra() {
+		return requestedExtra;
+	}
+
+	/**
+	 * Gets the count of containers adopted into groups.
+	 *
+	 * @return the adopted count
+	 */
+	public synchronized long getAdopted() {
+		return adopted;
+	}
+
+	/**
+	 * Gets the count of released extra containers.
+	 *
+	 * @return the released count
+	 */
+	public synchronized long getReleased() {
+		return released;
+	}
+
+	/**
+	 * Gets the count of extra containers put into warm pool.
+	 *
+	 * @return the pooled count
+	 */
+	public synchronized long getPooled() {
+		return pooled;
+	}
+
+	/**
+	 * Gets the count of containers adopted from warm pool.
+	 *
+	 * @return the adopted from pool count
+	 */
+	public synchronized long getAdoptedFromPool() {
+		return adoptedFromPool;
+	}
+
+	/**
+	 * Gets the estimated total saved latency.
+	 *
+	 * @return the saved latency in millis
+	 */
+	public synchronized long getSavedMillis() {
+		return savedMillis;
+	}
+
+	/**
+	 * Gets the average time for a group to get ready.
+	 *
+	 * @return the average ready time in millis
+	 */
+	public synchronized long getAverageReadyMillis() {
+		return readyRounds > 0 ? readyMillis / readyRounds : 0;
+	}
+
+	/**
+	 * Gets the total time containers spent idle in warm pool.
+	 *
+	 * @return the warm idle time in millis
+	 */
+	public synchronized long getWarmIdleMillis() {
+		return warmIdleMillis;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "SpeculativeAllocationMetrics [rounds=" + roundCount + ", requestedExtra=" + requestedExtra
+				+ ", adopted=" + adopted + ", released=" + released + ", pooled=" + pooled + ", adoptedFromPool="
+				+ adoptedFromPool + ", savedMillis=" + savedMillis + ", averageReadyMillis="
+				+ (readyRounds > 0 ? readyMillis / readyRounds : 0) + ", warmIdleMillis=" + warmIdleMillis + "]";
+	}
+
+	/**
+	 * Gets the current time. Exists for tests.
+	 *
+	 * @return the current time in millis
+	 */
+	protected long now() {
+		return System.currentTimeMillis();
+	}
+
+	private void arrived(Round round) {
+		long now = now();
+		round.arrived++;
+		if (round.arrived == round.needed) {
+			round.ready = now;
+			readyMillis += now - round.start;
+			readyRounds++;
+		}
+		if (round.arrived >= round.needed + round.extra) {
+			savedMillis += now - round.ready;
+			rounds.remove(round);
+		}
+	}
+
+	/**
+	 * State of a single speculative round.
+	 */
+	private static class Round {
+		String groupId;
+		int needed;
+		int extra;
+		int arrived;
+		long start;
+		long ready;
+	}
+
+}
@@ -16,9 +16,10 @@
 package org.springframework.yarn.examples.grid.yarn;
 
 import java.util.Collection;
-import java.util.Hashtable;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.springframework.util.Assert;
 import org.springframework.yarn.examples.grid.ContainerGroup;
 
 /**
@@ -34,17 +35,29 @@ public class YarnContainerGroup implements ContainerGroup {
 	/** Group identifier, usually just name */
 	private final String id;
 
-	/** Mapping container id <-> container node */
-	private Hashtable<String, YarnContainerNode> members = new Hashtable<String, YarnContainerNode>();
+	/** Mapping container key <-> container node, guarded by itself */
+	private final LongObjectHashMap<YarnContainerNode> members = new LongObjectHashMap<YarnContainerNode>();
+
+	/** Member count kept outside of members for lock-free reads */
+	private final AtomicInteger size = new AtomicInteger();
 
 	/** Current projected size of this group */
-	private int projectedSize;
+	private volatile int projectedSize;
 
 	/** List of hosts this group requests allocation */
 	private List<String> hosts;
 
-	/**  */
-	private boolean dirty = true;
+	/** Flag telling if group needs rebalance */
+	private volatile boolean dirty = true;
+
+	/** Max members per host, zero for no limit */
+	private volatile int maxPerHost;
+
+	/** Max members per rack, zero for no limit */
+	private volatile int maxPerRack;
+
+	/** Max difference of member counts between hosts, zero for no limit */
+	private volatile int maxSkew;
 
 	/**
 	 * Instantiates a new yarn container group.
@@ -78,7 +91,24 @@ public class YarnContainerGroup implements ContainerGroup {
 	 * @return Removed container node or <code>NULL</code> if key didn't have mapping
 	 */
 	public YarnContainerNode removeMember(String id) {
-		return members.remove(id);
+		return removeMember(ContainerKeys.toKey(id));
+	}
+
+	/**
+	 * Removes the member.
+	 *
+	 * @param key the Container key
+	 * @return Removed container node or <code>NULL</code> if key didn't have mapping
+	 */
+	public YarnContainerNode removeMember(long key) {
+		YarnContainerNode removed;
+		synchronized (members) {
+			removed = members.remove(key);
+		}
+		if (removed != null) {
+			size.decrementAndGet();
+		}
+		return removed;
 	}
 
 	/**
@@ -87,16 +117,18 @@ public class YarnContainerGroup implements ContainerGroup {
 	 * @return the size
 	 */
 	public int getSize() {
-		return members.size();
+		return size.get();
 	}
 
 	/**
-	 * Gets the members.
+	 * Gets a snapshot of the members.
 	 *
 	 * @return the members
 	 */
 	public Collection<YarnContainerNode> getMembers() {
-		return members.values();
+		synchronized (members) {
+			return members.values();
+		}
 	}
 
 	/**
@@ -106,11 +138,41 @@ public class YarnContainerGroup implements ContainerGroup {
 	 * @return true, if successful
 	 */
 	public boolean hasMember(String id) {
-		return members.containsKey(id);
+		return hasMember(ContainerKeys.toKey(id));
+	}
+
+	/**
+	 * Tests if a specific key is mapped for members.
+	 *
+	 * @param key the Container key
+	 * @return true, if successful
+	 */
+	public boolean hasMember(long key) {
+		synchronized (members) {
+			return members.containsKey(key);
+		}
 	}
 
+	/**
+	 * Gets the member.
+	 *
+	 * @param id the Container identifier
+	 * @return the member or <code>NULL</code> if not a member
+	 */
 	public YarnContainerNode getMember(String id) {
-		return members.get(id);
+		return getMember(ContainerKeys.toKey(id));
+	}
+
+	/**
+	 * Gets the member.
+	 *
+	 * @param key the Container key
+	 * @return the member or <code>NULL</code> if not a member
+	 */
+	public YarnContainerNode getMember(long key) {
+		synchronized (members) {
+			return members.get(key);
+		}
 	}
 
 	/**
@@ -119,7 +181,14 @@ public class YarnContainerGroup implements ContainerGroup {
 	 * @param member the member
 	 */
 	public void addMember(YarnContainerNode member) {
-		members.put(member.getId(), member);
+		Assert.isTrue(member.getKey() != ContainerKeys.NO_KEY, "Malformed container id " + member.getId());
+		YarnContainerNode old;
+		synchronized (members) {
+			old = members.put(member.getKey(), member);
+		}
+		if (old == null) {
+			size.incrementAndGet();
+		}
 	}
 
 	/**
@@ -192,9 +261,73 @@ public class YarnContainerGroup implements ContainerGroup {
 		return hosts;
 	}
 
+	/**
+	 * Gets the max members per host.
+	 *
+	 * @return the max members per host, zero for no limit
+	 */
+	public int getMaxPerHost() {
+		return maxPerHost;
+	}
+
+	/**
+	 * Sets the max members per host.
+	 *
+	 * @param maxPerHost the new max members per host, zero for no limit
+	 */
+	public void setMaxPerHost(int maxPerHost) {
+		this.maxPerHost = maxPerHost;
+	}
+
+	/**
+	 * Gets the max members per rack.
+	 *
+	 * @return the max members per rack, zero for no limit
+	 */
+	public int getMaxPerRack() {
+		return maxPerRack;
+	}
+
+	/**
+	 * Sets the max members per rack.
+	 *
+	 * @param maxPerRack the new max members per rack, zero for no limit
+	 */
+	public void setMaxPerRack(int maxPerRack) {
+		this.maxPerRack = maxPerRack;
+	}
+
+	/**
+	 * Gets the max skew.
+	 *
+	 * @return the max skew, zero for no limit
+	 */
+	public int getMaxSkew() {
+		return maxSkew;
+	}
+
+	/**
+	 * Sets the max skew which is an allowed difference between
+	 * member counts of most and least loaded hosts of a group.
+	 *
+	 * @param maxSkew the new max skew, zero for no limit
+	 */
+	public void setMaxSkew(int maxSkew) {
+		this.maxSkew = maxSkew;
+	}
+
+	/**
+	 * Checks if group has spread constraints.
+	 *
+	 * @return true, if constrained
+	 */
+	public boolean isConstrained() {
+		return maxPerHost > 0 || maxPerRack > 0 || maxSkew > 0;
+	}
+
 	@Override
 	public String toString() {
-		return "Group [id=" + id + ", members=" + members + ", projectedSize=" + projectedSize + ", dirty=" + dirty
+		return "Group [id=" + id + ", members=" + getMembers() + ", projectedSize=" + projectedSize + ", dirty=" + dirty
 				+ "]";
 	}
 
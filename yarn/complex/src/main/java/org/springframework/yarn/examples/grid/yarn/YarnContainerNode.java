@@ -34,4 +34,33 @@ public interface YarnContainerNode extends ContainerNode {
 	 */
 	Container getContainer();
 
+	/**
+	 * Gets a compact numeric key of a container.
+	 *
+	 * @return the container key
+	 * @see ContainerKeys
+	 */
+	long getKey();
+
+	/**
+	 * Gets the host a container is running on.
+	 *
+	 * @return the host or <code>NULL</code> if not known
+	 */
+	String getHost();
+
+	/**
+	 * Gets the memory of a container.
+	 *
+	 * @return the memory in megabytes, negative if not known
+	 */
+	int getMemory();
+
+	/**
+	 * Gets the virtual cores of a container.
+	 *
+	 * @return the virtual cores, negative if not known
+	 */
+	int getVirtualCores();
+
 }
@@ -16,7 +16,9 @@
 package org.springframework.yarn.examples.grid.yarn;
 
 import java.util.List;
+import java.util.Map;
 
+import org.apache.hadoop.yarn.api.records.Container;
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.springframework.yarn.am.allocate.ContainerAllocateData;
 import org.springframework.yarn.examples.grid.GroupsRebalanceData;
@@ -45,4 +47,29 @@ public interface YarnGroupsRebalanceData extends GroupsRebalanceData {
 	 */
 	List<ContainerId> getContainers();
 
+	/**
+	 * Gets a list of already allocated {@link Container}s
+	 * adopted into groups which still need to be launched.
+	 *
+	 * @return List of adopted containers
+	 */
+	List<Container> getAdoptedContainers();
+
+	/**
+	 * Gets counts of requested containers per group
+	 * included in {@link #getAllocateData()}.
+	 *
+	 * @return Mapping group id <-> requested count
+	 */
+	Map<String, Integer> getAllocateCounts();
+
+	/**
+	 * Gets a count of outstanding asks to withdraw from
+	 * an allocator. Only set if asks can be withdrawn.
+	 *
+	 * @return Count of asks to withdraw
+	 * @see RequestLedger#setWithdrawAsks(boolean)
+	 */
+	int getWithdrawCount();
+
 }
@@ -17,16 +17,22 @@ package org.springframework.yarn.examples.grid.yarn;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.yarn.api.records.Container;
 import org.apache.hadoop.yarn.api.records.ContainerId;
-import org.apache.hadoop.yarn.util.ConverterUtils;
+import org.apache.hadoop.yarn.util.RackResolver;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 import org.springframework.yarn.am.allocate.ContainerAllocateData;
@@ -36,6 +42,7 @@ import org.springframework.yarn.examples.grid.ContainerGridListener;
 import org.springframework.yarn.examples.grid.ContainerGroupsListener;
 import org.springframework.yarn.examples.grid.ManagedContainerGroups;
 import org.springframework.yarn.examples.grid.RebalancePolicy;
+import org.springframework.yarn.examples.metrics.AppmasterMetrics;
 
 /**
  * Yarn specific implementation of {@link ManagedContainerGroups}.
@@ -54,6 +61,9 @@ public class YarnManagedContainerGroups implements
 	/** Reservation for default fallback group name */
 	public final static String DEFAULT_FALLBACK_GROUP = "fallback-default";
 
+	/** Reservation for warm pool group name */
+	public final static String WARM_POOL_GROUP = "warm-pool";
+
 	/** Structure for group id <-> group */
 	private final Hashtable<String, YarnContainerGroup> managedGroups =
 			new Hashtable<String, YarnContainerGroup>();
@@ -64,6 +74,12 @@ public class YarnManagedContainerGroups implements
 	/** Container to group resolver if exists */
 	private ContainerGroupResolver resolver;
 
+	/** Hadoop configuration used to init rack resolving */
+	private Configuration configuration;
+
+	/** Compact store for nodes if enabled */
+	private CompactContainerNodeStore nodeStore;
+
 	/** Listener dispatcher for container grid events */
 	private CompositeContainerGridListener<YarnContainerNode> containerGridListener =
 			new CompositeContainerGridListener<YarnContainerNode>();
@@ -75,6 +91,42 @@ public class YarnManagedContainerGroups implements
 	/** Current rebalance policy */
 	private RebalancePolicy rebalancePolicy = RebalancePolicy.NONE;
 
+	/** Extra containers requested when group grows, 0 disables speculation */
+	private int speculativeExtra = 0;
+
+	/** Allocated but not launched extra containers */
+	private final YarnContainerGroup warmPool = new YarnContainerGroup(WARM_POOL_GROUP, 0);
+
+	/** Mapping container id <-> time it entered warm pool */
+	private final Map<String, Long> warmPoolSince = new Hashtable<String, Long>();
+
+	/** Time in millis container may stay in warm pool */
+	private long warmPoolTimeout = 300000;
+
+	/** Mapping fallback member id <-> time it was added */
+	private final Map<String, Long> fallbackSince = new Hashtable<String, Long>();
+
+	/** Time in millis fallback member is kept before it's released */
+	private long fallbackGracePeriod = 60000;
+
+	/** Lock for speculative allocation state */
+	private final Object speculativeLock = new Object();
+
+	/** Metrics for speculative allocation */
+	private final SpeculativeAllocationMetrics speculativeMetrics = new SpeculativeAllocationMetrics();
+
+	/** Ledger of pending requests per group */
+	private RequestLedger requestLedger = new RequestLedger();
+
+	/** Appmaster metrics timing listener dispatch if set */
+	private AppmasterMetrics metrics;
+
+	/** Hosts and racks of members in constrained groups */
+	private final GroupPlacements placements = new GroupPlacements();
+
+	/** Ids of groups removed once empty */
+	private final Set<String> retiring = Collections.synchronizedSet(new HashSet<String>());
+
 	/**
 	 * Instantiates a new yarn managed container groups.
 	 */
@@ -97,6 +149,7 @@ public class YarnManagedContainerGroups implements
 	 * @param defaultGroupName Default group name to register
 	 */
 	public YarnManagedContainerGroups(String defaultGroupName) {
+		containerGroupsListener.register(placements);
 		if (defaultGroupName != null) {
 			managedGroups.put(defaultGroupName, new YarnContainerGroup(defaultGroupName));
 		}
@@ -106,6 +159,9 @@ public class YarnManagedContainerGroups implements
 	public void addGroup(YarnContainerGroup group) {
 		Assert.notNull(group, "Group must not be null");
 		Assert.notNull(group.getId(), "Group id must not be null");
+		if (group.getMaxPerRack() > 0) {
+			enableRackResolving();
+		}
 		managedGroups.put(group.getId(), group);
 		containerGroupsListener.groupAdded(group);
 	}
@@ -114,6 +170,9 @@ public class YarnManagedContainerGroups implements
 	public void removeGroup(String id) {
 		YarnContainerGroup group = managedGroups.remove(id);
 		if (group != null) {
+			// asks of a removed group would otherwise stay
+			// pending and consume grants of other groups
+			requestLedger.removeGroup(id);
 			containerGroupsListener.groupRemoved(group);
 		}
 	}
@@ -130,9 +189,23 @@ public class YarnManagedContainerGroups implements
 
 	@Override
 	public YarnContainerGroup getGroupByMember(String id) {
+		return getGroupByMember(ContainerKeys.toKey(id));
+	}
+
+	/**
+	 * Gets the group by member.
+	 *
+	 * @param key the container key
+	 * @return the group or <code>NULL</code> if not a member of any group
+	 */
+	public YarnContainerGroup getGroupByMember(long key) {
+		if (nodeStore != null) {
+			String name = nodeStore.getGroup(key);
+			return name != null ? managedGroups.get(name) : null;
+		}
 		YarnContainerGroup g = null;
 		for (Entry<String, YarnContainerGroup> entry : managedGroups.entrySet()) {
-			if (entry.getValue().hasMember(id)) {
+			if (entry.getValue().hasMember(key)) {
 				g = entry.getValue();
 				break;
 			}
@@ -151,9 +224,19 @@ public class YarnManagedContainerGroups implements
 
 	@Override
 	public YarnContainerNode getContainerNode(String id) {
+		return getContainerNode(ContainerKeys.toKey(id));
+	}
+
+	/**
+	 * Gets the container node.
+	 *
+	 * @param key the container key
+	 * @return the container node or <code>NULL</code> if not a member of any group
+	 */
+	public YarnContainerNode getContainerNode(long key) {
 		YarnContainerNode n = null;
 		for (YarnContainerGroup g : managedGroups.values()) {
-			if ((n = g.getMember(id)) != null) {
+			if ((n = g.getMember(key)) != null) {
 				break;
 			}
 		}
@@ -164,8 +247,10 @@ public class YarnManagedContainerGroups implements
 	public void addContainerNode(YarnContainerNode node) {
 		Container container = node.getContainer();
 		Assert.notNull(container, "Yarn Container must be set");
+		assertKey(node);
 		YarnContainerGroup g = null;
 		boolean added = false;
+		boolean constrained = false;
 		List<String> resolvesGroups = resolveGroupNamesInternal(container);
 
 		if (!resolvesGroups.isEmpty()) {
@@ -175,35 +260,94 @@ public class YarnManagedContainerGroups implements
 			for (String name : resolvesGroups) {
 				g = managedGroups.get(name);
 				if(g != null && !g.isFull()) {
+					if (!placements.allows(g, node)) {
+						constrained = true;
+						continue;
+					}
 					g.addMember(node);
 					added = true;
 					if (log.isDebugEnabled()) {
-						log.debug("Added " + ConverterUtils.toString(container.getId()) + " to " + g.getId());
+						log.debug("Added " + node.getId() + " to " + g.getId());
 					}
 					break;
 				}
 			}
 		}
 
-		if (!added) {
-			if (log.isDebugEnabled()) {
-				log.debug("No match for groups for node " + node + " adding to fallback group");
+		if (added) {
+			grantedToGroup(g, node);
+		} else if (constrained) {
+			rejectConstrained(node);
+			return;
+		} else {
+			g = addUnmatched(node);
+			if (g == null) {
+				return;
 			}
-			g = unmanagedContainerGroup;
-			g.addMember(node);
 		}
+		dispatchNodeAdded(g, node);
+	}
 
-		containerGridListener.containerNodeAdded(node);
-		containerGroupsListener.groupMemberAdded(g, node);
+	/**
+	 * Adds a batch of container nodes. Assignment of nodes to groups
+	 * is solved as a bipartite matching between nodes and remaining
+	 * group capacity, thus a node on a host needed by a host pinned
+	 * group is not consumed by a wildcard group just because of
+	 * an arrival order. Among equal size assignments more specific
+	 * matches reported by {@link ContainerGroupResolver#resolveSpecificity(Container, String)}
+	 * are preferred. Nodes left without a group are handled like
+	 * in {@link #addContainerNode(YarnContainerNode)}. Spread constraints
+	 * are checked again when nodes are added as nodes matched in a same
+	 * batch may share a host.
+	 *
+	 * @param nodes the container nodes
+	 */
+	public void addContainerNodes(Collection<YarnContainerNode> nodes) {
+		for (YarnContainerNode node : nodes) {
+			assertKey(node);
+		}
+		if (nodes.size() < 2 || resolver == null) {
+			for (YarnContainerNode node : nodes) {
+				addContainerNode(node);
+			}
+			return;
+		}
+		List<YarnContainerNode> batch = new ArrayList<YarnContainerNode>(nodes);
+		YarnContainerGroup[] assignment = new BatchMatcher(batch).match();
+		for (int i = 0; i < batch.size(); i++) {
+			YarnContainerNode node = batch.get(i);
+			YarnContainerGroup g = assignment[i];
+			if (g != null && !placements.allows(g, node)) {
+				g = findAllowedGroup(node);
+				if (g == null) {
+					rejectConstrained(node);
+					continue;
+				}
+			}
+			if (g != null) {
+				g.addMember(node);
+				if (log.isDebugEnabled()) {
+					log.debug("Added " + node.getId() + " to " + g.getId() + " in batch of " + batch.size());
+				}
+				grantedToGroup(g, node);
+			} else {
+				g = addUnmatched(node);
+				if (g == null) {
+					continue;
+				}
+			}
+			dispatchNodeAdded(g, node);
+		}
 	}
 
 	@Override
 	public void removeContainerNode(String id) {
+		long key = ContainerKeys.toKey(id);
 		YarnContainerNode node = null;
 		YarnContainerGroup g = null;
 		for (Entry<String, YarnContainerGroup> entry : managedGroups.entrySet()) {
 			YarnContainerGroup group = entry.getValue();
-			if ((node = group.removeMember(id)) != null) {
+			if ((node = group.removeMember(key)) != null) {
 				if (log.isDebugEnabled()) {
 					log.debug("Removed member " + node);
 				}
@@ -213,11 +357,24 @@ public class YarnManagedContainerGroups implements
 		}
 		if (node == null) {
 			g = unmanagedContainerGroup;
-			node = unmanagedContainerGroup.removeMember(id);
+			node = unmanagedContainerGroup.removeMember(key);
+			fallbackSince.remove(id);
+		}
+		if (node == null) {
+			g = warmPool;
+			node = warmPool.removeMember(key);
+			warmPoolSince.remove(id);
+		}
+		if (node != null) {
+			requestLedger.removed(key);
 		}
 		if (node != null && g != null) {
+			long start = metrics != null ? System.nanoTime() : 0;
 			containerGridListener.containerNodeRemoved(node);
 			containerGroupsListener.groupMemberRemoved(g, node);
+			if (metrics != null) {
+				metrics.recordDispatch(System.nanoTime() - start);
+			}
 		}
 	}
 
@@ -234,15 +391,22 @@ public class YarnManagedContainerGroups implements
 	@Override
 	public boolean setProjectedGroupSize(String id, int size) {
 		if (!managedGroups.containsKey(id)) {
-			managedGroups.put(id, new YarnContainerGroup(id));
+			YarnContainerGroup group = new YarnContainerGroup(id);
+			managedGroups.put(id, group);
 			if (log.isDebugEnabled()) {
 				log.debug("Creating group: " + id);
 			}
+			containerGroupsListener.groupAdded(group);
 		}
 
 		YarnContainerGroup g = managedGroups.get(id);
-		log.info("Setting projected size group=" + g.getId() + " oldsize=" +
-				g.getProjectedSize() + " newsize=" + size);
+		if (retiring.remove(id) && log.isDebugEnabled()) {
+			log.debug("Group " + id + " no longer retiring");
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("Setting projected size group=" + g.getId() + " oldsize=" +
+					g.getProjectedSize() + " newsize=" + size);
+		}
 		managedGroups.get(id).setProjectedSize(size);
 		return true;
 	}
@@ -257,31 +421,133 @@ public class YarnManagedContainerGroups implements
 	public YarnGroupsRebalanceData getGroupsRebalanceData() {
 		DefaultYarnGroupsRebalanceData data = new DefaultYarnGroupsRebalanceData();
 
+		ArrayList<Container> adopted = new ArrayList<Container>();
+		Map<String, Integer> allocateCounts = new HashMap<String, Integer>();
 		ContainerAllocateData allocateData = new ContainerAllocateData();
+		ArrayList<ContainerId> ids = new ArrayList<ContainerId>();
+		releaseFallback(ids);
 		for (Entry<String, YarnContainerGroup> entry : managedGroups.entrySet()) {
 			YarnContainerGroup group = entry.getValue();
-			if (group.isDirty()) {
-				allocateData.addAny(group.getProjectedSize()-group.getSize());
-				group.setDirty(false);
+			// net request from the ledger on every tick, dirty
+			// flag alone would miss lost and expired asks
+			int pending = requestLedger.getPending(group.getId());
+			int needed = group.getProjectedSize() - group.getSize() - pending;
+			if (needed > 0) {
+				needed -= adoptFromWarmPool(group, needed, adopted);
 			}
+			List<String> spreadHosts = getSpreadHosts(group);
+			if (needed > 0 && spreadHosts != null) {
+				needed = Math.min(needed, getHostRoom(group, spreadHosts, pending));
+			}
+			if (needed > 0) {
+				requestLedger.asked(group.getId(), needed);
+				if (spreadHosts != null) {
+					addSpreadAsks(group, spreadHosts, needed, allocateData);
+				} else {
+					allocateData.addAny(needed);
+				}
+				if (speculativeExtra > 0) {
+					requestLedger.askedSpeculative(group.getId(), speculativeExtra);
+					speculativeMetrics.roundStarted(group.getId(), needed, speculativeExtra);
+					allocateData.addAny(speculativeExtra);
+					allocateCounts.put(group.getId(), needed + speculativeExtra);
+				} else {
+					allocateCounts.put(group.getId(), needed);
+				}
+			} else if (needed < 0 && pending > 0) {
+				requestLedger.cancel(group.getId(), Math.min(pending, -needed));
+			}
+			group.setDirty(false);
 		}
 		data.setAllocateData(allocateData);
+		data.setAdoptedContainers(adopted);
+		data.setAllocateCounts(allocateCounts);
 
-		ArrayList<ContainerId> ids = new ArrayList<ContainerId>();
+		releaseExpiredWarmPool(ids);
 		for (Entry<String, YarnContainerGroup> entry : managedGroups.entrySet()) {
 			YarnContainerGroup group = entry.getValue();
 			int remove = Math.max(0, group.getSize()-group.getProjectedSize());
-			for (int i = remove; i>0; i--) {
-				String id = group.getMembers().iterator().next().getId();
-				ids.add(ConverterUtils.toContainerId(id));
-				group.removeMember(id);
+			if (remove == 0) {
+				continue;
+			}
+			for (YarnContainerNode node : getShrinkOrder(group)) {
+				if (remove-- == 0) {
+					break;
+				}
+				ids.add(node.getContainer().getId());
+				group.removeMember(node.getKey());
+				requestLedger.removed(node.getKey());
+				containerGridListener.containerNodeRemoved(node);
+				containerGroupsListener.groupMemberRemoved(group, node);
 			}
 		}
 		data.setContainers(ids);
 
+		for (String id : new ArrayList<String>(retiring)) {
+			YarnContainerGroup group = managedGroups.get(id);
+			if (group == null || group.getSize() == 0) {
+				retiring.remove(id);
+				removeGroup(id);
+				if (log.isDebugEnabled()) {
+					log.debug("Removed retired group " + id);
+				}
+			}
+		}
+		data.setWithdrawCount(requestLedger.drainWithdrawn());
+
 		return data;
 	}
 
+	/**
+	 * Retires a group. Group is shrunk to zero and removed once its
+	 * last member has been released. Setting a projected size of
+	 * a group with {@link #setProjectedGroupSize(String, int)}
+	 * cancels retiring.
+	 *
+	 * @param id the group id
+	 */
+	public void retireGroup(String id) {
+		YarnContainerGroup group = managedGroups.get(id);
+		if (group == null) {
+			return;
+		}
+		retiring.add(id);
+		group.setProjectedSize(0);
+	}
+
+	/**
+	 * Checks if a group is retiring.
+	 *
+	 * @param id the group id
+	 * @return true, if retiring
+	 */
+	public boolean isRetiring(String id) {
+		return retiring.contains(id);
+	}
+
+	/**
+	 * Sets spread constraints of a group and counts
+	 * placements of its existing members again.
+	 *
+	 * @param id the group id
+	 * @param maxPerHost the max members per host
+	 * @param maxPerRack the max members per rack
+	 * @param maxSkew the max skew
+	 */
+	public void setGroupConstraints(String id, int maxPerHost, int maxPerRack, int maxSkew) {
+		YarnContainerGroup group = managedGroups.get(id);
+		if (group == null) {
+			return;
+		}
+		if (maxPerRack > 0) {
+			enableRackResolving();
+		}
+		group.setMaxPerHost(maxPerHost);
+		group.setMaxPerRack(maxPerRack);
+		group.setMaxSkew(maxSkew);
+		placements.recount(group);
+	}
+
 	/**
 	 * Sets the Container group resolver.
 	 *
@@ -305,6 +571,95 @@ public class YarnManagedContainerGroups implements
 		}
 	}
 
+	/**
+	 * Sets the max members per host of groups.
+	 *
+	 * @param groupMaxPerHost the group max members per host
+	 * @see YarnContainerGroup#setMaxPerHost(int)
+	 */
+	public void setGroupMaxPerHost(Map<String, Integer> groupMaxPerHost) {
+		for (Entry<String, Integer> entry : groupMaxPerHost.entrySet()) {
+			getMayCreateGroup(entry.getKey()).setMaxPerHost(entry.getValue());
+		}
+	}
+
+	/**
+	 * Sets the max members per rack of groups. Rack resolving
+	 * is enabled when any group limits members per rack.
+	 *
+	 * @param groupMaxPerRack the group max members per rack
+	 * @throws IllegalArgumentException if racks can't be resolved
+	 * @see YarnContainerGroup#setMaxPerRack(int)
+	 * @see #enableRackResolving()
+	 */
+	public void setGroupMaxPerRack(Map<String, Integer> groupMaxPerRack) {
+		for (Entry<String, Integer> entry : groupMaxPerRack.entrySet()) {
+			if (entry.getValue() > 0) {
+				enableRackResolving();
+			}
+			getMayCreateGroup(entry.getKey()).setMaxPerRack(entry.getValue());
+		}
+	}
+
+	/**
+	 * Sets the max skew of member counts between hosts of groups.
+	 *
+	 * @param groupMaxSkew the group max skew
+	 * @see YarnContainerGroup#setMaxSkew(int)
+	 */
+	public void setGroupMaxSkew(Map<String, Integer> groupMaxSkew) {
+		for (Entry<String, Integer> entry : groupMaxSkew.entrySet()) {
+			getMayCreateGroup(entry.getKey()).setMaxSkew(entry.getValue());
+		}
+	}
+
+	/**
+	 * Sets if racks of members are resolved for per rack constraints.
+	 *
+	 * @param resolveRacks the new resolve racks
+	 */
+	public void setResolveRacks(boolean resolveRacks) {
+		placements.setResolveRacks(resolveRacks);
+	}
+
+	/**
+	 * Enables rack resolving needed by per rack constraints. Hadoop
+	 * rack resolver is initialized with a configuration unless racks
+	 * are already resolved.
+	 *
+	 * @throws IllegalArgumentException if racks are not resolved and configuration is not set
+	 */
+	public void enableRackResolving() {
+		if (placements.isResolveRacks()) {
+			return;
+		}
+		if (configuration == null) {
+			throw new IllegalArgumentException("Max members per rack needs rack resolving, "
+					+ "configuration must be set");
+		}
+		RackResolver.init(configuration);
+		placements.setResolveRacks(true);
+	}
+
+	/**
+	 * Sets the Hadoop configuration used to initialize
+	 * rack resolving for per rack constraints.
+	 *
+	 * @param configuration the new configuration
+	 */
+	public void setConfiguration(Configuration configuration) {
+		this.configuration = configuration;
+	}
+
+	/**
+	 * Gets the placements of members in constrained groups.
+	 *
+	 * @return the group placements
+	 */
+	public GroupPlacements getPlacements() {
+		return placements;
+	}
+
 	/**
 	 * Sets the group sizes.
 	 *
@@ -319,6 +674,483 @@ public class YarnManagedContainerGroups implements
 		}
 	}
 
+	/**
+	 * Sets the count of extra containers requested when a group
+	 * needs to grow. First containers arriving for a group are
+	 * adopted and extras are either kept in a warm pool or
+	 * left untracked to be released. Zero disables speculative
+	 * allocation which is a default.
+	 *
+	 * @param speculativeExtra the new speculative extra count
+	 */
+	public void setSpeculativeExtra(int speculativeExtra) {
+		this.speculativeExtra = speculativeExtra;
+	}
+
+	/**
+	 * Sets the maximum size of a warm pool keeping extra
+	 * containers allocated for future group growth.
+	 *
+	 * @param warmPoolSize the new warm pool size
+	 */
+	public void setWarmPoolSize(int warmPoolSize) {
+		warmPool.setProjectedSize(warmPoolSize);
+	}
+
+	/**
+	 * Sets the warm pool timeout after which unused
+	 * container is released from a pool.
+	 *
+	 * @param warmPoolTimeout the new warm pool timeout in millis
+	 */
+	public void setWarmPoolTimeout(long warmPoolTimeout) {
+		this.warmPoolTimeout = warmPoolTimeout;
+	}
+
+	/**
+	 * Sets the grace period after which a container in fallback
+	 * group not matching any group needing members is released.
+	 *
+	 * @param fallbackGracePeriod the new fallback grace period in millis
+	 */
+	public void setFallbackGracePeriod(long fallbackGracePeriod) {
+		this.fallbackGracePeriod = fallbackGracePeriod;
+	}
+
+	/**
+	 * Gets the fallback group.
+	 *
+	 * @return the fallback group
+	 */
+	public YarnContainerGroup getFallbackGroup() {
+		return unmanagedContainerGroup;
+	}
+
+	/**
+	 * Gets the warm pool group.
+	 *
+	 * @return the warm pool group
+	 */
+	public YarnContainerGroup getWarmPool() {
+		return warmPool;
+	}
+
+	/**
+	 * Gets the speculative allocation metrics.
+	 *
+	 * @return the speculative allocation metrics
+	 */
+	public SpeculativeAllocationMetrics getSpeculativeMetrics() {
+		return speculativeMetrics;
+	}
+
+	/**
+	 * Checks if a container node is tracked by these groups
+	 * including fallback group and warm pool.
+	 *
+	 * @param id the container node id
+	 * @return true, if node is tracked
+	 */
+	public boolean isTracked(String id) {
+		return isTracked(ContainerKeys.toKey(id));
+	}
+
+	/**
+	 * Checks if a container node is tracked by these groups
+	 * including fallback group and warm pool.
+	 *
+	 * @param key the container key
+	 * @return true, if node is tracked
+	 */
+	public boolean isTracked(long key) {
+		return getContainerNode(key) != null || unmanagedContainerGroup.hasMember(key) || warmPool.hasMember(key);
+	}
+
+	/**
+	 * Notifies that a container has been launched.
+	 *
+	 * @param id the container id
+	 */
+	public void containerLaunched(String id) {
+		long key = ContainerKeys.toKey(id);
+		requestLedger.launched(key);
+		if (nodeStore != null) {
+			nodeStore.launched(key);
+		}
+	}
+
+	/**
+	 * Creates a node for an allocated container. Node is kept
+	 * in a compact store if enabled.
+	 *
+	 * @param container the container
+	 * @return the container node
+	 * @see #setCompactNodes(boolean)
+	 */
+	public YarnContainerNode createNode(Container container) {
+		return nodeStore != null ? nodeStore.add(container) : new DefaultYarnContainerNode(container);
+	}
+
+	/**
+	 * Sets if nodes created via {@link #createNode(Container)} are kept
+	 * in a {@link CompactContainerNodeStore} instead of keeping full
+	 * Yarn container records. Meant for very large fleets where
+	 * heap used by records dominates. Disabled by default.
+	 *
+	 * @param compactNodes the new compact nodes flag
+	 */
+	public void setCompactNodes(boolean compactNodes) {
+		if (compactNodes && nodeStore == null) {
+			nodeStore = new CompactContainerNodeStore();
+			containerGridListener.register(nodeStore);
+			containerGroupsListener.register(nodeStore);
+		} else if (!compactNodes && nodeStore != null) {
+			throw new IllegalStateException("Compact nodes can't be disabled once enabled");
+		}
+	}
+
+	/**
+	 * Gets the compact node store.
+	 *
+	 * @return the node store or <code>NULL</code> if not enabled
+	 */
+	public CompactContainerNodeStore getNodeStore() {
+		return nodeStore;
+	}
+
+	/**
+	 * Sets the request ledger.
+	 *
+	 * @param requestLedger the new request ledger
+	 */
+	public void setRequestLedger(RequestLedger requestLedger) {
+		Assert.notNull(requestLedger, "requestLedger must not be null");
+		this.requestLedger = requestLedger;
+	}
+
+	/**
+	 * Gets the request ledger.
+	 *
+	 * @return the request ledger
+	 */
+	public RequestLedger getRequestLedger() {
+		return requestLedger;
+	}
+
+	/**
+	 * Sets the appmaster metrics used to time
+	 * dispatching of listener events.
+	 *
+	 * @param metrics the new appmaster metrics
+	 */
+	public void setMetrics(AppmasterMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	private void grantedToGroup(YarnContainerGroup g, YarnContainerNode node) {
+		requestLedger.granted(g.getId(), node.getKey());
+		if (speculativeExtra > 0) {
+			speculativeMetrics.containerAdopted(g.getId());
+		}
+	}
+
+	/**
+	 * Adds a node not matching any group either to a warm pool
+	 * or to a fallback group.
+	 *
+	 * @param node the container node
+	 * @return the group node was added, null if left untracked
+	 */
+	private YarnContainerGroup addUnmatched(YarnContainerNode node) {
+		YarnContainerGroup g = null;
+		synchronized (speculativeLock) {
+			if (requestLedger.grantedSpeculative() != null) {
+				// extra from speculative request, either keep it warm or leave
+				// it untracked for caller to release
+				boolean toPool = !warmPool.isFull();
+				speculativeMetrics.containerSurplus(toPool);
+				if (!toPool) {
+					if (log.isDebugEnabled()) {
+						log.debug("Surplus node " + node + " not tracked");
+					}
+					return null;
+				}
+				g = warmPool;
+				warmPoolSince.put(node.getId(), System.currentTimeMillis());
+			}
+		}
+		if (g != warmPool) {
+			if (log.isDebugEnabled()) {
+				log.debug("No match for groups for node " + node + " adding to fallback group");
+			}
+			g = unmanagedContainerGroup;
+			fallbackSince.put(node.getId(), System.currentTimeMillis());
+			// still answers some ask, group owning it asks again
+			requestLedger.granted(null, node.getKey());
+		}
+		g.addMember(node);
+		return g;
+	}
+
+	/**
+	 * Finds a group for a node which its spread constraints allow.
+	 *
+	 * @param node the container node
+	 * @return the group or null if none allows the node
+	 */
+	private YarnContainerGroup findAllowedGroup(YarnContainerNode node) {
+		for (String name : resolveGroupNamesInternal(node.getContainer())) {
+			YarnContainerGroup g = managedGroups.get(name);
+			if (g != null && !g.isFull() && placements.allows(g, node)) {
+				return g;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Rejects an allocated container before it is tracked, i.e. when
+	 * its host is in backoff. Ask the container consumed is dropped
+	 * so that a next rebalance asks again for the same group.
+	 *
+	 * @param key the container key
+	 */
+	public void rejectContainer(long key) {
+		requestLedger.granted(null, key);
+		requestLedger.removed(key);
+	}
+
+	/**
+	 * Asserts that node has a valid key. Nodes without one would all
+	 * share {@link ContainerKeys#NO_KEY} and shadow each other.
+	 *
+	 * @param node the container node
+	 */
+	private static void assertKey(YarnContainerNode node) {
+		Assert.isTrue(node.getKey() != ContainerKeys.NO_KEY, "Malformed container id " + node.getId());
+	}
+
+	/**
+	 * Rejects a node breaking spread constraints of all matching groups.
+	 * Node is left untracked for caller to release and ask it consumed
+	 * is dropped so that group asks again.
+	 *
+	 * @param node the container node
+	 */
+	private void rejectConstrained(YarnContainerNode node) {
+		placements.rejected();
+		requestLedger.granted(null, node.getKey());
+		requestLedger.removed(node.getKey());
+		if (log.isDebugEnabled()) {
+			log.debug("Node " + node + " rejected by spread constraints");
+		}
+	}
+
+	/**
+	 * Gets hosts asks of a group are spread to. Only groups limiting
+	 * members per host or skew and having explicit hosts are spread.
+	 *
+	 * @param group the group
+	 * @return the hosts or null if asks are not spread
+	 */
+	private List<String> getSpreadHosts(YarnContainerGroup group) {
+		if (group.getMaxPerHost() <= 0 && group.getMaxSkew() <= 0) {
+			return null;
+		}
+		List<String> hosts = group.getHosts();
+		if (hosts == null || hosts.isEmpty()) {
+			return null;
+		}
+		for (String host : hosts) {
+			if (!host.matches("[\\w.-]+")) {
+				// patterns can't be asked for
+				return null;
+			}
+		}
+		return hosts;
+	}
+
+	/**
+	 * Gets the room left on hosts of a group once its pending
+	 * asks are granted. Members are counted per host, pending
+	 * asks are not yet bound to hosts and are only taken away
+	 * from a total.
+	 *
+	 * @param group the group
+	 * @param hosts the hosts
+	 * @param pending the count of pending asks
+	 * @return the room left
+	 */
+	private int getHostRoom(YarnContainerGroup group, List<String> hosts, int pending) {
+		if (group.getMaxPerHost() <= 0) {
+			return Integer.MAX_VALUE;
+		}
+		int room = 0;
+		for (String host : hosts) {
+			room += Math.max(0, group.getMaxPerHost() - placements.getHostCount(group.getId(), host));
+		}
+		return room - pending;
+	}
+
+	/**
+	 * Adds asks for hosts of a group, each ask to a least loaded
+	 * host still having room.
+	 *
+	 * @param group the group
+	 * @param hosts the hosts
+	 * @param count the count of asks
+	 * @param allocateData the allocate data
+	 */
+	private void addSpreadAsks(YarnContainerGroup group, List<String> hosts, int count, ContainerAllocateData allocateData) {
+		int[] load = new int[hosts.size()];
+		for (int i = 0; i < load.length; i++) {
+			load[i] = placements.getHostCount(group.getId(), hosts.get(i));
+		}
+		int[] asks = new int[load.length];
+		for (int n = 0; n < count; n++) {
+			int least = 0;
+			for (int i = 1; i < load.length; i++) {
+				if (load[i] < load[least]) {
+					least = i;
+				}
+			}
+			load[least]++;
+			asks[least]++;
+		}
+		for (int i = 0; i < asks.length; i++) {
+			if (asks[i] > 0) {
+				allocateData.addHosts(hosts.get(i), asks[i]);
+			}
+		}
+	}
+
+	/**
+	 * Gets members of a group in order they are released when group
+	 * shrinks. Members on most loaded hosts of a constrained group
+	 * are released first.
+	 *
+	 * @param group the group
+	 * @return the members
+	 */
+	private Collection<YarnContainerNode> getShrinkOrder(final YarnContainerGroup group) {
+		Collection<YarnContainerNode> members = group.getMembers();
+		if (!group.isConstrained()) {
+			return members;
+		}
+		final Map<YarnContainerNode, Integer> load = new HashMap<YarnContainerNode, Integer>();
+		for (YarnContainerNode node : members) {
+			String host = node.getHost();
+			load.put(node, host != null ? placements.getHostCount(group.getId(), host) : 0);
+		}
+		List<YarnContainerNode> ordered = new ArrayList<YarnContainerNode>(members);
+		Collections.sort(ordered, new Comparator<YarnContainerNode>() {
+			@Override
+			public int compare(YarnContainerNode left, YarnContainerNode right) {
+				return load.get(right).compareTo(load.get(left));
+			}
+		});
+		return ordered;
+	}
+
+	private void dispatchNodeAdded(YarnContainerGroup g, YarnContainerNode node) {
+		long start = metrics != null ? System.nanoTime() : 0;
+		containerGridListener.containerNodeAdded(node);
+		containerGroupsListener.groupMemberAdded(g, node);
+		if (metrics != null) {
+			metrics.recordDispatch(System.nanoTime() - start);
+		}
+	}
+
+	private int adoptFromWarmPool(YarnContainerGroup group, int needed, List<Container> adopted) {
+		int count = 0;
+		if (needed <= 0 || warmPool.getSize() == 0) {
+			return count;
+		}
+		for (YarnContainerNode node : new ArrayList<YarnContainerNode>(warmPool.getMembers())) {
+			if (count >= needed) {
+				break;
+			}
+			if (!resolveGroupNamesInternal(node.getContainer()).contains(group.getId())
+					|| !placements.allows(group, node)) {
+				continue;
+			}
+			warmPool.removeMember(node.getKey());
+			Long since = warmPoolSince.remove(node.getId());
+			speculativeMetrics.containerAdoptedFromPool(since != null ? System.currentTimeMillis() - since : 0);
+			group.addMember(node);
+			adopted.add(node.getContainer());
+			containerGroupsListener.groupMemberRemoved(warmPool, node);
+			containerGroupsListener.groupMemberAdded(group, node);
+			count++;
+			if (log.isDebugEnabled()) {
+				log.debug("Adopted " + node.getId() + " from warm pool to " + group.getId());
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Releases fallback members. A running container can't switch
+	 * its group, thus a member matching a group which still needs
+	 * members is released right away for the group to ask a new
+	 * container. Rest of the members are released after grace period.
+	 *
+	 * @param ids the list to add released container ids
+	 */
+	private void releaseFallback(List<ContainerId> ids) {
+		if (unmanagedContainerGroup.getSize() == 0) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		Map<String, Integer> needs = new HashMap<String, Integer>();
+		for (YarnContainerNode node : new ArrayList<YarnContainerNode>(unmanagedContainerGroup.getMembers())) {
+			boolean wanted = false;
+			for (String name : resolveGroupNamesInternal(node.getContainer())) {
+				YarnContainerGroup group = managedGroups.get(name);
+				if (group == null || !placements.allows(group, node)) {
+					continue;
+				}
+				Integer needed = needs.get(name);
+				if (needed == null) {
+					needed = group.getProjectedSize() - group.getSize() - requestLedger.getPending(name);
+				}
+				if (needed > 0) {
+					needs.put(name, needed - 1);
+					wanted = true;
+					break;
+				}
+				needs.put(name, needed);
+			}
+			Long since = fallbackSince.get(node.getId());
+			if (wanted || (since != null && now - since > fallbackGracePeriod)) {
+				unmanagedContainerGroup.removeMember(node.getKey());
+				fallbackSince.remove(node.getId());
+				requestLedger.removed(node.getKey());
+				ids.add(node.getContainer().getId());
+				containerGridListener.containerNodeRemoved(node);
+				containerGroupsListener.groupMemberRemoved(unmanagedContainerGroup, node);
+				if (log.isDebugEnabled()) {
+					log.debug("Releasing " + node.getId() + " from fallback group" + (wanted ? " to re-request" : ""));
+				}
+			}
+		}
+	}
+
+	private void releaseExpiredWarmPool(List<ContainerId> ids) {
+		long now = System.currentTimeMillis();
+		for (YarnContainerNode node : new ArrayList<YarnContainerNode>(warmPool.getMembers())) {
+			Long since = warmPoolSince.get(node.getId());
+			if (since != null && now - since > warmPoolTimeout) {
+				warmPool.removeMember(node.getKey());
+				warmPoolSince.remove(node.getId());
+				speculativeMetrics.containerReleasedFromPool(now - since);
+				ids.add(node.getContainer().getId());
+				containerGridListener.containerNodeRemoved(node);
+				containerGroupsListener.groupMemberRemoved(warmPool, node);
+			}
+		}
+	}
+
 	private YarnContainerGroup getMayCreateGroup(String name) {
 		YarnContainerGroup group = managedGroups.get(name);
 		if (group == null) {
@@ -332,4 +1164,143 @@ public class YarnManagedContainerGroups implements
 		return resolver != null ? resolver.resolveGroupNames(container) : new ArrayList<String>();
 	}
 
+	/**
+	 * Matcher assigning a batch of nodes to groups having remaining
+	 * capacity. Finds a maximum assignment using augmenting paths where
+	 * group candidates are tried in order of resolved specificity and
+	 * nodes having fewer candidates are assigned first.
+	 */
+	private class BatchMatcher {
+
+		private final List<YarnContainerNode> nodes;
+		private final List<YarnContainerGroup> groups = new ArrayList<YarnContainerGroup>();
+		private final List<List<Integer>> members = new ArrayList<List<Integer>>();
+		private final int[][] candidates;
+		private final int[] assigned;
+		private int[] capacity;
+
+		BatchMatcher(List<YarnContainerNode> nodes) {
+			this.nodes = nodes;
+			this.candidates = new int[nodes.size()][];
+			this.assigned = new int[nodes.size()];
+		}
+
+		/**
+		 * Match nodes to groups.
+		 *
+		 * @return the groups indexed as nodes, null if not matched
+		 */
+		YarnContainerGroup[] match() {
+			final List<Integer> demand = new ArrayList<Integer>();
+			final int[] best = new int[nodes.size()];
+			List<List<Integer>> found = new ArrayList<List<Integer>>();
+			List<Map<Integer, Integer>> specificities = new ArrayList<Map<Integer, Integer>>();
+			Map<String, Integer> index = new HashMap<String, Integer>();
+			for (int i = 0; i < nodes.size(); i++) {
+				YarnContainerNode node = nodes.get(i);
+				Container container = node.getContainer();
+				Assert.notNull(container, "Yarn Container must be set");
+				List<Integer> groupIndexes = new ArrayList<Integer>();
+				Map<Integer, Integer> specificity = new HashMap<Integer, Integer>();
+				for (String name : resolveGroupNamesInternal(container)) {
+					YarnContainerGroup g = managedGroups.get(name);
+					if (g == null || g.isFull() || !placements.allows(g, node)) {
+						continue;
+					}
+					Integer gi = index.get(name);
+					if (gi == null) {
+						gi = groups.size();
+						index.put(name, gi);
+						groups.add(g);
+						members.add(new ArrayList<Integer>());
+						demand.add(0);
+					}
+					demand.set(gi, demand.get(gi) + 1);
+					specificity.put(gi, resolver.resolveSpecificity(container, name));
+					groupIndexes.add(gi);
+				}
+				found.add(groupIndexes);
+				specificities.add(specificity);
+				assigned[i] = -1;
+			}
+
+			// most specific group first, equally specific with less demand first
+			for (int i = 0; i < nodes.size(); i++) {
+				final Map<Integer, Integer> specificity = specificities.get(i);
+				List<Integer> groupIndexes = found.get(i);
+				Collections.sort(groupIndexes, new Comparator<Integer>() {
+					@Override
+					public int compare(Integer left, Integer right) {
+						int c = specificity.get(right).compareTo(specificity.get(left));
+						return c != 0 ? c : demand.get(left).compareTo(demand.get(right));
+					}
+				});
+				candidates[i] = new int[groupIndexes.size()];
+				for (int j = 0; j < candidates[i].length; j++) {
+					candidates[i][j] = groupIndexes.get(j);
+				}
+				best[i] = groupIndexes.isEmpty() ? -1 : specificity.get(groupIndexes.get(0));
+			}
+
+			capacity = new int[groups.size()];
+			for (int gi = 0; gi < groups.size(); gi++) {
+				YarnContainerGroup g = groups.get(gi);
+				capacity[gi] = g.getProjectedSize() < 0 ? nodes.size() : g.getProjectedSize() - g.getSize();
+			}
+
+			List<Integer> order = new ArrayList<Integer>();
+			for (int i = 0; i < nodes.size(); i++) {
+				order.add(i);
+			}
+			Collections.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer left, Integer right) {
+					int c = candidates[left].length - candidates[right].length;
+					return c != 0 ? c : best[right] - best[left];
+				}
+			});
+			for (Integer i : order) {
+				if (candidates[i].length > 0) {
+					augment(i, new boolean[groups.size()]);
+				}
+			}
+
+			YarnContainerGroup[] ret = new YarnContainerGroup[nodes.size()];
+			for (int i = 0; i < nodes.size(); i++) {
+				ret[i] = assigned[i] < 0 ? null : groups.get(assigned[i]);
+			}
+			return ret;
+		}
+
+		private boolean augment(int node, boolean[] visited) {
+			for (int gi : candidates[node]) {
+				if (visited[gi]) {
+					continue;
+				}
+				visited[gi] = true;
+				List<Integer> assignedNodes = members.get(gi);
+				if (assignedNodes.size() < capacity[gi]) {
+					assign(node, gi);
+					return true;
+				}
+				for (int j = 0; j < assignedNodes.size(); j++) {
+					int other = assignedNodes.get(j);
+					if (augment(other, visited)) {
+						// other moved to a different group, take its place
+						assignedNodes.remove(j);
+						assign(node, gi);
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		private void assign(int node, int gi) {
+			assigned[node] = gi;
+			members.get(gi).add(node);
+		}
+
+	}
+
 }
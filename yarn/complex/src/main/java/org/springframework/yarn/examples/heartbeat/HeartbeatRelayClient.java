@@ -0,0 +1,390 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.heartbeat;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
+
+/**
+ * Container side of a per host heartbeat relay. Every container on a
+ * host tries to bind a well known local port and the one succeeding
+ * acts as a relay. Other containers send their heartbeats to the relay
+ * which sends one batched message per appmaster on every interval.
+ * <p>
+ * If the relay dies its port is freed and the next container trying
+ * to bind it takes over, thus heartbeats are missed for at most one
+ * interval. Messages carry the appmaster address and a session id,
+ * so a relay can serve containers of different applications.
+ * <p>
+ * Every relay message starts with a relay host, and a relay keeps
+ * sending it to appmasters it has served even without heartbeats
+ * to pass, which lets an appmaster tell a silent host from silent
+ * containers.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class HeartbeatRelayClient {
+
+	private final static Log log = LogFactory.getLog(HeartbeatRelayClient.class);
+
+	/** Charset used in messages */
+	final static Charset CHARSET = Charset.forName("UTF-8");
+
+	/** Maximum size of a datagram */
+	final static int MAX_DATAGRAM = 65000;
+
+	/** Prefix of a relay host line in messages */
+	final static String RELAY_PREFIX = "@";
+
+	/** Count of ticks relay keeps beating to an appmaster without heartbeats */
+	private final static int MAX_IDLE_TICKS = 60;
+
+	private final String containerId;
+
+	private final String sessionId;
+
+	private final InetSocketAddress appmaster;
+
+	/** Local port relay binds */
+	private int relayPort = 19876;
+
+	/** Interval in millis between heartbeats */
+	private long interval = 1000;
+
+	/** Socket for sending, also receiving if this is a relay */
+	private volatile DatagramSocket relaySocket;
+
+	/** Socket for sending when this is not a relay */
+	private DatagramSocket memberSocket;
+
+	/** Received heartbeats by appmaster and session, guarded by itself */
+	private final Map<Destination, Set<String>> received = new HashMap<Destination, Set<String>>();
+
+	/** Served appmasters and ticks without heartbeats, used by a relay only */
+	private final Map<Destination, Integer> served = new HashMap<Destination, Integer>();
+
+	/** Host name sent by a relay */
+	private String relayHost;
+
+	private volatile ScheduledFuture<?> runningTask;
+
+	private volatile Thread receiver;
+
+	/**
+	 * Instantiates a new heartbeat relay client.
+	 *
+	 * @param containerId the container id
+	 * @param sessionId the appmaster session id
+	 * @param appmasterHost the appmaster host
+	 * @param appmasterPort the appmaster relay port
+	 */
+	public HeartbeatRelayClient(String containerId, String sessionId, String appmasterHost, int appmasterPort) {
+		Assert.hasText(containerId, "containerId must be set");
+		Assert.hasText(appmasterHost, "appmasterHost must be set");
+		this.containerId = containerId;
+		this.sessionId = sessionId != null ? sessionId : "";
+		this.appmaster = new InetSocketAddress(appmasterHost, appmasterPort);
+	}
+
+	/**
+	 * Starts sending heartbeats.
+	 *
+	 * @param taskScheduler the task scheduler
+	 */
+	public void start(TaskScheduler taskScheduler) {
+		runningTask = taskScheduler.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					tick();
+				} catch (Exception e) {
+					log.warn("Heartbeat failed", e);
+				}
+			}
+		}, interval);
+	}
+
+	/**
+	 * Stops sending heartbeats and releases a relay role.
+	 */
+	public void stop() {
+		if (runningTask != null) {
+			runningTask.cancel(false);
+		}
+		runningTask = null;
+		DatagramSocket socket = relaySocket;
+		relaySocket = null;
+		if (socket != null) {
+			socket.close();
+		}
+		if (memberSocket != null) {
+			memberSocket.close();
+		}
+	}
+
+	/**
+	 * Checks if this client currently acts as a relay.
+	 *
+	 * @return true, if relay
+	 */
+	public boolean isRelay() {
+		return relaySocket != null;
+	}
+
+	/**
+	 * Sets the local relay port.
+	 *
+	 * @param relayPort the new relay port
+	 */
+	public void setRelayPort(int relayPort) {
+		this.relayPort = relayPort;
+	}
+
+	/**
+	 * Sets the heartbeat interval.
+	 *
+	 * @param interval the new interval in millis
+	 */
+	public void setInterval(long interval) {
+		this.interval = interval;
+	}
+
+	/**
+	 * Sends a heartbeat either to a relay or as a relay
+	 * a batch of collected heartbeats to appmasters.
+	 *
+	 * @throws IOException if sending failed
+	 */
+	void tick() throws IOException {
+		if (relaySocket == null) {
+			tryBecomeRelay();
+		}
+		DatagramSocket socket = relaySocket;
+		if (socket == null) {
+			if (memberSocket == null) {
+				memberSocket = new DatagramSocket();
+			}
+			byte[] data = (appmaster.getHostName() + "\n" + appmaster.getPort() + "\n" + sessionId + "\n" + containerId)
+					.getBytes(CHARSET);
+			memberSocket.send(new DatagramPacket(data, data.length, InetAddress.getByName(null), relayPort));
+			return;
+		}
+		add(new Destination(appmaster, sessionId), containerId);
+		Map<Destination, Set<String>> batches;
+		synchronized (received) {
+			batches = new HashMap<Destination, Set<String>>(received);
+			received.clear();
+		}
+		// relay beats to every appmaster it served until idle too long
+		for (Destination destination : batches.keySet()) {
+			served.put(destination, 0);
+		}
+		for (Iterator<Entry<Destination, Integer>> iterator = served.entrySet().iterator(); iterator.hasNext();) {
+			Entry<Destination, Integer> entry = iterator.next();
+			if (!batches.containsKey(entry.getKey())) {
+				if (entry.getValue() >= MAX_IDLE_TICKS) {
+					iterator.remove();
+					continue;
+				}
+				entry.setValue(entry.getValue() + 1);
+				batches.put(entry.getKey(), Collections.<String>emptySet());
+			}
+		}
+		for (Entry<Destination, Set<String>> entry : batches.entrySet()) {
+			for (byte[] data : encode(entry.getKey().sessionId, relayHost, entry.getValue())) {
+				socket.send(new DatagramPacket(data, data.length, entry.getKey().address));
+			}
+		}
+	}
+
+	/**
+	 * Encodes ids into messages not exceeding a datagram size. Every
+	 * message starts with a session id and a relay host, thus with
+	 * no ids a single message is still a beat of a relay.
+	 *
+	 * @param sessionId the session id
+	 * @param host the relay host
+	 * @param ids the container ids
+	 * @return the messages
+	 */
+	static List<byte[]> encode(String sessionId, String host, Set<String> ids) {
+		List<byte[]> ret = new ArrayList<byte[]>();
+		String header = sessionId + "\n" + RELAY_PREFIX + host;
+		StringBuilder buf = new StringBuilder(header);
+		int count = 0;
+		for (String id : ids) {
+			if (count > 0 && buf.length() + id.length() + 1 > MAX_DATAGRAM) {
+				ret.add(buf.toString().getBytes(CHARSET));
+				buf = new StringBuilder(header);
+				count = 0;
+			}
+			buf.append('\n').append(id);
+			count++;
+		}
+		if (count > 0 || ret.isEmpty()) {
+			ret.add(buf.toString().getBytes(CHARSET));
+		}
+		return ret;
+	}
+
+	private void tryBecomeRelay() {
+		DatagramSocket socket = null;
+		try {
+			socket = new DatagramSocket(null);
+			socket.setReuseAddress(false);
+			socket.bind(new InetSocketAddress(InetAddress.getByName(null), relayPort));
+		} catch (BindException e) {
+			// other container is a relay
+			socket.close();
+			return;
+		} catch (IOException e) {
+			if (socket != null) {
+				socket.close();
+			}
+			log.warn("Unable to bind relay port " + relayPort, e);
+			return;
+		}
+		log.info("Container " + containerId + " acting as heartbeat relay on port " + relayPort);
+		if (relayHost == null) {
+			relayHost = getLocalHostName();
+		}
+		relaySocket = socket;
+		receiver = new Thread(new Receiver(socket), "hb-relay");
+		receiver.setDaemon(true);
+		receiver.start();
+	}
+
+	private static String getLocalHostName() {
+		try {
+			return InetAddress.getLocalHost().getCanonicalHostName();
+		} catch (UnknownHostException e) {
+			return "localhost";
+		}
+	}
+
+	private void add(Destination destination, String id) {
+		synchronized (received) {
+			Set<String> ids = received.get(destination);
+			if (ids == null) {
+				ids = new LinkedHashSet<String>();
+				received.put(destination, ids);
+			}
+			ids.add(id);
+		}
+	}
+
+	/**
+	 * Receiver collecting heartbeats from other containers on a host.
+	 */
+	private class Receiver implements Runnable {
+
+		private final DatagramSocket socket;
+
+		/** Resolved appmaster addresses */
+		private final Map<String, InetSocketAddress> addresses = new HashMap<String, InetSocketAddress>();
+
+		Receiver(DatagramSocket socket) {
+			this.socket = socket;
+		}
+
+		@Override
+		public void run() {
+			byte[] buf = new byte[MAX_DATAGRAM];
+			while (relaySocket == socket) {
+				DatagramPacket packet = new DatagramPacket(buf, buf.length);
+				try {
+					socket.receive(packet);
+				} catch (SocketException e) {
+					// closed on stop
+					break;
+				} catch (IOException e) {
+					log.warn("Error receiving heartbeat", e);
+					continue;
+				}
+				String[] fields = new String(packet.getData(), 0, packet.getLength(), CHARSET).split("\n");
+				if (fields.length != 4) {
+					continue;
+				}
+				try {
+					String key = fields[0] + ":" + fields[1];
+					InetSocketAddress address = addresses.get(key);
+					if (address == null) {
+						address = new InetSocketAddress(fields[0], Integer.parseInt(fields[1]));
+						addresses.put(key, address);
+					}
+					add(new Destination(address, fields[2]), fields[3]);
+				} catch (IllegalArgumentException e) {
+					log.warn("Invalid heartbeat from " + packet.getSocketAddress());
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Appmaster address and session heartbeats are sent to.
+	 */
+	private static class Destination {
+
+		final InetSocketAddress address;
+
+		final String sessionId;
+
+		Destination(InetSocketAddress address, String sessionId) {
+			this.address = address;
+			this.sessionId = sessionId;
+		}
+
+		@Override
+		public int hashCode() {
+			return address.hashCode() * 31 + sessionId.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Destination)) {
+				return false;
+			}
+			Destination other = (Destination) obj;
+			return address.equals(other.address) && sessionId.equals(other.sessionId);
+		}
+
+	}
+
+}
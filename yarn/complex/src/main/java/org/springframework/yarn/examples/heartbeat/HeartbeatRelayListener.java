@@ -0,0 +1,41 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.heartbeat;
+
+/**
+ * Listener for containers whose heartbeats
+ * are received via a relay.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public interface HeartbeatRelayListener {
+
+	/**
+	 * Invoked when first heartbeat of a container is received.
+	 *
+	 * @param containerId the container id
+	 */
+	void nodeUp(String containerId);
+
+	/**
+	 * Invoked when heartbeats of a container stopped.
+	 *
+	 * @param containerId the container id
+	 */
+	void nodeDead(String containerId);
+
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.heartbeat;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.yarn.support.LifecycleObjectSupport;
+
+/**
+ * Appmaster side of a per host heartbeat relay. Receives batched
+ * heartbeats sent by {@link HeartbeatRelayClient} relays and tells
+ * a {@link HeartbeatRelayListener} when a container is seen for
+ * the first time and when its heartbeats stopped.
+ * <p>
+ * One datagram per host and interval replaces a connection
+ * and a message per container. Every relay message also tells
+ * the relay host is alive. Containers of a host whose relay went
+ * silent are considered unknown rather than dead, as silence
+ * only tells nothing is heard from that host. Containers which
+ * are forgotten or found dead are not reported up again.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+@ManagedResource(objectName = "org.springframework.yarn.examples:type=Appmaster,name=heartbeatRelay",
+		description = "Appmaster heartbeat relay receiver")
+public class HeartbeatRelayReceiver extends LifecycleObjectSupport {
+
+	private final static Log log = LogFactory.getLog(HeartbeatRelayReceiver.class);
+
+	/** Count of dead times released ids are remembered */
+	private final static int RELEASED_DEAD_TIMES = 10;
+
+	/** Flag telling if relay is used */
+	private boolean enabled;
+
+	/** Port to bind, zero for any free port */
+	private int port;
+
+	/** Local port containers use to elect a relay on a host */
+	private int relayPort = 19876;
+
+	/** Time in millis after which silent container is dead */
+	private long deadTime = 10000;
+
+	/** Session id messages must carry */
+	private volatile String sessionId;
+
+	private volatile HeartbeatRelayListener listener;
+
+	/** Mapping container id <-> last seen time */
+	private final Map<String, Long> lastSeen = new ConcurrentHashMap<String, Long>();
+
+	/** Mapping container id <-> relay host */
+	private final Map<String, String> hosts = new ConcurrentHashMap<String, String>();
+
+	/** Mapping relay host <-> last seen time */
+	private final Map<String, Long> relaySeen = new ConcurrentHashMap<String, Long>();
+
+	/** Mapping forgotten or dead container id <-> time */
+	private final Map<String, Long> released = new ConcurrentHashMap<String, Long>();
+
+	private volatile int unknown;
+
+	private final AtomicLong messages = new AtomicLong();
+
+	private final AtomicLong heartbeats = new AtomicLong();
+
+	private volatile DatagramSocket socket;
+
+	@Override
+	protected void onInit() throws Exception {
+		if (enabled) {
+			// bound early as port is passed to launched containers
+			socket = new DatagramSocket(port);
+			log.info("Heartbeat relay receiver bound to port " + socket.getLocalPort());
+		}
+	}
+
+	@Override
+	protected void doStart() {
+		if (socket != null) {
+			Thread thread = new Thread(new Receiver(socket), "hb-relay-receiver");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	@Override
+	protected void doStop() {
+		DatagramSocket s = socket;
+		socket = null;
+		if (s != null) {
+			s.close();
+		}
+	}
+
+	/**
+	 * Checks if relay is enabled and bound.
+	 *
+	 * @return true, if enabled
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Sets if relay is used.
+	 *
+	 * @param enabled the new enabled flag
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Gets the bound port.
+	 *
+	 * @return the port or -1 if not bound
+	 */
+	public int getPort() {
+		DatagramSocket s = socket;
+		return s != null ? s.getLocalPort() : -1;
+	}
+
+	/**
+	 * Sets the port to bind.
+	 *
+	 * @param port the new port, zero for any free port
+	 */
+	public void setPort(int port) {
+		this.port = port;
+	}
+
+	/**
+	 * Gets the local port containers use to elect a relay.
+	 *
+	 * @return the relay port
+	 */
+	public int getRelayPort() {
+		return relayPort;
+	}
+
+	/**
+	 * Sets the local port containers use to elect a relay.
+	 *
+	 * @param relayPort the new relay port
+	 */
+	public void setRelayPort(int relayPort) {
+		this.relayPort = relayPort;
+	}
+
+	/**
+	 * Sets the dead time.
+	 *
+	 * @param deadTime the new dead time in millis
+	 */
+	public void setDeadTime(long deadTime) {
+		this.deadTime = deadTime;
+	}
+
+	/**
+	 * Sets the session id messages must carry.
+	 *
+	 * @param sessionId the new session id
+	 */
+	public void setSessionId(String sessionId) {
+		this.sessionId = sessionId;
+	}
+
+	/**
+	 * Sets the listener.
+	 *
+	 * @param listener the new listener
+	 */
+	public void setListener(HeartbeatRelayListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Stops tracking a container, i.e. when it completed normally
+	 * or was released. Later heartbeats of it are ignored.
+	 *
+	 * @param containerId the container id
+	 */
+	public void forget(String containerId) {
+		released.put(containerId, now());
+		lastSeen.remove(containerId);
+		hosts.remove(containerId);
+	}
+
+	@ManagedAttribute(description = "Count of received relay messages")
+	public long getMessageCount() {
+		return messages.get();
+	}
+
+	@ManagedAttribute(description = "Count of received container heartbeats")
+	public long getHeartbeatCount() {
+		return heartbeats.get();
+	}
+
+	@ManagedAttribute(description = "Count of tracked containers")
+	public int getNodeCount() {
+		return lastSeen.size();
+	}
+
+	@ManagedAttribute(description = "Count of silent containers on hosts whose relay is silent")
+	public int getUnknownCount() {
+		return unknown;
+	}
+
+	/**
+	 * Handles a received message.
+	 *
+	 * @param message the message
+	 */
+	void handle(String message) {
+		String[] fields = message.split("\n");
+		String expected = sessionId;
+		if (fields.length < 2 || (expected != null && !expected.equals(fields[0]))) {
+			return;
+		}
+		messages.incrementAndGet();
+		long now = now();
+		int first = 1;
+		String host = null;
+		if (fields[1].startsWith(HeartbeatRelayClient.RELAY_PREFIX)) {
+			host = fields[1].substring(HeartbeatRelayClient.RELAY_PREFIX.length());
+			relaySeen.put(host, now);
+			first = 2;
+		}
+		for (int i = first; i < fields.length; i++) {
+			String id = fields[i];
+			heartbeats.incrementAndGet();
+			if (released.containsKey(id)) {
+				continue;
+			}
+			if (host != null) {
+				hosts.put(id, host);
+			}
+			if (lastSeen.put(id, now) == null && listener != null) {
+				listener.nodeUp(id);
+			}
+		}
+	}
+
+	/**
+	 * Checks for containers not seen within dead time. Containers
+	 * on a host whose relay is silent as well are left unknown.
+	 */
+	void checkDead() {
+		long now = now();
+		List<String> dead = new ArrayList<String>();
+		int silent = 0;
+		for (Entry<String, Long> entry : lastSeen.entrySet()) {
+			if (now - entry.getValue() <= deadTime) {
+				continue;
+			}
+			String host = hosts.get(entry.getKey());
+			Long relay = host != null ? relaySeen.get(host) : null;
+			if (relay != null && now - relay > deadTime) {
+				silent++;
+			} else {
+				dead.add(entry.getKey());
+			}
+		}
+		unknown = silent;
+		for (String id : dead) {
+			if (lastSeen.remove(id) != null) {
+				released.put(id, now);
+				hosts.remove(id);
+				if (listener != null) {
+					listener.nodeDead(id);
+				}
+			}
+		}
+		// late heartbeats don't arrive after few dead times
+		for (Iterator<Entry<String, Long>> iterator = released.entrySet().iterator(); iterator.hasNext();) {
+			if (now - iterator.next().getValue() > deadTime * RELEASED_DEAD_TIMES) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Gets the current time. Exists for tests.
+	 *
+	 * @return the current time in millis
+	 */
+	protected long now() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * Receiver loop also checking dead containers.
+	 */
+	private class Receiver implements Runnable {
+
+		private final DatagramSocket s;
+
+		Receiver(DatagramSocket s) {
+			this.s = s;
+		}
+
+		@Override
+		public void run() {
+			byte[] buf = new byte[HeartbeatRelayClient.MAX_DATAGRAM];
+			long checkInterval = Math.max(100, deadTime / 4);
+			long nextCheck = now() + checkInterval;
+			try {
+				s.setSoTimeout((int) checkInterval);
+			} catch (SocketException e) {
+				log.error("Unable to set socket timeout", e);
+				return;
+			}
+			while (socket == s) {
+				DatagramPacket packet = new DatagramPacket(buf, buf.length);
+				try {
+					s.receive(packet);
+					handle(new String(packet.getData(), 0, packet.getLength(), HeartbeatRelayClient.CHARSET));
+				} catch (SocketTimeoutException e) {
+					// fall through to dead check
+				} catch (SocketException e) {
+					// closed on stop
+					break;
+				} catch (IOException e) {
+					log.warn("Error receiving relay message", e);
+				} catch (RuntimeException e) {
+					log.warn("Error handling relay message", e);
+				}
+				if (now() >= nextCheck) {
+					checkDead();
+					nextCheck = now() + checkInterval;
+				}
+			}
+		}
+
+	}
+
+}
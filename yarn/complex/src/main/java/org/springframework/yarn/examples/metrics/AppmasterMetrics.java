@@ -0,0 +1,261 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Lock-free counters for appmaster control plane. Counters are
+ * updated from event handling and read without any locking,
+ * exposed as attributes of a managed resource.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+@ManagedResource(objectName = "org.springframework.yarn.examples:type=Appmaster,name=metrics",
+		description = "Appmaster control plane metrics")
+public class AppmasterMetrics {
+
+	private final AtomicLong rebalanceCount = new AtomicLong();
+	private final AtomicLong rebalanceLastNanos = new AtomicLong();
+	private final AtomicLong rebalanceTotalNanos = new AtomicLong();
+	private final AtomicLong rebalanceMaxNanos = new AtomicLong();
+	private final AtomicLong pendingAllocations = new AtomicLong();
+	private final AtomicLong lastAllocations = new AtomicLong();
+	private final AtomicLong fallbackSize = new AtomicLong();
+	private final AtomicLong suspectHosts = new AtomicLong();
+	private final AtomicLong deadHosts = new AtomicLong();
+	private final AtomicLong pendingReleases = new AtomicLong();
+	private final AtomicLong totalAllocations = new AtomicLong();
+	private final AtomicLong totalReleases = new AtomicLong();
+	private final AtomicLong heartbeatUp = new AtomicLong();
+	private final AtomicLong heartbeatDead = new AtomicLong();
+	private final AtomicLong hostFailures = new AtomicLong();
+	private final AtomicLong hostBlacklistings = new AtomicLong();
+	private final AtomicLong dispatchCount = new AtomicLong();
+	private final AtomicLong dispatchTotalNanos = new AtomicLong();
+	private final AtomicLong dispatchMaxNanos = new AtomicLong();
+	private final AtomicLong launches = new AtomicLong();
+	private final AtomicLong launchResourceBytes = new AtomicLong();
+	private final AtomicLong lastLaunchResourceBytes = new AtomicLong();
+
+	/**
+	 * Records a rebalance tick.
+	 *
+	 * @param nanos the duration in nanos
+	 * @param allocations the count of requested containers
+	 * @param releases the count of released containers
+	 */
+	public void recordRebalance(long nanos, int allocations, int releases) {
+		rebalanceCount.incrementAndGet();
+		rebalanceLastNanos.set(nanos);
+		rebalanceTotalNanos.addAndGet(nanos);
+		updateMax(rebalanceMaxNanos, nanos);
+		lastAllocations.set(allocations);
+		pendingReleases.set(releases);
+		totalAllocations.addAndGet(allocations);
+		totalReleases.addAndGet(releases);
+	}
+
+	/**
+	 * Records a state of groups and hosts after a rebalance tick.
+	 *
+	 * @param pending the count of asks outstanding on resource manager
+	 * @param fallback the size of a fallback group
+	 * @param suspect the count of hosts with recent failures
+	 * @param dead the count of blacklisted hosts
+	 */
+	public void recordState(int pending, int fallback, int suspect, int dead) {
+		pendingAllocations.set(pending);
+		fallbackSize.set(fallback);
+		suspectHosts.set(suspect);
+		deadHosts.set(dead);
+	}
+
+	/**
+	 * Records a listener dispatch.
+	 *
+	 * @param nanos the duration in nanos
+	 */
+	public void recordDispatch(long nanos) {
+		dispatchCount.incrementAndGet();
+		dispatchTotalNanos.addAndGet(nanos);
+		updateMax(dispatchMaxNanos, nanos);
+	}
+
+	/**
+	 * Records a first heartbeat of a container.
+	 */
+	public void recordHeartbeatUp() {
+		heartbeatUp.incrementAndGet();
+	}
+
+	/**
+	 * Records a dead heartbeat of a container.
+	 */
+	public void recordHeartbeatDead() {
+		heartbeatDead.incrementAndGet();
+	}
+
+	/**
+	 * Records a container failure on a host.
+	 *
+	 * @param blacklisted true if host got blacklisted
+	 */
+	public void recordHostFailure(boolean blacklisted) {
+		hostFailures.incrementAndGet();
+		if (blacklisted) {
+			hostBlacklistings.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Records a container launch.
+	 *
+	 * @param resourceBytes the size of localized resources in bytes
+	 */
+	public void recordLaunch(long resourceBytes) {
+		launches.incrementAndGet();
+		launchResourceBytes.addAndGet(resourceBytes);
+		lastLaunchResourceBytes.set(resourceBytes);
+	}
+
+	@ManagedAttribute(description = "Count of rebalance ticks")
+	public long getRebalanceCount() {
+		return rebalanceCount.get();
+	}
+
+	@ManagedAttribute(description = "Duration of last rebalance tick in micros")
+	public long getRebalanceLastMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(rebalanceLastNanos.get());
+	}
+
+	@ManagedAttribute(description = "Mean duration of rebalance ticks in micros")
+	public long getRebalanceMeanMicros() {
+		long count = rebalanceCount.get();
+		return count > 0 ? TimeUnit.NANOSECONDS.toMicros(rebalanceTotalNanos.get() / count) : 0;
+	}
+
+	@ManagedAttribute(description = "Max duration of rebalance ticks in micros")
+	public long getRebalanceMaxMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(rebalanceMaxNanos.get());
+	}
+
+	@ManagedAttribute(description = "Container asks outstanding on resource manager")
+	public long getPendingAllocations() {
+		return pendingAllocations.get();
+	}
+
+	@ManagedAttribute(description = "Containers requested by last rebalance tick")
+	public long getLastAllocations() {
+		return lastAllocations.get();
+	}
+
+	@ManagedAttribute(description = "Count of containers in a fallback group")
+	public long getFallbackSize() {
+		return fallbackSize.get();
+	}
+
+	@ManagedAttribute(description = "Count of hosts with recent container failures")
+	public long getSuspectHostCount() {
+		return suspectHosts.get();
+	}
+
+	@ManagedAttribute(description = "Count of blacklisted hosts")
+	public long getDeadHostCount() {
+		return deadHosts.get();
+	}
+
+	@ManagedAttribute(description = "Containers released by last rebalance tick")
+	public long getPendingReleases() {
+		return pendingReleases.get();
+	}
+
+	@ManagedAttribute(description = "Total count of requested containers")
+	public long getTotalAllocations() {
+		return totalAllocations.get();
+	}
+
+	@ManagedAttribute(description = "Total count of released containers")
+	public long getTotalReleases() {
+		return totalReleases.get();
+	}
+
+	@ManagedAttribute(description = "Count of containers sending first heartbeat")
+	public long getHeartbeatUpCount() {
+		return heartbeatUp.get();
+	}
+
+	@ManagedAttribute(description = "Count of containers with dead heartbeat")
+	public long getHeartbeatDeadCount() {
+		return heartbeatDead.get();
+	}
+
+	@ManagedAttribute(description = "Count of container failures on hosts")
+	public long getHostFailureCount() {
+		return hostFailures.get();
+	}
+
+	@ManagedAttribute(description = "Count of hosts blacklistings")
+	public long getHostBlacklistCount() {
+		return hostBlacklistings.get();
+	}
+
+	@ManagedAttribute(description = "Count of listener dispatches")
+	public long getDispatchCount() {
+		return dispatchCount.get();
+	}
+
+	@ManagedAttribute(description = "Mean duration of listener dispatch in micros")
+	public long getDispatchMeanMicros() {
+		long count = dispatchCount.get();
+		return count > 0 ? TimeUnit.NANOSECONDS.toMicros(dispatchTotalNanos.get() / count) : 0;
+	}
+
+	@ManagedAttribute(description = "Max duration of listener dispatch in micros")
+	public long getDispatchMaxMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(dispatchMaxNanos.get());
+	}
+
+	@ManagedAttribute(description = "Count of launched containers")
+	public long getLaunchCount() {
+		return launches.get();
+	}
+
+	@ManagedAttribute(description = "Total bytes of resources localized for launched containers")
+	public long getLaunchResourceBytes() {
+		return launchResourceBytes.get();
+	}
+
+	@ManagedAttribute(description = "Bytes of resources localized for last launched container")
+	public long getLastLaunchResourceBytes() {
+		return lastLaunchResourceBytes.get();
+	}
+
+	private static void updateMax(AtomicLong max, long value) {
+		long current;
+		while ((current = max.get()) < value) {
+			if (max.compareAndSet(current, value)) {
+				break;
+			}
+		}
+	}
+
+}
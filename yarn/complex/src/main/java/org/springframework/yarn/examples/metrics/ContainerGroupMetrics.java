@@ -0,0 +1,112 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.yarn.examples.grid.yarn.YarnContainerGroup;
+import org.springframework.yarn.examples.placement.ClusterTopology;
+
+/**
+ * Managed resource exposing state of a single {@link YarnContainerGroup}.
+ * Attributes are read from volatile and atomic fields of a group and
+ * lock-free histograms of {@link ContainerLifecycleTracker}. Hosts are
+ * served from a snapshot refreshed by {@link ContainerGroupsMBeanRegistrar}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+@ManagedResource(description = "Container group")
+public class ContainerGroupMetrics {
+
+	private final YarnContainerGroup group;
+
+	private final ContainerLifecycleTracker lifecycleTracker;
+
+	private volatile String[] hosts = new String[0];
+
+	/**
+	 * Instantiates a new container group metrics.
+	 *
+	 * @param group the group
+	 * @param lifecycleTracker the lifecycle tracker, may be <code>NULL</code>
+	 */
+	public ContainerGroupMetrics(YarnContainerGroup group, ContainerLifecycleTracker lifecycleTracker) {
+		this.group = group;
+		this.lifecycleTracker = lifecycleTracker;
+	}
+
+	@ManagedAttribute(description = "Group id")
+	public String getId() {
+		return group.getId();
+	}
+
+	@ManagedAttribute(description = "Current member count")
+	public int getSize() {
+		return group.getSize();
+	}
+
+	@ManagedAttribute(description = "Projected member count")
+	public int getProjectedSize() {
+		return group.getProjectedSize();
+	}
+
+	@ManagedAttribute(description = "True if group needs rebalance")
+	public boolean isDirty() {
+		return group.isDirty();
+	}
+
+	@ManagedAttribute(description = "Hosts of members with member counts")
+	public String[] getHosts() {
+		return hosts;
+	}
+
+	/**
+	 * Refreshes hosts from a topology snapshot.
+	 *
+	 * @param topology the cluster topology
+	 */
+	void refreshHosts(ClusterTopology topology) {
+		Map<String, List<String>> groupHosts = topology.getHosts(group.getId());
+		String[] ret = new String[groupHosts.size()];
+		int i = 0;
+		for (Entry<String, List<String>> entry : groupHosts.entrySet()) {
+			ret[i++] = entry.getKey() + "=" + entry.getValue().size();
+		}
+		hosts = ret;
+	}
+
+	@ManagedAttribute(description = "Median time in millis from group change until container ready")
+	public long getReadyLatencyP50() {
+		return readyPercentile(50);
+	}
+
+	@ManagedAttribute(description = "99th percentile time in millis from group change until container ready")
+	public long getReadyLatencyP99() {
+		return readyPercentile(99);
+	}
+
+	private long readyPercentile(double percentile) {
+		LatencyHistogram histogram = lifecycleTracker != null ? lifecycleTracker.getHistogram(group.getId(),
+				LifecycleStage.PROJECTED) : null;
+		return histogram != null ? histogram.getPercentile(percentile) : 0;
+	}
+
+}
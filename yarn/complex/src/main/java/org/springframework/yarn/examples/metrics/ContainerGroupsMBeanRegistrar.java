@@ -0,0 +1,209 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jmx.export.MBeanExporter;
+import org.springframework.jmx.support.ObjectNameManager;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
+import org.springframework.yarn.examples.grid.ContainerGroupsListener;
+import org.springframework.yarn.examples.grid.yarn.YarnContainerGroup;
+import org.springframework.yarn.examples.grid.yarn.YarnContainerNode;
+import org.springframework.yarn.examples.grid.yarn.YarnManagedContainerGroups;
+import org.springframework.yarn.examples.placement.ClusterTopology;
+
+/**
+ * Registers a {@link ContainerGroupMetrics} managed resource for every
+ * group known to {@link YarnManagedContainerGroups}. Groups created
+ * at runtime are registered when added and unregistered when removed.
+ * <p>
+ * Hosts of group members are taken from a single topology snapshot
+ * refreshed periodically, thus polling attributes never walks members
+ * of a live group.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class ContainerGroupsMBeanRegistrar implements InitializingBean, DisposableBean,
+		ContainerGroupsListener<YarnContainerGroup, YarnContainerNode> {
+
+	private final static Log log = LogFactory.getLog(ContainerGroupsMBeanRegistrar.class);
+
+	/** Domain used for group object names */
+	public final static String DOMAIN = "org.springframework.yarn.examples";
+
+	private MBeanExporter mbeanExporter;
+
+	private YarnManagedContainerGroups managedGroups;
+
+	private ContainerLifecycleTracker lifecycleTracker;
+
+	private TaskScheduler taskScheduler;
+
+	/** Interval in millis to refresh host snapshot */
+	private long refreshInterval = 10000;
+
+	/** Group id <-> registered object name */
+	private final Map<String, ObjectName> registered = new ConcurrentHashMap<String, ObjectName>();
+
+	/** Group id <-> registered metrics */
+	private final Map<String, ContainerGroupMetrics> metrics = new ConcurrentHashMap<String, ContainerGroupMetrics>();
+
+	private volatile ScheduledFuture<?> refreshTask;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(mbeanExporter, "mbeanExporter must be set");
+		Assert.notNull(managedGroups, "managedGroups must be set");
+		managedGroups.addContainerGroupsListener(this);
+		for (YarnContainerGroup group : managedGroups.getGroups()) {
+			groupAdded(group);
+		}
+		if (taskScheduler != null && refreshInterval > 0) {
+			refreshTask = taskScheduler.scheduleAtFixedRate(new Runnable() {
+				@Override
+				public void run() {
+					refresh();
+				}
+			}, refreshInterval);
+		}
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (refreshTask != null) {
+			refreshTask.cancel(false);
+			refreshTask = null;
+		}
+		metrics.clear();
+		for (ObjectName name : registered.values()) {
+			mbeanExporter.unregisterManagedResource(name);
+		}
+		registered.clear();
+	}
+
+	@Override
+	public synchronized void groupAdded(YarnContainerGroup group) {
+		if (registered.containsKey(group.getId())) {
+			return;
+		}
+		try {
+			ObjectName name = getObjectName(group.getId());
+			ContainerGroupMetrics groupMetrics = new ContainerGroupMetrics(group, lifecycleTracker);
+			mbeanExporter.registerManagedResource(groupMetrics, name);
+			registered.put(group.getId(), name);
+			metrics.put(group.getId(), groupMetrics);
+		} catch (Exception e) {
+			log.warn("Unable to register group " + group.getId(), e);
+		}
+	}
+
+	@Override
+	public synchronized void groupRemoved(YarnContainerGroup group) {
+		metrics.remove(group.getId());
+		ObjectName name = registered.remove(group.getId());
+		if (name != null) {
+			mbeanExporter.unregisterManagedResource(name);
+		}
+	}
+
+	@Override
+	public void groupMemberAdded(YarnContainerGroup group, YarnContainerNode node) {
+	}
+
+	@Override
+	public void groupMemberRemoved(YarnContainerGroup group, YarnContainerNode node) {
+	}
+
+	/**
+	 * Refreshes hosts of registered groups from
+	 * a new topology snapshot.
+	 */
+	public void refresh() {
+		ClusterTopology topology = ClusterTopology.of(managedGroups.getGroups());
+		for (ContainerGroupMetrics groupMetrics : metrics.values()) {
+			groupMetrics.refreshHosts(topology);
+		}
+	}
+
+	/**
+	 * Gets the object name used for a group.
+	 *
+	 * @param groupId the group id
+	 * @return the object name
+	 * @throws MalformedObjectNameException if name is not valid
+	 */
+	public static ObjectName getObjectName(String groupId) throws MalformedObjectNameException {
+		return ObjectNameManager.getInstance(DOMAIN + ":type=ContainerGroup,name=" + ObjectName.quote(groupId));
+	}
+
+	/**
+	 * Sets the mbean exporter.
+	 *
+	 * @param mbeanExporter the new mbean exporter
+	 */
+	public void setMbeanExporter(MBeanExporter mbeanExporter) {
+		this.mbeanExporter = mbeanExporter;
+	}
+
+	/**
+	 * Sets the managed groups.
+	 *
+	 * @param managedGroups the new managed groups
+	 */
+	public void setManagedGroups(YarnManagedContainerGroups managedGroups) {
+		this.managedGroups = managedGroups;
+	}
+
+	/**
+	 * Sets the task scheduler used to refresh hosts.
+	 *
+	 * @param taskScheduler the new task scheduler
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+	}
+
+	/**
+	 * Sets the refresh interval of hosts.
+	 *
+	 * @param refreshInterval the new refresh interval in millis
+	 */
+	public void setRefreshInterval(long refreshInterval) {
+		this.refreshInterval = refreshInterval;
+	}
+
+	/**
+	 * Sets the lifecycle tracker.
+	 *
+	 * @param lifecycleTracker the new lifecycle tracker
+	 */
+	public void setLifecycleTracker(ContainerLifecycleTracker lifecycleTracker) {
+		this.lifecycleTracker = lifecycleTracker;
+	}
+
+}
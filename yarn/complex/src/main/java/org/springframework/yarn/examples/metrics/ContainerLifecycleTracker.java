@@ -0,0 +1,347 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.metrics;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.util.Assert;
+
+/**
+ * Tracks timestamps of container lifecycle stages and records
+ * latencies between stages into per group histograms.
+ * <p>
+ * Stages before allocation are known only on group level. Every sent
+ * request is queued with time of a group change causing it and the
+ * request time, and allocated containers of a group take these
+ * timestamps in order. Queued requests are trimmed to asks still
+ * outstanding with {@link #retainRequests(Map)} so that cancelled and
+ * expired asks don't pile up, and a group never queues more than
+ * {@link #MAX_QUEUED_REQUESTS}.
+ * <p>
+ * Latency of a stage is measured from the previous stage reached by a
+ * container, {@link LifecycleStage#PROJECTED} stage is recorded with a
+ * total time from a group change until container reaches the ready
+ * stage, which defaults to {@link LifecycleStage#READY}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class ContainerLifecycleTracker {
+
+	private final static LifecycleStage[] STAGES = LifecycleStage.values();
+
+	/** Max count of queued requests per group */
+	public final static int MAX_QUEUED_REQUESTS = 10000;
+
+	/** Group id <-> time of last unrequested change */
+	private final ConcurrentMap<String, Long> groupChanges = new ConcurrentHashMap<String, Long>();
+
+	/** Group id <-> sent requests as change and request times */
+	private final ConcurrentMap<String, LinkedList<long[]>> groupRequests =
+			new ConcurrentHashMap<String, LinkedList<long[]>>();
+
+	/** Container id <-> tracked container */
+	private final ConcurrentMap<String, TrackedContainer> containers = new ConcurrentHashMap<String, TrackedContainer>();
+
+	/** Group id <-> histograms per stage */
+	private final ConcurrentMap<String, Map<LifecycleStage, LatencyHistogram>> histograms =
+			new ConcurrentHashMap<String, Map<LifecycleStage, LatencyHistogram>>();
+
+	/** Stage where container is considered ready */
+	private volatile LifecycleStage readyStage = LifecycleStage.READY;
+
+	/**
+	 * Records a change in a group which will cause new requests.
+	 *
+	 * @param groupId the group id
+	 */
+	public void groupChanged(String groupId) {
+		if (groupId != null) {
+			groupChanges.putIfAbsent(groupId, now());
+		}
+	}
+
+	/**
+	 * Records requests sent for a group.
+	 *
+	 * @param groupId the group id
+	 * @param count the count of requested containers
+	 */
+	public void requestsSent(String groupId, int count) {
+		if (groupId == null || count <= 0) {
+			return;
+		}
+		long now = now();
+		Long changed = groupChanges.remove(groupId);
+		LinkedList<long[]> queue = groupRequests.get(groupId);
+		if (queue == null) {
+			queue = new LinkedList<long[]>();
+			LinkedList<long[]> existing = groupRequests.putIfAbsent(groupId, queue);
+			queue = existing != null ? existing : queue;
+		}
+		synchronized (queue) {
+			for (int i = 0; i < count; i++) {
+				queue.add(new long[] { changed != null ? changed : now, now });
+			}
+			while (queue.size() > MAX_QUEUED_REQUESTS) {
+				queue.poll();
+			}
+		}
+	}
+
+	/**
+	 * Trims queued requests to asks still outstanding. Oldest requests
+	 * of a group are dropped first and groups not in outstanding counts
+	 * are drained completely.
+	 *
+	 * @param outstanding the group id to outstanding ask count mapping
+	 */
+	public void retainRequests(Map<String, Integer> outstanding) {
+		for (Iterator<Entry<String, LinkedList<long[]>>> iterator = groupRequests.entrySet().iterator(); iterator
+				.hasNext();) {
+			Entry<String, LinkedList<long[]>> entry = iterator.next();
+			Integer count = outstanding.get(entry.getKey());
+			if (count == null) {
+				iterator.remove();
+				groupChanges.remove(entry.getKey());
+				continue;
+			}
+			LinkedList<long[]> queue = entry.getValue();
+			synchronized (queue) {
+				while (queue.size() > count) {
+					queue.poll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the count of queued requests of a group.
+	 *
+	 * @param groupId the group id
+	 * @return the count of queued requests
+	 */
+	public int getQueuedRequests(String groupId) {
+		LinkedList<long[]> queue = groupRequests.get(groupId);
+		if (queue == null) {
+			return 0;
+		}
+		synchronized (queue) {
+			return queue.size();
+		}
+	}
+
+	/**
+	 * Records a container allocated into a group.
+	 *
+	 * @param containerId the container id
+	 * @param groupId the group id
+	 */
+	public void containerAllocated(String containerId, String groupId) {
+		if (containerId == null || groupId == null) {
+			return;
+		}
+		TrackedContainer container = new TrackedContainer(groupId);
+		LinkedList<long[]> queue = groupRequests.get(groupId);
+		long[] request = null;
+		if (queue != null) {
+			synchronized (queue) {
+				request = queue.poll();
+			}
+		}
+		if (request != null) {
+			container.stamps[LifecycleStage.PROJECTED.ordinal()] = request[0];
+			container.stamps[LifecycleStage.REQUESTED.ordinal()] = request[1];
+			record(groupId, LifecycleStage.REQUESTED, request[1] - request[0]);
+		}
+		containers.put(containerId, container);
+		stage(containerId, LifecycleStage.ALLOCATED);
+	}
+
+	/**
+	 * Records a container adopted into a group without a request,
+	 * i.e. from a pool of already allocated containers.
+	 *
+	 * @param containerId the container id
+	 * @param groupId the group id
+	 */
+	public void containerAdopted(String containerId, String groupId) {
+		if (containerId == null || groupId == null) {
+			return;
+		}
+		TrackedContainer container = new TrackedContainer(groupId);
+		Long changed = groupChanges.get(groupId);
+		if (changed != null) {
+			container.stamps[LifecycleStage.PROJECTED.ordinal()] = changed;
+		}
+		containers.put(containerId, container);
+		stage(containerId, LifecycleStage.ALLOCATED);
+	}
+
+	/**
+	 * Records a container reaching a stage. Only first time
+	 * a stage is reached is recorded.
+	 *
+	 * @param containerId the container id
+	 * @param stage the stage
+	 */
+	public void stage(String containerId, LifecycleStage stage) {
+		TrackedContainer container = containerId != null ? containers.get(containerId) : null;
+		if (container == null) {
+			return;
+		}
+		long now = now();
+		long previous = 0;
+		synchronized (container) {
+			if (container.stamps[stage.ordinal()] != 0) {
+				return;
+			}
+			container.stamps[stage.ordinal()] = now;
+			for (int i = stage.ordinal() - 1; i >= 0 && previous == 0; i--) {
+				previous = container.stamps[i];
+			}
+		}
+		if (previous != 0) {
+			record(container.groupId, stage, now - previous);
+		}
+		if (stage == readyStage) {
+			long projected = container.stamps[LifecycleStage.PROJECTED.ordinal()];
+			if (projected != 0) {
+				record(container.groupId, LifecycleStage.PROJECTED, now - projected);
+			}
+			containers.remove(containerId);
+		}
+	}
+
+	/**
+	 * Stops tracking a container.
+	 *
+	 * @param containerId the container id
+	 */
+	public void containerRemoved(String containerId) {
+		if (containerId != null) {
+			containers.remove(containerId);
+		}
+	}
+
+	/**
+	 * Sets the stage where container is considered ready. Total time
+	 * is recorded and container is no longer tracked when it reaches
+	 * this stage. Should be set to a last stage for which there is
+	 * a real signal.
+	 *
+	 * @param readyStage the new ready stage
+	 */
+	public void setReadyStage(LifecycleStage readyStage) {
+		Assert.notNull(readyStage, "readyStage must not be null");
+		this.readyStage = readyStage;
+	}
+
+	/**
+	 * Gets the tracked group ids.
+	 *
+	 * @return the group ids
+	 */
+	public Collection<String> getGroupIds() {
+		return Collections.unmodifiableSet(histograms.keySet());
+	}
+
+	/**
+	 * Gets the latency histogram of a group stage. Histogram of
+	 * {@link LifecycleStage#PROJECTED} contains total times
+	 * until containers were ready.
+	 *
+	 * @param groupId the group id
+	 * @param stage the stage
+	 * @return the histogram or <code>NULL</code> if nothing recorded
+	 */
+	public LatencyHistogram getHistogram(String groupId, LifecycleStage stage) {
+		Map<LifecycleStage, LatencyHistogram> stages = histograms.get(groupId);
+		return stages != null ? stages.get(stage) : null;
+	}
+
+	/**
+	 * Gets a count of containers not yet ready.
+	 *
+	 * @return the tracked container count
+	 */
+	public int getTrackedCount() {
+		return containers.size();
+	}
+
+	/**
+	 * Gets a summary of all histograms.
+	 *
+	 * @return the summary
+	 */
+	public String getSummary() {
+		StringBuilder buf = new StringBuilder();
+		for (Map.Entry<String, Map<LifecycleStage, LatencyHistogram>> entry : histograms.entrySet()) {
+			buf.append("group=").append(entry.getKey()).append('\n');
+			for (LifecycleStage stage : STAGES) {
+				LatencyHistogram histogram = entry.getValue().get(stage);
+				if (histogram != null && histogram.getCount() > 0) {
+					buf.append("  ").append(stage == LifecycleStage.PROJECTED ? "TOTAL" : stage.name());
+					buf.append(' ').append(histogram).append('\n');
+				}
+			}
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * Gets the current time. Exists for tests.
+	 *
+	 * @return the current time in millis
+	 */
+	protected long now() {
+		return System.currentTimeMillis();
+	}
+
+	private void record(String groupId, LifecycleStage stage, long millis) {
+		Map<LifecycleStage, LatencyHistogram> stages = histograms.get(groupId);
+		if (stages == null) {
+			stages = new EnumMap<LifecycleStage, LatencyHistogram>(LifecycleStage.class);
+			for (LifecycleStage s : STAGES) {
+				stages.put(s, new LatencyHistogram());
+			}
+			stages = Collections.unmodifiableMap(stages);
+			Map<LifecycleStage, LatencyHistogram> existing = histograms.putIfAbsent(groupId, stages);
+			stages = existing != null ? existing : stages;
+		}
+		stages.get(stage).record(millis);
+	}
+
+	/**
+	 * Stage timestamps of a single container.
+	 */
+	private static class TrackedContainer {
+		final String groupId;
+		final long[] stamps = new long[STAGES.length];
+		TrackedContainer(String groupId) {
+			this.groupId = groupId;
+		}
+	}
+
+}
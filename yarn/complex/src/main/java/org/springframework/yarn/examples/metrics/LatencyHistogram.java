@@ -0,0 +1,147 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with fixed exponential buckets.
+ * Bucket boundaries grow by factors of 1, 2 and 5 from one
+ * millisecond up to 5000 seconds. Percentiles are reported as
+ * upper bound of a bucket where percentile falls into.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class LatencyHistogram {
+
+	/** Bucket upper bounds in millis */
+	private final static long[] BOUNDS;
+
+	static {
+		long[] bounds = new long[22];
+		long base = 1;
+		int i = 0;
+		while (i < bounds.length - 1) {
+			bounds[i++] = base;
+			bounds[i++] = base * 2;
+			bounds[i++] = base * 5;
+			base *= 10;
+		}
+		bounds[bounds.length - 1] = Long.MAX_VALUE;
+		BOUNDS = bounds;
+	}
+
+	private final AtomicLongArray counts = new AtomicLongArray(BOUNDS.length);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong sum = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a latency value.
+	 *
+	 * @param millis the latency in millis
+	 */
+	public void record(long millis) {
+		if (millis < 0) {
+			millis = 0;
+		}
+		counts.incrementAndGet(bucket(millis));
+		count.incrementAndGet();
+		sum.addAndGet(millis);
+		long current;
+		while ((current = max.get()) < millis) {
+			if (max.compareAndSet(current, millis)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Gets the count of recorded values.
+	 *
+	 * @return the count
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Gets the mean of recorded values.
+	 *
+	 * @return the mean in millis
+	 */
+	public long getMean() {
+		long c = count.get();
+		return c > 0 ? sum.get() / c : 0;
+	}
+
+	/**
+	 * Gets the max of recorded values.
+	 *
+	 * @return the max in millis
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Gets the percentile of recorded values.
+	 *
+	 * @param percentile the percentile between 0 and 100
+	 * @return the bucket upper bound in millis, or max if falling into last bucket
+	 */
+	public long getPercentile(double percentile) {
+		long total = 0;
+		long[] snapshot = new long[BOUNDS.length];
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			seen += snapshot[i];
+			if (seen >= rank && snapshot[i] > 0) {
+				return Math.min(BOUNDS[i], max.get());
+			}
+		}
+		return max.get();
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + getCount() + " mean=" + getMean() + " p50=" + getPercentile(50) + " p90="
+				+ getPercentile(90) + " p99=" + getPercentile(99) + " max=" + getMax();
+	}
+
+	private static int bucket(long millis) {
+		for (int i = 0; i < BOUNDS.length; i++) {
+			if (millis <= BOUNDS[i]) {
+				return i;
+			}
+		}
+		return BOUNDS.length - 1;
+	}
+
+}
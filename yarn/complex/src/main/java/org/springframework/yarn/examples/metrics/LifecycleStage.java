@@ -0,0 +1,49 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.metrics;
+
+/**
+ * Stages of a container lifecycle tracked by {@link ContainerLifecycleTracker}.
+ * Stages are in order, latency of a stage is measured from the previous
+ * stage reached.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public enum LifecycleStage {
+
+	/** Projected size of a group changed or member failed */
+	PROJECTED,
+
+	/** Allocation request sent */
+	REQUESTED,
+
+	/** Container allocated by resource manager */
+	ALLOCATED,
+
+	/** Launch context prepared */
+	PRELAUNCH,
+
+	/** Container launched by node manager */
+	LAUNCHED,
+
+	/** First heartbeat received from a container */
+	HEARTBEAT,
+
+	/** XD container joined the grid */
+	READY
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Simple recorder for durations of named startup phases. Phases may
+ * be recorded from multiple threads if they are run concurrently.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class StartupPhases {
+
+	private final long created = System.currentTimeMillis();
+
+	/** Phase name <-> duration in millis */
+	private final Map<String, Long> phases = new LinkedHashMap<String, Long>();
+
+	/**
+	 * Records a phase duration.
+	 *
+	 * @param phase the phase name
+	 * @param millis the duration in millis
+	 */
+	public synchronized void record(String phase, long millis) {
+		phases.put(phase, millis);
+	}
+
+	/**
+	 * Records a phase which started at given time
+	 * and ended now.
+	 *
+	 * @param phase the phase name
+	 * @param start the phase start time in millis
+	 */
+	public void recordSince(String phase, long start) {
+		record(phase, System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Gets the recorded phases.
+	 *
+	 * @return the phases with durations in millis
+	 */
+	public synchronized Map<String, Long> getPhases() {
+		return new LinkedHashMap<String, Long>(phases);
+	}
+
+	/**
+	 * Gets the time elapsed since this recorder was created.
+	 *
+	 * @return the elapsed time in millis
+	 */
+	public long getElapsed() {
+		return System.currentTimeMillis() - created;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder buf = new StringBuilder();
+		for (Entry<String, Long> entry : phases.entrySet()) {
+			if (buf.length() > 0) {
+				buf.append(' ');
+			}
+			buf.append(entry.getKey()).append('=').append(entry.getValue()).append("ms");
+		}
+		return buf.toString();
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.placement;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.yarn.examples.grid.yarn.YarnContainerGroup;
+import org.springframework.yarn.examples.grid.yarn.YarnContainerNode;
+
+/**
+ * Immutable snapshot of container groups and hosts their
+ * members are running on.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class ClusterTopology {
+
+	/** Group <-> host <-> container ids */
+	private final Map<String, Map<String, List<String>>> groups;
+
+	/** Container id <-> host */
+	private final Map<String, String> hosts;
+
+	/**
+	 * Instantiates a new cluster topology.
+	 *
+	 * @param groups the mapping group, host and container ids
+	 */
+	public ClusterTopology(Map<String, Map<String, List<String>>> groups) {
+		this.groups = groups;
+		this.hosts = new HashMap<String, String>();
+		for (Map<String, List<String>> groupHosts : groups.values()) {
+			for (Map.Entry<String, List<String>> entry : groupHosts.entrySet()) {
+				for (String id : entry.getValue()) {
+					hosts.put(id, entry.getKey());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Builds a topology from container groups.
+	 *
+	 * @param containerGroups the container groups
+	 * @return the cluster topology
+	 */
+	public static ClusterTopology of(Collection<YarnContainerGroup> containerGroups) {
+		Map<String, Map<String, List<String>>> groups = new TreeMap<String, Map<String, List<String>>>();
+		for (YarnContainerGroup group : containerGroups) {
+			Map<String, List<String>> groupHosts = new TreeMap<String, List<String>>();
+			for (YarnContainerNode node : new ArrayList<YarnContainerNode>(group.getMembers())) {
+				String host = node.getHost();
+				if (host == null) {
+					host = "";
+				}
+				List<String> ids = groupHosts.get(host);
+				if (ids == null) {
+					ids = new ArrayList<String>();
+					groupHosts.put(host, ids);
+				}
+				ids.add(node.getId());
+			}
+			for (List<String> ids : groupHosts.values()) {
+				Collections.sort(ids);
+			}
+			groups.put(group.getId(), groupHosts);
+		}
+		return new ClusterTopology(groups);
+	}
+
+	/**
+	 * Gets the group ids.
+	 *
+	 * @return the group ids
+	 */
+	public Collection<String> getGroups() {
+		return Collections.unmodifiableSet(groups.keySet());
+	}
+
+	/**
+	 * Gets the hosts of a group and containers on them.
+	 *
+	 * @param group the group id
+	 * @return the mapping host and container ids, empty if group is not known
+	 */
+	public Map<String, List<String>> getHosts(String group) {
+		Map<String, List<String>> groupHosts = groups.get(group);
+		return groupHosts != null ? Collections.unmodifiableMap(groupHosts)
+				: Collections.<String, List<String>>emptyMap();
+	}
+
+	/**
+	 * Gets the host of a container.
+	 *
+	 * @param containerId the container id
+	 * @return the host or <code>NULL</code> if container is not known
+	 */
+	public String getHost(String containerId) {
+		return hosts.get(containerId);
+	}
+
+	/**
+	 * Gets the count of containers in a group.
+	 *
+	 * @param group the group id
+	 * @return the container count
+	 */
+	public int getContainerCount(String group) {
+		int count = 0;
+		for (List<String> ids : getHosts(group).values()) {
+			count += ids.size();
+		}
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		return "ClusterTopology [groups=" + groups + "]";
+	}
+
+}
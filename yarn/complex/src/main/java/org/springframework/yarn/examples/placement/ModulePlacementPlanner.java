@@ -0,0 +1,197 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.placement;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.springframework.util.Assert;
+
+/**
+ * Planner placing consecutive modules of a stream close to each other.
+ * <p>
+ * Modules are packed into the same container until it is full, then into
+ * the least loaded container on the same host and only then onto another
+ * host of the group, preferring the host with most free capacity. If every
+ * container is full, the least loaded one is overcommitted. Planner keeps
+ * module count per container over plans until released.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class ModulePlacementPlanner {
+
+	/** Modules one container is expected to host */
+	private int modulesPerContainer = 4;
+
+	/** Container id <-> placed modules */
+	private final Map<String, Integer> load = new HashMap<String, Integer>();
+
+	/**
+	 * Places modules of a stream into containers of a group.
+	 *
+	 * @param group the group id
+	 * @param modules the modules in stream order
+	 * @param topology the current topology
+	 * @return the container ids in module order, empty if group has no containers
+	 */
+	public synchronized List<String> place(String group, List<String> modules, ClusterTopology topology) {
+		List<String> placement = new ArrayList<String>(modules.size());
+		Map<String, List<String>> hosts = topology.getHosts(group);
+		if (hosts.isEmpty()) {
+			return placement;
+		}
+		String current = null;
+		for (int i = 0; i < modules.size(); i++) {
+			if (current == null || getLoad(current) >= modulesPerContainer) {
+				current = next(current != null ? topology.getHost(current) : null, hosts);
+			}
+			load.put(current, getLoad(current) + 1);
+			placement.add(current);
+		}
+		return placement;
+	}
+
+	/**
+	 * Releases modules placed earlier, i.e. when stream is undeployed.
+	 *
+	 * @param placement the container ids returned from a plan
+	 */
+	public synchronized void release(Collection<String> placement) {
+		for (String id : placement) {
+			int count = getLoad(id) - 1;
+			if (count > 0) {
+				load.put(id, count);
+			} else {
+				load.remove(id);
+			}
+		}
+	}
+
+	/**
+	 * Forgets modules placed into a container which is gone.
+	 *
+	 * @param containerId the container id
+	 */
+	public synchronized void containerRemoved(String containerId) {
+		load.remove(containerId);
+	}
+
+	/**
+	 * Gets the count of modules placed into a container.
+	 *
+	 * @param containerId the container id
+	 * @return the module count
+	 */
+	public synchronized int getLoad(String containerId) {
+		Integer count = load.get(containerId);
+		return count != null ? count : 0;
+	}
+
+	/**
+	 * Gets the count of containers a group needs to host streams
+	 * with every stream kept in as few containers as possible.
+	 *
+	 * @param streamLengths the module counts of streams
+	 * @return the needed container count
+	 */
+	public int getRequiredContainers(Collection<Integer> streamLengths) {
+		int count = 0;
+		for (Integer length : streamLengths) {
+			count += (length + modulesPerContainer - 1) / modulesPerContainer;
+		}
+		return count;
+	}
+
+	/**
+	 * Counts hops between consecutive modules leaving their host.
+	 *
+	 * @param placement the container ids in module order
+	 * @param topology the topology
+	 * @return the count of cross host hops
+	 */
+	public static int getCrossHostHops(List<String> placement, ClusterTopology topology) {
+		int hops = 0;
+		for (int i = 1; i < placement.size(); i++) {
+			String from = topology.getHost(placement.get(i - 1));
+			String to = topology.getHost(placement.get(i));
+			if (from == null || !from.equals(to)) {
+				hops++;
+			}
+		}
+		return hops;
+	}
+
+	/**
+	 * Sets the modules one container is expected to host.
+	 *
+	 * @param modulesPerContainer the new modules per container
+	 */
+	public void setModulesPerContainer(int modulesPerContainer) {
+		Assert.isTrue(modulesPerContainer > 0, "modulesPerContainer must be positive");
+		this.modulesPerContainer = modulesPerContainer;
+	}
+
+	private String next(String host, Map<String, List<String>> hosts) {
+		if (host != null) {
+			String id = leastLoaded(hosts.get(host));
+			if (id != null && getLoad(id) < modulesPerContainer) {
+				return id;
+			}
+		}
+		String best = null;
+		int bestFree = -1;
+		for (Entry<String, List<String>> entry : hosts.entrySet()) {
+			int free = 0;
+			for (String id : entry.getValue()) {
+				free += Math.max(0, modulesPerContainer - getLoad(id));
+			}
+			if (free > bestFree) {
+				bestFree = free;
+				best = entry.getKey();
+			}
+		}
+		if (bestFree > 0) {
+			return leastLoaded(hosts.get(best));
+		}
+		// everything full, overcommit least loaded
+		List<String> all = new ArrayList<String>();
+		for (List<String> ids : hosts.values()) {
+			all.addAll(ids);
+		}
+		return leastLoaded(all);
+	}
+
+	private String leastLoaded(List<String> ids) {
+		String ret = null;
+		int min = Integer.MAX_VALUE;
+		if (ids != null) {
+			for (String id : ids) {
+				int count = getLoad(id);
+				if (count < min) {
+					min = count;
+					ret = id;
+				}
+			}
+		}
+		return ret;
+	}
+
+}
@@ -20,13 +20,17 @@ import java.io.IOException;
 import java.util.Scanner;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.hadoop.yarn.api.records.Container;
+import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.hadoop.yarn.util.ConverterUtils;
+import org.apache.hadoop.yarn.util.Records;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.util.StringUtils;
 
 /**
  * Various utilities helping to test
- * a running application.
+ * a running application and its parts.
  *
  * @author Janne Valkealahti
  *
@@ -137,5 +141,41 @@ public abstract class ApplicationTestUtils {
 		return ret;
 	}
 
+	/**
+	 * Mocks a Yarn container.
+	 *
+	 * @param containerId the container id
+	 * @param host the node host
+	 * @return the mocked Yarn Container
+	 */
+	public static Container mockContainer(String containerId, String host) {
+		Container container = Records.newRecord(Container.class);
+		NodeId nodeId = Records.newRecord(NodeId.class);
+		nodeId.setHost(host);
+		container.setNodeId(nodeId);
+		container.setId(ConverterUtils.toContainerId(containerId));
+		return container;
+	}
+
+	/**
+	 * Mocks a Yarn container with a node port, http address and resource.
+	 *
+	 * @param containerId the container id
+	 * @param host the node host
+	 * @param memory the memory in megabytes
+	 * @param virtualCores the virtual cores
+	 * @return the mocked Yarn Container
+	 */
+	public static Container mockContainer(String containerId, String host, int memory, int virtualCores) {
+		Container container = mockContainer(containerId, host);
+		container.getNodeId().setPort(45454);
+		container.setNodeHttpAddress(host + ":8042");
+		org.apache.hadoop.yarn.api.records.Resource resource =
+				Records.newRecord(org.apache.hadoop.yarn.api.records.Resource.class);
+		resource.setMemory(memory);
+		resource.setVirtualCores(virtualCores);
+		container.setResource(resource);
+		return container;
+	}
 
 }
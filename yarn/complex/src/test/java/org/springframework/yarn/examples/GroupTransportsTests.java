@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.xd.dirt.server.options.Transport;
+
+/**
+ * Tests for {@link GroupTransports}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class GroupTransportsTests {
+
+	@After
+	public void clean() {
+		System.clearProperty(GroupTransports.TRANSPORT);
+		System.clearProperty("redis.port");
+	}
+
+	@Test
+	public void testGroupEnvironment() {
+		GroupTransports groupTransports = new GroupTransports();
+		Map<String, Transport> transports = new HashMap<String, Transport>();
+		transports.put("fast", Transport.local);
+		groupTransports.setTransports(transports);
+		Map<String, Properties> properties = new HashMap<String, Properties>();
+		Properties props = new Properties();
+		props.setProperty("redis.port", "6380");
+		properties.put("slow", props);
+		groupTransports.setProperties(properties);
+
+		Map<String, String> env = groupTransports.getEnvironment("fast");
+		assertThat(env.size(), is(1));
+		assertThat(GroupTransports.resolveTransport(env), is(Transport.local));
+
+		env = groupTransports.getEnvironment("slow");
+		assertThat(GroupTransports.resolveTransport(env), is(Transport.redis));
+		assertThat(GroupTransports.applyProperties(env), is(1));
+		assertThat(System.getProperty("redis.port"), is("6380"));
+
+		assertThat(groupTransports.getEnvironment(null).size(), is(0));
+	}
+
+	@Test
+	public void testResolveFallback() {
+		Map<String, String> env = new HashMap<String, String>();
+		assertThat(GroupTransports.resolveTransport(env), is(Transport.redis));
+		System.setProperty(GroupTransports.TRANSPORT, "rabbit");
+		assertThat(GroupTransports.resolveTransport(env), is(Transport.rabbit));
+		env.put(GroupTransports.TRANSPORT, "local");
+		assertThat(GroupTransports.resolveTransport(env), is(Transport.local));
+		env.put(GroupTransports.TRANSPORT, "bogus");
+		assertThat(GroupTransports.resolveTransport(env), is(Transport.redis));
+	}
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.events;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link ControlEventRecorder}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class ControlEventRecorderTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRingQuery() {
+		ControlEventRecorder recorder = new ControlEventRecorder(4);
+		recorder.record(ControlEventType.ALLOCATED, "c1", "host1");
+		recorder.record(ControlEventType.LAUNCHED, "c1");
+		recorder.record(ControlEventType.ALLOCATED, "c2", "host2");
+		recorder.record(ControlEventType.COMPLETED, "c1", null, 1);
+		recorder.record(ControlEventType.LAUNCHED, "c2");
+
+		// capacity 4, first event overwritten
+		List<ControlEvent> events = recorder.getLatest(10);
+		assertThat(events.size(), is(4));
+		assertThat(events.get(0).getSequence(), is(1l));
+		assertThat(events.get(3).getType(), is(ControlEventType.LAUNCHED));
+
+		events = recorder.getEvents(null, "c1", 10);
+		assertThat(events.size(), is(2));
+		assertThat(events.get(1).getValue(), is(1l));
+		assertThat(events.get(1).getDetail(), nullValue());
+
+		events = recorder.getEvents(ControlEventType.ALLOCATED, null, 10);
+		assertThat(events.size(), is(1));
+		assertThat(events.get(0).getDetail(), is("host2"));
+		assertThat(recorder.getRecordedCount(), is(5l));
+	}
+
+	@Test
+	public void testFlushAndRoll() throws Exception {
+		File file = new File(folder.getRoot(), "events.log");
+		ControlEventRecorder recorder = new ControlEventRecorder(16);
+		recorder.setFile(file);
+		recorder.setMaxFileSize(100);
+		recorder.setMaxFiles(2);
+
+		for (int i = 0; i < 20; i++) {
+			recorder.record(ControlEventType.RELEASED, "c" + i);
+		}
+		recorder.flush();
+		assertThat(recorder.getDroppedCount(), is(4l));
+
+		recorder.record(ControlEventType.RELEASED, "last");
+		recorder.flush();
+
+		assertThat(new File(folder.getRoot(), "events.log.1").exists(), is(true));
+		assertThat(new File(folder.getRoot(), "events.log.2").exists(), is(true));
+		assertThat(new File(folder.getRoot(), "events.log.3").exists(), is(false));
+		List<String> lines = readLines(file);
+		assertThat(lines.get(lines.size() - 1).split("\t")[3], is("last"));
+	}
+
+	private static List<String> readLines(File file) throws Exception {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		return lines;
+	}
+
+}
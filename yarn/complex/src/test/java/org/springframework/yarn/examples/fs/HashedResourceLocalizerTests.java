@@ -0,0 +1,130 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.fs;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsAction;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.yarn.api.records.LocalResource;
+import org.apache.hadoop.yarn.api.records.LocalResourceVisibility;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link HashedResourceLocalizer}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class HashedResourceLocalizerTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testContentAddressing() throws Exception {
+		File dir = folder.newFolder("xd");
+		write(new File(dir, "a.jar"), "aaa");
+		write(new File(dir, "b.jar"), "bbbb");
+		String cacheDir = new File(folder.getRoot(), "cache").getAbsolutePath();
+
+		HashedResourceLocalizer localizer = createLocalizer(dir, cacheDir);
+		Map<String, LocalResource> resources = localizer.getResources();
+		assertThat(resources.size(), is(2));
+		LocalResource a1 = resources.get("a.jar");
+		assertThat(a1, notNullValue());
+		assertThat(a1.getSize(), is(3l));
+		assertThat(a1.getVisibility(), is(LocalResourceVisibility.PUBLIC));
+		assertThat(localizer.getTotalSize(), is(7l));
+
+		// restart with same content resolves same copy
+		Map<String, LocalResource> again = createLocalizer(dir, cacheDir).getResources();
+		assertThat(again.get("a.jar").getResource().getFile(), is(a1.getResource().getFile()));
+		assertThat(again.get("a.jar").getTimestamp(), is(a1.getTimestamp()));
+
+		// changed content gets a new copy
+		write(new File(dir, "a.jar"), "changed");
+		Map<String, LocalResource> changed = createLocalizer(dir, cacheDir).getResources();
+		assertThat(changed.get("a.jar").getResource().getFile(), not(a1.getResource().getFile()));
+		assertThat(changed.get("b.jar").getResource().getFile(),
+				is(resources.get("b.jar").getResource().getFile()));
+	}
+
+	@Test
+	public void testCacheHitMadePublic() throws Exception {
+		File dir = folder.newFolder("xd");
+		write(new File(dir, "a.jar"), "aaa");
+		File cache = new File(folder.getRoot(), "cache");
+		String cacheDir = new File(cache, "nested").getAbsolutePath();
+
+		Map<String, LocalResource> resources = createLocalizer(dir, cacheDir).getResources();
+		File copy = new File(resources.get("a.jar").getResource().getFile());
+		assertThat(copy.exists(), is(true));
+
+		// restrict cached copy and its ancestors, cache hit needs to fix them
+		copy.setReadable(false, false);
+		copy.setReadable(true, true);
+		cache.setExecutable(false, false);
+		cache.setExecutable(true, true);
+		assertThat(permission(copy).getOtherAction().implies(FsAction.READ), is(false));
+		assertThat(permission(cache).getOtherAction().implies(FsAction.EXECUTE), is(false));
+
+		createLocalizer(dir, cacheDir).getResources();
+		assertThat(permission(copy).getOtherAction().implies(FsAction.READ), is(true));
+		for (File parent = copy.getParentFile(); parent != null; parent = parent.getParentFile()) {
+			assertThat(parent.getPath(), permission(parent).getOtherAction().implies(FsAction.EXECUTE), is(true));
+		}
+	}
+
+	private static FsPermission permission(File file) throws Exception {
+		Configuration configuration = new Configuration();
+		configuration.set("fs.defaultFS", "file:///");
+		return FileSystem.get(configuration).getFileStatus(new Path(file.getAbsolutePath())).getPermission();
+	}
+
+	private static HashedResourceLocalizer createLocalizer(File dir, String cacheDir) {
+		HashedResourceLocalizer localizer = new HashedResourceLocalizer();
+		Configuration configuration = new Configuration();
+		configuration.set("fs.defaultFS", "file:///");
+		localizer.setConfiguration(configuration);
+		localizer.setPatterns(Arrays.asList(dir.getAbsolutePath() + "/*.jar"));
+		localizer.setCacheDir(cacheDir);
+		return localizer;
+	}
+
+	private static void write(File file, String content) throws Exception {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes());
+		} finally {
+			out.close();
+		}
+	}
+
+}
@@ -16,9 +16,18 @@
 package org.springframework.yarn.examples.grid.hazelcast;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
 import org.junit.Test;
+import org.springframework.yarn.examples.grid.ContainerGridBatchListener;
 import org.springframework.yarn.examples.grid.ContainerGridListener;
 import org.springframework.yarn.examples.grid.ContainerNode;
 
@@ -37,6 +46,7 @@ public class HazelcastContainerGridTests {
 		TestContainerGridListener listener1 = new TestContainerGridListener();
 		grid1.addContainerGridListener(listener1);
 		HazelcastContainerGrid grid2 = new HazelcastContainerGrid();
+		grid2.setLocalContainerId("container2");
 
 		grid1.start();
 		grid2.start();
@@ -44,6 +54,15 @@ public class HazelcastContainerGridTests {
 		Thread.sleep(10000);
 
 		assertThat(listener1.containerNodeAdded, is(1));
+		assertThat(grid1.getContainerNodes().size(), is(1));
+
+		// identity of other member is known locally
+		String memberId = grid1.getContainerNodes().iterator().next().getId();
+		assertThat(grid1.getContainerId(memberId), is("container2"));
+
+		// unknown node is not dispatched
+		grid1.removeContainerNode("unknown");
+		assertThat(listener1.containerNodeRemoved, is(0));
 
 		grid2.stop();
 		grid1.stop();
@@ -51,6 +70,142 @@ public class HazelcastContainerGridTests {
 		assertThat(listener1.containerNodeRemoved, is(1));
 	}
 
+	@Test
+	public void testIdentityPublishedAfterStart() throws InterruptedException {
+		HazelcastContainerGrid grid1 = new HazelcastContainerGrid();
+		HazelcastContainerGrid grid2 = new HazelcastContainerGrid();
+
+		grid1.start();
+		grid2.start();
+		try {
+			for (int i = 0; i < 100 && grid1.getContainerNodes().isEmpty(); i++) {
+				Thread.sleep(100);
+			}
+			assertThat(grid1.getContainerNodes().size(), is(1));
+
+			// member joined without identity, publishes it when ready
+			String memberId = grid1.getContainerNodes().iterator().next().getId();
+			assertThat(grid1.getContainerId(memberId), nullValue());
+			grid2.setLocalContainerId("container2");
+			for (int i = 0; i < 50 && grid1.getContainerId(memberId) == null; i++) {
+				Thread.sleep(100);
+			}
+			assertThat(grid1.getContainerId(memberId), is("container2"));
+		} finally {
+			grid2.stop();
+			grid1.stop();
+		}
+	}
+
+	@Test
+	public void testBatchedAndCoalescedChanges() throws InterruptedException {
+		HazelcastContainerGrid grid = new HazelcastContainerGrid();
+		grid.setBatchWindow(500);
+		TestContainerGridBatchListener batchListener = new TestContainerGridBatchListener();
+		TestContainerGridListener listener = new TestContainerGridListener();
+		grid.addContainerGridListener(batchListener);
+		grid.addContainerGridListener(listener);
+
+		grid.start();
+		try {
+			// node added and removed within a window cancel each other
+			grid.enqueue("a", true);
+			grid.enqueue("b", true);
+			grid.enqueue("a", false);
+			grid.enqueue("c", true);
+			grid.enqueue("c", false);
+			grid.enqueue("c", true);
+			waitBatches(batchListener, 1);
+			assertThat(batchListener.added.size(), is(1));
+			assertThat(batchListener.added.get(0), is(Arrays.asList("b", "c")));
+			assertThat(batchListener.removed.get(0), is(Collections.<String>emptyList()));
+			assertThat(grid.getContainerNodes().size(), is(2));
+
+			// last change per node wins, existing node is not added again
+			grid.enqueue("b", false);
+			grid.enqueue("c", false);
+			grid.enqueue("c", true);
+			waitBatches(batchListener, 2);
+			assertThat(batchListener.added.size(), is(2));
+			assertThat(batchListener.added.get(1), is(Collections.<String>emptyList()));
+			assertThat(batchListener.removed.get(1), is(Arrays.asList("b")));
+			assertThat(grid.getContainerNode("c"), notNullValue());
+
+			// plain listener is notified per node
+			assertThat(listener.containerNodeAdded, is(2));
+			assertThat(listener.containerNodeRemoved, is(1));
+		} finally {
+			grid.stop();
+		}
+	}
+
+	@Test
+	public void testIdentityRemovedWithMember() throws InterruptedException {
+		HazelcastContainerGrid grid1 = new HazelcastContainerGrid();
+		HazelcastContainerGrid grid2 = new HazelcastContainerGrid();
+		grid2.setLocalContainerId("container2");
+		HazelcastContainerGrid grid3 = new HazelcastContainerGrid();
+
+		grid1.start();
+		grid2.start();
+		try {
+			for (int i = 0; i < 100 && grid1.getContainerNodes().isEmpty(); i++) {
+				Thread.sleep(100);
+			}
+			String memberId = grid1.getContainerNodes().iterator().next().getId();
+			assertThat(grid1.getContainerId(memberId), is("container2"));
+
+			grid2.stop();
+			for (int i = 0; i < 100 && !grid1.getContainerNodes().isEmpty(); i++) {
+				Thread.sleep(100);
+			}
+			assertThat(grid1.getContainerNodes().isEmpty(), is(true));
+			assertThat(grid1.getContainerId(memberId), nullValue());
+
+			// removed from distributed map too, new member doesn't see it
+			grid3.start();
+			assertThat(grid3.getContainerId(memberId), nullValue());
+		} finally {
+			grid3.stop();
+			grid2.stop();
+			grid1.stop();
+		}
+	}
+
+	private static void waitBatches(TestContainerGridBatchListener listener, int count) throws InterruptedException {
+		for (int i = 0; i < 50 && listener.added.size() < count; i++) {
+			Thread.sleep(100);
+		}
+	}
+
+	/**
+	 * Test implementation of {@link ContainerGridBatchListener} recording
+	 * node ids of every batch.
+	 */
+	private static class TestContainerGridBatchListener implements ContainerGridBatchListener<ContainerNode> {
+		final List<List<String>> added = Collections.synchronizedList(new ArrayList<List<String>>());
+		final List<List<String>> removed = Collections.synchronizedList(new ArrayList<List<String>>());
+		@Override
+		public void containerNodeAdded(ContainerNode node) {
+		}
+		@Override
+		public void containerNodeRemoved(ContainerNode node) {
+		}
+		@Override
+		public void containerNodesChanged(Collection<ContainerNode> added, Collection<ContainerNode> removed) {
+			// removed first as waiting is done on added
+			this.removed.add(ids(removed));
+			this.added.add(ids(added));
+		}
+		private static List<String> ids(Collection<ContainerNode> nodes) {
+			List<String> ids = new ArrayList<String>();
+			for (ContainerNode node : nodes) {
+				ids.add(node.getId());
+			}
+			return ids;
+		}
+	}
+
 	/**
 	 * Test implementation of {@link ContainerGridListener}.
 	 */
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.hazelcast;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+import org.springframework.yarn.examples.grid.ContainerGroupsListener;
+import org.springframework.yarn.examples.grid.hazelcast.HazelcastContainerGrid.HazelcastContainerNode;
+
+/**
+ * Tests for {@link HazelcastManagedContainerGroups}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class HazelcastManagedContainerGroupsTests {
+
+	private final static String GROUP = "xdgroup";
+
+	@Test
+	public void testSharedGroupsState() throws InterruptedException {
+		HazelcastManagedContainerGroups groups1 = new HazelcastManagedContainerGroups();
+		HazelcastManagedContainerGroups groups2 = new HazelcastManagedContainerGroups();
+		TestContainerGroupsListener listener2 = new TestContainerGroupsListener();
+		groups2.addContainerGroupsListener(listener2);
+
+		groups1.start();
+		groups2.start();
+
+		try {
+			groups1.setProjectedGroupSize(GROUP, 1);
+			groups1.addContainerNode(new HazelcastContainerNode("node1"));
+			groups1.addContainerNode(new HazelcastContainerNode("node2"));
+
+			// local view is updated immediately
+			assertThat(groups1.getGroupByMember("node1").getId(), is(GROUP));
+			assertThat(groups1.getGroupByMember("node2").getId(),
+					is(HazelcastManagedContainerGroups.DEFAULT_FALLBACK_GROUP));
+
+			// other instance gets changes via entry listeners
+			Thread.sleep(2000);
+			assertThat(groups2.getGroup(GROUP), notNullValue());
+			assertThat(groups2.getGroupByMember("node1").getId(), is(GROUP));
+			assertThat(groups2.getContainerNodes().size(), is(2));
+			assertThat(listener2.groupMemberAdded, is(2));
+
+			// shrink via second instance and check release
+			groups2.setProjectedGroupSize(GROUP, 0);
+			HazelcastGroupsRebalanceData data = groups2.getGroupsRebalanceData();
+			assertThat(data.getReleasedMembers().size(), is(1));
+			assertThat(data.getReleasedMembers().get(0), is("node1"));
+
+			Thread.sleep(2000);
+			assertThat(groups1.getGroupByMember("node1"), nullValue());
+			assertThat(groups1.getGroup(GROUP).getSize(), is(0));
+			assertThat(listener2.groupMemberRemoved, is(1));
+		} finally {
+			groups2.stop();
+			groups1.stop();
+		}
+	}
+
+	@Test
+	public void testRepeatedRebalanceAsksOnce() {
+		HazelcastManagedContainerGroups groups = new HazelcastManagedContainerGroups();
+		groups.start();
+
+		try {
+			groups.setProjectedGroupSize(GROUP, 2);
+			HazelcastGroupsRebalanceData data = groups.getGroupsRebalanceData();
+			assertThat(data.getAllocateCounts().get(GROUP), is(2));
+
+			// asks are pending, nothing is asked again
+			data = groups.getGroupsRebalanceData();
+			assertThat(data.getAllocateCounts().get(GROUP), nullValue());
+
+			// joined member consumes an ask
+			groups.addContainerNode(new HazelcastContainerNode("node1"));
+			assertThat(groups.getGroup(GROUP).getPending(), is(1));
+			data = groups.getGroupsRebalanceData();
+			assertThat(data.getAllocateCounts().get(GROUP), nullValue());
+
+			// shrinking cancels pending ask
+			groups.setProjectedGroupSize(GROUP, 1);
+			data = groups.getGroupsRebalanceData();
+			assertThat(data.getAllocateCounts().get(GROUP), nullValue());
+			assertThat(data.getReleasedMembers().size(), is(0));
+			assertThat(groups.getGroup(GROUP).getPending(), is(0));
+
+			// expired asks are asked again
+			groups.setProjectedGroupSize(GROUP, 3);
+			data = groups.getGroupsRebalanceData();
+			assertThat(data.getAllocateCounts().get(GROUP), is(2));
+			groups.setAskTimeout(-1);
+			data = groups.getGroupsRebalanceData();
+			assertThat(data.getAllocateCounts().get(GROUP), is(2));
+			assertThat(groups.getGroup(GROUP).getPending(), is(2));
+
+			// existing group is not overwritten
+			groups.addGroup(new HazelcastContainerGroup(GROUP, 5));
+			assertThat(groups.getGroup(GROUP).getProjectedSize(), is(3));
+			assertThat(groups.getGroup(GROUP).getSize(), is(1));
+		} finally {
+			groups.stop();
+		}
+	}
+
+	/**
+	 * Test implementation of {@link ContainerGroupsListener}.
+	 */
+	private static class TestContainerGroupsListener implements
+			ContainerGroupsListener<HazelcastContainerGroup, HazelcastContainerNode> {
+		public volatile int groupAdded;
+		public volatile int groupRemoved;
+		public volatile int groupMemberAdded;
+		public volatile int groupMemberRemoved;
+		@Override
+		public void groupAdded(HazelcastContainerGroup group) {
+			groupAdded++;
+		}
+		@Override
+		public void groupRemoved(HazelcastContainerGroup group) {
+			groupRemoved++;
+		}
+		@Override
+		public void groupMemberAdded(HazelcastContainerGroup group, HazelcastContainerNode node) {
+			groupMemberAdded++;
+		}
+		@Override
+		public void groupMemberRemoved(HazelcastContainerGroup group, HazelcastContainerNode node) {
+			groupMemberRemoved++;
+		}
+	}
+
+}
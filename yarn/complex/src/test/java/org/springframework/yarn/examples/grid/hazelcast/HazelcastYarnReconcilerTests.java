@@ -0,0 +1,178 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.hazelcast;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.springframework.yarn.examples.ApplicationTestUtils.mockContainer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.yarn.examples.grid.yarn.DefaultYarnContainerNode;
+import org.springframework.yarn.examples.grid.yarn.YarnManagedContainerGroups;
+
+/**
+ * Tests for {@link HazelcastYarnReconciler}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class HazelcastYarnReconcilerTests {
+
+	private final static String CID1 = "container_1375001068632_0001_01_000001";
+	private final static String CID2 = "container_1375001068632_0001_01_000002";
+	private final static String CID3 = "container_1375001068632_0001_01_000003";
+	private final static String CID4 = "container_1375001068632_0001_01_000004";
+	private final static String CID5 = "container_1375001068632_0001_01_000005";
+	private final static String HOST = "host1";
+	private final static String UUID1 = "uuid1";
+	private final static String UUID2 = "uuid2";
+
+	@Test
+	public void testJoinAndZombie() {
+		TestGrid grid = new TestGrid();
+		TestReconcileHandler handler = new TestReconcileHandler();
+		HazelcastYarnReconciler reconciler = createReconciler(grid, handler);
+
+		grid.identities.put(UUID1, CID1);
+		reconciler.yarnContainerLaunched(CID1);
+		reconciler.gridMemberAdded(UUID1);
+		assertThat(reconciler.getJoinedContainerId(UUID1), is(CID1));
+		assertThat(handler.joined, is(Collections.singletonList(CID1)));
+
+		// member leaves grid, container becomes zombie
+		reconciler.gridMemberRemoved(UUID1);
+		assertThat(reconciler.getJoinedContainerId(UUID1), nullValue());
+		reconciler.check();
+		assertThat(handler.zombies.size(), is(1));
+		assertThat(handler.zombies.get(0), is(CID1));
+		assertThat(handler.ghosts.size(), is(0));
+
+		// reported only once
+		reconciler.check();
+		assertThat(handler.zombies.size(), is(1));
+	}
+
+	@Test
+	public void testLateIdentityAndGhost() {
+		TestGrid grid = new TestGrid();
+		TestReconcileHandler handler = new TestReconcileHandler();
+		HazelcastYarnReconciler reconciler = createReconciler(grid, handler);
+		reconciler.setZombieTimeout(60000);
+
+		// identity not yet published
+		reconciler.yarnContainerLaunched(CID1);
+		reconciler.gridMemberAdded(UUID1);
+		assertThat(reconciler.getJoinedCount(), is(0));
+
+		// joined during check
+		grid.identities.put(UUID1, CID1);
+		reconciler.check();
+		assertThat(reconciler.getJoinedCount(), is(1));
+		assertThat(handler.joined, is(Collections.singletonList(CID1)));
+
+		// member without container becomes ghost
+		grid.identities.put(UUID2, CID2);
+		reconciler.gridMemberAdded(UUID2);
+		reconciler.check();
+		assertThat(handler.ghosts.size(), is(1));
+		assertThat(handler.ghosts.get(UUID2), is(CID2));
+
+		// container gone, its member becomes ghost
+		reconciler.yarnContainerRemoved(CID1);
+		reconciler.check();
+		assertThat(handler.ghosts.size(), is(2));
+		assertThat(handler.zombies.size(), is(0));
+	}
+
+	@Test
+	public void testTrackedFromLaunchOnly() {
+		TestGrid grid = new TestGrid();
+		TestReconcileHandler handler = new TestReconcileHandler();
+		HazelcastYarnReconciler reconciler = createReconciler(grid, handler);
+		YarnManagedContainerGroups managedGroups = new YarnManagedContainerGroups();
+		reconciler.setManagedGroups(managedGroups);
+		reconciler.setEnabled(true);
+		reconciler.afterPropertiesSet();
+
+		// allocated container is not expected in grid until launched
+		managedGroups.addContainerNode(new DefaultYarnContainerNode(mockContainer(CID3, HOST)));
+		reconciler.check();
+		assertThat(handler.zombies.size(), is(0));
+
+		// warm pool member is not launched, nor released one
+		managedGroups.getWarmPool().addMember(new DefaultYarnContainerNode(mockContainer(CID4, HOST)));
+		reconciler.yarnContainerLaunched(CID4);
+		reconciler.yarnContainerLaunched(CID5);
+		reconciler.check();
+		assertThat(handler.zombies.size(), is(0));
+
+		reconciler.yarnContainerLaunched(CID3);
+		reconciler.check();
+		assertThat(handler.zombies, is(Collections.singletonList(CID3)));
+	}
+
+	private HazelcastYarnReconciler createReconciler(HazelcastContainerGrid grid, ReconcileHandler handler) {
+		YarnManagedContainerGroups managedGroups = new YarnManagedContainerGroups();
+		managedGroups.addContainerNode(new DefaultYarnContainerNode(mockContainer(CID1, HOST)));
+		HazelcastYarnReconciler reconciler = new HazelcastYarnReconciler();
+		reconciler.setManagedGroups(managedGroups);
+		reconciler.setGrid(grid);
+		reconciler.setReconcileHandler(handler);
+		reconciler.setZombieTimeout(-1);
+		reconciler.setGhostTimeout(-1);
+		return reconciler;
+	}
+
+	/**
+	 * Grid with static identities.
+	 */
+	private static class TestGrid extends HazelcastContainerGrid {
+		Map<String, String> identities = new HashMap<String, String>();
+		@Override
+		public String getContainerId(String memberId) {
+			return identities.get(memberId);
+		}
+	}
+
+	/**
+	 * Test implementation of {@link ReconcileHandler}.
+	 */
+	private static class TestReconcileHandler implements ReconcileHandler {
+		List<String> joined = new ArrayList<String>();
+		List<String> zombies = new ArrayList<String>();
+		Map<String, String> ghosts = new HashMap<String, String>();
+		@Override
+		public void handleJoined(String containerId) {
+			joined.add(containerId);
+		}
+		@Override
+		public void handleZombie(String containerId) {
+			zombies.add(containerId);
+		}
+		@Override
+		public void handleGhost(String memberId, String containerId) {
+			ghosts.put(memberId, containerId);
+		}
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.yarn;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.springframework.yarn.examples.ApplicationTestUtils.mockContainer;
+
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.yarn.api.records.Container;
+import org.apache.hadoop.yarn.util.ConverterUtils;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CompactContainerNodeStore}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class CompactContainerNodeStoreTests {
+
+	private final static String CID1 = "container_1375001068632_0001_01_000001";
+	private final static String CID2 = "container_1375001068632_0001_01_000002";
+	private final static String CID3 = "container_1375001068632_0001_02_000103";
+
+	@Test
+	public void testRecordMaterializedAfterLaunch() {
+		CompactContainerNodeStore store = new CompactContainerNodeStore();
+		Container container = mockContainer(CID3, "hostname1", 512, 1);
+		YarnContainerNode node = store.add(container);
+		assertThat(node.getId(), is(CID3));
+		assertThat(node.getKey(), is(ContainerKeys.toKey(CID3)));
+		assertThat(node.getContainer(), sameInstance(container));
+		assertThat(store.getUnlaunchedSize(), is(1));
+
+		store.launched(node.getKey());
+		assertThat(store.getUnlaunchedSize(), is(0));
+		assertThat(store.getState(node.getKey()), is(CompactContainerNodeStore.STATE_LAUNCHED));
+		Container materialized = node.getContainer();
+		assertThat(ConverterUtils.toString(materialized.getId()), is(CID3));
+		assertThat(materialized.getNodeId().getHost(), is("hostname1"));
+		assertThat(materialized.getNodeId().getPort(), is(45454));
+		assertThat(materialized.getNodeHttpAddress(), is("hostname1:8042"));
+		assertThat(materialized.getResource().getMemory(), is(512));
+		assertThat(node.getHost(), is("hostname1"));
+		assertThat(node.getMemory(), is(512));
+		assertThat(node.getVirtualCores(), is(materialized.getResource().getVirtualCores()));
+
+		// slot reused, old node still answers with its own record
+		store.remove(node.getKey());
+		YarnContainerNode other = store.add(mockContainer(CID1, "hostname2", 512, 1));
+		assertThat(store.getSize(), is(1));
+		assertThat(ConverterUtils.toString(node.getContainer().getId()), is(CID3));
+		assertThat(node.getHost(), is("hostname1"));
+		assertThat(other.getContainer().getNodeId().getHost(), is("hostname2"));
+		assertThat(other.getHost(), is("hostname2"));
+	}
+
+	@Test
+	public void testGroupIndexFollowsMembership() {
+		GenericContainerGroupResolver groupResolver = new GenericContainerGroupResolver();
+		Map<String, List<String>> resolves = new Hashtable<String, List<String>>();
+		resolves.put(YarnManagedContainerGroups.DEFAULT_GROUP, Arrays.asList(new String[]{"*"}));
+		groupResolver.setResolves(resolves);
+		YarnManagedContainerGroups managedGroups = new YarnManagedContainerGroups(true);
+		managedGroups.setResolver(groupResolver);
+		managedGroups.setCompactNodes(true);
+		managedGroups.setProjectedGroupSize(YarnManagedContainerGroups.DEFAULT_GROUP, 1);
+
+		managedGroups.addContainerNode(managedGroups.createNode(mockContainer(CID1, "hostname1", 512, 1)));
+		managedGroups.addContainerNode(managedGroups.createNode(mockContainer(CID2, "hostname2", 512, 1)));
+		CompactContainerNodeStore store = managedGroups.getNodeStore();
+		assertThat(store.getSize(), is(2));
+		assertThat(managedGroups.getGroupByMember(CID1).getId(), is(YarnManagedContainerGroups.DEFAULT_GROUP));
+		assertThat(store.getGroup(ContainerKeys.toKey(CID2)), is(YarnManagedContainerGroups.DEFAULT_FALLBACK_GROUP));
+		assertThat(managedGroups.getGroupByMember(CID2), nullValue());
+		assertThat(managedGroups.isTracked(CID2), is(true));
+
+		managedGroups.removeContainerNode(CID1);
+		assertThat(store.getSize(), is(1));
+		assertThat(store.get(ContainerKeys.toKey(CID1)), nullValue());
+		assertThat(managedGroups.getGroupByMember(CID1), nullValue());
+		assertThat(store.get(ContainerKeys.toKey(CID2)), notNullValue());
+	}
+
+}
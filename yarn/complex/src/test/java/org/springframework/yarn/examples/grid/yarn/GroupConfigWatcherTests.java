@@ -0,0 +1,201 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.yarn;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.springframework.yarn.examples.ApplicationTestUtils.mockContainer;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link GroupConfigWatcher} and {@link GroupConfig}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class GroupConfigWatcherTests {
+
+	private final static String CID1 = "container_1375001068632_0001_01_000001";
+	private final static String HOST1 = "hostname1";
+
+	private File file;
+
+	@Before
+	public void setup() throws IOException {
+		file = File.createTempFile("groups", ".properties");
+	}
+
+	@After
+	public void clean() {
+		file.delete();
+	}
+
+	@Test
+	public void testApplyDiff() throws Exception {
+		GenericContainerGroupResolver resolver = new GenericContainerGroupResolver();
+		Map<String, List<String>> resolves = new Hashtable<String, List<String>>();
+		resolves.put(YarnManagedContainerGroups.DEFAULT_GROUP, Arrays.asList(new String[]{"*"}));
+		resolves.put("xdgroup", Arrays.asList(new String[]{"*"}));
+		resolver.setResolves(resolves);
+		YarnManagedContainerGroups managedGroups = new YarnManagedContainerGroups(true);
+		managedGroups.setResolver(resolver);
+		managedGroups.setProjectedGroupSize(YarnManagedContainerGroups.DEFAULT_GROUP, 1);
+		managedGroups.setProjectedGroupSize("xdgroup", 0);
+		managedGroups.addContainerNode(new DefaultYarnContainerNode(mockContainer(CID1, HOST1)));
+		YarnContainerGroup xdgroup = managedGroups.getGroup("xdgroup");
+		assertThat(managedGroups.getGroup(YarnManagedContainerGroups.DEFAULT_GROUP).getSize(), is(1));
+
+		GroupConfigWatcher watcher = createWatcher(managedGroups, resolver);
+		write("group.xdgroup.size=2\ngroup.xdgroup.hosts=*\ngroup.xdgroup.maxPerHost=1\n"
+				+ "group.pinned.size=1\ngroup.pinned.hosts=" + HOST1 + "\n", 1000);
+		// not applied until seen unchanged twice
+		assertThat(watcher.check(), is(false));
+		assertThat(watcher.check(), is(true));
+		assertThat(watcher.check(), is(false));
+
+		assertThat(managedGroups.getGroup("xdgroup"), sameInstance(xdgroup));
+		assertThat(xdgroup.getProjectedSize(), is(2));
+		assertThat(xdgroup.getMaxPerHost(), is(1));
+		assertThat(managedGroups.getGroup("pinned").getProjectedSize(), is(1));
+		assertThat(resolver.resolveGroupNames(mockContainer(CID1, HOST1)).contains("pinned"), is(true));
+		assertThat(resolver.resolveGroupNames(mockContainer(CID1, HOST1))
+				.contains(YarnManagedContainerGroups.DEFAULT_GROUP), is(false));
+
+		// default group is left out, its member is released and group is removed
+		assertThat(managedGroups.isRetiring(YarnManagedContainerGroups.DEFAULT_GROUP), is(true));
+		YarnGroupsRebalanceData data = managedGroups.getGroupsRebalanceData();
+		assertThat(data.getContainers().size(), is(1));
+		assertThat(managedGroups.getGroup(YarnManagedContainerGroups.DEFAULT_GROUP), nullValue());
+		assertThat(managedGroups.getGroup("pinned"), notNullValue());
+	}
+
+	@Test
+	public void testInvalidConfigIsIgnored() throws Exception {
+		GenericContainerGroupResolver resolver = new GenericContainerGroupResolver();
+		YarnManagedContainerGroups managedGroups = new YarnManagedContainerGroups(true);
+		managedGroups.setResolver(resolver);
+		managedGroups.setProjectedGroupSize(YarnManagedContainerGroups.DEFAULT_GROUP, 1);
+		GroupConfigWatcher watcher = createWatcher(managedGroups, resolver);
+
+		write("group.default.size=-5\n", 1000);
+		assertThat(watcher.check(), is(false));
+		assertThat(watcher.check(), is(false));
+		assertThat(watcher.getRejected(), is(1l));
+		assertThat(watcher.check(), is(false));
+		assertThat(watcher.getRejected(), is(1l));
+		assertThat(managedGroups.getGroup(YarnManagedContainerGroups.DEFAULT_GROUP).getProjectedSize(), is(1));
+		assertThat(managedGroups.isRetiring(YarnManagedContainerGroups.DEFAULT_GROUP), is(false));
+
+		write("group.default.size=3\ngroup.default.hosts=*\n", 2000);
+		assertThat(watcher.check(), is(false));
+		assertThat(watcher.check(), is(true));
+		assertThat(managedGroups.getGroup(YarnManagedContainerGroups.DEFAULT_GROUP).getProjectedSize(), is(3));
+	}
+
+	@Test
+	public void testChangeWhileWriting() throws Exception {
+		GenericContainerGroupResolver resolver = new GenericContainerGroupResolver();
+		YarnManagedContainerGroups managedGroups = new YarnManagedContainerGroups(true);
+		managedGroups.setResolver(resolver);
+		managedGroups.setProjectedGroupSize(YarnManagedContainerGroups.DEFAULT_GROUP, 1);
+		GroupConfigWatcher watcher = createWatcher(managedGroups, resolver);
+
+		write("group.default.size=2\n", 1000);
+		assertThat(watcher.check(), is(false));
+		// still growing, wait for it to settle
+		write("group.default.size=2\ngroup.default.hosts=*\n", 1000);
+		assertThat(watcher.check(), is(false));
+		assertThat(watcher.check(), is(true));
+		assertThat(managedGroups.getGroup(YarnManagedContainerGroups.DEFAULT_GROUP).getProjectedSize(), is(2));
+	}
+
+	@Test
+	public void testRetiredGroupCancelsPendingAsks() throws Exception {
+		GenericContainerGroupResolver resolver = new GenericContainerGroupResolver();
+		YarnManagedContainerGroups managedGroups = new YarnManagedContainerGroups(true);
+		managedGroups.setResolver(resolver);
+		managedGroups.setProjectedGroupSize(YarnManagedContainerGroups.DEFAULT_GROUP, 0);
+		managedGroups.setProjectedGroupSize("xdgroup", 2);
+		managedGroups.getGroupsRebalanceData();
+		RequestLedger ledger = managedGroups.getRequestLedger();
+		assertThat(ledger.getPending("xdgroup"), is(2));
+
+		GroupConfigWatcher watcher = createWatcher(managedGroups, resolver);
+		write("group.default.size=1\ngroup.default.hosts=*\n", 1000);
+		assertThat(watcher.check(), is(false));
+		assertThat(watcher.check(), is(true));
+		assertThat(managedGroups.isRetiring("xdgroup"), is(true));
+
+		// asks of a removed group are cancelled, late grants
+		// against them don't land in any other group
+		managedGroups.getGroupsRebalanceData();
+		assertThat(managedGroups.getGroup("xdgroup"), nullValue());
+		assertThat(ledger.getPending("xdgroup"), is(0));
+		assertThat(ledger.getOrphaned(), is(2));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownAttribute() {
+		Properties properties = new Properties();
+		properties.setProperty("group.xdgroup.sizes", "1");
+		GroupConfig.parse(properties);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidRule() {
+		Properties properties = new Properties();
+		properties.setProperty("group.xdgroup.rule", "memory >>= 1");
+		GroupConfig.parse(properties);
+	}
+
+	private GroupConfigWatcher createWatcher(YarnManagedContainerGroups managedGroups,
+			ContainerGroupResolver resolver) throws Exception {
+		GroupConfigWatcher watcher = new GroupConfigWatcher();
+		watcher.setConfiguration(new Configuration());
+		watcher.setPath(file.toURI().toString());
+		watcher.setManagedGroups(managedGroups);
+		watcher.setResolver(resolver);
+		watcher.afterPropertiesSet();
+		return watcher;
+	}
+
+	private void write(String content, long modified) throws IOException {
+		FileWriter writer = new FileWriter(file);
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+		file.setLastModified(modified);
+	}
+
+}
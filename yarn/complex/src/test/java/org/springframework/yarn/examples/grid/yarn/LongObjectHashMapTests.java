@@ -0,0 +1,74 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.yarn;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.hadoop.yarn.util.ConverterUtils;
+import org.junit.Test;
+
+/**
+ * Tests for {@link LongObjectHashMap} and {@link ContainerKeys}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class LongObjectHashMapTests {
+
+	@Test
+	public void testMatchesHashMap() {
+		LongObjectHashMap<String> map = new LongObjectHashMap<String>(4);
+		Map<Long, String> expected = new HashMap<Long, String>();
+		Random random = new Random(42);
+		for (int i = 0; i < 20000; i++) {
+			// small key range forces collisions and removals inside probe chains
+			long key = random.nextInt(512) - 256;
+			if (random.nextInt(3) == 0) {
+				assertThat(map.remove(key), is(expected.remove(key)));
+			} else {
+				String value = Integer.toString(i);
+				assertThat(map.put(key, value), is(expected.put(key, value)));
+			}
+		}
+		assertThat(map.size(), is(expected.size()));
+		for (long key = -256; key < 256; key++) {
+			assertThat(map.get(key), is(expected.get(key)));
+			assertThat(map.containsKey(key), is(expected.containsKey(key)));
+		}
+		assertThat(map.values().size(), is(expected.size()));
+		map.clear();
+		assertThat(map.isEmpty(), is(true));
+		assertThat(map.get(0), nullValue());
+	}
+
+	@Test
+	public void testContainerKeys() {
+		String id1 = "container_1375001068632_0001_01_000001";
+		String id2 = "container_1375001068632_0001_02_000001";
+		assertThat(ContainerKeys.toKey(id1), is(ContainerKeys.toKey(ConverterUtils.toContainerId(id1))));
+		assertThat(ContainerKeys.toKey(id1), is(ContainerKeys.toKey(1, 1)));
+		assertThat(ContainerKeys.toKey(id2) == ContainerKeys.toKey(id1), is(false));
+		assertThat(ContainerKeys.toKey("container_foo"), is(ContainerKeys.NO_KEY));
+		assertThat(ContainerKeys.toKey((String) null), is(ContainerKeys.NO_KEY));
+	}
+
+}
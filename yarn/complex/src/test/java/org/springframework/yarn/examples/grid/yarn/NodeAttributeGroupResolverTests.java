@@ -0,0 +1,154 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.yarn;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.springframework.yarn.examples.ApplicationTestUtils.mockContainer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.yarn.api.records.NodeHealthStatus;
+import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.hadoop.yarn.api.records.NodeReport;
+import org.apache.hadoop.yarn.api.records.NodeState;
+import org.apache.hadoop.yarn.api.records.Resource;
+import org.apache.hadoop.yarn.util.Records;
+import org.junit.Test;
+
+/**
+ * Tests for {@link NodeAttributeGroupResolver} and {@link NodePredicates}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class NodeAttributeGroupResolverTests {
+
+	private final static String CID = "container_1375001068632_0001_01_000001";
+	private final static String BIG = "bighost";
+	private final static String SMALL = "smallhost";
+	private final static String SICK = "sickhost";
+
+	@Test
+	public void testResolveByAttributes() throws Exception {
+		NodeAttributeGroupResolver resolver = createResolver();
+
+		assertThat(resolver.resolveGroupNames(mockContainer(CID, BIG)), is(Arrays.asList("big", "healthy", "any")));
+		assertThat(resolver.resolveGroupNames(mockContainer(CID, SMALL)), is(Arrays.asList("healthy", "any")));
+		assertThat(resolver.resolveGroupNames(mockContainer(CID, SICK)), is(Arrays.asList("any")));
+		// not in a snapshot
+		assertThat(resolver.resolveGroupNames(mockContainer(CID, "otherhost")).isEmpty(), is(true));
+
+		assertThat(resolver.resolveSpecificity(mockContainer(CID, BIG), "big"), is(3));
+		assertThat(resolver.resolveSpecificity(mockContainer(CID, BIG), "healthy"), is(1));
+		assertThat(resolver.resolveSpecificity(mockContainer(CID, SMALL), "big"), is(-1));
+	}
+
+	@Test
+	public void testSnapshotRefresh() throws Exception {
+		NodeAttributeGroupResolver resolver = createResolver();
+		ClusterNodeView view = new ClusterNodeView();
+		view.setNodeReports(Arrays.asList(mockNode(SMALL, 65536, 0, true)));
+		resolver.setNodeView(view);
+		// same host now has room, label map is empty
+		assertThat(resolver.resolveGroupNames(mockContainer(CID, SMALL)), is(Arrays.asList("healthy", "any")));
+		Map<String, List<String>> labels = new HashMap<String, List<String>>();
+		labels.put(SMALL, Arrays.asList("ssd"));
+		view.setLabels(labels);
+		assertThat(resolver.resolveGroupNames(mockContainer(CID, SMALL)), is(Arrays.asList("big", "healthy", "any")));
+		assertThat(view.getNode(BIG), nullValue());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testViewWithoutNodeSource() throws Exception {
+		ClusterNodeView view = new ClusterNodeView();
+		view.setRefreshInterval(0);
+		NodeAttributeGroupResolver resolver = new NodeAttributeGroupResolver();
+		resolver.setNodeView(view);
+		resolver.afterPropertiesSet();
+	}
+
+	@Test
+	public void testPredicates() {
+		NodeReport node = mockNode(BIG, 32768, 8192, true);
+		List<String> labels = new ArrayList<String>();
+		assertThat(NodePredicates.compile("memory == 32g").matches(node, labels), is(true));
+		assertThat(NodePredicates.compile("availableMemory >= 24576").matches(node, labels), is(true));
+		assertThat(NodePredicates.compile("availableMemory > 24g").matches(node, labels), is(false));
+		assertThat(NodePredicates.compile("vcores >= 16 && containers < 5").matches(node, labels), is(true));
+		assertThat(NodePredicates.compile("rack == /rack1 && state == RUNNING").matches(node, labels), is(true));
+		assertThat(NodePredicates.compile("!healthy").matches(node, labels), is(false));
+		assertThat(NodePredicates.compile("host != " + BIG).matches(node, labels), is(false));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidRule() {
+		NodePredicates.compile("memory >= lots");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownAttribute() {
+		NodePredicates.compile("disks > 2");
+	}
+
+	private NodeAttributeGroupResolver createResolver() throws Exception {
+		ClusterNodeView view = new ClusterNodeView();
+		view.setNodeReports(Arrays.asList(mockNode(BIG, 65536, 8192, true), mockNode(SMALL, 8192, 0, true),
+				mockNode(SICK, 65536, 0, false)));
+		Map<String, List<String>> labels = new HashMap<String, List<String>>();
+		labels.put(BIG, Arrays.asList("ssd"));
+		view.setLabels(labels);
+
+		Map<String, String> rules = new LinkedHashMap<String, String>();
+		rules.put("big", "availableMemory >= 32g && healthy && label:ssd");
+		rules.put("healthy", "healthy");
+		rules.put("any", "*");
+		NodeAttributeGroupResolver resolver = new NodeAttributeGroupResolver();
+		resolver.setNodeView(view);
+		resolver.setRules(rules);
+		resolver.afterPropertiesSet();
+		return resolver;
+	}
+
+	private NodeReport mockNode(String host, int memory, int usedMemory, boolean healthy) {
+		NodeReport report = Records.newRecord(NodeReport.class);
+		NodeId nodeId = Records.newRecord(NodeId.class);
+		nodeId.setHost(host);
+		report.setNodeId(nodeId);
+		report.setRackName("/rack1");
+		report.setNodeState(healthy ? NodeState.RUNNING : NodeState.UNHEALTHY);
+		Resource capability = Records.newRecord(Resource.class);
+		capability.setMemory(memory);
+		capability.setVirtualCores(16);
+		report.setCapability(capability);
+		Resource used = Records.newRecord(Resource.class);
+		used.setMemory(usedMemory);
+		used.setVirtualCores(2);
+		report.setUsed(used);
+		report.setNumContainers(2);
+		NodeHealthStatus health = Records.newRecord(NodeHealthStatus.class);
+		health.setIsNodeHealthy(healthy);
+		report.setNodeHealthStatus(health);
+		return report;
+	}
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.yarn;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link NodeFailureTracker}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class NodeFailureTrackerTests {
+
+	@Test
+	public void testBackoffAndBlacklist() {
+		TestNodeFailureTracker tracker = new TestNodeFailureTracker();
+		assertThat(tracker.isAccepted("host1"), is(true));
+
+		// first failure, 1s backoff
+		assertThat(tracker.recordFailure("host1"), is(false));
+		assertThat(tracker.isAccepted("host1"), is(false));
+		assertThat(tracker.isAccepted("host2"), is(true));
+		tracker.time += 1000;
+		assertThat(tracker.isAccepted("host1"), is(true));
+
+		// second failure, 2s backoff
+		assertThat(tracker.recordFailure("host1"), is(false));
+		tracker.time += 1000;
+		assertThat(tracker.isAccepted("host1"), is(false));
+		tracker.time += 1000;
+		assertThat(tracker.isAccepted("host1"), is(true));
+
+		assertThat(tracker.getSuspectCount(), is(1));
+
+		// third failure blacklists
+		assertThat(tracker.recordFailure("host1"), is(true));
+		assertThat(tracker.isBlacklisted("host1"), is(true));
+		assertThat(tracker.getSuspectCount(), is(0));
+		assertThat(tracker.getBlacklistedHosts().size(), is(1));
+		tracker.time += 600000;
+		assertThat(tracker.isBlacklisted("host1"), is(false));
+		assertThat(tracker.isAccepted("host1"), is(true));
+	}
+
+	@Test
+	public void testFailureWindowResets() {
+		TestNodeFailureTracker tracker = new TestNodeFailureTracker();
+		tracker.recordFailure("host1");
+		tracker.recordFailure("host1");
+		assertThat(tracker.getFailureCount("host1"), is(2));
+		tracker.time += 600001;
+		assertThat(tracker.getFailureCount("host1"), is(0));
+		assertThat(tracker.recordFailure("host1"), is(false));
+		assertThat(tracker.getFailureCount("host1"), is(1));
+	}
+
+	private static class TestNodeFailureTracker extends NodeFailureTracker {
+		long time = 1000000;
+		@Override
+		protected long now() {
+			return time;
+		}
+	}
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.grid.yarn;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link RequestLedger}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class RequestLedgerTests {
+
+	@Test
+	public void testGrantAccounting() {
+		TestRequestLedger ledger = new TestRequestLedger();
+		ledger.asked("group1", 2);
+		ledger.time += 10;
+		ledger.asked("group2", 1);
+		assertThat(ledger.getPending("group1"), is(2));
+
+		// grant to own group
+		assertThat(ledger.granted("group1", 1l), is("group1"));
+		assertThat(ledger.getPending("group1"), is(1));
+		assertThat(ledger.getLaunching("group1"), is(1));
+
+		// unmatched grant consumes oldest ask
+		assertThat(ledger.granted(null, 2l), is("group1"));
+		assertThat(ledger.getPending("group1"), is(0));
+
+		// group without asks consumes from others
+		assertThat(ledger.granted("group1", 3l), is("group2"));
+		assertThat(ledger.getPending("group2"), is(0));
+		assertThat(ledger.granted("group1", 4l), nullValue());
+		assertThat(ledger.getGranted("group1"), is(3l));
+
+		ledger.launched(1l);
+		ledger.removed(3l);
+		assertThat(ledger.getLaunching("group1"), is(1));
+	}
+
+	@Test
+	public void testStaleAsksKeptWithoutWithdraw() {
+		TestRequestLedger ledger = new TestRequestLedger();
+		ledger.setAskTimeout(1000);
+		ledger.asked("group1", 2);
+		ledger.time += 1100;
+		assertThat(ledger.getStale("group1"), is(2));
+		assertThat(ledger.getPending("group1"), is(2));
+		assertThat(ledger.getExpired(), is(0l));
+		assertThat(ledger.drainWithdrawn(), is(0));
+
+		// cancelled ask is still outstanding and consumes a next grant
+		ledger.cancel("group1", 1);
+		assertThat(ledger.getPending("group1"), is(1));
+		assertThat(ledger.getOrphaned(), is(1));
+		ledger.asked("group2", 1);
+		assertThat(ledger.getOutstanding(), is(3));
+		assertThat(ledger.granted("group3", 1l), nullValue());
+		assertThat(ledger.getOrphaned(), is(0));
+		assertThat(ledger.getPending("group2"), is(1));
+	}
+
+	@Test
+	public void testSpeculativeAsksPerGroup() {
+		TestRequestLedger ledger = new TestRequestLedger();
+		ledger.asked("group1", 1);
+		ledger.askedSpeculative("group1", 2);
+		ledger.time += 10;
+		ledger.askedSpeculative("group2", 1);
+		assertThat(ledger.getPending("group1"), is(1));
+		assertThat(ledger.getOutstanding(), is(4));
+
+		// own ask first, then own extra
+		assertThat(ledger.granted("group1", 1l), is("group1"));
+		assertThat(ledger.granted("group1", 2l), is("group1"));
+		assertThat(ledger.getSpeculative("group1"), is(1));
+
+		// unmatched grant takes an oldest extra
+		assertThat(ledger.grantedSpeculative(), is("group1"));
+		assertThat(ledger.grantedSpeculative(), is("group2"));
+		assertThat(ledger.grantedSpeculative(), nullValue());
+
+		// extras of a removed group are still outstanding
+		ledger.askedSpeculative("group2", 1);
+		ledger.removeGroup("group2");
+		assertThat(ledger.getSpeculative("group2"), is(0));
+		assertThat(ledger.getOrphaned(), is(1));
+	}
+
+	@Test
+	public void testExpireAndCancelWithWithdraw() {
+		TestRequestLedger ledger = new TestRequestLedger();
+		ledger.setWithdrawAsks(true);
+		ledger.setAskTimeout(1000);
+		ledger.asked("group1", 2);
+		ledger.time += 500;
+		ledger.asked("group1", 2);
+		ledger.cancel("group1", 1);
+		assertThat(ledger.getPending("group1"), is(3));
+		assertThat(ledger.drainWithdrawn(), is(1));
+		ledger.time += 600;
+		assertThat(ledger.getPending("group1"), is(1));
+		assertThat(ledger.getExpired(), is(2l));
+		assertThat(ledger.drainWithdrawn(), is(2));
+		assertThat(ledger.drainWithdrawn(), is(0));
+		assertThat(ledger.getOrphaned(), is(0));
+	}
+
+	@Test
+	public void testLaunchingByKey() {
+		TestRequestLedger ledger = new TestRequestLedger();
+		ledger.asked("group1", 2);
+		ledger.granted("group1", ContainerKeys.toKey(1, 1));
+		ledger.granted("group1", ContainerKeys.toKey(1, 2));
+		// same sequence in another attempt is another container
+		ledger.granted("group1", ContainerKeys.toKey(2, 1));
+		assertThat(ledger.getLaunching("group1"), is(3));
+
+		ledger.launched(ContainerKeys.toKey(1, 1));
+		ledger.launched(ContainerKeys.toKey(1, 1));
+		assertThat(ledger.getLaunching("group1"), is(2));
+
+		ledger.removed(ContainerKeys.toKey(1, 2));
+		assertThat(ledger.getLaunching("group1"), is(1));
+
+		ledger.removeGroup("group1");
+		ledger.launched(ContainerKeys.toKey(2, 1));
+		assertThat(ledger.getLaunching("group1"), is(0));
+	}
+
+	@Test
+	public void testRemoveGroup() {
+		TestRequestLedger ledger = new TestRequestLedger();
+		ledger.asked("group1", 3);
+		ledger.granted("group1", 1l);
+		ledger.removeGroup("group1");
+		assertThat(ledger.getPending("group1"), is(0));
+		assertThat(ledger.getLaunching("group1"), is(0));
+		assertThat(ledger.getGranted("group1"), is(0l));
+		assertThat(ledger.getOrphaned(), is(2));
+
+		ledger.setWithdrawAsks(true);
+		ledger.asked("group2", 2);
+		ledger.removeGroup("group2");
+		assertThat(ledger.drainWithdrawn(), is(2));
+	}
+
+	private static class TestRequestLedger extends RequestLedger {
+		long time = 1000;
+		@Override
+		protected long now() {
+			return time;
+		}
+	}
+
+}
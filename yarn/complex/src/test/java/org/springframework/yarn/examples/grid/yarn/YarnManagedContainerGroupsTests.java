@@ -17,7 +17,10 @@ package org.springframework.yarn.examples.grid.yarn;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.springframework.yarn.examples.ApplicationTestUtils.mockContainer;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
@@ -30,9 +33,11 @@ import java.util.Map;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
 import org.apache.hadoop.net.DNSToSwitchMapping;
+import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
 import org.apache.hadoop.yarn.api.records.Container;
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.hadoop.yarn.util.BuilderUtils;
 import org.apache.hadoop.yarn.util.ConverterUtils;
 import org.apache.hadoop.yarn.util.RackResolver;
 import org.apache.hadoop.yarn.util.Records;
@@ -51,6 +56,7 @@ public class YarnManagedContainerGroupsTests {
 	private final static String CID1 = "container_1375001068632_0001_01_000001";
 	private final static String CID2 = "container_1375001068632_0001_01_000002";
 	private final static String CID3 = "container_1375001068632_0001_01_000003";
+	private final static String CID4 = "container_1375001068632_0001_01_000004";
 	private final static String HOST1 = "hostname1";
 	private final static String HOST2 = "hostname2";
 	private final static String HOST3 = "hostname3";
@@ -95,6 +101,22 @@ public class YarnManagedContainerGroupsTests {
 
 	}
 
+	@Test
+	public void testMalformedIdRejected() {
+		YarnManagedContainerGroups managedGroups = createYmcgWithDefaults();
+		Container container = mockContainer3();
+		// attempt and sequence of -1 would map to ContainerKeys.NO_KEY
+		ApplicationAttemptId attemptId = BuilderUtils.newApplicationAttemptId(
+				container.getId().getApplicationAttemptId().getApplicationId(), -1);
+		container.setId(BuilderUtils.newContainerId(attemptId, -1));
+		try {
+			managedGroups.addContainerNode(new DefaultYarnContainerNode(container));
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+		assertThat(managedGroups.getContainerNodes().size(), is(0));
+	}
+
 	@Test
 	public void testAddNodes() {
 		YarnManagedContainerGroups managedGroups = createYmcgResolveAllToTwoGroups();
@@ -231,6 +253,231 @@ public class YarnManagedContainerGroupsTests {
 		assertThat(group.getId(), is(RACK_GROUP));
 	}
 
+	@Test
+	public void testMaxPerRackNeedsRackResolving() {
+		YarnManagedContainerGroups managedGroups = new YarnManagedContainerGroups(false);
+		Map<String, Integer> maxPerRack = new Hashtable<String, Integer>();
+		maxPerRack.put(EXTRA_GROUP, 1);
+		try {
+			managedGroups.setGroupMaxPerRack(maxPerRack);
+			fail("Per rack constraint without rack resolving should fail");
+		} catch (IllegalArgumentException e) {
+		}
+		assertThat(managedGroups.getPlacements().isResolveRacks(), is(false));
+
+		managedGroups.setConfiguration(new Configuration());
+		managedGroups.setGroupMaxPerRack(maxPerRack);
+		assertThat(managedGroups.getPlacements().isResolveRacks(), is(true));
+		assertThat(managedGroups.getGroup(EXTRA_GROUP).getMaxPerRack(), is(1));
+	}
+
+	@Test
+	public void testSpeculativeAllocation() {
+		YarnManagedContainerGroups managedGroups = createYmcgResolveAllToDefaultGroup();
+		managedGroups.setSpeculativeExtra(2);
+		managedGroups.setWarmPoolSize(1);
+
+		YarnGroupsRebalanceData data = managedGroups.getGroupsRebalanceData();
+		assertThat(data.getAllocateData().getAny(), is(3));
+		RequestLedger ledger = managedGroups.getRequestLedger();
+		assertThat(ledger.getPending(YarnManagedContainerGroups.DEFAULT_GROUP), is(1));
+		assertThat(ledger.getSpeculative(YarnManagedContainerGroups.DEFAULT_GROUP), is(2));
+
+		// first adopted, second kept warm and third untracked
+		managedGroups.addContainerNode(new DefaultYarnContainerNode(mockContainer1()));
+		managedGroups.addContainerNode(new DefaultYarnContainerNode(mockContainer2()));
+		managedGroups.addContainerNode(new DefaultYarnContainerNode(mockContainer3()));
+		assertThat(managedGroups.getGroupByMember(CID1).getId(), is(YarnManagedContainerGroups.DEFAULT_GROUP));
+		assertThat(managedGroups.getWarmPool().hasMember(CID2), is(true));
+		assertThat(managedGroups.isTracked(CID3), is(false));
+		assertThat(managedGroups.getSpeculativeMetrics().getAdopted(), is(1l));
+		assertThat(managedGroups.getSpeculativeMetrics().getPooled(), is(1l));
+		assertThat(managedGroups.getSpeculativeMetrics().getReleased(), is(1l));
+		assertThat(ledger.getSpeculative(YarnManagedContainerGroups.DEFAULT_GROUP), is(0));
+		assertThat(ledger.getOutstanding(), is(0));
+
+		// growing group adopts from warm pool without new requests
+		Map<String, Integer> groupSizes = new Hashtable<String, Integer>();
+		groupSizes.put(YarnManagedContainerGroups.DEFAULT_GROUP, 2);
+		managedGroups.setGroupSizes(groupSizes);
+		data = managedGroups.getGroupsRebalanceData();
+		assertThat(data.getAllocateData().getAny(), is(0));
+		assertThat(data.getAdoptedContainers().size(), is(1));
+		assertThat(managedGroups.getGroupByMember(CID2).getId(), is(YarnManagedContainerGroups.DEFAULT_GROUP));
+		assertThat(managedGroups.getWarmPool().getSize(), is(0));
+		assertThat(managedGroups.getSpeculativeMetrics().getAdoptedFromPool(), is(1l));
+	}
+
+	@Test
+	public void testRebalanceAsksOnlyNetRequest() {
+		YarnManagedContainerGroups managedGroups = createYmcgResolveAllToDefaultGroup();
+		Map<String, Integer> groupSizes = new Hashtable<String, Integer>();
+		groupSizes.put(YarnManagedContainerGroups.DEFAULT_GROUP, 3);
+		managedGroups.setGroupSizes(groupSizes);
+
+		YarnGroupsRebalanceData data = managedGroups.getGroupsRebalanceData();
+		assertThat(data.getAllocateData().getAny(), is(3));
+
+		// asks in flight are not asked again
+		managedGroups.addContainerNode(new DefaultYarnContainerNode(mockContainer1()));
+		data = managedGroups.getGroupsRebalanceData();
+		assertThat(data.getAllocateData().getAny(), is(0));
+		assertThat(managedGroups.getRequestLedger().getPending(YarnManagedContainerGroups.DEFAULT_GROUP), is(2));
+
+		// failed member is asked again
+		managedGroups.removeContainerNode(CID1);
+		data = managedGroups.getGroupsRebalanceData();
+		assertThat(data.getAllocateData().getAny(), is(1));
+
+		// container rejected before tracking is asked again on a next tick
+		managedGroups.rejectContainer(ContainerKeys.toKey(CID2));
+		assertThat(managedGroups.getRequestLedger().getPending(YarnManagedContainerGroups.DEFAULT_GROUP), is(2));
+		data = managedGroups.getGroupsRebalanceData();
+		assertThat(data.getAllocateData().getAny(), is(1));
+
+		// shrinking cancels pending asks
+		groupSizes.put(YarnManagedContainerGroups.DEFAULT_GROUP, 1);
+		managedGroups.setGroupSizes(groupSizes);
+		data = managedGroups.getGroupsRebalanceData();
+		assertThat(data.getAllocateData().getAny(), is(0));
+		assertThat(managedGroups.getRequestLedger().getPending(YarnManagedContainerGroups.DEFAULT_GROUP), is(1));
+	}
+
+	@Test
+	public void testFallbackReleaseAndRequest() {
+		YarnManagedContainerGroups managedGroups = createYmcgResolveAllToDefaultGroup();
+		TestContainerGroupsListener listener = new TestContainerGroupsListener();
+		managedGroups.addContainerGroupsListener(listener);
+		managedGroups.addContainerNode(new DefaultYarnContainerNode(mockContainer1()));
+		managedGroups.addContainerNode(new DefaultYarnContainerNode(mockContainer2()));
+		assertThat(managedGroups.getFallbackGroup().hasMember(CID2), is(true));
+
+		// group grows, fallback member can't switch group so it's released and asked again
+		Map<String, Integer> groupSizes = new Hashtable<String, Integer>();
+		groupSizes.put(YarnManagedContainerGroups.DEFAULT_GROUP, 2);
+		managedGroups.setGroupSizes(groupSizes);
+		YarnGroupsRebalanceData data = managedGroups.getGroupsRebalanceData();
+		assertThat(data.getContainers().size(), is(1));
+		assertThat(data.getContainers().get(0).toString(), is(CID2));
+		assertThat(data.getAllocateData().getAny(), is(1));
+		assertThat(managedGroups.isTracked(CID2), is(false));
+		assertThat(managedGroups.getGroup(YarnManagedContainerGroups.DEFAULT_GROUP).getSize(), is(1));
+		assertThat(listener.lastGroup.getId(), is(YarnManagedContainerGroups.DEFAULT_FALLBACK_GROUP));
+
+		// group not needing members keeps fallback member for grace period
+		groupSizes.put(YarnManagedContainerGroups.DEFAULT_GROUP, 1);
+		managedGroups.setGroupSizes(groupSizes);
+		managedGroups.addContainerNode(new DefaultYarnContainerNode(mockContainer3()));
+		data = managedGroups.getGroupsRebalanceData();
+		assertThat(data.getContainers().size(), is(0));
+		assertThat(managedGroups.getFallbackGroup().hasMember(CID3), is(true));
+
+		// no group wants it, released after grace period
+		managedGroups.setFallbackGracePeriod(-1);
+		data = managedGroups.getGroupsRebalanceData();
+		assertThat(data.getContainers().size(), is(1));
+		assertThat(data.getContainers().get(0).toString(), is(CID3));
+		assertThat(managedGroups.isTracked(CID3), is(false));
+		assertThat(data.getAllocateData().getAny(), is(0));
+	}
+
+	@Test
+	public void testAddNodesBatchHonorsHostPin() {
+		GenericContainerGroupResolver groupResolver = new GenericContainerGroupResolver();
+		Map<String, List<String>> resolves = new Hashtable<String, List<String>>();
+		resolves.put(YarnManagedContainerGroups.DEFAULT_GROUP, Arrays.asList(new String[]{"*"}));
+		resolves.put(EXTRA_GROUP, Arrays.asList(new String[]{HOST3}));
+		groupResolver.setResolves(resolves);
+		YarnManagedContainerGroups managedGroups = new YarnManagedContainerGroups(true);
+		managedGroups.setResolver(groupResolver);
+		Map<String, Integer> groupSizes = new Hashtable<String, Integer>();
+		groupSizes.put(YarnManagedContainerGroups.DEFAULT_GROUP, 1);
+		groupSizes.put(EXTRA_GROUP, 1);
+		managedGroups.setGroupSizes(groupSizes);
+		TestContainerGridListener listener = new TestContainerGridListener();
+		managedGroups.addContainerGridListener(listener);
+
+		// host pinned container first, greedy could give it to wildcard group
+		List<YarnContainerNode> nodes = new ArrayList<YarnContainerNode>();
+		nodes.add(new DefaultYarnContainerNode(mockContainer3()));
+		nodes.add(new DefaultYarnContainerNode(mockContainer1()));
+		nodes.add(new DefaultYarnContainerNode(mockContainer2()));
+		managedGroups.addContainerNodes(nodes);
+
+		assertThat(managedGroups.getGroupByMember(CID3).getId(), is(EXTRA_GROUP));
+		assertThat(managedGroups.getGroup(YarnManagedContainerGroups.DEFAULT_GROUP).getSize(), is(1));
+		assertThat(managedGroups.getFallbackGroup().getSize(), is(1));
+		assertThat(listener.containerNodeAdded, is(3));
+	}
+
+	@Test
+	public void testMaxPerHostRejectsNode() {
+		YarnManagedContainerGroups managedGroups = createYmcgResolveAllToDefaultGroup();
+		managedGroups.setProjectedGroupSize(YarnManagedContainerGroups.DEFAULT_GROUP, 3);
+		Map<String, Integer> maxPerHost = new Hashtable<String, Integer>();
+		maxPerHost.put(YarnManagedContainerGroups.DEFAULT_GROUP, 1);
+		managedGroups.setGroupMaxPerHost(maxPerHost);
+
+		managedGroups.addContainerNode(new DefaultYarnContainerNode(mockContainer1()));
+		managedGroups.addContainerNode(new DefaultYarnContainerNode(mockContainer(CID4, HOST1)));
+		managedGroups.addContainerNode(new DefaultYarnContainerNode(mockContainer2()));
+
+		// second node on a host is left untracked for release
+		assertThat(managedGroups.isTracked(CID4), is(false));
+		assertThat(managedGroups.getFallbackGroup().getSize(), is(0));
+		assertThat(managedGroups.getPlacements().getRejected(), is(1l));
+		assertThat(managedGroups.getGroup(YarnManagedContainerGroups.DEFAULT_GROUP).getSize(), is(2));
+		assertThat(managedGroups.getPlacements().getHostCount(YarnManagedContainerGroups.DEFAULT_GROUP, HOST1), is(1));
+
+		// batch keeps one of two nodes sharing a host
+		managedGroups.removeContainerNode(CID1);
+		List<YarnContainerNode> nodes = new ArrayList<YarnContainerNode>();
+		nodes.add(new DefaultYarnContainerNode(mockContainer1()));
+		nodes.add(new DefaultYarnContainerNode(mockContainer(CID4, HOST1)));
+		managedGroups.addContainerNodes(nodes);
+		assertThat(managedGroups.getGroup(YarnManagedContainerGroups.DEFAULT_GROUP).getSize(), is(2));
+		assertThat(managedGroups.getPlacements().getRejected(), is(2l));
+	}
+
+	@Test
+	public void testSpreadAsksOverHosts() {
+		GenericContainerGroupResolver groupResolver = new GenericContainerGroupResolver();
+		Map<String, List<String>> resolves = new Hashtable<String, List<String>>();
+		resolves.put(EXTRA_GROUP, Arrays.asList(new String[]{HOST1, HOST2}));
+		groupResolver.setResolves(resolves);
+		YarnManagedContainerGroups managedGroups = new YarnManagedContainerGroups(false);
+		managedGroups.setResolver(groupResolver);
+		Map<String, List<String>> groupHosts = new Hashtable<String, List<String>>();
+		groupHosts.put(EXTRA_GROUP, Arrays.asList(new String[]{HOST1, HOST2}));
+		managedGroups.setGroupHosts(groupHosts);
+		Map<String, Integer> maxPerHost = new Hashtable<String, Integer>();
+		maxPerHost.put(EXTRA_GROUP, 2);
+		managedGroups.setGroupMaxPerHost(maxPerHost);
+		managedGroups.setProjectedGroupSize(EXTRA_GROUP, 5);
+		managedGroups.addContainerNode(new DefaultYarnContainerNode(mockContainer1()));
+
+		// room for 3 more, least loaded host asked first
+		YarnGroupsRebalanceData data = managedGroups.getGroupsRebalanceData();
+		assertThat(data.getAllocateCounts().get(EXTRA_GROUP), is(3));
+		assertThat(data.getAllocateData().getAny(), is(0));
+		assertThat(data.getAllocateData().getHosts().get(HOST1), is(1));
+		assertThat(data.getAllocateData().getHosts().get(HOST2), is(2));
+
+		// pending asks fill the room, nothing more asked
+		managedGroups.setProjectedGroupSize(EXTRA_GROUP, 6);
+		data = managedGroups.getGroupsRebalanceData();
+		assertThat(data.getAllocateCounts().get(EXTRA_GROUP), nullValue());
+
+		// shrinking releases from most loaded host first
+		managedGroups.addContainerNode(new DefaultYarnContainerNode(mockContainer(CID4, HOST1)));
+		managedGroups.addContainerNode(new DefaultYarnContainerNode(mockContainer2()));
+		managedGroups.setProjectedGroupSize(EXTRA_GROUP, 2);
+		data = managedGroups.getGroupsRebalanceData();
+		assertThat(data.getContainers().size(), is(1));
+		assertThat(managedGroups.getPlacements().getHostCount(EXTRA_GROUP, HOST1), is(1));
+		assertThat(managedGroups.getPlacements().getHostCount(EXTRA_GROUP, HOST2), is(1));
+	}
+
 	/**
 	 * Mocks a yarn container with hostname hostname1 and container id {@link #CID1}
 	 *
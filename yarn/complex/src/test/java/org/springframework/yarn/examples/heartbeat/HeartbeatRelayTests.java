@@ -0,0 +1,191 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.heartbeat;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.net.DatagramSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link HeartbeatRelayClient} and {@link HeartbeatRelayReceiver}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class HeartbeatRelayTests {
+
+	@Test
+	public void testReceiverUpAndDead() {
+		TestReceiver receiver = new TestReceiver();
+		receiver.setSessionId("s1");
+		receiver.setDeadTime(1000);
+		TestListener listener = new TestListener();
+		receiver.setListener(listener);
+
+		receiver.handle("s1\nc1\nc2");
+		receiver.handle("wrong\nc3");
+		assertThat(listener.up.size(), is(2));
+		assertThat(receiver.getNodeCount(), is(2));
+		assertThat(receiver.getHeartbeatCount(), is(2l));
+
+		receiver.time = 800;
+		receiver.handle("s1\nc1");
+		receiver.time = 1500;
+		receiver.checkDead();
+		assertThat(listener.dead, is(Collections.singletonList("c2")));
+
+		receiver.forget("c1");
+		receiver.time = 5000;
+		receiver.checkDead();
+		assertThat(listener.dead.size(), is(1));
+	}
+
+	@Test
+	public void testEncodeSplitsLargeBatches() {
+		Set<String> ids = new LinkedHashSet<String>();
+		for (int i = 0; i < 5000; i++) {
+			ids.add("container_1376500000000_0001_01_" + i);
+		}
+		List<byte[]> messages = HeartbeatRelayClient.encode("s1", "host1", ids);
+		assertThat(messages.size() > 1, is(true));
+		int count = 0;
+		for (byte[] message : messages) {
+			assertThat(message.length <= HeartbeatRelayClient.MAX_DATAGRAM, is(true));
+			String[] fields = new String(message, HeartbeatRelayClient.CHARSET).split("\n");
+			assertThat(fields[0], is("s1"));
+			assertThat(fields[1], is("@host1"));
+			count += fields.length - 2;
+		}
+		assertThat(count, is(5000));
+
+		// relay beat without heartbeats
+		messages = HeartbeatRelayClient.encode("s1", "host1", new LinkedHashSet<String>());
+		assertThat(messages.size(), is(1));
+		assertThat(new String(messages.get(0), HeartbeatRelayClient.CHARSET), is("s1\n@host1"));
+	}
+
+	@Test
+	public void testSilentRelayMeansHostUnknown() {
+		TestReceiver receiver = new TestReceiver();
+		receiver.setSessionId("s1");
+		receiver.setDeadTime(1000);
+		TestListener listener = new TestListener();
+		receiver.setListener(listener);
+
+		receiver.handle("s1\n@host1\nc1\nc2");
+		receiver.handle("s1\n@host2\nc3");
+
+		// host1 relay silent, its containers are unknown, not dead
+		receiver.time = 800;
+		receiver.handle("s1\n@host2\nc3");
+		receiver.time = 1500;
+		receiver.checkDead();
+		assertThat(listener.dead.size(), is(0));
+		assertThat(receiver.getUnknownCount(), is(2));
+
+		// relay back without c2, only c2 is dead
+		receiver.handle("s1\n@host1\nc1");
+		receiver.time = 2200;
+		receiver.handle("s1\n@host1\nc1");
+		receiver.handle("s1\n@host2\nc3");
+		receiver.checkDead();
+		assertThat(listener.dead, is(Collections.singletonList("c2")));
+		assertThat(receiver.getUnknownCount(), is(0));
+
+		// dead and released ids are not brought up again
+		receiver.forget("c3");
+		receiver.handle("s1\n@host1\nc1\nc2");
+		receiver.handle("s1\n@host2\nc3");
+		assertThat(listener.up.size(), is(3));
+	}
+
+	@Test
+	public void testSingleRelayPerHost() throws Exception {
+		TestReceiver receiver = new TestReceiver();
+		receiver.setEnabled(true);
+		receiver.setSessionId("s1");
+		receiver.afterPropertiesSet();
+		TestListener listener = new TestListener();
+		receiver.setListener(listener);
+
+		DatagramSocket probe = new DatagramSocket(0);
+		int relayPort = probe.getLocalPort();
+		probe.close();
+
+		HeartbeatRelayClient c1 = new HeartbeatRelayClient("c1", "s1", "localhost", receiver.getPort());
+		HeartbeatRelayClient c2 = new HeartbeatRelayClient("c2", "s1", "localhost", receiver.getPort());
+		c1.setRelayPort(relayPort);
+		c2.setRelayPort(relayPort);
+		try {
+			receiver.start();
+			c1.tick();
+			c2.tick();
+			assertThat(c1.isRelay(), is(true));
+			assertThat(c2.isRelay(), is(false));
+
+			// give relay receiver thread time to collect member heartbeat
+			for (int i = 0; i < 100 && listener.up.size() < 2; i++) {
+				Thread.sleep(100);
+				c1.tick();
+			}
+			assertThat(listener.up.contains("c1"), is(true));
+			assertThat(listener.up.contains("c2"), is(true));
+
+			// relay goes away, member takes over
+			// closed port may be released only after relay thread exits
+			c1.stop();
+			for (int i = 0; i < 100 && !c2.isRelay(); i++) {
+				c2.tick();
+				Thread.sleep(10);
+			}
+			assertThat(c2.isRelay(), is(true));
+		} finally {
+			c1.stop();
+			c2.stop();
+			receiver.stop();
+		}
+	}
+
+	private static class TestReceiver extends HeartbeatRelayReceiver {
+		volatile long time;
+		@Override
+		protected long now() {
+			return time;
+		}
+	}
+
+	private static class TestListener implements HeartbeatRelayListener {
+		final List<String> up = Collections.synchronizedList(new ArrayList<String>());
+		final List<String> dead = Collections.synchronizedList(new ArrayList<String>());
+		@Override
+		public void nodeUp(String containerId) {
+			up.add(containerId);
+		}
+		@Override
+		public void nodeDead(String containerId) {
+			dead.add(containerId);
+		}
+	}
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.metrics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.springframework.yarn.examples.ApplicationTestUtils.mockContainer;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.springframework.jmx.export.annotation.AnnotationMBeanExporter;
+import org.springframework.yarn.examples.grid.yarn.DefaultYarnContainerNode;
+import org.springframework.yarn.examples.grid.yarn.GenericContainerGroupResolver;
+import org.springframework.yarn.examples.grid.yarn.YarnManagedContainerGroups;
+
+/**
+ * Tests for {@link ContainerGroupsMBeanRegistrar} and {@link AppmasterMetrics}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class ContainerGroupsMBeanRegistrarTests {
+
+	private final static String CID1 = "container_1375001068632_0001_01_000001";
+
+	@Test
+	public void testGroupRegistration() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		AnnotationMBeanExporter exporter = new AnnotationMBeanExporter();
+		exporter.setServer(server);
+		exporter.setAutodetect(false);
+		exporter.afterPropertiesSet();
+
+		GenericContainerGroupResolver resolver = new GenericContainerGroupResolver();
+		Map<String, List<String>> resolves = new Hashtable<String, List<String>>();
+		resolves.put("group1", Arrays.asList(new String[]{"*"}));
+		resolver.setResolves(resolves);
+		YarnManagedContainerGroups managedGroups = new YarnManagedContainerGroups(false);
+		managedGroups.setResolver(resolver);
+		managedGroups.setProjectedGroupSize("group1", 2);
+
+		ContainerGroupsMBeanRegistrar registrar = new ContainerGroupsMBeanRegistrar();
+		registrar.setMbeanExporter(exporter);
+		registrar.setManagedGroups(managedGroups);
+		registrar.afterPropertiesSet();
+
+		ObjectName name1 = ContainerGroupsMBeanRegistrar.getObjectName("group1");
+		assertThat(server.isRegistered(name1), is(true));
+		assertThat((Integer) server.getAttribute(name1, "ProjectedSize"), is(2));
+		assertThat((Integer) server.getAttribute(name1, "Size"), is(0));
+
+		// hosts are served from a snapshot
+		managedGroups.addContainerNode(new DefaultYarnContainerNode(mockContainer(CID1, "hostname1")));
+		assertThat(((String[]) server.getAttribute(name1, "Hosts")).length, is(0));
+		registrar.refresh();
+		assertThat((String[]) server.getAttribute(name1, "Hosts"), is(new String[] { "hostname1=1" }));
+
+		// group created at runtime
+		managedGroups.setProjectedGroupSize("group2", 3);
+		ObjectName name2 = ContainerGroupsMBeanRegistrar.getObjectName("group2");
+		assertThat(server.isRegistered(name2), is(true));
+		assertThat((Integer) server.getAttribute(name2, "ProjectedSize"), is(3));
+
+		managedGroups.removeGroup("group2");
+		assertThat(server.isRegistered(name2), is(false));
+
+		registrar.destroy();
+		assertThat(server.isRegistered(name1), is(false));
+		exporter.destroy();
+	}
+
+	@Test
+	public void testAppmasterMetrics() {
+		AppmasterMetrics metrics = new AppmasterMetrics();
+		metrics.recordRebalance(3000000, 2, 1);
+		metrics.recordRebalance(1000000, 0, 0);
+		assertThat(metrics.getRebalanceCount(), is(2l));
+		assertThat(metrics.getRebalanceLastMicros(), is(1000l));
+		assertThat(metrics.getRebalanceMaxMicros(), is(3000l));
+		assertThat(metrics.getRebalanceMeanMicros(), is(2000l));
+		assertThat(metrics.getPendingAllocations(), is(0l));
+		assertThat(metrics.getLastAllocations(), is(0l));
+		assertThat(metrics.getTotalAllocations(), is(2l));
+		assertThat(metrics.getTotalReleases(), is(1l));
+		metrics.recordHostFailure(false);
+		metrics.recordHostFailure(true);
+		assertThat(metrics.getHostFailureCount(), is(2l));
+		assertThat(metrics.getHostBlacklistCount(), is(1l));
+		metrics.recordState(4, 1, 2, 3);
+		assertThat(metrics.getPendingAllocations(), is(4l));
+		assertThat(metrics.getFallbackSize(), is(1l));
+		assertThat(metrics.getSuspectHostCount(), is(2l));
+		assertThat(metrics.getDeadHostCount(), is(3l));
+	}
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.metrics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ContainerLifecycleTracker} and {@link LatencyHistogram}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class ContainerLifecycleTrackerTests {
+
+	private final static String CID1 = "container_1375001068632_0001_01_000001";
+	private final static String CID2 = "container_1375001068632_0001_01_000002";
+	private final static String GROUP = "group1";
+
+	@Test
+	public void testStages() {
+		TestContainerLifecycleTracker tracker = new TestContainerLifecycleTracker();
+		tracker.groupChanged(GROUP);
+		tracker.time += 10;
+		tracker.requestsSent(GROUP, 2);
+		tracker.time += 100;
+		tracker.containerAllocated(CID1, GROUP);
+		tracker.time += 5;
+		tracker.stage(CID1, LifecycleStage.PRELAUNCH);
+		tracker.time += 20;
+		tracker.stage(CID1, LifecycleStage.LAUNCHED);
+		tracker.time += 1000;
+		tracker.stage(CID1, LifecycleStage.HEARTBEAT);
+		tracker.stage(CID1, LifecycleStage.READY);
+		assertThat(tracker.getTrackedCount(), is(0));
+
+		assertThat(tracker.getHistogram(GROUP, LifecycleStage.REQUESTED).getMax(), is(10l));
+		assertThat(tracker.getHistogram(GROUP, LifecycleStage.ALLOCATED).getMax(), is(100l));
+		assertThat(tracker.getHistogram(GROUP, LifecycleStage.PRELAUNCH).getMax(), is(5l));
+		assertThat(tracker.getHistogram(GROUP, LifecycleStage.LAUNCHED).getMax(), is(20l));
+		assertThat(tracker.getHistogram(GROUP, LifecycleStage.HEARTBEAT).getMax(), is(1000l));
+		assertThat(tracker.getHistogram(GROUP, LifecycleStage.PROJECTED).getMax(), is(1135l));
+
+		// second container skips prelaunch, removed before ready
+		tracker.containerAllocated(CID2, GROUP);
+		tracker.time += 30;
+		tracker.stage(CID2, LifecycleStage.LAUNCHED);
+		assertThat(tracker.getHistogram(GROUP, LifecycleStage.LAUNCHED).getCount(), is(2l));
+		assertThat(tracker.getHistogram(GROUP, LifecycleStage.LAUNCHED).getMax(), is(30l));
+		tracker.containerRemoved(CID2);
+		assertThat(tracker.getTrackedCount(), is(0));
+		assertThat(tracker.getHistogram(GROUP, LifecycleStage.PROJECTED).getCount(), is(1l));
+	}
+
+	@Test
+	public void testQueuedRequestsTrimmed() {
+		TestContainerLifecycleTracker tracker = new TestContainerLifecycleTracker();
+		tracker.requestsSent(GROUP, 5);
+		tracker.time += 100;
+		tracker.requestsSent(GROUP, 2);
+		tracker.requestsSent("group2", 3);
+		assertThat(tracker.getQueuedRequests(GROUP), is(7));
+
+		// cancelled and expired asks drop oldest requests, gone group is drained
+		Map<String, Integer> outstanding = new HashMap<String, Integer>();
+		outstanding.put(GROUP, 2);
+		tracker.retainRequests(outstanding);
+		assertThat(tracker.getQueuedRequests(GROUP), is(2));
+		assertThat(tracker.getQueuedRequests("group2"), is(0));
+		tracker.time += 50;
+		tracker.containerAllocated(CID1, GROUP);
+		assertThat(tracker.getHistogram(GROUP, LifecycleStage.ALLOCATED).getMax(), is(50l));
+
+		// never queues more than a cap
+		tracker.requestsSent(GROUP, ContainerLifecycleTracker.MAX_QUEUED_REQUESTS + 10);
+		assertThat(tracker.getQueuedRequests(GROUP), is(ContainerLifecycleTracker.MAX_QUEUED_REQUESTS));
+	}
+
+	@Test
+	public void testReadyStage() {
+		TestContainerLifecycleTracker tracker = new TestContainerLifecycleTracker();
+		tracker.setReadyStage(LifecycleStage.HEARTBEAT);
+		tracker.groupChanged(GROUP);
+		tracker.requestsSent(GROUP, 1);
+		tracker.containerAllocated(CID1, GROUP);
+		tracker.time += 300;
+		tracker.stage(CID1, LifecycleStage.HEARTBEAT);
+		assertThat(tracker.getTrackedCount(), is(0));
+		assertThat(tracker.getHistogram(GROUP, LifecycleStage.PROJECTED).getMax(), is(300l));
+		assertThat(tracker.getHistogram(GROUP, LifecycleStage.READY).getCount(), is(0l));
+	}
+
+	@Test
+	public void testHistogramPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertThat(histogram.getPercentile(50), is(0l));
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(i);
+		}
+		assertThat(histogram.getCount(), is(100l));
+		assertThat(histogram.getMean(), is(50l));
+		assertThat(histogram.getMax(), is(100l));
+		assertThat(histogram.getPercentile(5), is(5l));
+		assertThat(histogram.getPercentile(50), is(50l));
+		assertThat(histogram.getPercentile(90), is(100l));
+		assertThat(histogram.toString(), notNullValue());
+	}
+
+	private static class TestContainerLifecycleTracker extends ContainerLifecycleTracker {
+		long time = 1000000;
+		@Override
+		protected long now() {
+			return time;
+		}
+	}
+
+}
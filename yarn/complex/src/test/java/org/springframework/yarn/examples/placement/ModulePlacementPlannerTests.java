@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.yarn.examples.placement;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ModulePlacementPlanner}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class ModulePlacementPlannerTests {
+
+	@Test
+	public void testColocation() {
+		ClusterTopology topology = createTopology();
+		ModulePlacementPlanner planner = new ModulePlacementPlanner();
+		planner.setModulesPerContainer(2);
+
+		// packed into one container, then same host
+		List<String> placement = planner.place("group1", Arrays.asList("time", "transform", "log"), topology);
+		assertThat(placement, is(Arrays.asList("c1", "c1", "c2")));
+		assertThat(ModulePlacementPlanner.getCrossHostHops(placement, topology), is(0));
+
+		// host with most free capacity first
+		placement = planner.place("group1", Arrays.asList("http", "filter", "splitter", "log"), topology);
+		assertThat(placement, is(Arrays.asList("c3", "c3", "c4", "c4")));
+		assertThat(ModulePlacementPlanner.getCrossHostHops(placement, topology), is(1));
+
+		// last free slot, then everything full and least loaded is overcommitted
+		placement = planner.place("group1", Arrays.asList("time", "log"), topology);
+		assertThat(placement, is(Arrays.asList("c2", "c1")));
+		assertThat(planner.getLoad("c1"), is(3));
+
+		planner.release(Arrays.asList("c1", "c1"));
+		assertThat(planner.getLoad("c1"), is(1));
+		planner.containerRemoved("c1");
+		assertThat(planner.getLoad("c1"), is(0));
+
+		assertThat(planner.place("unknown", Arrays.asList("time"), topology).size(), is(0));
+	}
+
+	@Test
+	public void testRequiredContainers() {
+		ModulePlacementPlanner planner = new ModulePlacementPlanner();
+		planner.setModulesPerContainer(2);
+		assertThat(planner.getRequiredContainers(Arrays.asList(3, 4, 1)), is(5));
+	}
+
+	private static ClusterTopology createTopology() {
+		Map<String, List<String>> hosts = new TreeMap<String, List<String>>();
+		hosts.put("hostA", Arrays.asList("c1", "c2"));
+		hosts.put("hostB", Arrays.asList("c3"));
+		hosts.put("hostC", Arrays.asList("c4"));
+		Map<String, Map<String, List<String>>> groups = new HashMap<String, Map<String, List<String>>>();
+		groups.put("group1", hosts);
+		return new ClusterTopology(groups);
+	}
+
+}